@@ -10,12 +10,21 @@
 
 package com.ardor3d.bounding;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
 import com.ardor3d.scenegraph.Node;
 import com.ardor3d.scenegraph.Spatial;
 import com.google.common.collect.ImmutableList;
@@ -27,9 +36,16 @@ import com.google.common.collect.MapMaker;
  * collision system itself requests a collision tree from the manager via the
  * <code>getCollisionTree</code> method. The cache is checked for the tree, and if it is available,
  * sent to the caller. If the tree is not in the cache, and generateTrees is true, a new
- * CollisionTree is generated on the fly and sent to the caller. When a new tree is created, the
- * cache size is compared to the maxElements value. If the cache is larger than maxElements, the
- * cache is sent to the CollisionTreeController for cleaning.
+ * CollisionTree is generated and sent to the caller. Lookups take no lock, and any number of threads
+ * may pick and collide at once; a tree asked for by several threads is only built once.
+ * <p>
+ * By default trees are built on the calling thread, which for a large model stalls the first pick
+ * against it. Given a build executor, trees are instead built in the background: until a mesh's tree
+ * is ready, getCollisionTree and getTriangleBVH return null, and picking and collision checks against
+ * the mesh fall back to its world bound - see {@link #isBuildPending(Mesh)}. Trees can also be built
+ * ahead of use, on the executor or the common pool, with <code>requestCollisionTree</code> and
+ * <code>requestTriangleBVH</code>, whose futures complete once they are ready.
+ * </p>
  * <p>
  * There are a number of settings that can be used to control how trees are generated. First,
  * generateTrees denotes whether the manager should be creating trees at all. This is set to true by
@@ -39,17 +55,20 @@ import com.google.common.collect.MapMaker;
  * used when model data requires it. maxPrimitivesPerLeaf defines the number of primitives a leaf
  * node in the collision tree should maintain. The larger number of primitives maintained in a leaf
  * node, the smaller the tree, but the larger the number of checks during a collision. By default,
- * this value is set to 16. maxElements defines the maximum number of trees that will be maintained
- * before clean-up is required. A collision tree is defined for each mesh that is being collided
- * with. The user should determine the optimal number of trees to maintain (a memory/performance
- * tradeoff), based on the number of meshes, their population density and their primitive size. By
- * default, this value is set to 25. The type of trees that will be generated is defined by the
- * treeType value, where valid options are define in CollisionTree as AABB_TREE, OBB_TREE and
- * SPHERE_TREE. You can set the functionality of how trees are removed from the cache by providing
- * the manager with a CollisionTreeController implementation. By default, the manager will use the
- * UsageTreeController for removing trees, but any other CollisionTreeController is acceptable. You
- * can create protected tree manually. These are collision trees that you request the manager to
- * create and not allow them to be removed by the CollisionTreeController.
+ * this value is set to 16. maxPrimitives defines how many primitives the cached trees and triangle
+ * hierarchies may cover in all before the least recently used are removed, as their memory - and the
+ * time to build them again - grows with the primitives they cover. By default, this value is set to
+ * 4 million. maxElements optionally also limits the number of collision trees kept. A collision tree
+ * is defined for each mesh that is being collided with. The user should determine the optimal limits
+ * (a memory/performance tradeoff), based on the number of meshes, their population density and their
+ * primitive size. The type of trees that will be generated is defined by the treeType value, where
+ * valid options are define in CollisionTree as AABB_TREE, OBB_TREE and SPHERE_TREE. You can set the
+ * functionality of how trees are removed from the cache once there are more than maxElements by
+ * providing the manager with a CollisionTreeController implementation. By default, the manager will
+ * use the UsageTreeController for removing trees, but any other CollisionTreeController is
+ * acceptable. You can create protected tree manually. These are collision trees that you request the
+ * manager to create and not allow them to be removed by either limit.
+ * </p>
  *
  * @see com.ardor3d.bounding.CollisionTree
  * @see com.ardor3d.bounding.CollisionTreeController
@@ -59,32 +78,75 @@ public enum CollisionTreeManager {
 
   /**
    * defines the default maximum number of trees to maintain.
+   *
+   * @deprecated trees are limited by the primitives they cover, see {@link #DEFAULT_MAX_PRIMITIVES}.
+   *             The number of trees is not limited unless set with {@link #setMaxElements(int)}.
    */
+  @Deprecated
   public static final int DEFAULT_MAX_ELEMENTS = 25;
+  /**
+   * defines the default maximum number of primitives covered by all cached trees and hierarchies.
+   */
+  public static final long DEFAULT_MAX_PRIMITIVES = 4_000_000;
   /**
    * defines the default maximum number of primitives in a tree leaf.
    */
   public static final int DEFAULT_MAX_PRIMITIVES_PER_LEAF = 16;
 
-  // the cache and protected list for storing trees.
-  private final Map<Mesh, CollisionTree> _cache;
+  // the cache and protected list for storing trees. Entries may still be building.
+  private final ConcurrentMap<Mesh, CacheEntry<CollisionTree>> _cache;
   private final List<Mesh> _protectedList;
 
-  private boolean _generateTrees = true;
+  // triangle hierarchies for ray queries, kept per mesh data so meshes sharing data share them
+  private final ConcurrentMap<MeshData, CacheEntry<TriangleBVH>> _bvhCache;
+  private volatile boolean _useTriangleBVH = true;
+
+  private volatile boolean _generateTrees = true;
   private boolean _doSort;
 
   private CollisionTree.Type _treeType = CollisionTree.Type.AABB;
 
   private int _maxPrimitivesPerLeaf = DEFAULT_MAX_PRIMITIVES_PER_LEAF;
-  private int _maxElements = DEFAULT_MAX_ELEMENTS;
+  private int _maxElements = Integer.MAX_VALUE;
+  private long _maxPrimitives = DEFAULT_MAX_PRIMITIVES;
 
   private CollisionTreeController _treeRemover;
 
+  private volatile Executor _buildExecutor;
+
+  // advanced on each build; entries note the last epoch they were used in, to order them for removal
+  private volatile long _epoch;
+
+  /**
+   * A cached tree or triangle hierarchy, possibly still being built, weighed by the primitives it
+   * covers.
+   */
+  private static final class CacheEntry<T> {
+    private final CompletableFuture<T> _future = new CompletableFuture<>();
+    private final long _primitives;
+    private volatile long _lastUsed;
+
+    private CacheEntry(final long primitives, final long epoch) {
+      _primitives = primitives;
+      _lastUsed = epoch;
+    }
+
+    private boolean isReady() { return _future.isDone() && !_future.isCompletedExceptionally(); }
+
+    private void touch(final long epoch) {
+      // only written once per epoch, so that lookups of popular trees do not contend on the field
+      if (_lastUsed != epoch) {
+        _lastUsed = epoch;
+      }
+    }
+  }
+
   /**
    * private constructor for the Singleton. Initializes the cache.
    */
   private CollisionTreeManager() {
     _cache = new MapMaker().weakKeys().makeMap();
+    _bvhCache = new MapMaker().weakKeys().makeMap();
     _protectedList = Collections.synchronizedList(new ArrayList<Mesh>(1));
     setCollisionTreeController(new UsageTreeController());
   }
@@ -96,18 +158,6 @@ public enum CollisionTreeManager {
    */
   public static CollisionTreeManager getInstance() { return INSTANCE; }
 
-  private CollisionTree cacheGet(final Mesh mesh) {
-    return _cache.get(mesh);
-  }
-
-  private void cacheRemove(final Mesh mesh) {
-    _cache.remove(mesh);
-  }
-
-  private void cachePut(final Mesh mesh, final CollisionTree tree) {
-    _cache.put(mesh, tree);
-  }
-
   /**
    * sets the CollisionTreeController used for cleaning the cache when the maximum number of elements
    * is reached.
@@ -120,29 +170,291 @@ public enum CollisionTreeManager {
   /**
    * getCollisionTree obtains a collision tree that is assigned to a supplied Mesh. The cache is
    * checked for a pre-existing tree, if none is available and generateTrees is true, a new tree is
-   * created and returned.
+   * created and returned - or, with a build executor set, started in the background.
    * 
    * @param mesh
    *          the mesh to use as the key for the tree to obtain.
-   * @return the tree associated with a given mesh
+   * @return the tree associated with a given mesh, or null if none is cached and generateTrees is
+   *         false, or it is still being built in the background.
+   */
+  public CollisionTree getCollisionTree(final Mesh mesh) {
+    final Executor executor = _buildExecutor;
+    final CacheEntry<CollisionTree> entry = _cache.get(mesh);
+    if (entry != null) {
+      return use(entry, executor == null);
+    }
+    final CacheEntry<CollisionTree> built = buildCollisionTree(mesh, executor);
+    return built != null ? get(built, executor == null) : null;
+  }
+
+  /**
+   * requestCollisionTree starts building the collision tree of the given mesh, unless it is cached or
+   * already being built, on the build executor or, if none is set, the common pool.
+   * 
+   * @param mesh
+   *          the mesh to build the tree for.
+   * @return a future of the tree, completing once it is built. It completes with null if none is
+   *         cached and generateTrees is false.
+   */
+  public CompletableFuture<CollisionTree> requestCollisionTree(final Mesh mesh) {
+    CacheEntry<CollisionTree> entry = _cache.get(mesh);
+    if (entry == null) {
+      entry = buildCollisionTree(mesh, getBackgroundExecutor());
+    }
+    return entry != null ? entry._future : CompletableFuture.completedFuture(null);
+  }
+
+  private CacheEntry<CollisionTree> buildCollisionTree(final Mesh mesh, final Executor executor) {
+    if (!_generateTrees) {
+      return null;
+    }
+    final CollisionTree.Type type = _treeType;
+    return request(_cache, mesh, getPrimitiveCount(mesh.getMeshData()), () -> {
+      final CollisionTree tree = new CollisionTree(type);
+      tree.construct(mesh, _doSort);
+      return tree;
+    }, executor);
+  }
+
+  /**
+   * getTriangleBVH obtains the triangle hierarchy used for ray queries against the given mesh. The
+   * hierarchy is shared by all meshes using the same mesh data, and is rebuilt when that data's
+   * vertex or index buffers, or its sections, are replaced. If none is cached, one is built if
+   * generateTrees is true - or, with a build executor set, started in the background.
+   * 
+   * @param mesh
+   *          the mesh to get the hierarchy of.
+   * @return the hierarchy, or null if triangle hierarchies are turned off, none is cached and
+   *         generateTrees is false, or it is still being built in the background.
+   */
+  public TriangleBVH getTriangleBVH(final Mesh mesh) {
+    final MeshData meshData = mesh.getMeshData();
+    if (!_useTriangleBVH || meshData == null) {
+      return null;
+    }
+    final Executor executor = _buildExecutor;
+    final CacheEntry<TriangleBVH> entry = getTriangleBVHEntry(meshData);
+    if (entry != null) {
+      return use(entry, executor == null);
+    }
+    final CacheEntry<TriangleBVH> built = buildTriangleBVH(meshData, executor);
+    return built != null ? get(built, executor == null) : null;
+  }
+
+  /**
+   * requestTriangleBVH starts building the triangle hierarchy of the given mesh, unless it is cached
+   * or already being built, on the build executor or, if none is set, the common pool.
+   * 
+   * @param mesh
+   *          the mesh to build the hierarchy for.
+   * @return a future of the hierarchy, completing once it is built. It completes with null if
+   *         triangle hierarchies are turned off, or none is cached and generateTrees is false.
+   */
+  public CompletableFuture<TriangleBVH> requestTriangleBVH(final Mesh mesh) {
+    final MeshData meshData = mesh.getMeshData();
+    if (!_useTriangleBVH || meshData == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CacheEntry<TriangleBVH> entry = getTriangleBVHEntry(meshData);
+    if (entry == null) {
+      entry = buildTriangleBVH(meshData, getBackgroundExecutor());
+    }
+    return entry != null ? entry._future : CompletableFuture.completedFuture(null);
+  }
+
+  private CacheEntry<TriangleBVH> getTriangleBVHEntry(final MeshData meshData) {
+    final CacheEntry<TriangleBVH> entry = _bvhCache.get(meshData);
+    if (entry == null || !entry.isReady() || entry._future.join().isBuiltFrom(meshData)) {
+      return entry;
+    }
+    // the data has changed since, so drop the hierarchy for a new one
+    _bvhCache.remove(meshData, entry);
+    return null;
+  }
+
+  private CacheEntry<TriangleBVH> buildTriangleBVH(final MeshData meshData, final Executor executor) {
+    if (!_generateTrees) {
+      return null;
+    }
+    return request(_bvhCache, meshData, getPrimitiveCount(meshData), () -> new TriangleBVH(meshData), executor);
+  }
+
+  /**
+   * isBuildPending tells whether the given mesh's collision tree or triangle hierarchy is being built
+   * in the background. Until they are ready, picking and collision checks against the mesh make do
+   * with its world bound.
+   * 
+   * @param mesh
+   *          the mesh to check.
+   * @return true if a tree or hierarchy for the mesh is being built.
+   */
+  public boolean isBuildPending(final Mesh mesh) {
+    final CacheEntry<CollisionTree> entry = _cache.get(mesh);
+    if (entry != null && !entry._future.isDone()) {
+      return true;
+    }
+    final MeshData meshData = mesh.getMeshData();
+    final CacheEntry<TriangleBVH> bvhEntry = meshData != null ? _bvhCache.get(meshData) : null;
+    return bvhEntry != null && !bvhEntry._future.isDone();
+  }
+
+  /**
+   * @return true if ray queries against meshes use triangle hierarchies, see
+   *         {@link #getTriangleBVH(Mesh)}, rather than collision trees.
    */
-  public synchronized CollisionTree getCollisionTree(final Mesh mesh) {
-    CollisionTree toReturn = null;
+  public boolean isUseTriangleBVH() { return _useTriangleBVH; }
+
+  /**
+   * @param useTriangleBVH
+   *          true to have ray queries against meshes use triangle hierarchies rather than collision
+   *          trees. Turning this off drops all cached hierarchies.
+   */
+  public void setUseTriangleBVH(final boolean useTriangleBVH) {
+    _useTriangleBVH = useTriangleBVH;
+    if (!useTriangleBVH) {
+      _bvhCache.clear();
+    }
+  }
 
-    toReturn = cacheGet(mesh);
+  /**
+   * @return the executor trees are built on in the background, or null if they are built on the
+   *         thread that first asks for them.
+   */
+  public Executor getBuildExecutor() { return _buildExecutor; }
+
+  /**
+   * set the executor to build collision trees and triangle hierarchies on in the background. While a
+   * mesh's tree is building, lookups return null rather than wait for it. The build reads the mesh's
+   * data, which should not be modified until the tree is ready.
+   * 
+   * @param buildExecutor
+   *          the executor to build trees on, or null (the default) to build them on the thread that
+   *          first asks for them.
+   */
+  public void setBuildExecutor(final Executor buildExecutor) { _buildExecutor = buildExecutor; }
+
+  private Executor getBackgroundExecutor() {
+    final Executor executor = _buildExecutor;
+    return executor != null ? executor : ForkJoinPool.commonPool();
+  }
 
-    // we didn't have it in the cache, create it if possible.
-    if (toReturn == null) {
-      if (_generateTrees) {
-        return generateCollisionTree(_treeType, mesh, false);
-      } else {
-        return null;
+  private static long getPrimitiveCount(final MeshData meshData) {
+    return meshData != null ? meshData.getTotalPrimitiveCount() : 0;
+  }
+
+  /**
+   * Add an entry for the given key to the cache, unless another thread got there first, and build its
+   * value - on the calling thread if executor is null.
+   */
+  private <K, T> CacheEntry<T> request(final ConcurrentMap<K, CacheEntry<T>> cache, final K key,
+      final long primitives, final Supplier<T> builder, final Executor executor) {
+    final CacheEntry<T> entry = new CacheEntry<>(primitives, _epoch);
+    final CacheEntry<T> existing = cache.putIfAbsent(key, entry);
+    if (existing != null) {
+      return existing;
+    }
+
+    final Runnable build = () -> {
+      final T value;
+      try {
+        value = builder.get();
+      } catch (final RuntimeException | Error e) {
+        // forget the entry, so that the build is tried again on next use
+        cache.remove(key, entry);
+        entry._future.completeExceptionally(e);
+        throw e;
       }
+      entry._future.complete(value);
+      trim(entry);
+    };
+    if (executor == null) {
+      build.run();
     } else {
-      // we had it in the cache, to keep the keyset in order, reinsert this element
-      cacheRemove(mesh);
-      cachePut(mesh, toReturn);
-      return toReturn;
+      executor.execute(build);
+    }
+    return entry;
+  }
+
+  /**
+   * @return the value of the given entry, waiting for it to be built if wait is true - otherwise null
+   *         if it is not yet.
+   */
+  private static <T> T get(final CacheEntry<T> entry, final boolean wait) {
+    return wait || entry.isReady() ? entry._future.join() : null;
+  }
+
+  /**
+   * @return as {@link #get(CacheEntry, boolean)}, noting the entry as used.
+   */
+  private <T> T use(final CacheEntry<T> entry, final boolean wait) {
+    entry.touch(_epoch);
+    return get(entry, wait);
+  }
+
+  /**
+   * Remove the least recently used trees and hierarchies, other than the given entry and protected
+   * trees, until the cache is within maxPrimitives, and then have the controller trim collision trees
+   * to maxElements.
+   */
+  private synchronized void trim(final CacheEntry<?> keep) {
+    // the new entry ranks above those used before it was built, and below those used after
+    final long epoch = _epoch + 1;
+    _epoch = epoch + 1;
+    keep.touch(epoch);
+
+    final List<SimpleImmutableEntry<Object, CacheEntry<?>>> built = new ArrayList<>();
+    long primitives = 0;
+    int trees = 0;
+    for (final Map.Entry<Mesh, CacheEntry<CollisionTree>> e : _cache.entrySet()) {
+      if (e.getValue().isReady()) {
+        built.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+        primitives += e.getValue()._primitives;
+        trees++;
+      }
+    }
+    for (final Map.Entry<MeshData, CacheEntry<TriangleBVH>> e : _bvhCache.entrySet()) {
+      if (e.getValue().isReady()) {
+        built.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+        primitives += e.getValue()._primitives;
+      }
+    }
+
+    built.sort(Comparator.comparingLong(e -> e.getValue()._lastUsed));
+    if (primitives > _maxPrimitives) {
+      for (final SimpleImmutableEntry<Object, CacheEntry<?>> e : built) {
+        if (primitives <= _maxPrimitives) {
+          break;
+        }
+        final Object key = e.getKey();
+        final CacheEntry<?> entry = e.getValue();
+        if (entry == keep || key instanceof Mesh && _protectedList.contains(key)) {
+          continue;
+        }
+        if (key instanceof Mesh ? _cache.remove(key, entry) : _bvhCache.remove(key, entry)) {
+          primitives -= entry._primitives;
+          trees -= key instanceof Mesh ? 1 : 0;
+        }
+      }
+    }
+
+    if (trees > _maxElements && _treeRemover != null) {
+      // hand the controller the trees ordered from least to most recently used
+      final Map<Mesh, CollisionTree> ordered = new LinkedHashMap<>();
+      for (final SimpleImmutableEntry<Object, CacheEntry<?>> e : built) {
+        if (e.getKey() instanceof Mesh && _cache.get(e.getKey()) == e.getValue()) {
+          ordered.put((Mesh) e.getKey(), (CollisionTree) e.getValue()._future.join());
+        }
+      }
+      final List<Mesh> meshes = new ArrayList<>(ordered.keySet());
+      _treeRemover.clean(ordered, _protectedList, _maxElements);
+      for (final Mesh mesh : meshes) {
+        if (!ordered.containsKey(mesh)) {
+          final CacheEntry<CollisionTree> entry = _cache.get(mesh);
+          if (entry != null && entry != keep && entry.isReady()) {
+            _cache.remove(mesh, entry);
+          }
+        }
+      }
     }
   }
 
@@ -200,9 +512,9 @@ public enum CollisionTreeManager {
 
   /**
    * generates a new tree for the associated mesh. It is provided with a pre-existing, non-null tree.
-   * The tree is placed in the cache. If the cache's size then becomes too large, the cache is sent to
-   * the CollisionTreeController for clean-up. If this tree is to be protected, i.e. protected from
-   * the CollisionTreeController, set protect to true.
+   * The tree is placed in the cache, replacing any other for the mesh. If the cache then becomes too
+   * large, the least recently used trees are removed. If this tree is to be protected, i.e. protected
+   * from removal, set protect to true.
    * 
    * @param tree
    *          the tree to use for generation
@@ -213,7 +525,9 @@ public enum CollisionTreeManager {
    */
   protected void generateCollisionTree(final CollisionTree tree, final Mesh mesh, final boolean protect) {
     tree.construct(mesh, _doSort);
-    cachePut(mesh, tree);
+    final CacheEntry<CollisionTree> entry = new CacheEntry<>(getPrimitiveCount(mesh.getMeshData()), _epoch);
+    entry._future.complete(tree);
+    _cache.put(mesh, entry);
     // This mesh has been added by outside sources and labeled
     // as protected. Therefore, put it in the protected list
     // so it is not removed by a controller.
@@ -222,9 +536,7 @@ public enum CollisionTreeManager {
     }
 
     // Are we over our max? Test
-    if (_cache.size() > _maxElements && _treeRemover != null) {
-      _treeRemover.clean(_cache, _protectedList, _maxElements);
-    }
+    trim(entry);
   }
 
   /**
@@ -234,8 +546,11 @@ public enum CollisionTreeManager {
    *          the mesh to remove the corresponding collision tree.
    */
   public void removeCollisionTree(final Mesh mesh) {
-    cacheRemove(mesh);
+    _cache.remove(mesh);
     removeProtected(mesh);
+    if (mesh.getMeshData() != null) {
+      _bvhCache.remove(mesh.getMeshData());
+    }
   }
 
   /**
@@ -257,15 +572,26 @@ public enum CollisionTreeManager {
 
   /**
    * updates the existing tree for a supplied mesh. If this tree does not exist, the tree is not
-   * updated. If the tree is not in the cache, no further operations are handled.
+   * updated. If the tree is not in the cache, no further operations are handled. With a build
+   * executor set, the tree is replaced by one built in the background rather than rebuilt in place.
+   * Any triangle hierarchy of the mesh's data is dropped, to be rebuilt on next use.
    * 
    * @param mesh
    *          the mesh key for the tree to update.
    */
   public void updateCollisionTree(final Mesh mesh) {
-    final CollisionTree ct = cacheGet(mesh);
-    if (ct != null) {
-      generateCollisionTree(ct, mesh, _protectedList != null && _protectedList.contains(mesh));
+    final CacheEntry<CollisionTree> entry = _cache.get(mesh);
+    if (entry != null && entry.isReady()) {
+      final Executor executor = _buildExecutor;
+      if (executor == null) {
+        generateCollisionTree(entry._future.join(), mesh, _protectedList.contains(mesh));
+      } else if (_cache.remove(mesh, entry)) {
+        buildCollisionTree(mesh, executor);
+      }
+    }
+    // in place changes can not be detected, so have the triangle hierarchy rebuilt on next use
+    if (mesh.getMeshData() != null) {
+      _bvhCache.remove(mesh.getMeshData());
     }
   }
 
@@ -357,13 +683,30 @@ public enum CollisionTreeManager {
 
   /**
    * set the maximum number of CollisionTree elements this manager will hold on to before starting to
-   * clear some.
+   * clear some with the CollisionTreeController. Not limited by default.
    * 
    * @param maxElements
    *          the maximum number of CollisionTree elements.
    */
   public void setMaxElements(final int maxElements) { _maxElements = maxElements; }
 
+  /**
+   * returns the maximum number of primitives the cached trees and triangle hierarchies may cover in
+   * all before the least recently used are removed.
+   * 
+   * @return the maximum number of primitives covered.
+   */
+  public long getMaxPrimitives() { return _maxPrimitives; }
+
+  /**
+   * set the maximum number of primitives the cached trees and triangle hierarchies may cover in all
+   * before the least recently used are removed. The most recently built is always kept, however large.
+   * 
+   * @param maxPrimitives
+   *          the maximum number of primitives covered.
+   */
+  public void setMaxPrimitives(final long maxPrimitives) { _maxPrimitives = maxPrimitives; }
+
   /**
    * Add the given mesh to our "protected" list. This will signal to our cleanup operation that when
    * deciding which trees to trim in an effort to keep our cache size to a certain desired size, do
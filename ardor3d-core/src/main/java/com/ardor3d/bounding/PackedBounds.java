@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.bounding;
+
+import java.util.Arrays;
+
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * A flat collection of axis aligned boxes and spheres, stored as one primitive array per component
+ * so that many bounds can be tested against a set of planes in tight, JIT vectorizable loops - see
+ * {@link com.ardor3d.renderer.Camera#contains(PackedBounds, long[])}.
+ * <p>
+ * Each entry has a center, three axis extents and a radius. Boxes use the extents and a zero radius,
+ * spheres a zero extent and the radius, so both kinds may be mixed in one collection.
+ * </p>
+ */
+public class PackedBounds {
+
+  protected int _size;
+
+  protected double[] _centerX, _centerY, _centerZ;
+  protected double[] _extentX, _extentY, _extentZ;
+  protected double[] _radius;
+
+  public PackedBounds() {
+    this(64);
+  }
+
+  /**
+   * @param initialCapacity
+   *          the number of bounds we expect to hold.
+   */
+  public PackedBounds(final int initialCapacity) {
+    final int capacity = Math.max(1, initialCapacity);
+    _centerX = new double[capacity];
+    _centerY = new double[capacity];
+    _centerZ = new double[capacity];
+    _extentX = new double[capacity];
+    _extentY = new double[capacity];
+    _extentZ = new double[capacity];
+    _radius = new double[capacity];
+  }
+
+  /**
+   * @return the number of bounds held.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Remove all bounds, keeping our storage for reuse.
+   */
+  public void clear() {
+    _size = 0;
+  }
+
+  /**
+   * Add an axis aligned box.
+   *
+   * @return the index of the new entry.
+   */
+  public int addBox(final double centerX, final double centerY, final double centerZ, final double extentX,
+      final double extentY, final double extentZ) {
+    ensureCapacity(_size + 1);
+    setBox(_size, centerX, centerY, centerZ, extentX, extentY, extentZ);
+    return _size++;
+  }
+
+  /**
+   * Add a sphere.
+   *
+   * @return the index of the new entry.
+   */
+  public int addSphere(final double centerX, final double centerY, final double centerZ, final double radius) {
+    ensureCapacity(_size + 1);
+    setSphere(_size, centerX, centerY, centerZ, radius);
+    return _size++;
+  }
+
+  /**
+   * Add the given bounding volume. Boxes and spheres are stored exactly, other volumes by their
+   * bounding sphere.
+   *
+   * @param volume
+   *          the volume to add.
+   * @return the index of the new entry.
+   */
+  public int add(final BoundingVolume volume) {
+    ensureCapacity(_size + 1);
+    set(_size, volume);
+    return _size++;
+  }
+
+  /**
+   * Replace the entry at the given index with an axis aligned box.
+   */
+  public void setBox(final int index, final double centerX, final double centerY, final double centerZ,
+      final double extentX, final double extentY, final double extentZ) {
+    _centerX[index] = centerX;
+    _centerY[index] = centerY;
+    _centerZ[index] = centerZ;
+    _extentX[index] = extentX;
+    _extentY[index] = extentY;
+    _extentZ[index] = extentZ;
+    _radius[index] = 0;
+  }
+
+  /**
+   * Replace the entry at the given index with a sphere.
+   */
+  public void setSphere(final int index, final double centerX, final double centerY, final double centerZ,
+      final double radius) {
+    _centerX[index] = centerX;
+    _centerY[index] = centerY;
+    _centerZ[index] = centerZ;
+    _extentX[index] = 0;
+    _extentY[index] = 0;
+    _extentZ[index] = 0;
+    _radius[index] = radius;
+  }
+
+  /**
+   * Replace the entry at the given index with the given bounding volume.
+   */
+  public void set(final int index, final BoundingVolume volume) {
+    final ReadOnlyVector3 c = volume.getCenter();
+    if (volume instanceof BoundingBox) {
+      final BoundingBox box = (BoundingBox) volume;
+      setBox(index, c.getX(), c.getY(), c.getZ(), box.getXExtent(), box.getYExtent(), box.getZExtent());
+    } else {
+      setSphere(index, c.getX(), c.getY(), c.getZ(), volume.getRadius());
+    }
+  }
+
+  /**
+   * Make sure we can hold at least the given number of bounds without growing.
+   */
+  public void ensureCapacity(final int capacity) {
+    if (capacity <= _centerX.length) {
+      return;
+    }
+    final int newCapacity = Math.max(capacity, _centerX.length * 2);
+    _centerX = Arrays.copyOf(_centerX, newCapacity);
+    _centerY = Arrays.copyOf(_centerY, newCapacity);
+    _centerZ = Arrays.copyOf(_centerZ, newCapacity);
+    _extentX = Arrays.copyOf(_extentX, newCapacity);
+    _extentY = Arrays.copyOf(_extentY, newCapacity);
+    _extentZ = Arrays.copyOf(_extentZ, newCapacity);
+    _radius = Arrays.copyOf(_radius, newCapacity);
+  }
+
+  // The backing arrays, valid up to size(). These are handed out directly for culling code.
+
+  public double[] getCenterX() { return _centerX; }
+
+  public double[] getCenterY() { return _centerY; }
+
+  public double[] getCenterZ() { return _centerZ; }
+
+  public double[] getExtentX() { return _extentX; }
+
+  public double[] getExtentY() { return _extentY; }
+
+  public double[] getExtentZ() { return _extentZ; }
+
+  public double[] getRadius() { return _radius; }
+}
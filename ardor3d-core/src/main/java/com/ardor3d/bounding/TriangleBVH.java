@@ -0,0 +1,863 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.bounding;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.ardor3d.buffer.FloatBufferData;
+import com.ardor3d.buffer.IndexBufferData;
+import com.ardor3d.intersection.PrimitiveKey;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyRay3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.scenegraph.MeshData;
+
+/**
+ * <p>
+ * A bounding volume hierarchy over the triangles of a {@link MeshData}, for fast ray queries against
+ * large meshes. Unlike {@link CollisionTree}, the hierarchy is built by the surface area heuristic,
+ * binning precomputed triangle centroids, and is stored in flat arrays: node boxes, child and leaf
+ * ranges, and a copy of the triangle vertices in leaf order. Traversal allocates nothing and visits
+ * nearer children first, so closest hit queries can skip most of the tree.
+ * </p>
+ * <p>
+ * All queries take rays in the mesh data's model space. A world space ray may be brought into model
+ * space with the inverse of a mesh's world transform, without normalizing the resulting direction -
+ * hit distances along such a ray are then the same parameter as along the world ray.
+ * </p>
+ * <p>
+ * Triangles are copied at build time, so in place changes to the mesh data need a rebuild; see
+ * {@link #isBuiltFrom(MeshData)} and {@link CollisionTreeManager#getTriangleBVH}.
+ * </p>
+ */
+public class TriangleBVH {
+
+  /** Default most triangles in a leaf. Leaves may be smaller when splitting is cheaper. */
+  public static final int DEFAULT_MAX_LEAF_SIZE = 8;
+
+  /** The most rays {@link #intersectPacket} takes at once. */
+  public static final int MAX_PACKET_SIZE = 64;
+
+  private static final int BINS = 16;
+
+  /** Cost of visiting an inner node - testing both child boxes - relative to one triangle test. */
+  private static final float TRAVERSAL_COST = 2;
+
+  /** Nodes with more triangles than this are only split along their widest axis. */
+  private static final int WIDEST_AXIS_ONLY_SIZE = 4096;
+
+  // node i has a box at 6 * i, and either two children starting at _nodeOffset[i] (count 0), or
+  // _nodeCount[i] triangles starting at _nodeOffset[i]
+  protected float[] _nodeBounds;
+  protected int[] _nodeOffset;
+  protected int[] _nodeCount;
+  protected int _nodes;
+  protected int _depth;
+
+  // triangles in leaf order, 9 floats each, and where they came from
+  protected float[] _vertices;
+  protected int[] _primitives;
+  protected int[] _sections;
+  protected int _triangles;
+
+  // what we were built from, to tell when to build again
+  private FloatBuffer _builtVertices;
+  private IndexBufferData<?> _builtIndices;
+  private int[] _builtLengths;
+  private IndexMode[] _builtModes;
+
+  /**
+   * Build a hierarchy over all polygon primitives of the given mesh data.
+   */
+  public TriangleBVH(final MeshData meshData) {
+    this(meshData, TriangleBVH.DEFAULT_MAX_LEAF_SIZE);
+  }
+
+  /**
+   * Build a hierarchy over all polygon primitives of the given mesh data.
+   *
+   * @param meshData
+   *          the mesh data to build over.
+   * @param maxLeafSize
+   *          the most triangles to put in a leaf, unless they can not be told apart by centroid.
+   */
+  public TriangleBVH(final MeshData meshData, final int maxLeafSize) {
+    build(meshData, Math.max(1, maxLeafSize));
+  }
+
+  /**
+   * @return true if we were built from the current vertices, indices and sections of the given mesh
+   *         data. Changes made in place to those buffers and arrays can not be detected.
+   */
+  public boolean isBuiltFrom(final MeshData meshData) {
+    return meshData.getVertexBuffer() == _builtVertices && meshData.getIndices() == _builtIndices
+        && meshData.getIndexLengths() == _builtLengths && meshData.getIndexModes() == _builtModes;
+  }
+
+  public int getTriangleCount() { return _triangles; }
+
+  public int getNodeCount() { return _nodes; }
+
+  /**
+   * @return the number of levels below the root, 0 if the root is a leaf.
+   */
+  public int getDepth() { return _depth; }
+
+  /**
+   * @param triangle
+   *          a triangle index, as returned by our queries.
+   * @return the primitive index of the given triangle within its mesh data section.
+   */
+  public int getPrimitiveIndex(final int triangle) {
+    return _primitives[triangle];
+  }
+
+  /**
+   * @param triangle
+   *          a triangle index, as returned by our queries.
+   * @return the mesh data section of the given triangle.
+   */
+  public int getSection(final int triangle) {
+    return _sections[triangle];
+  }
+
+  /**
+   * @param triangle
+   *          a triangle index, as returned by our queries.
+   * @return a new key for the given triangle's primitive.
+   */
+  public PrimitiveKey getPrimitiveKey(final int triangle) {
+    return new PrimitiveKey(_primitives[triangle], _sections[triangle]);
+  }
+
+  // ---- building ----
+
+  private void build(final MeshData meshData, final int maxLeafSize) {
+    _builtVertices = meshData.getVertexBuffer();
+    _builtIndices = meshData.getIndices();
+    _builtLengths = meshData.getIndexLengths();
+    _builtModes = meshData.getIndexModes();
+
+    gatherTriangles(meshData);
+    final int count = _triangles;
+
+    // boxes and centroids of each triangle, kept in step with order as it is partitioned so that each
+    // pass over a node's range reads memory sequentially
+    final int[] order = new int[count];
+    final float[] boxes = new float[count * 6];
+    final float[] centroids = new float[count * 3];
+    for (int t = 0; t < count; t++) {
+      order[t] = t;
+      final int v = t * 9;
+      for (int axis = 0; axis < 3; axis++) {
+        final float a = _vertices[v + axis], b = _vertices[v + 3 + axis], c = _vertices[v + 6 + axis];
+        final float min = a < b ? a < c ? a : c : b < c ? b : c;
+        final float max = a > b ? a > c ? a : c : b > c ? b : c;
+        boxes[t * 6 + axis] = min;
+        boxes[t * 6 + 3 + axis] = max;
+        centroids[t * 3 + axis] = (min + max) * 0.5f;
+      }
+    }
+
+    final int capacity = Math.max(1, 2 * count - 1);
+    _nodeBounds = new float[capacity * 6];
+    _nodeOffset = new int[capacity];
+    _nodeCount = new int[capacity];
+    _nodes = 1;
+    _depth = 0;
+
+    // work stack of {node, start, end, depth}
+    int[] stack = new int[4 * 64];
+    int top = 0;
+    stack[top++] = 0;
+    stack[top++] = 0;
+    stack[top++] = count;
+    stack[top++] = 0;
+
+    final Binning binning = new Binning();
+    while (top > 0) {
+      final int depth = stack[--top];
+      final int end = stack[--top];
+      final int start = stack[--top];
+      final int node = stack[--top];
+      _depth = Math.max(_depth, depth);
+
+      final int split = binning.split(order, boxes, centroids, start, end, maxLeafSize, _nodeBounds, node * 6);
+      if (split < 0) {
+        _nodeOffset[node] = start;
+        _nodeCount[node] = end - start;
+        continue;
+      }
+
+      final int left = _nodes;
+      _nodes += 2;
+      _nodeOffset[node] = left;
+      _nodeCount[node] = 0;
+      if (top + 8 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      stack[top++] = left;
+      stack[top++] = start;
+      stack[top++] = split;
+      stack[top++] = depth + 1;
+      stack[top++] = left + 1;
+      stack[top++] = split;
+      stack[top++] = end;
+      stack[top++] = depth + 1;
+    }
+
+    // put the triangles in leaf order
+    final float[] vertices = new float[count * 9];
+    final int[] primitives = new int[count];
+    final int[] sections = new int[count];
+    for (int i = 0; i < count; i++) {
+      final int t = order[i];
+      System.arraycopy(_vertices, t * 9, vertices, i * 9, 9);
+      primitives[i] = _primitives[t];
+      sections[i] = _sections[t];
+    }
+    _vertices = vertices;
+    _primitives = primitives;
+    _sections = sections;
+  }
+
+  /** Copy out the vertices of every polygon primitive of the mesh data, in model space. */
+  private void gatherTriangles(final MeshData meshData) {
+    final FloatBufferData coords = meshData.getVertexCoords();
+    int total = 0;
+    if (coords != null) {
+      for (int section = 0, maxSection = meshData.getSectionCount(); section < maxSection; section++) {
+        if (meshData.getIndexMode(section).hasPolygons()) {
+          total += meshData.getPrimitiveCount(section);
+        }
+      }
+    }
+
+    _vertices = new float[total * 9];
+    _primitives = new int[total];
+    _sections = new int[total];
+    _triangles = 0;
+    if (total == 0) {
+      return;
+    }
+
+    final FloatBuffer buffer = coords.getBuffer();
+    final int tupleSize = coords.getValuesPerTuple();
+    int[] indices = new int[3];
+    for (int section = 0, maxSection = meshData.getSectionCount(); section < maxSection; section++) {
+      if (!meshData.getIndexMode(section).hasPolygons()) {
+        continue;
+      }
+      for (int p = 0, maxP = meshData.getPrimitiveCount(section); p < maxP; p++) {
+        indices = meshData.getPrimitiveIndices(p, section, indices);
+        final int base = _triangles * 9;
+        for (int corner = 0; corner < 3; corner++) {
+          final int in = indices[corner] * tupleSize;
+          for (int axis = 0; axis < 3; axis++) {
+            _vertices[base + corner * 3 + axis] = axis < tupleSize ? buffer.get(in + axis) : 0;
+          }
+        }
+        _primitives[_triangles] = p;
+        _sections[_triangles] = section;
+        _triangles++;
+      }
+    }
+  }
+
+  /** Scratch for binned surface area heuristic splits, binning all three axes at once. */
+  private static final class Binning {
+    private final int[] _counts = new int[3 * TriangleBVH.BINS];
+    private final float[] _bounds = new float[3 * TriangleBVH.BINS * 6];
+    private final float[] _rightAreas = new float[TriangleBVH.BINS];
+    private final float[] _centroidBox = new float[6];
+    private final float[] _sweep = new float[6];
+    private final float[] _scale = new float[3];
+
+    /**
+     * Write the box of triangles [start, end) to the given node box, then find their cheapest split
+     * and partition the range around it.
+     *
+     * @return the start of the right child's range, or -1 to make a leaf.
+     */
+    int split(final int[] order, final float[] boxes, final float[] centroids, final int start, final int end,
+        final int maxLeafSize, final float[] nodeBounds, final int nodeOffset) {
+      final int size = end - start;
+      final float[] centroidBox = _centroidBox;
+      resetBox(nodeBounds, nodeOffset);
+      resetBox(centroidBox, 0);
+      for (int i = start; i < end; i++) {
+        growBox(nodeBounds, nodeOffset, boxes, i * 6);
+        for (int axis = 0; axis < 3; axis++) {
+          final float c = centroids[i * 3 + axis];
+          if (c < centroidBox[axis]) {
+            centroidBox[axis] = c;
+          }
+          if (c > centroidBox[3 + axis]) {
+            centroidBox[3 + axis] = c;
+          }
+        }
+      }
+      if (size <= 1) {
+        return -1;
+      }
+
+      // bin every triangle along each axis in one pass - or, for large nodes where the split matters
+      // less than the time spent finding it, along the widest axis only
+      final int bins = Math.min(TriangleBVH.BINS, size);
+      final float[] scale = _scale;
+      int widest = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        final float extent = centroidBox[3 + axis] - centroidBox[axis];
+        scale[axis] = extent > 0 ? bins / extent : 0;
+        if (extent > centroidBox[3 + widest] - centroidBox[widest]) {
+          widest = axis;
+        }
+      }
+      final int firstAxis = size > TriangleBVH.WIDEST_AXIS_ONLY_SIZE ? widest : 0;
+      final int lastAxis = size > TriangleBVH.WIDEST_AXIS_ONLY_SIZE ? widest : 2;
+      for (int axis = firstAxis; axis <= lastAxis; axis++) {
+        for (int b = axis * TriangleBVH.BINS, maxB = b + bins; b < maxB; b++) {
+          _counts[b] = 0;
+          resetBox(_bounds, b * 6);
+        }
+      }
+      for (int i = start; i < end; i++) {
+        for (int axis = firstAxis; axis <= lastAxis; axis++) {
+          final int b = axis * TriangleBVH.BINS + bin(centroids[i * 3 + axis], centroidBox[axis], scale[axis], bins);
+          _counts[b]++;
+          growBox(_bounds, b * 6, boxes, i * 6);
+        }
+      }
+
+      // costs of the children's triangle tests, relative to the node's area
+      int bestAxis = -1, bestBin = -1;
+      float bestCost = Float.POSITIVE_INFINITY;
+      for (int axis = firstAxis; axis <= lastAxis; axis++) {
+        if (scale[axis] == 0) {
+          continue;
+        }
+        final int first = axis * TriangleBVH.BINS;
+        // sweep from the right for the areas right of each plane, then from the left for the costs
+        resetBox(_sweep, 0);
+        for (int b = bins - 1; b > 0; b--) {
+          growBox(_sweep, 0, _bounds, (first + b) * 6);
+          _rightAreas[b] = area(_sweep, 0);
+        }
+        resetBox(_sweep, 0);
+        int leftCount = 0;
+        for (int b = 0; b < bins - 1; b++) {
+          growBox(_sweep, 0, _bounds, (first + b) * 6);
+          leftCount += _counts[first + b];
+          if (leftCount == 0 || leftCount == size) {
+            continue;
+          }
+          final float cost = leftCount * area(_sweep, 0) + (size - leftCount) * _rightAreas[b + 1];
+          if (cost < bestCost) {
+            bestCost = cost;
+            bestAxis = axis;
+            bestBin = b;
+          }
+        }
+      }
+
+      if (bestAxis < 0) {
+        // all centroids coincide - nothing to tell them apart by
+        return -1;
+      }
+
+      // compare against the cost of a leaf, in the same units: visiting this node plus the children's tests
+      final float nodeArea = area(nodeBounds, nodeOffset);
+      if (size <= maxLeafSize && (nodeArea <= 0 || TriangleBVH.TRAVERSAL_COST + bestCost / nodeArea >= size)) {
+        return -1;
+      }
+
+      // partition around the chosen plane
+      final float min = centroidBox[bestAxis], axisScale = scale[bestAxis];
+      int i = start, j = end - 1;
+      while (i <= j) {
+        if (bin(centroids[i * 3 + bestAxis], min, axisScale, bins) <= bestBin) {
+          i++;
+        } else {
+          swap(order, boxes, centroids, i, j--);
+        }
+      }
+      return i == start || i == end ? start + size / 2 : i;
+    }
+
+    private static int bin(final float centroid, final float min, final float scale, final int bins) {
+      final int b = (int) ((centroid - min) * scale);
+      return b < bins ? b : bins - 1;
+    }
+
+    private static void swap(final int[] order, final float[] boxes, final float[] centroids, final int i,
+        final int j) {
+      final int t = order[i];
+      order[i] = order[j];
+      order[j] = t;
+      for (int k = 0; k < 6; k++) {
+        final float f = boxes[i * 6 + k];
+        boxes[i * 6 + k] = boxes[j * 6 + k];
+        boxes[j * 6 + k] = f;
+      }
+      for (int k = 0; k < 3; k++) {
+        final float f = centroids[i * 3 + k];
+        centroids[i * 3 + k] = centroids[j * 3 + k];
+        centroids[j * 3 + k] = f;
+      }
+    }
+  }
+
+  private static void resetBox(final float[] box, final int offset) {
+    box[offset] = box[offset + 1] = box[offset + 2] = Float.POSITIVE_INFINITY;
+    box[offset + 3] = box[offset + 4] = box[offset + 5] = Float.NEGATIVE_INFINITY;
+  }
+
+  private static void growBox(final float[] box, final int offset, final float[] other, final int otherOffset) {
+    for (int axis = 0; axis < 3; axis++) {
+      final float min = other[otherOffset + axis], max = other[otherOffset + 3 + axis];
+      if (min < box[offset + axis]) {
+        box[offset + axis] = min;
+      }
+      if (max > box[offset + 3 + axis]) {
+        box[offset + 3 + axis] = max;
+      }
+    }
+  }
+
+  /** Half the surface area of a box, which is all the heuristic needs. */
+  private static float area(final float[] box, final int offset) {
+    final float dx = box[offset + 3] - box[offset], dy = box[offset + 4] - box[offset + 1];
+    final float dz = box[offset + 5] - box[offset + 2];
+    return dx * dy + dy * dz + dz * dx;
+  }
+
+  // ---- queries ----
+
+  /**
+   * Find the nearest triangle hit by a ray.
+   *
+   * @param ray
+   *          the ray, in model space.
+   * @param maxDistance
+   *          ignore hits further along the ray than this, in units of the ray's direction.
+   * @param store
+   *          if not null, and a triangle is hit, set to the distance along the ray and the
+   *          barycentric weights of the hit's second and third vertices, as in
+   *          {@link com.ardor3d.math.Ray3#intersectsTrianglePlanar}.
+   * @return the index of the triangle hit, or -1 if none.
+   */
+  public int intersectClosest(final ReadOnlyRay3 ray, final double maxDistance, final Vector3 store) {
+    return traverse(ray, maxDistance, store, null, false);
+  }
+
+  /**
+   * @param ray
+   *          the ray, in model space.
+   * @param maxDistance
+   *          ignore hits further along the ray than this, in units of the ray's direction.
+   * @return true if the ray hits any triangle within the given distance. Stops at the first hit found.
+   */
+  public boolean intersectsAny(final ReadOnlyRay3 ray, final double maxDistance) {
+    return traverse(ray, maxDistance, null, null, true) >= 0;
+  }
+
+  /**
+   * Find every triangle hit by a ray.
+   *
+   * @param ray
+   *          the ray, in model space.
+   * @param maxDistance
+   *          ignore hits further along the ray than this, in units of the ray's direction.
+   * @param store
+   *          the hits to add to, in no particular order. If the store has a capacity, only that many of
+   *          the nearest hits are kept, and the search skips anything beyond the farthest kept.
+   * @return the number of hits the store grew by.
+   */
+  public int intersectAll(final ReadOnlyRay3 ray, final double maxDistance, final Hits store) {
+    final int before = store.size();
+    traverse(ray, maxDistance, null, store, false);
+    return store.size() - before;
+  }
+
+  /**
+   * Find the nearest triangle hit by each ray of a packet, visiting each node once for all the rays
+   * that reach it. Coherent rays - with nearby origins and similar directions - share most of their
+   * node visits, so a packet of them costs much less than tracing each alone.
+   *
+   * @param origins
+   *          the rays' origins, in model space, 3 values per ray.
+   * @param directions
+   *          the rays' directions, in model space, 3 values per ray.
+   * @param count
+   *          the number of rays, at most {@link #MAX_PACKET_SIZE}.
+   * @param limits
+   *          per ray, ignore hits further along it than this, in units of its direction. Lowered to the
+   *          distance of each hit found.
+   * @param triangleStore
+   *          per ray, set to the index of the triangle hit, if one is found within its limit, and left
+   *          as is otherwise.
+   * @param any
+   *          if true, each ray stops at the first hit found rather than looking for the nearest.
+   * @return the number of rays that found a hit.
+   * @throws IllegalArgumentException
+   *           if count is more than {@link #MAX_PACKET_SIZE}.
+   */
+  public int intersectPacket(final double[] origins, final double[] directions, final int count,
+      final double[] limits, final int[] triangleStore, final boolean any) {
+    if (count > TriangleBVH.MAX_PACKET_SIZE) {
+      throw new IllegalArgumentException("At most " + TriangleBVH.MAX_PACKET_SIZE + " rays, not " + count);
+    }
+    if (_triangles == 0 || count <= 0) {
+      return 0;
+    }
+    final double[] inverse = new double[count * 3];
+    for (int i = 0; i < inverse.length; i++) {
+      inverse[i] = 1.0 / directions[i];
+    }
+
+    // each waiting node carries the mask of rays that reached its parent
+    final int[] stack = new int[_depth + 2];
+    final long[] masks = new long[_depth + 2];
+    int top = 0;
+    stack[top] = 0;
+    masks[top++] = count == 64 ? -1L : (1L << count) - 1;
+    long hit = 0, done = 0;
+    while (top > 0) {
+      final int node = stack[--top];
+      long reach = 0;
+      for (long m = masks[top] & ~done; m != 0; m &= m - 1) {
+        final int r = Long.numberOfTrailingZeros(m), o = r * 3;
+        if (boxDistance(node, origins[o], origins[o + 1], origins[o + 2], inverse[o], inverse[o + 1],
+            inverse[o + 2], limits[r]) >= 0) {
+          reach |= 1L << r;
+        }
+      }
+      if (reach == 0) {
+        continue;
+      }
+
+      final int nodeCount = _nodeCount[node];
+      if (nodeCount == 0) {
+        // order the children for the first ray reaching us, standing in for the packet
+        final int left = _nodeOffset[node], right = left + 1;
+        final int o = Long.numberOfTrailingZeros(reach) * 3;
+        final double tl = boxDistance(left, origins[o], origins[o + 1], origins[o + 2], inverse[o], inverse[o + 1],
+            inverse[o + 2], Double.POSITIVE_INFINITY);
+        final double tr = boxDistance(right, origins[o], origins[o + 1], origins[o + 2], inverse[o],
+            inverse[o + 1], inverse[o + 2], Double.POSITIVE_INFINITY);
+        final boolean rightFirst = tr >= 0 && (tl < 0 || tr < tl);
+        stack[top] = rightFirst ? left : right;
+        masks[top++] = reach;
+        stack[top] = rightFirst ? right : left;
+        masks[top++] = reach;
+        continue;
+      }
+
+      for (int t = _nodeOffset[node], maxT = t + nodeCount; t < maxT; t++) {
+        for (long m = reach; m != 0; m &= m - 1) {
+          final int r = Long.numberOfTrailingZeros(m), o = r * 3;
+          final double distance = intersectTriangle(t, origins[o], origins[o + 1], origins[o + 2], directions[o],
+              directions[o + 1], directions[o + 2], null);
+          if (distance < 0 || distance > limits[r]) {
+            continue;
+          }
+          limits[r] = distance;
+          triangleStore[r] = t;
+          hit |= 1L << r;
+          if (any) {
+            done |= 1L << r;
+            reach &= ~(1L << r);
+          }
+        }
+        if (reach == 0) {
+          break;
+        }
+      }
+    }
+    return Long.bitCount(hit);
+  }
+
+  private int traverse(final ReadOnlyRay3 ray, final double maxDistance, final Vector3 closestStore,
+      final Hits allStore, final boolean any) {
+    if (_triangles == 0) {
+      return -1;
+    }
+    final ReadOnlyVector3 origin = ray.getOrigin(), direction = ray.getDirection();
+    final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+    final double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+    final double ix = 1.0 / dx, iy = 1.0 / dy, iz = 1.0 / dz;
+
+    double limit = allStore != null ? Math.min(maxDistance, allStore.getCutoff()) : maxDistance;
+    int closest = -1;
+
+    // with nearer children visited first, at most one sibling per level waits on the stack
+    final int[] stack = new int[_depth + 2];
+    int top = 0;
+    if (boxDistance(0, ox, oy, oz, ix, iy, iz, limit) < 0) {
+      return -1;
+    }
+    stack[top++] = 0;
+    while (top > 0) {
+      final int node = stack[--top];
+      final int count = _nodeCount[node];
+      if (count == 0) {
+        final int left = _nodeOffset[node], right = left + 1;
+        final double tl = boxDistance(left, ox, oy, oz, ix, iy, iz, limit);
+        final double tr = boxDistance(right, ox, oy, oz, ix, iy, iz, limit);
+        if (tl >= 0 && tr >= 0) {
+          // push the farther first, to pop the nearer next
+          if (tl <= tr) {
+            stack[top++] = right;
+            stack[top++] = left;
+          } else {
+            stack[top++] = left;
+            stack[top++] = right;
+          }
+        } else if (tl >= 0) {
+          stack[top++] = left;
+        } else if (tr >= 0) {
+          stack[top++] = right;
+        }
+        continue;
+      }
+
+      for (int t = _nodeOffset[node], maxT = t + count; t < maxT; t++) {
+        final double distance = intersectTriangle(t, ox, oy, oz, dx, dy, dz, null);
+        if (distance < 0 || distance > limit) {
+          continue;
+        }
+
+        if (any) {
+          return t;
+        }
+        if (allStore != null) {
+          // a bounded store only wants hits nearer than its farthest, once full
+          if (allStore.add(t, distance)) {
+            limit = Math.min(limit, allStore.getCutoff());
+          }
+        } else {
+          // only nearer hits matter from here on
+          limit = distance;
+          closest = t;
+        }
+      }
+    }
+
+    if (closest >= 0 && closestStore != null) {
+      // weights only for the one hit kept
+      final double[] uv = new double[2];
+      intersectTriangle(closest, ox, oy, oz, dx, dy, dz, uv);
+      closestStore.set(limit, uv[0], uv[1]);
+    }
+    return closest;
+  }
+
+  /**
+   * Moller-Trumbore, two sided.
+   *
+   * @return the distance along the ray to where it hits the given triangle, or -1 if it misses.
+   */
+  private double intersectTriangle(final int t, final double ox, final double oy, final double oz,
+      final double dx, final double dy, final double dz, final double[] uvStore) {
+    final int v = t * 9;
+    final double ax = _vertices[v], ay = _vertices[v + 1], az = _vertices[v + 2];
+    final double e1x = _vertices[v + 3] - ax, e1y = _vertices[v + 4] - ay, e1z = _vertices[v + 5] - az;
+    final double e2x = _vertices[v + 6] - ax, e2y = _vertices[v + 7] - ay, e2z = _vertices[v + 8] - az;
+    final double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+    final double det = e1x * px + e1y * py + e1z * pz;
+    if (det == 0) {
+      return -1;
+    }
+    final double invDet = 1.0 / det;
+    final double sx = ox - ax, sy = oy - ay, sz = oz - az;
+    final double u = (sx * px + sy * py + sz * pz) * invDet;
+    if (u < 0 || u > 1) {
+      return -1;
+    }
+    final double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+    final double w = (dx * qx + dy * qy + dz * qz) * invDet;
+    if (w < 0 || u + w > 1) {
+      return -1;
+    }
+    final double distance = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+    if (distance < 0) {
+      return -1;
+    }
+    if (uvStore != null) {
+      uvStore[0] = u;
+      uvStore[1] = w;
+    }
+    return distance;
+  }
+
+  /**
+   * @return the distance along the ray at which it enters the given node's box, or -1 if it misses the
+   *         box or enters it beyond the limit.
+   */
+  private double boxDistance(final int node, final double ox, final double oy, final double oz, final double ix,
+      final double iy, final double iz, final double limit) {
+    final int b = node * 6;
+    double t0 = (_nodeBounds[b] - ox) * ix, t1 = (_nodeBounds[b + 3] - ox) * ix;
+    double near = Math.min(t0, t1), far = Math.max(t0, t1);
+    t0 = (_nodeBounds[b + 1] - oy) * iy;
+    t1 = (_nodeBounds[b + 4] - oy) * iy;
+    near = Math.max(near, Math.min(t0, t1));
+    far = Math.min(far, Math.max(t0, t1));
+    t0 = (_nodeBounds[b + 2] - oz) * iz;
+    t1 = (_nodeBounds[b + 5] - oz) * iz;
+    near = Math.max(near, Math.min(t0, t1));
+    far = Math.min(far, Math.max(t0, t1));
+    // NaN, from a zero direction component on a box face, fails these and counts as a hit at 0
+    if (far < 0 || near > far || near > limit) {
+      return -1;
+    }
+    return near > 0 ? near : 0;
+  }
+
+  /**
+   * A list of triangle hits, as triangle index and distance along the ray. Unbounded by default; given
+   * a capacity, it keeps only that many of the nearest hits offered, in a heap, and tells searches how
+   * far they still need to look.
+   */
+  public static class Hits {
+    protected final int _capacity;
+    protected int[] _triangles;
+    protected double[] _distances;
+    protected int _size;
+
+    /**
+     * Create a list keeping every hit.
+     */
+    public Hits() {
+      this(0);
+    }
+
+    /**
+     * @param capacity
+     *          the most hits to keep - the nearest ones - or 0 to keep every hit.
+     */
+    public Hits(final int capacity) {
+      _capacity = Math.max(0, capacity);
+      final int initial = _capacity > 0 ? _capacity : 16;
+      _triangles = new int[initial];
+      _distances = new double[initial];
+    }
+
+    public int getCapacity() { return _capacity; }
+
+    public int size() {
+      return _size;
+    }
+
+    public void clear() {
+      _size = 0;
+    }
+
+    public int getTriangle(final int i) {
+      return _triangles[i];
+    }
+
+    public double getDistance(final int i) {
+      return _distances[i];
+    }
+
+    /**
+     * @return the distance beyond which offered hits would not be kept - that of the farthest kept hit
+     *         once we are at capacity, otherwise infinity.
+     */
+    public double getCutoff() {
+      return _capacity > 0 && _size == _capacity ? _distances[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Offer a hit. Once at capacity, it replaces the farthest kept hit if nearer, and is dropped
+     * otherwise. Until {@link #sort()} is called the kept hits are in no particular order.
+     *
+     * @param triangle
+     *          the triangle hit, or whatever index the caller tracks hits by.
+     * @param distance
+     *          the distance along the ray.
+     * @return true if the hit was kept.
+     */
+    public boolean add(final int triangle, final double distance) {
+      if (_capacity == 0) {
+        if (_size == _triangles.length) {
+          _triangles = Arrays.copyOf(_triangles, _size * 2);
+          _distances = Arrays.copyOf(_distances, _size * 2);
+        }
+        _triangles[_size] = triangle;
+        _distances[_size] = distance;
+        _size++;
+        return true;
+      }
+
+      // a max heap on distance, so the farthest kept hit is at 0
+      int i;
+      if (_size < _capacity) {
+        // sift up from the end
+        i = _size++;
+        while (i > 0) {
+          final int parent = (i - 1) >> 1;
+          if (_distances[parent] >= distance) {
+            break;
+          }
+          _triangles[i] = _triangles[parent];
+          _distances[i] = _distances[parent];
+          i = parent;
+        }
+      } else {
+        if (distance >= _distances[0]) {
+          return false;
+        }
+        // replace the farthest and sift down
+        i = 0;
+        while (true) {
+          int child = 2 * i + 1;
+          if (child >= _size) {
+            break;
+          }
+          if (child + 1 < _size && _distances[child + 1] > _distances[child]) {
+            child++;
+          }
+          if (_distances[child] <= distance) {
+            break;
+          }
+          _triangles[i] = _triangles[child];
+          _distances[i] = _distances[child];
+          i = child;
+        }
+      }
+      _triangles[i] = triangle;
+      _distances[i] = distance;
+      return true;
+    }
+
+    /**
+     * Sort the hits nearest first. Hits offered after sorting may be out of order again.
+     */
+    public void sort() {
+      // insertion sort - a ray rarely hits more than a handful of triangles
+      for (int i = 1; i < _size; i++) {
+        final int triangle = _triangles[i];
+        final double distance = _distances[i];
+        int j = i - 1;
+        for (; j >= 0 && _distances[j] > distance; j--) {
+          _triangles[j + 1] = _triangles[j];
+          _distances[j + 1] = _distances[j];
+        }
+        _triangles[j + 1] = triangle;
+        _distances[j + 1] = distance;
+      }
+    }
+  }
+}
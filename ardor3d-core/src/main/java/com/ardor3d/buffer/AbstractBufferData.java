@@ -59,6 +59,16 @@ public abstract class AbstractBufferData<T extends Buffer> implements Savable {
   /** if true, we believe we are fully uploaded to OpenGL. For use in single-context mode. */
   protected transient boolean _uploaded;
 
+  /** Most dirty ranges tracked before they are coalesced into a single span. */
+  public static final int MAX_DIRTY_RANGES = 8;
+
+  /**
+   * Sorted, non overlapping start and end (exclusive) buffer positions of the values changed since
+   * the last upload, when only part of an uploaded buffer changed. For use in single-context mode.
+   */
+  protected transient int[] _dirtyRanges;
+  protected transient int _dirtyRangeCount;
+
   /** Buffer holding the data. */
   protected T _buffer;
 
@@ -133,7 +143,11 @@ public abstract class AbstractBufferData<T extends Buffer> implements Savable {
    * @param buffer
    *          the buffer to set
    */
-  public void setBuffer(final T buffer) { _buffer = buffer; }
+  public void setBuffer(final T buffer) {
+    _buffer = buffer;
+    // a new buffer can not be partially updated
+    _dirtyRangeCount = 0;
+  }
 
   /**
    * @param context
@@ -259,9 +273,100 @@ public abstract class AbstractBufferData<T extends Buffer> implements Savable {
       }
     } else {
       _uploaded = false;
+      _dirtyRangeCount = 0;
     }
   }
 
+  /**
+   * Mark a range of values in this buffer dirty on all contexts. If the buffer was otherwise up to
+   * date, only the dirty ranges need to be sent on the next upload. Overlapping and adjacent ranges
+   * are merged. In multi-context mode, this marks the whole buffer dirty.
+   *
+   * @param offset
+   *          the position of the first changed value in the buffer - in values, not tuples or bytes.
+   * @param length
+   *          the number of changed values.
+   */
+  public void markDirty(final int offset, final int length) {
+    if (Constants.useMultipleContexts) {
+      markDirty();
+      return;
+    }
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("offset and length must be >= 0");
+    }
+    if (length == 0) {
+      return;
+    }
+
+    if (_uploaded) {
+      // only this range is out of date
+      _uploaded = false;
+      _dirtyRangeCount = 0;
+    } else if (_dirtyRangeCount == 0) {
+      // whole buffer is already dirty
+      return;
+    }
+    addDirtyRange(offset, offset + length);
+  }
+
+  private void addDirtyRange(int start, int end) {
+    if (_dirtyRanges == null) {
+      _dirtyRanges = new int[AbstractBufferData.MAX_DIRTY_RANGES * 2];
+    }
+
+    // find the first range ending at or after our start, then absorb every range touching ours
+    int first = 0;
+    while (first < _dirtyRangeCount && _dirtyRanges[first * 2 + 1] < start) {
+      first++;
+    }
+    int last = first;
+    while (last < _dirtyRangeCount && _dirtyRanges[last * 2] <= end) {
+      start = Math.min(start, _dirtyRanges[last * 2]);
+      end = Math.max(end, _dirtyRanges[last * 2 + 1]);
+      last++;
+    }
+
+    final int removed = last - first;
+    if (removed == 0 && _dirtyRangeCount == AbstractBufferData.MAX_DIRTY_RANGES) {
+      // too many ranges - coalesce into one span
+      _dirtyRanges[0] = Math.min(start, _dirtyRanges[0]);
+      _dirtyRanges[1] = Math.max(end, _dirtyRanges[_dirtyRangeCount * 2 - 1]);
+      _dirtyRangeCount = 1;
+      return;
+    }
+
+    // replace the absorbed ranges with ours
+    System.arraycopy(_dirtyRanges, last * 2, _dirtyRanges, (first + 1) * 2, (_dirtyRangeCount - last) * 2);
+    _dirtyRanges[first * 2] = start;
+    _dirtyRanges[first * 2 + 1] = end;
+    _dirtyRangeCount += 1 - removed;
+  }
+
+  /**
+   * @return the number of dirty ranges to upload, or 0 if the whole buffer needs to be uploaded - or
+   *         none of it does.
+   */
+  public int getDirtyRangeCount() { return _dirtyRangeCount; }
+
+  /**
+   * @param index
+   *          the dirty range index, in [0, getDirtyRangeCount()).
+   * @return the position of the first value of the given dirty range.
+   */
+  public int getDirtyRangeOffset(final int index) {
+    return _dirtyRanges[index * 2];
+  }
+
+  /**
+   * @param index
+   *          the dirty range index, in [0, getDirtyRangeCount()).
+   * @return the number of values in the given dirty range.
+   */
+  public int getDirtyRangeLength(final int index) {
+    return _dirtyRanges[index * 2 + 1] - _dirtyRanges[index * 2];
+  }
+
   /**
    * Mark this buffer clean on the given context.
    *
@@ -275,6 +380,7 @@ public abstract class AbstractBufferData<T extends Buffer> implements Savable {
       }
     } else {
       _uploaded = true;
+      _dirtyRangeCount = 0;
     }
   }
 
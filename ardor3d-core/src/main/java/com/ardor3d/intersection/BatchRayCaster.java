@@ -0,0 +1,458 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.intersection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.bounding.TriangleBVH;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.SpatialIndex;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.scenegraph.hint.PickingHint;
+
+/**
+ * <p>
+ * Casts a {@link RayBatch} - thousands of rays at a time, for visibility sampling, line of sight,
+ * terrain probing and the like - against a scene, finding the nearest (or any) primitive hit by each
+ * ray. This gives the same hits as {@link PickingUtil#findClosestPick} and
+ * {@link PickingUtil#hasPrimitivePick} ray by ray, at a fraction of the cost.
+ * </p>
+ * <p>
+ * Rays are sorted so that those with nearby origins and similar directions sit together, then cut into
+ * packets. Each packet is tested against each mesh's world bound and traced through the mesh's
+ * {@link TriangleBVH} together (see {@link TriangleBVH#intersectPacket}), so rays share their node
+ * visits. Given a pool, packets are spread over it; packets write disjoint rays, so the results are
+ * the same as a serial cast.
+ * </p>
+ * <p>
+ * Pickables without a triangle hierarchy - meshes when hierarchies are turned off in the
+ * {@link CollisionTreeManager}, and other {@link Pickable}s - are picked through their own primitive
+ * picking, one ray at a time on the calling thread, as collision trees are not safe to share between
+ * threads.
+ * </p>
+ */
+public class BatchRayCaster {
+
+  public static final int DEFAULT_PACKET_SIZE = 32;
+
+  protected ForkJoinPool _pool;
+  protected int _packetSize = BatchRayCaster.DEFAULT_PACKET_SIZE;
+  protected boolean _ignoreCulled = true;
+
+  public ForkJoinPool getPool() { return _pool; }
+
+  /**
+   * @param pool
+   *          the pool to spread packets over, or null (the default) to cast on the calling thread.
+   */
+  public void setPool(final ForkJoinPool pool) { _pool = pool; }
+
+  public int getPacketSize() { return _packetSize; }
+
+  /**
+   * @param packetSize
+   *          the number of rays traced together, clamped to [1, {@link TriangleBVH#MAX_PACKET_SIZE}].
+   */
+  public void setPacketSize(final int packetSize) {
+    _packetSize = Math.max(1, Math.min(TriangleBVH.MAX_PACKET_SIZE, packetSize));
+  }
+
+  public boolean isIgnoreCulled() { return _ignoreCulled; }
+
+  /**
+   * @param ignoreCulled
+   *          if true (the default), Spatials with CullHint ALWAYS will be skipped.
+   */
+  public void setIgnoreCulled(final boolean ignoreCulled) { _ignoreCulled = ignoreCulled; }
+
+  /**
+   * Find the nearest primitive hit by each ray of the batch, replacing the batch's previous results.
+   *
+   * @param scene
+   *          the scene to cast against.
+   * @param batch
+   *          the rays, and where to store their hits.
+   */
+  public void castClosest(final Spatial scene, final RayBatch batch) {
+    cast(scene, batch, false);
+  }
+
+  /**
+   * Find whether each ray of the batch hits any primitive within its distance limit, stopping each ray
+   * at the first hit found, replacing the batch's previous results. Hits are reported as for
+   * {@link #castClosest}, but need not be the nearest.
+   *
+   * @param scene
+   *          the scene to cast against.
+   * @param batch
+   *          the rays, and where to store their hits.
+   */
+  public void castAny(final Spatial scene, final RayBatch batch) {
+    cast(scene, batch, true);
+  }
+
+  protected void cast(final Spatial scene, final RayBatch batch, final boolean any) {
+    batch.clearResults();
+    final int size = batch.size();
+    if (size == 0) {
+      return;
+    }
+
+    final List<Target> targets = new ArrayList<>();
+    final List<Pickable> others = new ArrayList<>();
+    gatherTargets(scene, targets, others);
+
+    if (!targets.isEmpty()) {
+      final Target[] targetArray = targets.toArray(new Target[targets.size()]);
+      final int[] order = sortRays(batch);
+      final int packetSize = _packetSize;
+      final int packets = (size + packetSize - 1) / packetSize;
+      if (_pool == null || packets == 1) {
+        for (int packet = 0; packet < packets; packet++) {
+          castPacket(batch, order, packet * packetSize, packetSize, targetArray, any);
+        }
+      } else {
+        _pool.submit(() -> IntStream.range(0, packets).parallel()
+            .forEach(packet -> castPacket(batch, order, packet * packetSize, packetSize, targetArray, any))).join();
+      }
+    }
+
+    if (!others.isEmpty()) {
+      castSerially(batch, others, any);
+    }
+  }
+
+  /**
+   * Collect the pickable meshes of the scene with their triangle hierarchies, and the pickables we have
+   * to fall back to their own picking for.
+   */
+  private void gatherTargets(final Spatial spatial, final List<Target> targets, final List<Pickable> others) {
+    if (spatial == null || !spatial.getSceneHints().isPickingHintEnabled(PickingHint.Pickable)
+        || (_ignoreCulled && spatial.getSceneHints().getCullHint() == CullHint.Always)
+        || spatial.getWorldBound() == null) {
+      return;
+    }
+
+    if (spatial instanceof Mesh) {
+      final Mesh mesh = (Mesh) spatial;
+      final TriangleBVH bvh = CollisionTreeManager.getInstance().getTriangleBVH(mesh);
+      if (bvh != null) {
+        targets.add(new Target(mesh, bvh));
+      } else {
+        others.add(mesh);
+      }
+    } else if (spatial instanceof Pickable) {
+      others.add((Pickable) spatial);
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = node.getNumberOfChildren() - 1; i >= 0; i--) {
+        gatherTargets(node.getChild(i), targets, others);
+      }
+    }
+  }
+
+  /**
+   * @return the ray indices, ordered by direction octant, then origin, then direction, so that rays
+   *         next to each other in the order tend to travel together.
+   */
+  private static int[] sortRays(final RayBatch batch) {
+    final int size = batch.size();
+    final double[] origins = batch.getOrigins(), directions = batch.getDirections();
+
+    final double[] box = new double[6];
+    Arrays.fill(box, 0, 3, Double.POSITIVE_INFINITY);
+    Arrays.fill(box, 3, 6, Double.NEGATIVE_INFINITY);
+    for (int i = 0; i < size * 3; i += 3) {
+      for (int axis = 0; axis < 3; axis++) {
+        box[axis] = Math.min(box[axis], origins[i + axis]);
+        box[3 + axis] = Math.max(box[3 + axis], origins[i + axis]);
+      }
+    }
+
+    // 3 octant bits, then 15 bits of origin and 12 of direction, each interleaved over the axes
+    final long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      final int o = i * 3;
+      final double length = Math.sqrt(directions[o] * directions[o] + directions[o + 1] * directions[o + 1]
+          + directions[o + 2] * directions[o + 2]);
+      long key = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        if (directions[o + axis] < 0) {
+          key |= 1L << (29 - axis);
+        }
+        final double extent = box[3 + axis] - box[axis];
+        final int origin = extent > 0 ? (int) Math.min(31, (origins[o + axis] - box[axis]) / extent * 32) : 0;
+        final int direction = length > 0 ? (int) Math.min(15, (directions[o + axis] / length + 1) * 8) : 0;
+        for (int bit = 0; bit < 5; bit++) {
+          key |= (long) ((origin >> bit) & 1) << (12 + bit * 3 + 2 - axis);
+        }
+        for (int bit = 0; bit < 4; bit++) {
+          key |= (long) ((direction >> bit) & 1) << (bit * 3 + 2 - axis);
+        }
+      }
+      keys[i] = key << 32 | i;
+    }
+    Arrays.sort(keys);
+
+    final int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = (int) keys[i];
+    }
+    return order;
+  }
+
+  private static void castPacket(final RayBatch batch, final int[] order, final int first, final int packetSize,
+      final Target[] targets, final boolean any) {
+    final int count = Math.min(packetSize, batch.size() - first);
+    final double[] origins = batch.getOrigins(), directions = batch.getDirections();
+
+    // per ray of the packet, the limit along its direction and its best hit so far
+    final double[] limits = new double[count], lengths = new double[count];
+    final Target[] hitTargets = new Target[count];
+    final int[] hitTriangles = new int[count];
+    for (int k = 0; k < count; k++) {
+      final int o = order[first + k] * 3;
+      lengths[k] = Math.sqrt(directions[o] * directions[o] + directions[o + 1] * directions[o + 1]
+          + directions[o + 2] * directions[o + 2]);
+      limits[k] = batch.getMaxDistances()[order[first + k]] / lengths[k];
+    }
+
+    final PacketBounds bounds = new PacketBounds();
+    bounds.set(origins, directions, order, first, count, limits);
+
+    // the rays reaching a target, in its model space
+    final int[] active = new int[count];
+    final double[] modelOrigins = new double[count * 3], modelDirections = new double[count * 3];
+    final double[] modelLimits = new double[count];
+    final int[] triangles = new int[count];
+    for (final Target target : targets) {
+      if (!bounds.mayReach(target._box)) {
+        continue;
+      }
+      int activeCount = 0;
+      for (int k = 0; k < count; k++) {
+        final int o = order[first + k] * 3;
+        if ((any && hitTargets[k] != null)
+            || !target.reaches(origins[o], origins[o + 1], origins[o + 2], directions[o], directions[o + 1],
+                directions[o + 2], limits[k])) {
+          continue;
+        }
+        target.toModelSpace(origins, directions, o, modelOrigins, modelDirections, activeCount * 3);
+        modelLimits[activeCount] = limits[k];
+        triangles[activeCount] = -1;
+        active[activeCount++] = k;
+      }
+      if (activeCount == 0 || target._bvh.intersectPacket(modelOrigins, modelDirections, activeCount, modelLimits,
+          triangles, any) == 0) {
+        continue;
+      }
+      for (int j = 0; j < activeCount; j++) {
+        if (triangles[j] >= 0) {
+          final int k = active[j];
+          limits[k] = modelLimits[j];
+          hitTargets[k] = target;
+          hitTriangles[k] = triangles[j];
+        }
+      }
+      bounds.updateLimit(limits, hitTargets, any);
+    }
+
+    for (int k = 0; k < count; k++) {
+      final Target target = hitTargets[k];
+      if (target != null) {
+        batch.setHit(order[first + k], target._mesh, limits[k] * lengths[k],
+            target._bvh.getPrimitiveIndex(hitTriangles[k]), target._bvh.getSection(hitTriangles[k]));
+      }
+    }
+  }
+
+  private static void castSerially(final RayBatch batch, final List<Pickable> others, final boolean any) {
+    final double[] origins = batch.getOrigins(), directions = batch.getDirections();
+    final Ray3 ray = new Ray3();
+    final Vector3 origin = new Vector3(), direction = new Vector3();
+    for (int i = 0, maxI = batch.size(); i < maxI; i++) {
+      if (any && batch.isHit(i)) {
+        continue;
+      }
+      final int o = i * 3;
+      origin.set(origins[o], origins[o + 1], origins[o + 2]);
+      direction.set(directions[o], directions[o + 1], directions[o + 2]).normalizeLocal();
+      ray.setOrigin(origin);
+      ray.setDirection(direction);
+
+      for (final Pickable pickable : others) {
+        final double limit = batch.isHit(i) ? batch.getDistances()[i] : batch.getMaxDistances()[i];
+        if (!pickable.intersectsWorldBound(ray)) {
+          continue;
+        }
+        final IntersectionRecord record;
+        if (pickable instanceof Mesh) {
+          record = ((Mesh) pickable).intersectsPrimitivesClosest(ray, limit);
+        } else {
+          record = pickable.intersectsPrimitivesWhere(ray);
+        }
+        if (record == null || record.getNumberOfIntersections() == 0) {
+          continue;
+        }
+        final int closest = record.getClosestIntersection();
+        final double distance = record.getIntersectionDistance(closest);
+        if (distance > limit) {
+          continue;
+        }
+        final PrimitiveKey key = record.getIntersectionPrimitive(closest);
+        batch.setHit(i, pickable, distance, key != null ? key.getPrimitiveIndex() : -1,
+            key != null ? key.getSection() : -1);
+        if (any) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Conservative bounds on a packet of rays, to rule out a box for all of them at once: the box of their
+   * origins and the range of their inverse directions, per axis, for packets whose rays all point the
+   * same way along each axis. Values are mirrored along axes the rays point down, so that directions
+   * are positive.
+   */
+  private static final class PacketBounds {
+    private boolean _coherent;
+    private final double[] _sign = new double[3];
+    private final double[] _originMin = new double[3], _originMax = new double[3];
+    private final double[] _inverseMin = new double[3], _inverseMax = new double[3];
+    private double _maxLimit;
+
+    private void set(final double[] origins, final double[] directions, final int[] order, final int first,
+        final int count, final double[] limits) {
+      _coherent = true;
+      for (int axis = 0; axis < 3 && _coherent; axis++) {
+        _sign[axis] = directions[order[first] * 3 + axis] < 0 ? -1 : 1;
+        _originMin[axis] = _inverseMin[axis] = Double.POSITIVE_INFINITY;
+        _originMax[axis] = _inverseMax[axis] = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < count; k++) {
+          final int o = order[first + k] * 3 + axis;
+          final double origin = origins[o] * _sign[axis], inverse = 1.0 / (directions[o] * _sign[axis]);
+          if (!(inverse > 0 && inverse < Double.POSITIVE_INFINITY)) {
+            // mixed or zero directions along this axis
+            _coherent = false;
+            break;
+          }
+          _originMin[axis] = Math.min(_originMin[axis], origin);
+          _originMax[axis] = Math.max(_originMax[axis], origin);
+          _inverseMin[axis] = Math.min(_inverseMin[axis], inverse);
+          _inverseMax[axis] = Math.max(_inverseMax[axis], inverse);
+        }
+      }
+      _maxLimit = Double.NEGATIVE_INFINITY;
+      for (int k = 0; k < count; k++) {
+        _maxLimit = Math.max(_maxLimit, limits[k]);
+      }
+    }
+
+    private void updateLimit(final double[] limits, final Target[] hitTargets, final boolean any) {
+      _maxLimit = Double.NEGATIVE_INFINITY;
+      for (int k = 0; k < limits.length; k++) {
+        if (!(any && hitTargets[k] != null)) {
+          _maxLimit = Math.max(_maxLimit, limits[k]);
+        }
+      }
+    }
+
+    /**
+     * @return false if none of the packet's rays can enter the given box within their limits.
+     */
+    private boolean mayReach(final double[] box) {
+      if (!_coherent) {
+        return _maxLimit >= 0;
+      }
+      // the latest any ray might enter, and the earliest any might leave, bound every ray's own
+      double near = 0, far = _maxLimit;
+      for (int axis = 0; axis < 3; axis++) {
+        final double min = _sign[axis] > 0 ? box[axis] : -box[3 + axis];
+        final double max = _sign[axis] > 0 ? box[3 + axis] : -box[axis];
+        final double toMin = min - _originMax[axis], toMax = max - _originMin[axis];
+        near = Math.max(near, toMin * (toMin >= 0 ? _inverseMin[axis] : _inverseMax[axis]));
+        far = Math.min(far, toMax * (toMax >= 0 ? _inverseMax[axis] : _inverseMin[axis]));
+      }
+      return near <= far;
+    }
+  }
+
+  /**
+   * A mesh to cast against, with its hierarchy, world box and the inverse of its world transform.
+   */
+  private static final class Target {
+    private final Mesh _mesh;
+    private final TriangleBVH _bvh;
+    private final double[] _box = new double[6];
+    // affine inverse, as the model space origin (0, 3) and axes (3, 6, 9) of the world axes
+    private final double[] _inverse = new double[12];
+
+    private Target(final Mesh mesh, final TriangleBVH bvh) {
+      _mesh = mesh;
+      _bvh = bvh;
+      SpatialIndex.getBox(mesh.getWorldBound(), _box);
+      final ReadOnlyTransform transform = mesh.getWorldTransform();
+      final Vector3 v = new Vector3();
+      transform.applyInverse(v.set(Vector3.ZERO));
+      _inverse[0] = v.getX();
+      _inverse[1] = v.getY();
+      _inverse[2] = v.getZ();
+      for (int axis = 0; axis < 3; axis++) {
+        v.set(axis == 0 ? 1 : 0, axis == 1 ? 1 : 0, axis == 2 ? 1 : 0);
+        transform.applyInverseVector(v);
+        _inverse[3 + axis * 3] = v.getX();
+        _inverse[4 + axis * 3] = v.getY();
+        _inverse[5 + axis * 3] = v.getZ();
+      }
+    }
+
+    /**
+     * @return true if the ray enters our world box within the given limit along its direction.
+     */
+    private boolean reaches(final double ox, final double oy, final double oz, final double dx, final double dy,
+        final double dz, final double limit) {
+      double t0 = (_box[0] - ox) / dx, t1 = (_box[3] - ox) / dx;
+      double near = Math.min(t0, t1), far = Math.max(t0, t1);
+      t0 = (_box[1] - oy) / dy;
+      t1 = (_box[4] - oy) / dy;
+      near = Math.max(near, Math.min(t0, t1));
+      far = Math.min(far, Math.max(t0, t1));
+      t0 = (_box[2] - oz) / dz;
+      t1 = (_box[5] - oz) / dz;
+      near = Math.max(near, Math.min(t0, t1));
+      far = Math.min(far, Math.max(t0, t1));
+      // NaN, from a zero direction component on a box face, fails these and counts as reaching
+      return !(far < 0 || near > far || near > limit);
+    }
+
+    private void toModelSpace(final double[] origins, final double[] directions, final int offset,
+        final double[] originStore, final double[] directionStore, final int storeOffset) {
+      final double ox = origins[offset], oy = origins[offset + 1], oz = origins[offset + 2];
+      final double dx = directions[offset], dy = directions[offset + 1], dz = directions[offset + 2];
+      for (int axis = 0; axis < 3; axis++) {
+        final double x = _inverse[3 + axis], y = _inverse[6 + axis], z = _inverse[9 + axis];
+        originStore[storeOffset + axis] = _inverse[axis] + x * ox + y * oy + z * oz;
+        directionStore[storeOffset + axis] = x * dx + y * dy + z * dz;
+      }
+    }
+  }
+}
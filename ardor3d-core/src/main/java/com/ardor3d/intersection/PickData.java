@@ -35,6 +35,15 @@ public class PickData {
     }
   }
 
+  /**
+   * instantiates a new PickData object with an already computed intersection record.
+   */
+  public PickData(final Ray3 ray, final Pickable target, final IntersectionRecord intersectionRecord) {
+    _ray = ray;
+    _target = target;
+    _intersectionRecord = intersectionRecord;
+  }
+
   /**
    * @return the pickable hit by the ray.
    */
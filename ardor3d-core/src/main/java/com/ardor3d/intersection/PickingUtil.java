@@ -10,6 +10,7 @@
 
 package com.ardor3d.intersection;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.ardor3d.bounding.CollisionTree;
@@ -18,6 +19,7 @@ import com.ardor3d.math.Ray3;
 import com.ardor3d.math.type.ReadOnlyTransform;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.SpatialIndex;
 import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.scenegraph.hint.CullHint;
 import com.ardor3d.scenegraph.hint.PickingHint;
@@ -65,6 +67,116 @@ public abstract class PickingUtil {
     }
   }
 
+  /**
+   * Finds a pick using the given ray against the meshes of a spatial index, testing only those whose
+   * world bound the ray hits instead of walking the scene graph. Branches the index leaves to a walk
+   * of the scene graph are picked as by {@link #findPick(Spatial, Ray3, PickResults, boolean)}.
+   * Results are stored in the given results value.
+   * 
+   * @param index
+   * @param ray
+   * @param results
+   * @param ignoreCulled
+   *          if true, Meshes hidden by a CullHint ALWAYS or a SwitchNode above them will be skipped.
+   */
+  public static void findPick(final SpatialIndex index, final Ray3 ray, final PickResults results,
+      final boolean ignoreCulled) {
+    final List<Mesh> candidates = new ArrayList<>();
+    index.findIntersecting(ray, candidates);
+    for (int i = 0, maxI = candidates.size(); i < maxI; i++) {
+      final Mesh mesh = candidates.get(i);
+      if (!mesh.getSceneHints().isPickingHintEnabled(PickingHint.Pickable)
+          || (ignoreCulled && SpatialIndex.isHidden(mesh))) {
+        continue;
+      }
+      results.addPick(ray, mesh);
+    }
+    final List<Spatial> unindexed = index.getUnindexed();
+    for (int i = 0, maxI = unindexed.size(); i < maxI; i++) {
+      final Spatial spatial = unindexed.get(i);
+      if (!ignoreCulled || !SpatialIndex.isHidden(spatial)) {
+        findPick(spatial, ray, results, ignoreCulled);
+      }
+    }
+  }
+
+  /**
+   * Finds the nearest mesh primitive hit by the given ray, starting at the scenegraph given as
+   * spatial. Meshes are tested nearest hit first, with their triangle hierarchies when available (see
+   * {@link CollisionTreeManager#getTriangleBVH(Mesh)}), and no further than the nearest hit found so
+   * far.
+   * 
+   * @param spatial
+   * @param ray
+   * @param ignoreCulled
+   *          if true, Spatials with CullHint ALWAYS will be skipped.
+   * @return the nearest hit, with a single entry intersection record, or null if nothing was hit.
+   */
+  public static PickData findClosestPick(final Spatial spatial, final Ray3 ray, final boolean ignoreCulled) {
+    final PickData[] closest = new PickData[1];
+    findClosestPick(spatial, ray, ignoreCulled, closest);
+    return closest[0];
+  }
+
+  private static void findClosestPick(final Spatial spatial, final Ray3 ray, final boolean ignoreCulled,
+      final PickData[] closest) {
+    if (!isPickCandidate(spatial, ray, ignoreCulled)) {
+      return;
+    }
+
+    if (spatial instanceof Mesh) {
+      final double maxDistance =
+          closest[0] != null ? closest[0].getIntersectionRecord().getIntersectionDistance(0) : Double.POSITIVE_INFINITY;
+      final IntersectionRecord record = ((Mesh) spatial).intersectsPrimitivesClosest(ray, maxDistance);
+      if (record != null) {
+        closest[0] = new PickData(ray, (Mesh) spatial, record);
+      }
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = node.getNumberOfChildren() - 1; i >= 0; i--) {
+        findClosestPick(node.getChild(i), ray, ignoreCulled, closest);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the given ray hits any mesh primitive within a distance, starting at the
+   * scenegraph given as spatial, and stopping at the first hit found - for line of sight checks and
+   * the like.
+   * 
+   * @param spatial
+   * @param ray
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   * @param ignoreCulled
+   *          if true, Spatials with CullHint ALWAYS will be skipped.
+   * @return true if a primitive was hit.
+   */
+  public static boolean hasPrimitivePick(final Spatial spatial, final Ray3 ray, final double maxDistance,
+      final boolean ignoreCulled) {
+    if (!isPickCandidate(spatial, ray, ignoreCulled)) {
+      return false;
+    }
+
+    if (spatial instanceof Mesh) {
+      return ((Mesh) spatial).intersectsPrimitives(ray, maxDistance);
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = node.getNumberOfChildren() - 1; i >= 0; i--) {
+        if (hasPrimitivePick(node.getChild(i), ray, maxDistance, ignoreCulled)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isPickCandidate(final Spatial spatial, final Ray3 ray, final boolean ignoreCulled) {
+    return spatial != null && spatial.getSceneHints().isPickingHintEnabled(PickingHint.Pickable)
+        && !(ignoreCulled && spatial.getSceneHints().getCullHint() == CullHint.Always)
+        && spatial.getWorldBound() != null && spatial.getWorldBound().intersects(ray);
+  }
+
   public static void findCollisions(final Spatial spatial, final Spatial scene, final CollisionResults results) {
     if (spatial == scene || spatial.getWorldBound() == null
         || !spatial.getSceneHints().isPickingHintEnabled(PickingHint.Collidable)
@@ -115,7 +227,10 @@ public abstract class PickingUtil {
     final CollisionTree checkCT = CollisionTreeManager.getInstance().getCollisionTree(toCheck);
 
     if (thisCT == null || checkCT == null) {
-      return false;
+      // make do with the bounds while a tree is being built in the background
+      return (CollisionTreeManager.getInstance().isBuildPending(testMesh)
+          || CollisionTreeManager.getInstance().isBuildPending(toCheck)) && testMesh.getWorldBound() != null
+          && toCheck.getWorldBound() != null && testMesh.getWorldBound().intersects(toCheck.getWorldBound());
     }
 
     final ReadOnlyTransform worldTransform = testMesh.getWorldTransform();
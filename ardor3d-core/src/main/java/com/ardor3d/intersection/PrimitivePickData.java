@@ -11,6 +11,7 @@
 package com.ardor3d.intersection;
 
 import com.ardor3d.math.Ray3;
+import com.ardor3d.scenegraph.Mesh;
 
 /**
  * Pick data for primitive accurate picking including sort by distance to intersection point.
@@ -21,4 +22,27 @@ public class PrimitivePickData extends PickData {
 
     _intersectionRecord = target.intersectsPrimitivesWhere(ray);
   }
+
+  /**
+   * Pick only the nearest primitives of the target. Meshes search for just those, other pickables are
+   * asked for every hit.
+   *
+   * @param ray
+   *          the world space ray.
+   * @param target
+   *          the pickable to test.
+   * @param maxHits
+   *          the most hits to keep, nearest first, or 0 to keep every hit.
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   */
+  public PrimitivePickData(final Ray3 ray, final Pickable target, final int maxHits, final double maxDistance) {
+    super(ray, target, false); // hard coded to false
+
+    if (target instanceof Mesh) {
+      _intersectionRecord = ((Mesh) target).intersectsPrimitivesWhere(ray, maxHits, maxDistance);
+    } else {
+      _intersectionRecord = target.intersectsPrimitivesWhere(ray);
+    }
+  }
 }
@@ -18,6 +18,7 @@ import com.ardor3d.math.Ray3;
  */
 public class PrimitivePickResults extends PickResults {
   protected float _maxPickableDistance = Float.MAX_VALUE;
+  protected int _maxPrimitiveHits = 0;
 
   @Override
   public void addPick(final Ray3 ray, final Pickable pickable) {
@@ -26,7 +27,7 @@ public class PrimitivePickResults extends PickResults {
       return;
     }
 
-    final PrimitivePickData data = new PrimitivePickData(ray, pickable);
+    final PrimitivePickData data = new PrimitivePickData(ray, pickable, _maxPrimitiveHits, _maxPickableDistance);
     if (data.getIntersectionRecord() != null && data.getIntersectionRecord().getNumberOfIntersections() > 0) {
       addPickData(data);
     }
@@ -35,4 +36,14 @@ public class PrimitivePickResults extends PickResults {
   public float getMaxPickableDistance() { return _maxPickableDistance; }
 
   public void setMaxPickableDistance(final float distance) { _maxPickableDistance = distance; }
+
+  public int getMaxPrimitiveHits() { return _maxPrimitiveHits; }
+
+  /**
+   * @param maxHits
+   *          the most primitive hits to keep per pickable, nearest first, or 0 (the default) to keep
+   *          every hit. 1 picks only the closest primitive of each mesh, which on dense meshes is much
+   *          cheaper than finding every hit - use it for mouse over and the like.
+   */
+  public void setMaxPrimitiveHits(final int maxHits) { _maxPrimitiveHits = Math.max(0, maxHits); }
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.intersection;
+
+import java.util.Arrays;
+
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * A batch of world space rays to cast together with a {@link BatchRayCaster}, and the hit found for
+ * each: its distance, primitive and target. Rays and results are kept in flat arrays, 3 values per ray
+ * for origins and directions, so large batches cost no objects per ray.
+ * <p>
+ * Directions need not be normalized. Distances, both the limits given and the hits reported, are in
+ * world units from the ray's origin.
+ * </p>
+ */
+public class RayBatch {
+
+  protected final int _size;
+  protected final double[] _origins;
+  protected final double[] _directions;
+  protected final double[] _maxDistances;
+
+  protected final double[] _distances;
+  protected final int[] _primitiveIndices;
+  protected final int[] _sections;
+  protected final Pickable[] _targets;
+
+  /**
+   * Create a batch of the given number of rays, all starting at the origin with a zero direction and no
+   * distance limit. Set them with {@link #setRay} or by writing to the arrays directly.
+   */
+  public RayBatch(final int size) {
+    this(new double[size * 3], new double[size * 3]);
+  }
+
+  /**
+   * Create a batch over the given rays, with no distance limit. The arrays are used as is, not copied.
+   *
+   * @param origins
+   *          the rays' origins, 3 values per ray.
+   * @param directions
+   *          the rays' directions, 3 values per ray.
+   * @throws IllegalArgumentException
+   *           if the arrays differ in length, or are not a multiple of 3 in length.
+   */
+  public RayBatch(final double[] origins, final double[] directions) {
+    if (origins.length != directions.length || origins.length % 3 != 0) {
+      throw new IllegalArgumentException("origins and directions must have 3 values for each ray.");
+    }
+    _size = origins.length / 3;
+    _origins = origins;
+    _directions = directions;
+    _maxDistances = new double[_size];
+    Arrays.fill(_maxDistances, Double.POSITIVE_INFINITY);
+    _distances = new double[_size];
+    _primitiveIndices = new int[_size];
+    _sections = new int[_size];
+    _targets = new Pickable[_size];
+    clearResults();
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Set the ray at the given index.
+   *
+   * @param i
+   *          the index of the ray.
+   * @param origin
+   *          the ray's origin, in world space.
+   * @param direction
+   *          the ray's direction, in world space.
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   */
+  public void setRay(final int i, final ReadOnlyVector3 origin, final ReadOnlyVector3 direction,
+      final double maxDistance) {
+    _origins[i * 3] = origin.getX();
+    _origins[i * 3 + 1] = origin.getY();
+    _origins[i * 3 + 2] = origin.getZ();
+    _directions[i * 3] = direction.getX();
+    _directions[i * 3 + 1] = direction.getY();
+    _directions[i * 3 + 2] = direction.getZ();
+    _maxDistances[i] = maxDistance;
+  }
+
+  /**
+   * @return the rays' origins, 3 values per ray.
+   */
+  public double[] getOrigins() { return _origins; }
+
+  /**
+   * @return the rays' directions, 3 values per ray.
+   */
+  public double[] getDirections() { return _directions; }
+
+  /**
+   * @return per ray, the furthest from its origin a hit may be. Infinite unless set.
+   */
+  public double[] getMaxDistances() { return _maxDistances; }
+
+  /**
+   * Forget the results of any previous cast, marking every ray as missing.
+   */
+  public void clearResults() {
+    Arrays.fill(_distances, Double.POSITIVE_INFINITY);
+    Arrays.fill(_primitiveIndices, -1);
+    Arrays.fill(_sections, -1);
+    Arrays.fill(_targets, null);
+  }
+
+  /**
+   * @return true if the ray at the given index hit something in the last cast.
+   */
+  public boolean isHit(final int i) {
+    return _targets[i] != null;
+  }
+
+  /**
+   * @return per ray, the distance from its origin to its hit, or infinity if it missed.
+   */
+  public double[] getDistances() { return _distances; }
+
+  /**
+   * @return per ray, the index of the primitive hit within its mesh data section, or -1 if it missed or
+   *         the target did not report primitives.
+   */
+  public int[] getPrimitiveIndices() { return _primitiveIndices; }
+
+  /**
+   * @return per ray, the mesh data section of the primitive hit, or -1 if it missed or the target did
+   *         not report primitives.
+   */
+  public int[] getSections() { return _sections; }
+
+  /**
+   * @return per ray, the pickable hit - usually a Mesh - or null if it missed.
+   */
+  public Pickable[] getTargets() { return _targets; }
+
+  void setHit(final int i, final Pickable target, final double distance, final int primitiveIndex,
+      final int section) {
+    _targets[i] = target;
+    _distances[i] = distance;
+    _primitiveIndices[i] = primitiveIndex;
+    _sections[i] = section;
+  }
+}
@@ -0,0 +1,551 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.intersection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.bounding.CollisionTree;
+import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.SpatialIndex;
+import com.ardor3d.scenegraph.event.DirtyEventListener;
+import com.ardor3d.scenegraph.event.DirtyType;
+import com.ardor3d.scenegraph.hint.PickingHint;
+
+/**
+ * <p>
+ * A broad phase for finding every pair of colliding meshes in a scene at once, rather than testing
+ * each mesh against the whole scene as {@link PickingUtil#findCollisions} does. Mesh world bounds are
+ * kept as axis aligned boxes, ordered along one axis - that along which their centers spread the most.
+ * A sweep along that order only compares boxes that overlap on it. The order is kept from update to
+ * update and repaired with an insertion sort, which for meshes that move a little each tick costs
+ * close to a single pass.
+ * </p>
+ * <p>
+ * {@link #attach(Spatial)} a scene root to add its meshes and keep them up to date from dirty events:
+ * attached and detached branches, transform changes and recomputed bounds. Changes are applied by
+ * {@link #update()}, which each query calls first, so the world bounds used are those of the last
+ * geometric update. Meshes may also be added and flagged by hand. Meshes without a world bound, or not
+ * {@link PickingHint#Collidable}, are never reported.
+ * </p>
+ * <p>
+ * Candidate pairs can be handed to a {@link CollisionResults}, or tested primitive against primitive
+ * with the meshes' {@link CollisionTree}s. Given a pool, that narrow phase runs in parallel, in rounds
+ * of pairs that share no mesh, as collision trees keep world bounds of their own while testing. This
+ * class is otherwise not thread safe.
+ * </p>
+ */
+public class SweepAndPrune implements DirtyEventListener {
+
+  protected final Map<Mesh, Integer> _ids = new IdentityHashMap<>();
+  protected final Set<Spatial> _pending = Collections.newSetFromMap(new IdentityHashMap<>());
+  protected final List<Spatial> _roots = new ArrayList<>();
+
+  protected Mesh[] _meshes = new Mesh[64];
+  protected int _size;
+  // boxes by axis, indexed by mesh id; meshes without a world bound get empty boxes
+  protected final double[][] _mins = new double[3][64];
+  protected final double[][] _maxs = new double[3][64];
+
+  // mesh ids, ordered by the min of their box along the sweep axis
+  protected int[] _order = new int[64];
+  protected int _axis = 0;
+  protected boolean _orderValid = true;
+
+  // candidate pairs of mesh ids from the last sweep, 2 per pair
+  protected int[] _pairs = new int[128];
+  protected int _pairCount;
+
+  protected ForkJoinPool _pool;
+
+  private final double[] _box = new double[6];
+
+  public ForkJoinPool getPool() { return _pool; }
+
+  /**
+   * @param pool
+   *          the pool to run the narrow phase of {@link #findPrimitiveCollisions(List)} on, or null
+   *          (the default) to run it on the calling thread.
+   */
+  public void setPool(final ForkJoinPool pool) { _pool = pool; }
+
+  /**
+   * @return the number of meshes tracked.
+   */
+  public int size() {
+    return _size;
+  }
+
+  public boolean contains(final Mesh mesh) {
+    return _ids.containsKey(mesh);
+  }
+
+  /**
+   * @return the axis meshes are currently ordered along: 0, 1 or 2 for x, y or z.
+   */
+  public int getSweepAxis() { return _axis; }
+
+  // ---- membership ----
+
+  /**
+   * Add the meshes of a scene root, and listen to it for changes.
+   *
+   * @param root
+   *          the root to track.
+   */
+  public void attach(final Spatial root) {
+    if (!_roots.contains(root)) {
+      _roots.add(root);
+      root.addListener(this);
+      addAll(root);
+    }
+  }
+
+  /**
+   * Stop listening to a scene root, and remove its meshes.
+   *
+   * @param root
+   *          the root to stop tracking.
+   */
+  public void detach(final Spatial root) {
+    if (_roots.remove(root)) {
+      root.removeListener(this);
+      removeAll(root);
+    }
+  }
+
+  /**
+   * Add a mesh at its current world bound.
+   *
+   * @param mesh
+   *          the mesh to add.
+   * @return false if the mesh was already tracked.
+   */
+  public boolean add(final Mesh mesh) {
+    if (_ids.containsKey(mesh)) {
+      return false;
+    }
+    if (_size == _meshes.length) {
+      final int capacity = _size * 2;
+      _meshes = Arrays.copyOf(_meshes, capacity);
+      _order = Arrays.copyOf(_order, capacity);
+      for (int axis = 0; axis < 3; axis++) {
+        _mins[axis] = Arrays.copyOf(_mins[axis], capacity);
+        _maxs[axis] = Arrays.copyOf(_maxs[axis], capacity);
+      }
+    }
+    final int id = _size++;
+    _meshes[id] = mesh;
+    _ids.put(mesh, id);
+    readBox(id);
+    // new meshes go last in the order, for the next insertion sort to place
+    _order[id] = id;
+    return true;
+  }
+
+  /**
+   * @param mesh
+   *          the mesh to remove.
+   * @return false if the mesh was not tracked.
+   */
+  public boolean remove(final Mesh mesh) {
+    final Integer removed = _ids.remove(mesh);
+    if (removed == null) {
+      return false;
+    }
+    _pending.remove(mesh);
+
+    // move the last mesh into the hole
+    final int id = removed, last = --_size;
+    if (id != last) {
+      _meshes[id] = _meshes[last];
+      _ids.put(_meshes[id], id);
+      for (int axis = 0; axis < 3; axis++) {
+        _mins[axis][id] = _mins[axis][last];
+        _maxs[axis][id] = _maxs[axis][last];
+      }
+    }
+    _meshes[last] = null;
+    _orderValid = false;
+    return true;
+  }
+
+  /**
+   * Add every mesh in the given branch.
+   *
+   * @param spatial
+   *          the branch to add.
+   */
+  public void addAll(final Spatial spatial) {
+    if (spatial instanceof Mesh) {
+      add((Mesh) spatial);
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        addAll(node.getChild(i));
+      }
+    }
+  }
+
+  /**
+   * Remove every mesh in the given branch.
+   *
+   * @param spatial
+   *          the branch to remove.
+   */
+  public void removeAll(final Spatial spatial) {
+    if (spatial instanceof Mesh) {
+      remove((Mesh) spatial);
+    } else if (spatial instanceof Node) {
+      _pending.remove(spatial);
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        removeAll(node.getChild(i));
+      }
+    }
+  }
+
+  /**
+   * Flag the meshes of a branch as moved or resized, to be read again on the next {@link #update()}.
+   *
+   * @param spatial
+   *          the changed mesh, or node whose meshes changed.
+   */
+  public void markDirty(final Spatial spatial) {
+    _pending.add(spatial);
+  }
+
+  @Override
+  public boolean spatialDirty(final Spatial spatial, final DirtyType dirtyType) {
+    if (dirtyType == DirtyType.Attached) {
+      addAll(spatial);
+    } else if (dirtyType == DirtyType.Detached) {
+      removeAll(spatial);
+    } else if (dirtyType == DirtyType.Transform) {
+      markDirty(spatial);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean spatialClean(final Spatial spatial, final DirtyType dirtyType) {
+    // a mesh's world bound was recomputed, perhaps from a new model bound
+    if (dirtyType == DirtyType.Bounding && spatial instanceof Mesh) {
+      markDirty(spatial);
+    }
+    return false;
+  }
+
+  // ---- sweeping ----
+
+  /**
+   * Read the world bounds of all meshes flagged with {@link #markDirty(Spatial)}, and bring the sweep
+   * order up to date.
+   */
+  public void update() {
+    if (!_pending.isEmpty()) {
+      for (final Spatial spatial : _pending) {
+        readAll(spatial);
+      }
+      _pending.clear();
+    }
+
+    final int axis = chooseAxis();
+    if (!_orderValid || axis != _axis) {
+      _axis = axis;
+      for (int i = 0; i < _size; i++) {
+        _order[i] = i;
+      }
+      sortOrder(0, _size, new int[_size]);
+      _orderValid = true;
+    } else {
+      insertionSortOrder();
+    }
+  }
+
+  /**
+   * Find the pairs of meshes whose world boxes overlap.
+   *
+   * @param store
+   *          the list to add each pair to, as two consecutive entries.
+   * @return the number of pairs added.
+   */
+  public int findPairs(final List<Mesh> store) {
+    sweep();
+    for (int i = 0; i < _pairCount * 2; i++) {
+      store.add(_meshes[_pairs[i]]);
+    }
+    return _pairCount;
+  }
+
+  /**
+   * Hand every pair of collidable meshes with overlapping world bounds to the given results - which
+   * decide, as with {@link PickingUtil#findCollisions}, whether to look further at their primitives.
+   *
+   * @param results
+   *          the results to add the pairs to.
+   */
+  public void findCollisions(final CollisionResults results) {
+    sweep();
+    for (int p = 0; p < _pairCount; p++) {
+      final Mesh a = _meshes[_pairs[p * 2]], b = _meshes[_pairs[p * 2 + 1]];
+      if (a.getWorldBound().intersects(b.getWorldBound())) {
+        results.addCollision(a, b);
+      }
+    }
+  }
+
+  /**
+   * Find every pair of collidable meshes with primitives intersecting, testing the pairs found by the
+   * sweep with the meshes' collision trees.
+   *
+   * @param store
+   *          the list to add each colliding pair to, as two consecutive entries.
+   * @return the number of pairs added.
+   */
+  public int findPrimitiveCollisions(final List<Mesh> store) {
+    sweep();
+    if (_pairCount == 0) {
+      return 0;
+    }
+
+    // fetch trees up front, as the manager may build or evict them
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    final CollisionTree[] trees = new CollisionTree[_size];
+    final boolean[] fetched = new boolean[_size];
+    for (int i = 0; i < _pairCount * 2; i++) {
+      final int id = _pairs[i];
+      if (!fetched[id]) {
+        trees[id] = manager.getCollisionTree(_meshes[id]);
+        fetched[id] = true;
+      }
+    }
+
+    final boolean[] colliding = new boolean[_pairCount];
+    if (_pool == null) {
+      for (int p = 0; p < _pairCount; p++) {
+        colliding[p] = testPair(trees, p);
+      }
+    } else {
+      // a mesh's tree is written to while testing, so run pairs in rounds where each mesh appears once
+      final int[] nextRound = new int[_size];
+      final int[] rounds = new int[_pairCount];
+      int roundCount = 0;
+      for (int p = 0; p < _pairCount; p++) {
+        final int a = _pairs[p * 2], b = _pairs[p * 2 + 1];
+        final int round = Math.max(nextRound[a], nextRound[b]);
+        rounds[p] = round;
+        nextRound[a] = nextRound[b] = round + 1;
+        roundCount = Math.max(roundCount, round + 1);
+      }
+      // counting sort of the pairs by round
+      final int[] starts = new int[roundCount + 1];
+      for (int p = 0; p < _pairCount; p++) {
+        starts[rounds[p] + 1]++;
+      }
+      for (int r = 0; r < roundCount; r++) {
+        starts[r + 1] += starts[r];
+      }
+      final int[] byRound = new int[_pairCount];
+      final int[] fill = Arrays.copyOf(starts, roundCount);
+      for (int p = 0; p < _pairCount; p++) {
+        byRound[fill[rounds[p]]++] = p;
+      }
+      for (int r = 0; r < roundCount; r++) {
+        final int start = starts[r], end = starts[r + 1];
+        _pool.submit(() -> IntStream.range(start, end).parallel().forEach(i -> {
+          final int p = byRound[i];
+          colliding[p] = testPair(trees, p);
+        })).join();
+      }
+    }
+
+    int added = 0;
+    for (int p = 0; p < _pairCount; p++) {
+      if (colliding[p]) {
+        store.add(_meshes[_pairs[p * 2]]);
+        store.add(_meshes[_pairs[p * 2 + 1]]);
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /** As {@link PickingUtil#hasPrimitiveCollision}, with the trees already fetched. */
+  private boolean testPair(final CollisionTree[] trees, final int pair) {
+    final int a = _pairs[pair * 2], b = _pairs[pair * 2 + 1];
+    final CollisionTree treeA = trees[a], treeB = trees[b];
+    if (treeA == null || treeB == null) {
+      // make do with the bounds while a tree is being built in the background
+      final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+      return (manager.isBuildPending(_meshes[a]) || manager.isBuildPending(_meshes[b]))
+          && _meshes[a].getWorldBound().intersects(_meshes[b].getWorldBound());
+    }
+    treeA.getBounds().transform(_meshes[a].getWorldTransform(), treeA.getWorldBounds());
+    return treeA.intersect(treeB);
+  }
+
+  /**
+   * Update, then collect the candidate pairs of mesh ids: collidable meshes whose boxes overlap.
+   */
+  protected void sweep() {
+    update();
+    _pairCount = 0;
+    final double[] mins = _mins[_axis], maxs = _maxs[_axis];
+    final int u = (_axis + 1) % 3, v = (_axis + 2) % 3;
+    final double[] minsU = _mins[u], maxsU = _maxs[u], minsV = _mins[v], maxsV = _maxs[v];
+    for (int i = 0; i < _size; i++) {
+      final int a = _order[i];
+      final double maxA = maxs[a];
+      if (!isCollidable(_meshes[a])) {
+        continue;
+      }
+      for (int j = i + 1; j < _size; j++) {
+        final int b = _order[j];
+        if (mins[b] > maxA) {
+          // nothing further along can reach back to a
+          break;
+        }
+        if (minsU[b] > maxsU[a] || minsU[a] > maxsU[b] || minsV[b] > maxsV[a] || minsV[a] > maxsV[b]
+            || !isCollidable(_meshes[b])) {
+          continue;
+        }
+        if (_pairCount * 2 == _pairs.length) {
+          _pairs = Arrays.copyOf(_pairs, _pairs.length * 2);
+        }
+        _pairs[_pairCount * 2] = a;
+        _pairs[_pairCount * 2 + 1] = b;
+        _pairCount++;
+      }
+    }
+  }
+
+  private static boolean isCollidable(final Mesh mesh) {
+    return mesh.getWorldBound() != null && mesh.getSceneHints().isPickingHintEnabled(PickingHint.Collidable);
+  }
+
+  private void readAll(final Spatial spatial) {
+    if (spatial instanceof Mesh) {
+      final Integer id = _ids.get(spatial);
+      if (id != null) {
+        readBox(id);
+      }
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        readAll(node.getChild(i));
+      }
+    }
+  }
+
+  private void readBox(final int id) {
+    final BoundingVolume bound = _meshes[id].getWorldBound();
+    if (bound == null) {
+      for (int axis = 0; axis < 3; axis++) {
+        _mins[axis][id] = Double.POSITIVE_INFINITY;
+        _maxs[axis][id] = Double.NEGATIVE_INFINITY;
+      }
+      return;
+    }
+    SpatialIndex.getBox(bound, _box);
+    for (int axis = 0; axis < 3; axis++) {
+      _mins[axis][id] = _box[axis];
+      _maxs[axis][id] = _box[3 + axis];
+    }
+  }
+
+  /**
+   * @return the axis along which box centers spread the most, so that the sweep sees few overlaps.
+   */
+  private int chooseAxis() {
+    int best = _axis, count = 0;
+    final double[] sum = new double[3], sumSq = new double[3];
+    for (int id = 0; id < _size; id++) {
+      if (_mins[0][id] > _maxs[0][id]) {
+        continue;
+      }
+      count++;
+      for (int axis = 0; axis < 3; axis++) {
+        final double center = (_mins[axis][id] + _maxs[axis][id]) * 0.5;
+        sum[axis] += center;
+        sumSq[axis] += center * center;
+      }
+    }
+    if (count < 2) {
+      return best;
+    }
+    // keep the current axis unless another is clearly better, to not resort on small changes
+    double bestVariance = (sumSq[best] - sum[best] * sum[best] / count) * 1.2;
+    for (int axis = 0; axis < 3; axis++) {
+      final double variance = sumSq[axis] - sum[axis] * sum[axis] / count;
+      if (variance > bestVariance) {
+        best = axis;
+        bestVariance = variance;
+      }
+    }
+    return best;
+  }
+
+  private void insertionSortOrder() {
+    final double[] mins = _mins[_axis];
+    for (int i = 1; i < _size; i++) {
+      final int id = _order[i];
+      final double min = mins[id];
+      int j = i - 1;
+      for (; j >= 0 && mins[_order[j]] > min; j--) {
+        _order[j + 1] = _order[j];
+      }
+      _order[j + 1] = id;
+    }
+  }
+
+  /** Merge sort of the order range [start, end), for when it has to be built anew. */
+  private void sortOrder(final int start, final int end, final int[] scratch) {
+    if (end - start < 16) {
+      final double[] mins = _mins[_axis];
+      for (int i = start + 1; i < end; i++) {
+        final int id = _order[i];
+        int j = i - 1;
+        for (; j >= start && mins[_order[j]] > mins[id]; j--) {
+          _order[j + 1] = _order[j];
+        }
+        _order[j + 1] = id;
+      }
+      return;
+    }
+    final int middle = (start + end) >>> 1;
+    sortOrder(start, middle, scratch);
+    sortOrder(middle, end, scratch);
+    final double[] mins = _mins[_axis];
+    int i = start, j = middle, k = start;
+    while (i < middle && j < end) {
+      scratch[k++] = mins[_order[j]] < mins[_order[i]] ? _order[j++] : _order[i++];
+    }
+    while (i < middle) {
+      scratch[k++] = _order[i++];
+    }
+    while (j < end) {
+      scratch[k++] = _order[j++];
+    }
+    System.arraycopy(scratch, start, _order, start, end - start);
+  }
+}
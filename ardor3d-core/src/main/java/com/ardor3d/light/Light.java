@@ -19,11 +19,13 @@ import java.util.function.Supplier;
 import com.ardor3d.light.shadow.AbstractShadowData;
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.material.IUniformSupplier;
 import com.ardor3d.renderer.material.uniform.UniformRef;
 import com.ardor3d.renderer.material.uniform.UniformSource;
 import com.ardor3d.renderer.material.uniform.UniformType;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.util.export.InputCapsule;
 import com.ardor3d.util.export.OutputCapsule;
@@ -158,6 +160,11 @@ public abstract class Light extends Spatial implements Serializable, Savable, IU
     // ignore
   }
 
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    // ignore
+  }
+
   @Override
   public void updateWorldBound(final boolean recurse) {
     // ignore - maybe useful later for calculating contribution?
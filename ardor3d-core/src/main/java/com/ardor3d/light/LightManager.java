@@ -12,8 +12,7 @@ package com.ardor3d.light;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -25,6 +24,7 @@ import com.ardor3d.math.Plane;
 import com.ardor3d.math.type.ReadOnlyColorRGBA;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.RenderPhase;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.material.IUniformSupplier;
@@ -38,6 +38,18 @@ import com.ardor3d.scenegraph.SceneIndexer;
 import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.util.Ardor3dException;
 
+/**
+ * Tracks the lights of a scene and picks, for each mesh drawn, the lights that affect it the most.
+ * <p>
+ * Picking is split in two stages. Once per frame, {@link #assignLights()} - called by
+ * {@link SceneIndexer#onRender(Renderer)}, or else by the first draw of each frame of the current
+ * render context - gathers the enabled lights and bins the point and spot lights into a uniform grid
+ * by their range. Then, the first time a mesh is drawn in a frame,
+ * {@link #sortLightsFor(Mesh)} scores only the lights whose cells and range overlap the mesh's world
+ * bound, plus the directional lights, and keeps the best few in the mesh's {@link LightSelection}.
+ * Later draws of the mesh in the same frame reuse that selection.
+ * </p>
+ */
 public class LightManager implements IUniformSupplier {
 
   public static final String DefaultPropertyKey = "lightProps";
@@ -45,11 +57,59 @@ public class LightManager implements IUniformSupplier {
   public static int FIRST_SHADOW_INDEX = 8;
   public static int MAX_LIGHTS = 8;
 
-  protected LightComparator lightComparator = new LightComparator();
+  /** Number of slots in our light grid hash table. Must be a power of two. */
+  public static final int GRID_SLOTS = 4096;
+
+  /** Lights covering more grid cells than this are treated as global lights. */
+  public static final int MAX_CELLS_PER_LIGHT = 64;
+
+  /** Bounds covering more grid cells than this check every local light instead of the grid. */
+  public static final int MAX_CELLS_PER_QUERY = 64;
+
   protected List<WeakReference<Light>> _lightRefs = new ArrayList<>();
 
+  /** Grid cell size, or 0 to use the average range of the local lights. */
+  protected double _cellSize = 0;
+
+  /** Incremented every time lights are assigned, invalidating all mesh light selections. */
+  protected int _frame;
+  protected boolean _lightsChanged = true;
+
+  /** The render context and its frame number at the last assignment. */
+  protected RenderContext _assignedContext;
+  protected int _assignedContextFrame;
+
+  /** The enabled lights at the last assignment, with x, y, z and range packed in _frameLightData. */
+  protected Light[] _frameLights = new Light[16];
+  protected double[] _frameLightData = new double[16 * 4];
+  protected int _frameLightCount;
+  protected double _frameCellSize = 1;
+
+  /** Indices of the lights not binned into the grid, such as directional lights. */
+  protected int[] _globalLights = new int[16];
+  protected int _globalLightCount;
+
+  /**
+   * The light grid: a hash table of cells, each the head of a linked list of light entries. Cells
+   * sharing a slot simply share a list, costing us a few extra candidates.
+   */
+  protected final int[] _gridHeads = new int[LightManager.GRID_SLOTS];
+  protected int[] _entryLights = new int[64];
+  protected int[] _entryNext = new int[64];
+  protected int _entryCount;
+
+  /** Last query each light was a candidate in, so lights in several cells are scored once. */
+  protected int[] _lightStamps = new int[16];
+  protected int _stamp;
+
+  /** Selection of the mesh currently being drawn. */
+  protected LightSelection _current = new LightSelection();
+
   protected final List<UniformRef> _cachedUniforms = new ArrayList<>();
 
+  /** Lazily made block holding our lights for shaders drawing through it. */
+  protected LightUniformBlock _lightBlock;
+
   public LightManager() {
     for (int i = 0; i < LightManager.MAX_LIGHTS; i++) {
       _cachedUniforms.add(new UniformRef("lights[" + i + "]", UniformType.UniformSupplier, UniformSource.Ardor3dState,
@@ -84,29 +144,307 @@ public class LightManager implements IUniformSupplier {
     return distance == Double.MAX_VALUE ? Float.MAX_VALUE : (float) distance;
   }
 
+  /**
+   * @return the size of the cells local lights are binned into, or 0 if it is picked automatically
+   *         from the average range of the lights.
+   */
+  public double getCellSize() { return _cellSize; }
+
+  /**
+   * @param cellSize
+   *          the size of the cells local lights are binned into, or 0 to pick it automatically from
+   *          the average range of the lights.
+   */
+  public void setCellSize(final double cellSize) {
+    _cellSize = cellSize;
+    _lightsChanged = true;
+  }
+
+  /**
+   * Gather the enabled lights and bin the point and spot lights into our grid. This should be called
+   * once per frame, after the scene has been updated and before it is drawn. It is also called lazily
+   * from {@link #sortLightsFor(Mesh)} when lights were added or removed, or the current render
+   * context has started a new frame, since the last call.
+   */
+  public void assignLights() {
+    _frame++;
+    _lightsChanged = false;
+    final RenderContext context = ContextManager.getCurrentContext();
+    _assignedContext = context;
+    _assignedContextFrame = context != null ? context.getFrameNumber() : 0;
+
+    final Light[] previous = _frameLights;
+    final int previousCount = _frameLightCount;
+    _frameLightCount = 0;
+    _globalLightCount = 0;
+    _entryCount = 0;
+    Arrays.fill(_gridHeads, -1);
+
+    double rangeSum = 0;
+    int localCount = 0;
+    for (int i = 0, maxI = _lightRefs.size(); i < maxI; i++) {
+      final Light light = _lightRefs.get(i).get();
+      if (light == null || !light.isEnabled()) {
+        continue;
+      }
+
+      double range = Double.POSITIVE_INFINITY;
+      if (light instanceof PointLight) {
+        range = ((PointLight) light).getRange();
+        if (range <= 0) {
+          // lights nothing
+          continue;
+        }
+      }
+
+      ensureLightCapacity(_frameLightCount + 1);
+      final int index = _frameLightCount++;
+      final ReadOnlyVector3 location = light.getWorldTranslation();
+      _frameLights[index] = light;
+      _frameLightData[index * 4] = location.getX();
+      _frameLightData[index * 4 + 1] = location.getY();
+      _frameLightData[index * 4 + 2] = location.getZ();
+      _frameLightData[index * 4 + 3] = range;
+      if (Double.isFinite(range)) {
+        rangeSum += range;
+        localCount++;
+      }
+    }
+
+    // don't hold on to lights that are gone
+    for (int i = _frameLightCount; i < previousCount; i++) {
+      previous[i] = null;
+    }
+
+    _frameCellSize = _cellSize > 0 ? _cellSize : localCount > 0 ? Math.max(rangeSum / localCount, 1e-3) : 1;
+    final double invCellSize = 1.0 / _frameCellSize;
+
+    for (int i = 0; i < _frameLightCount; i++) {
+      final double range = _frameLightData[i * 4 + 3];
+      final double x = _frameLightData[i * 4], y = _frameLightData[i * 4 + 1], z = _frameLightData[i * 4 + 2];
+      final double minX = Math.floor((x - range) * invCellSize), maxX = Math.floor((x + range) * invCellSize);
+      final double minY = Math.floor((y - range) * invCellSize), maxY = Math.floor((y + range) * invCellSize);
+      final double minZ = Math.floor((z - range) * invCellSize), maxZ = Math.floor((z + range) * invCellSize);
+      final double cells = (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+      if (!(cells <= LightManager.MAX_CELLS_PER_LIGHT)) {
+        addGlobalLight(i);
+        continue;
+      }
+
+      for (long cx = (long) minX; cx <= maxX; cx++) {
+        for (long cy = (long) minY; cy <= maxY; cy++) {
+          for (long cz = (long) minZ; cz <= maxZ; cz++) {
+            addGridEntry(LightManager.gridSlot(cx, cy, cz), i);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Make the lights affecting the given mesh current, selecting them if the mesh has not been
+   * selected for yet this frame.
+   *
+   * @param mesh
+   *          the mesh about to be drawn.
+   */
   public void sortLightsFor(final Mesh mesh) {
-    lightComparator.setBoundingVolume(mesh.getWorldBound());
-    Collections.sort(_lightRefs, lightComparator);
+    if (_lightsChanged || isNewContextFrame()) {
+      assignLights();
+    }
+    final LightSelection selection = mesh.getLightSelection();
+    if (!selection.isCurrent(this, _frame)) {
+      selectLights(mesh.getWorldBound(), selection);
+    }
+    _current = selection;
+  }
+
+  /**
+   * @return true if the current render context has finished a frame, or is not the one we last
+   *         assigned lights in, so that lights may have moved or changed since.
+   */
+  protected boolean isNewContextFrame() {
+    final RenderContext context = ContextManager.getCurrentContext();
+    return context != null && (context != _assignedContext || context.getFrameNumber() != _assignedContextFrame);
+  }
+
+  /**
+   * Select the best lights for the given bound from the last assignment.
+   *
+   * @param bound
+   *          the world bound to select lights for. May be null.
+   * @param store
+   *          the selection to fill.
+   */
+  protected void selectLights(final BoundingVolume bound, final LightSelection store) {
+    store.clear(this, _frame);
+    if (++_stamp == 0) {
+      Arrays.fill(_lightStamps, 0);
+      _stamp = 1;
+    }
+
+    if (bound == null) {
+      for (int i = 0; i < _frameLightCount; i++) {
+        store.offer(_frameLights[i], i, LightManager.getValueFor(_frameLights[i], bound));
+      }
+      return;
+    }
+
+    final ReadOnlyVector3 center = bound.getCenter();
+    final double radius = bound.getRadius();
+    for (int i = 0; i < _globalLightCount; i++) {
+      offerLocalLight(_globalLights[i], center, radius, bound, store);
+    }
+
+    final double invCellSize = 1.0 / _frameCellSize;
+    final double minX = Math.floor((center.getX() - radius) * invCellSize),
+        maxX = Math.floor((center.getX() + radius) * invCellSize);
+    final double minY = Math.floor((center.getY() - radius) * invCellSize),
+        maxY = Math.floor((center.getY() + radius) * invCellSize);
+    final double minZ = Math.floor((center.getZ() - radius) * invCellSize),
+        maxZ = Math.floor((center.getZ() + radius) * invCellSize);
+    final double cells = (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+    if (!(cells <= LightManager.MAX_CELLS_PER_QUERY)) {
+      // large bound, cheaper to check every light
+      for (int i = 0; i < _frameLightCount; i++) {
+        offerLocalLight(i, center, radius, bound, store);
+      }
+      return;
+    }
+
+    for (long cx = (long) minX; cx <= maxX; cx++) {
+      for (long cy = (long) minY; cy <= maxY; cy++) {
+        for (long cz = (long) minZ; cz <= maxZ; cz++) {
+          for (int e = _gridHeads[LightManager.gridSlot(cx, cy, cz)]; e != -1; e = _entryNext[e]) {
+            offerLocalLight(_entryLights[e], center, radius, bound, store);
+          }
+        }
+      }
+    }
+  }
+
+  private void offerLocalLight(final int index, final ReadOnlyVector3 center, final double radius,
+      final BoundingVolume bound, final LightSelection store) {
+    if (_lightStamps[index] == _stamp) {
+      return;
+    }
+    _lightStamps[index] = _stamp;
+
+    // skip lights whose range does not reach the bound - directional lights have an infinite range
+    final double range = _frameLightData[index * 4 + 3];
+    final double dx = center.getX() - _frameLightData[index * 4];
+    final double dy = center.getY() - _frameLightData[index * 4 + 1];
+    final double dz = center.getZ() - _frameLightData[index * 4 + 2];
+    final double reach = radius + range;
+    if (Double.isFinite(range) && dx * dx + dy * dy + dz * dz > reach * reach) {
+      return;
+    }
+
+    store.offer(_frameLights[index], index, LightManager.getValueFor(_frameLights[index], bound));
+  }
+
+  private static int gridSlot(final long x, final long y, final long z) {
+    return (int) (x * 73856093L ^ y * 19349663L ^ z * 83492791L) & LightManager.GRID_SLOTS - 1;
+  }
+
+  private void addGridEntry(final int slot, final int light) {
+    if (_entryCount == _entryLights.length) {
+      _entryLights = Arrays.copyOf(_entryLights, _entryCount * 2);
+      _entryNext = Arrays.copyOf(_entryNext, _entryCount * 2);
+    }
+    _entryLights[_entryCount] = light;
+    _entryNext[_entryCount] = _gridHeads[slot];
+    _gridHeads[slot] = _entryCount++;
+  }
+
+  private void addGlobalLight(final int light) {
+    if (_globalLightCount == _globalLights.length) {
+      _globalLights = Arrays.copyOf(_globalLights, _globalLightCount * 2);
+    }
+    _globalLights[_globalLightCount++] = light;
+  }
+
+  private void ensureLightCapacity(final int count) {
+    if (count > _frameLights.length) {
+      final int size = Math.max(count, _frameLights.length * 2);
+      _frameLights = Arrays.copyOf(_frameLights, size);
+      _frameLightData = Arrays.copyOf(_frameLightData, size * 4);
+      _lightStamps = Arrays.copyOf(_lightStamps, size);
+    }
   }
 
   public Light getCurrentLight(final int index) {
-    final Light light0 = _lightRefs.isEmpty() ? null : _lightRefs.get(0).get();
+    final LightSelection current = _current;
+    final Light light0 = current.getLight(0);
     final boolean hasDSM = light0 != null && light0.isShadowCaster() && light0.getType() == Type.Directional;
     if (index == -1) {
       return hasDSM ? light0 : null;
     }
 
-    final int newIndex = (hasDSM ? index + 1 : index);
-    if (_lightRefs.size() <= newIndex) {
-      return null;
-    }
-    final var light = _lightRefs.get(newIndex).get();
+    final var light = current.getLight(hasDSM ? index + 1 : index);
     if (light == null || !light.isEnabled()) {
       return null;
     }
     return light;
   }
 
+  /**
+   * @param index
+   *          the light slot, as for {@link #getCurrentLight(int)}.
+   * @return the index of the current light in the given slot within our light block, or -1 if there is
+   *         no such light or it did not fit in the block.
+   */
+  public int getCurrentLightBlockIndex(final int index) {
+    final LightSelection current = _current;
+    final Light light0 = current.getLight(0);
+    final boolean hasDSM = light0 != null && light0.isShadowCaster() && light0.getType() == Type.Directional;
+    if (index == -1) {
+      return hasDSM ? LightManager.toBlockIndex(current.getLightIndex(0)) : -1;
+    }
+
+    final int rank = hasDSM ? index + 1 : index;
+    final var light = current.getLight(rank);
+    if (light == null || !light.isEnabled()) {
+      return -1;
+    }
+    return LightManager.toBlockIndex(current.getLightIndex(rank));
+  }
+
+  private static int toBlockIndex(final int frameIndex) {
+    return frameIndex < LightUniformBlock.MAX_BLOCK_LIGHTS ? frameIndex : -1;
+  }
+
+  /**
+   * @return the block holding the lights gathered for the current frame.
+   */
+  public LightUniformBlock getLightBlock() {
+    if (_lightBlock == null) {
+      _lightBlock = new LightUniformBlock(this);
+    }
+    return _lightBlock;
+  }
+
+  /**
+   * @return a counter increased each time lights are gathered, by {@link #assignLights()} - at least
+   *         once per frame of the render context drawing our meshes.
+   */
+  public int getFrame() { return _frame; }
+
+  /**
+   * @return the number of enabled lights gathered by the last {@link #assignLights()}.
+   */
+  public int getFrameLightCount() { return _frameLightCount; }
+
+  /**
+   * @param index
+   *          the index of the light, from 0 to {@link #getFrameLightCount()} - 1.
+   * @return a light gathered by the last {@link #assignLights()}.
+   */
+  public Light getFrameLight(final int index) {
+    return _frameLights[index];
+  }
+
   public Texture getCurrentShadowTexture(final int index) {
     final var light = getCurrentLight(index);
     return light != null ? light.getShadowData().getTexture() : null;
@@ -115,6 +453,7 @@ public class LightManager implements IUniformSupplier {
   public void addLights(final Spatial spat) {
     if (spat instanceof Light) {
       _lightRefs.add(new WeakReference<>((Light) spat));
+      _lightsChanged = true;
     } else if (spat instanceof Node) {
       final var node = (Node) spat;
       final var children = node.getChildren();
@@ -131,6 +470,7 @@ public class LightManager implements IUniformSupplier {
         final var light = ref.get();
         if (light == spat) {
           _lightRefs.remove(i);
+          _lightsChanged = true;
           return;
         }
       }
@@ -151,27 +491,11 @@ public class LightManager implements IUniformSupplier {
     }
   }
 
-  protected static class LightComparator implements Comparator<WeakReference<Light>> {
-    private BoundingVolume _bv;
-
-    public void setBoundingVolume(final BoundingVolume bv) { _bv = bv; }
-
-    @Override
-    public int compare(final WeakReference<Light> l1, final WeakReference<Light> l2) {
-      final double v1 = getValueFor(l1, _bv);
-      final double v2 = getValueFor(l2, _bv);
-      final double cmp = v1 - v2;
-      if (0 > cmp) {
-        return 1;
-      } else if (0 < cmp) {
-        return -1;
-      }
-      return 0;
-    }
+  protected static double getValueFor(final WeakReference<Light> lref, final BoundingVolume val) {
+    return LightManager.getValueFor(lref.get(), val);
   }
 
-  protected static double getValueFor(final WeakReference<Light> lref, final BoundingVolume val) {
-    final Light l = lref.get();
+  protected static double getValueFor(final Light l, final BoundingVolume val) {
     if (l == null || !l.isEnabled()) {
       return Double.NEGATIVE_INFINITY;
     } else if (l.getType() == Light.Type.Directional) {
@@ -191,7 +515,6 @@ public class LightManager implements IUniformSupplier {
     }
 
     final ReadOnlyVector3 location = l.getWorldTranslation();
-    // TODO: filter out lights that would not affect this BV
     final double dist = val.distanceTo(location);
 
     final double color = getColorValue(l);
@@ -206,7 +529,6 @@ public class LightManager implements IUniformSupplier {
     }
     final ReadOnlyVector3 direction = l.getWorldDirection();
     final ReadOnlyVector3 location = l.getWorldTranslation();
-    // TODO: filter out lights that would not affect this BV
     // direction is copied into Plane, not reused.
     final Plane p = new Plane(direction, direction.dot(location));
     if (val.whichSide(p) != Plane.Side.Inside) {
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.light;
+
+/**
+ * The lights a {@link LightManager} picked for a single mesh, best first, along with the manager and
+ * light frame they were picked in. Meshes keep one of these so that the selection is only made once
+ * per frame, no matter how many times - or from how many cameras - the mesh is drawn.
+ */
+public class LightSelection {
+
+  final Light[] _lights = new Light[LightManager.MAX_LIGHTS + 1];
+  final double[] _values = new double[LightManager.MAX_LIGHTS + 1];
+  final int[] _indices = new int[LightManager.MAX_LIGHTS + 1];
+  int _count;
+
+  LightManager _manager;
+  int _frame = -1;
+
+  /**
+   * @return the number of lights selected.
+   */
+  public int getCount() { return _count; }
+
+  /**
+   * @param index
+   *          the rank of the light to get, 0 being the most important.
+   * @return the selected light at the given rank, or null if there are not that many.
+   */
+  public Light getLight(final int index) {
+    return index >= 0 && index < _count ? _lights[index] : null;
+  }
+
+  /**
+   * @param index
+   *          the rank of the light to get, 0 being the most important.
+   * @return the index of the selected light at the given rank amongst the lights its manager gathered
+   *         for the frame, or -1 if there are not that many.
+   */
+  public int getLightIndex(final int index) {
+    return index >= 0 && index < _count ? _indices[index] : -1;
+  }
+
+  /**
+   * Forget the current selection, so that the next draw selects lights again.
+   */
+  public void invalidate() {
+    _manager = null;
+    _frame = -1;
+  }
+
+  boolean isCurrent(final LightManager manager, final int frame) {
+    return _manager == manager && _frame == frame;
+  }
+
+  void clear(final LightManager manager, final int frame) {
+    for (int i = 0; i < _count; i++) {
+      _lights[i] = null;
+    }
+    _count = 0;
+    _manager = manager;
+    _frame = frame;
+  }
+
+  /**
+   * Insert a light, keeping only the best MAX_LIGHTS + 1 candidates. Ties keep the light that was
+   * offered first.
+   */
+  void offer(final Light light, final int frameIndex, final double value) {
+    final int capacity = _lights.length;
+    if (_count == capacity && value <= _values[capacity - 1]) {
+      return;
+    }
+    int i = _count < capacity ? _count++ : capacity - 1;
+    while (i > 0 && _values[i - 1] < value) {
+      _lights[i] = _lights[i - 1];
+      _values[i] = _values[i - 1];
+      _indices[i] = _indices[i - 1];
+      i--;
+    }
+    _lights[i] = light;
+    _values[i] = value;
+    _indices[i] = frameIndex;
+  }
+}
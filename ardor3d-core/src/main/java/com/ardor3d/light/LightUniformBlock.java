@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.light;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.ardor3d.light.shadow.DirectionalShadowData;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Transform;
+import com.ardor3d.renderer.material.uniform.Std140Layout;
+import com.ardor3d.renderer.material.uniform.UniformBlock;
+import com.ardor3d.renderer.material.uniform.UniformRef;
+import com.ardor3d.renderer.material.uniform.UniformSource;
+import com.ardor3d.renderer.material.uniform.UniformType;
+
+/**
+ * <p>
+ * Uniform block holding every light a {@link LightManager} gathered for the frame, rewritten each time
+ * the lights are gathered, and in part whenever one of them moves, changes color or is toggled.
+ * Shaders declare it as in <code>include/light.glsl</code> when <code>LIGHT_BLOCK</code> is
+ * defined:
+ * </p>
+ *
+ * <pre>
+ * layout(std140) uniform Ardor3dLights {
+ *   int blockLightCount;
+ *   Light blockLights[MAX_BLOCK_LIGHTS];
+ * };
+ * </pre>
+ * <p>
+ * Each mesh then only needs the indices of its selected lights in the block, sent as the
+ * <code>lightIndices</code> built-in uniforms, instead of every property of every selected light.
+ * Lights past {@link #MAX_BLOCK_LIGHTS} in a frame are not in the block, and are skipped by meshes
+ * drawn through it.
+ * </p>
+ */
+public class LightUniformBlock extends UniformBlock {
+
+  /** Name of the block in shaders. */
+  public static final String BLOCK_NAME = "Ardor3dLights";
+
+  /** Binding point used for the light block. */
+  public static final int DEFAULT_BINDING = 0;
+
+  /** The most lights held by the block - must match the shaders. */
+  public static final int MAX_BLOCK_LIGHTS = 32;
+
+  /** Layout of the Light struct, as declared in light.glsl. */
+  public static final Std140Layout LIGHT_LAYOUT = new Std140Layout() //
+      .add("type", UniformType.Int1) //
+      .add("enabled", UniformType.Int1) //
+      .add("castsShadows", UniformType.Int1) //
+      .addArray("shadowMatrix", UniformType.Matrix4x4, DirectionalShadowData.MAX_SPLITS) //
+      .add("bias", UniformType.Float1) //
+      .add("filterMode", UniformType.Int1) //
+      .add("position", UniformType.Float3) //
+      .add("direction", UniformType.Float3) //
+      .add("constant", UniformType.Float1) //
+      .add("linear", UniformType.Float1) //
+      .add("quadratic", UniformType.Float1) //
+      .add("range", UniformType.Float1) //
+      .add("color", UniformType.Float3) //
+      .add("intensity", UniformType.Float1) //
+      .add("angle", UniformType.Float1) //
+      .add("innerAngle", UniformType.Float1);
+
+  /** Layout of the whole block. */
+  public static final Std140Layout BLOCK_LAYOUT = new Std140Layout() //
+      .add("blockLightCount", UniformType.Int1) //
+      .addStruct("blockLights", LightUniformBlock.LIGHT_LAYOUT, LightUniformBlock.MAX_BLOCK_LIGHTS);
+
+  protected final LightManager _manager;
+  protected int _writtenFrame = -1;
+  protected int _lightCount;
+
+  /** The lights as they were when written to each slot, to spot changes to them between gatherings. */
+  protected final WrittenLight[] _written = new WrittenLight[LightUniformBlock.MAX_BLOCK_LIGHTS];
+
+  public LightUniformBlock(final LightManager manager) {
+    this(manager, LightUniformBlock.DEFAULT_BINDING);
+  }
+
+  /**
+   * @param manager
+   *          the manager whose lights we hold.
+   * @param binding
+   *          the uniform buffer binding point to use.
+   */
+  public LightUniformBlock(final LightManager manager, final int binding) {
+    super(LightUniformBlock.BLOCK_NAME, binding, LightUniformBlock.BLOCK_LAYOUT);
+    _manager = manager;
+  }
+
+  /**
+   * @return the number of lights written to the block at the last update.
+   */
+  public int getLightCount() { return _lightCount; }
+
+  @Override
+  public void update() {
+    final ByteBuffer buffer = getBuffer();
+    final int base = _layout.getOffset("blockLights");
+    final int stride = _layout.getArrayStride("blockLights");
+
+    final int frame = _manager.getFrame();
+    if (frame == _writtenFrame) {
+      // same lights as last written, but any of them may have changed since
+      boolean changed = false;
+      for (int i = 0; i < _lightCount; i++) {
+        final Light light = _manager.getFrameLight(i);
+        if (!_written[i].matches(light)) {
+          LightUniformBlock.writeLight(buffer, base + i * stride, light);
+          _written[i].set(light);
+          changed = true;
+        }
+      }
+      if (changed) {
+        markDirty();
+      }
+      return;
+    }
+    _writtenFrame = frame;
+
+    final int count = Math.min(_manager.getFrameLightCount(), LightUniformBlock.MAX_BLOCK_LIGHTS);
+
+    // clear lights no longer present, so they read as disabled
+    for (int i = base + count * stride, maxI = base + _lightCount * stride; i < maxI; i++) {
+      buffer.put(i, (byte) 0);
+    }
+
+    _lightCount = count;
+    Std140Layout.write(buffer, _layout.getOffset("blockLightCount"), UniformType.Int1, count);
+    for (int i = 0; i < count; i++) {
+      final Light light = _manager.getFrameLight(i);
+      LightUniformBlock.writeLight(buffer, base + i * stride, light);
+      if (_written[i] == null) {
+        _written[i] = new WrittenLight();
+      }
+      _written[i].set(light);
+    }
+    for (int i = count; i < _written.length && _written[i] != null; i++) {
+      _written[i]._light = null;
+    }
+    markDirty();
+  }
+
+  /** The parts of a light we watch for changes: its transform, color and enabled state. */
+  protected static class WrittenLight {
+    Light _light;
+    final Transform _transform = new Transform();
+    final ColorRGBA _color = new ColorRGBA();
+    float _intensity;
+    boolean _enabled;
+
+    boolean matches(final Light light) {
+      return light == _light && light.isEnabled() == _enabled && light.getIntensity() == _intensity
+          && _color.equals(light.getColor()) && _transform.strictEquals(light.getWorldTransform());
+    }
+
+    void set(final Light light) {
+      _light = light;
+      _transform.set(light.getWorldTransform());
+      _color.set(light.getColor());
+      _intensity = light.getIntensity();
+      _enabled = light.isEnabled();
+    }
+  }
+
+  /**
+   * Write a light's supplied uniforms into a Light struct, matching them to struct members by name.
+   *
+   * @param store
+   *          the buffer to write to.
+   * @param offset
+   *          the byte offset of the struct.
+   * @param light
+   *          the light to write.
+   */
+  public static void writeLight(final ByteBuffer store, final int offset, final Light light) {
+    // start from zeros, as light types only fill the members they use
+    for (int i = offset, maxI = offset + LightUniformBlock.LIGHT_LAYOUT.getSize(); i < maxI; i++) {
+      store.put(i, (byte) 0);
+    }
+
+    final List<UniformRef> uniforms = light.getUniforms();
+    for (int i = 0, maxI = uniforms.size(); i < maxI; i++) {
+      final UniformRef uniform = uniforms.get(i);
+      if (uniform.getSource() != UniformSource.Supplier) {
+        continue;
+      }
+
+      // split off any array index, as in shadowMatrix[2]
+      String name = uniform.getShaderVariableName();
+      int element = 0;
+      final int bracket = name.indexOf('[');
+      if (bracket > 0) {
+        element = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+        name = name.substring(0, bracket);
+      }
+      if (!LightUniformBlock.LIGHT_LAYOUT.hasMember(name)) {
+        continue;
+      }
+
+      final int memberOffset = offset + LightUniformBlock.LIGHT_LAYOUT.getOffset(name)
+          + element * LightUniformBlock.LIGHT_LAYOUT.getArrayStride(name);
+      Std140Layout.write(store, memberOffset, uniform.getType(), ((Supplier<?>) uniform.getValue()).get());
+    }
+  }
+}
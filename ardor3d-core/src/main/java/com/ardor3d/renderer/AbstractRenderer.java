@@ -16,6 +16,7 @@ import java.util.EnumMap;
 import java.util.Map;
 
 import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.buffer.IndexBufferData;
 import com.ardor3d.image.ImageDataFormat;
 import com.ardor3d.image.PixelDataType;
 import com.ardor3d.image.util.ImageUtils;
@@ -25,9 +26,12 @@ import com.ardor3d.math.Matrix4;
 import com.ardor3d.math.type.ReadOnlyColorRGBA;
 import com.ardor3d.math.type.ReadOnlyMatrix4;
 import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.renderer.occlusion.OcclusionCuller;
 import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.RenderStateBlock;
+import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.util.Constants;
 import com.ardor3d.util.stat.StatCollector;
 import com.ardor3d.util.stat.StatType;
@@ -45,6 +49,8 @@ public abstract class AbstractRenderer implements Renderer {
 
   protected int _stencilClearValue;
 
+  protected OcclusionCuller _occlusionCuller;
+
   protected Map<RenderMatrixType, FloatBuffer> _matrixStore = new EnumMap<>(RenderMatrixType.class);
 
   /** List of default rendering states for this specific renderer type */
@@ -74,6 +80,43 @@ public abstract class AbstractRenderer implements Renderer {
   @Override
   public boolean isProcessingQueue() { return _processingQueue; }
 
+  public OcclusionCuller getOcclusionCuller() { return _occlusionCuller; }
+
+  /**
+   * @param culler
+   *          a culler to skip queueing spatials hidden by its occluders, or null to queue everything
+   *          that passes frustum culling.
+   */
+  public void setOcclusionCuller(final OcclusionCuller culler) { _occlusionCuller = culler; }
+
+  /**
+   * Test a spatial against our occlusion culler, if any, preparing the culler for the given camera
+   * first if needed. Renderers should invalidate the culler at the end of each frame, as occluders
+   * may move.
+   *
+   * @param s
+   *          the spatial to test.
+   * @param camera
+   *          the camera we are rendering from.
+   * @return true if the spatial is hidden and need not be drawn.
+   */
+  protected boolean isOccluded(final Spatial s, final Camera camera) {
+    final OcclusionCuller culler = _occlusionCuller;
+    if (culler == null || camera == null || culler.getOccluderCount() == 0) {
+      return false;
+    }
+    if (!culler.isPreparedFor(camera)) {
+      culler.prepare(camera);
+    }
+    if (culler.isOccluded(s)) {
+      if (Constants.stats) {
+        StatCollector.addStat(StatType.STAT_OCCLUDED_COUNT, 1);
+      }
+      return true;
+    }
+    return false;
+  }
+
   @Override
   public RenderState applyState(final StateType type, final RenderState state) {
     if (Constants.stats) {
@@ -95,6 +138,53 @@ public abstract class AbstractRenderer implements Renderer {
     return tempState;
   }
 
+  /**
+   * Draws each command on its own. Renderers able to submit the commands in one call should override
+   * this.
+   */
+  @Override
+  public void drawIndirect(final IndexBufferData<?> indices, final DrawIndirectCommands commands) {
+    final int instanceCount = commands.getInstanceCount();
+    for (int run = 0, maxRun = commands.getRunCount(); run < maxRun; run++) {
+      final IndexMode mode = commands.getRunMode(run);
+      for (int i = commands.getRunStart(run), maxI = i + commands.getRunLength(run); i < maxI; i++) {
+        if (indices != null) {
+          drawElements(indices, commands.getFirst(i), commands.getCount(i), mode, instanceCount);
+        } else {
+          drawArrays(commands.getFirst(i), commands.getCount(i), mode, instanceCount);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void applyStates(final RenderStateBlock block) {
+    final RenderContext context = ContextManager.getCurrentContext();
+    if (context.hasEnforcedStates()) {
+      // enforced states are looked up per type, so apply each as usual
+      for (final StateType type : StateType.values) {
+        applyState(type, block.get(type));
+      }
+      context.setAppliedStateBlock(null);
+      return;
+    }
+
+    // only visit types that differ from the block whose states are current, if we know of one
+    final int differences = block.getDifferences(context.getAppliedStateBlock());
+    for (final StateType type : StateType.values) {
+      final RenderState state = block.get(type);
+      if ((differences & 1 << type.ordinal()) == 0 && RenderState._quickCompare.contains(type)
+          && (state == null || !state.needsRefresh())) {
+        if (Constants.stats) {
+          StatCollector.addStat(StatType.STAT_STATE_SKIPS, 1);
+        }
+        continue;
+      }
+      applyState(type, state);
+    }
+    context.setAppliedStateBlock(block);
+  }
+
   protected abstract void doApplyState(RenderState state);
 
   protected void addStats(final IndexMode indexMode, final int vertCount) {
@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.bounding.PackedBounds;
 import com.ardor3d.buffer.BufferUtils;
 import com.ardor3d.framework.Canvas;
 import com.ardor3d.math.Matrix3;
@@ -246,6 +247,18 @@ public class Camera implements Savable, Externalizable {
   protected boolean _viewPortDirty;
   protected boolean _frameDirty;
 
+  /** Incremented every time our frame (location or orientation) changes. */
+  protected int _frameVersion;
+
+  /** Incremented every time our frustum or projection changes. */
+  protected int _frustumVersion;
+
+  /** Normal x, y, z and constant of each of our frustum's world planes, kept up to date by onFrameChange. */
+  protected final double[] _planeCoefficients = new double[Camera.FRUSTUM_PLANES * 4];
+
+  /** Scratch space for {@link #contains(PackedBounds, long[])}. */
+  private final long[] _containsSigns = new long[64];
+
   /**
    * A set of layers to use for filtering Spatials from queuing and rendering. See
    * {@link #_exclusiveLayers} for more details.
@@ -970,6 +983,137 @@ public class Camera implements Savable, Externalizable {
     return rVal;
   }
 
+  /**
+   * Checks a whole collection of bounds against the planes of this camera's frustum at once, setting
+   * bit i (of visible[i >> 6]) for each bound i that is not completely outside. Planes already marked
+   * in the current plane state are skipped, as in {@link #contains(BoundingVolume)}, but the plane
+   * state and the bounds' check planes are left untouched.
+   * <p>
+   * The test is done plane by plane over plain arrays with no branches in the inner loop, which lets
+   * the JIT compile it to SIMD instructions.
+   * </p>
+   *
+   * @param bounds
+   *          the bounds to check
+   * @param visible
+   *          the bitset to write our results to. Must hold at least bounds.size() bits.
+   * @return the number of visible bounds
+   */
+  public int contains(final PackedBounds bounds, final long[] visible) {
+    return contains(bounds, visible, _planeState, _containsSigns);
+  }
+
+  /**
+   * Checks a whole collection of bounds against the planes of this camera's frustum, skipping the
+   * planes marked in the given plane state. This does not read or write any state of the camera
+   * other than its frustum planes, so may be called from several threads at once, each with its own
+   * scratch space.
+   *
+   * @param bounds
+   *          the bounds to check
+   * @param visible
+   *          the bitset to write our results to. Must hold at least bounds.size() bits.
+   * @param planeState
+   *          a bitmask of planes known to contain all of the bounds, as in {@link #getPlaneState()}.
+   * @param signs
+   *          scratch space of at least 64 longs, not used by any other thread during this call.
+   * @return the number of visible bounds
+   * @see #contains(PackedBounds, long[])
+   */
+  public int contains(final PackedBounds bounds, final long[] visible, final int planeState,
+      final long[] signs) {
+    final int size = bounds.size();
+    if (visible.length << 6 < size) {
+      throw new IllegalArgumentException("visible must hold at least " + size + " bits.");
+    }
+
+    final double[] cx = bounds.getCenterX(), cy = bounds.getCenterY(), cz = bounds.getCenterZ();
+    final double[] ex = bounds.getExtentX(), ey = bounds.getExtentY(), ez = bounds.getExtentZ();
+    final double[] radius = bounds.getRadius();
+
+    final double[] planes = _planeCoefficients;
+
+    // for each bound, combine the sign bits of (distance + projected radius) over all planes - if any
+    // is negative, the bound is fully behind that plane and so outside of the frustum. Working on 64
+    // bounds at a time keeps the arrays we're reading in cache from one plane to the next.
+    int visibleCount = 0;
+    for (int start = 0; start < size; start += 64) {
+      final int count = Math.min(64, size - start);
+      Arrays.fill(signs, 0, count, 0L);
+      for (int planeId = 0; planeId < Camera.FRUSTUM_PLANES; planeId++) {
+        if ((planeState & 1 << planeId) != 0) {
+          continue;
+        }
+        final int p = planeId * 4;
+        final double nx = planes[p], ny = planes[p + 1], nz = planes[p + 2], constant = planes[p + 3];
+        final double ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+        for (int i = 0, j = start; i < count; i++, j++) {
+          final double distance = nx * cx[j] + ny * cy[j] + nz * cz[j] - constant;
+          final double projected = ax * ex[j] + ay * ey[j] + az * ez[j] + radius[j];
+          signs[i] |= Double.doubleToRawLongBits(distance + projected);
+        }
+      }
+
+      long bits = 0;
+      for (int i = 0; i < count; i++) {
+        bits |= (~signs[i] >>> 63) << i;
+      }
+      visible[start >> 6] = bits;
+      visibleCount += Long.bitCount(bits);
+    }
+
+    return visibleCount;
+  }
+
+  /**
+   * Checks an axis aligned box against the planes of this camera's frustum, for hierarchical culling.
+   * Planes whose bit is set in the given mask - typically those an enclosing box was found fully in
+   * front of - are skipped. Neither the plane state nor any bound is modified.
+   *
+   * @param minX
+   *          the minimum x of the box.
+   * @param minY
+   *          the minimum y of the box.
+   * @param minZ
+   *          the minimum z of the box.
+   * @param maxX
+   *          the maximum x of the box.
+   * @param maxY
+   *          the maximum y of the box.
+   * @param maxZ
+   *          the maximum z of the box.
+   * @param planeMask
+   *          the planes to skip, by bit. Start from {@link #getPlaneState()}.
+   * @return -1 if the box is outside of the frustum, otherwise the given mask plus the bits of the
+   *         planes the box is fully in front of. If all {@link #FRUSTUM_PLANES} bits are set, the box is
+   *         fully inside.
+   */
+  public int contains(final double minX, final double minY, final double minZ, final double maxX,
+      final double maxY, final double maxZ, final int planeMask) {
+    final double cx = (minX + maxX) * 0.5, cy = (minY + maxY) * 0.5, cz = (minZ + maxZ) * 0.5;
+    final double ex = (maxX - minX) * 0.5, ey = (maxY - minY) * 0.5, ez = (maxZ - minZ) * 0.5;
+
+    int mask = planeMask;
+    for (int planeId = 0; planeId < Camera.FRUSTUM_PLANES; planeId++) {
+      final int bit = 1 << planeId;
+      if ((mask & bit) != 0) {
+        continue;
+      }
+      final ReadOnlyVector3 normal = _worldPlane[planeId].getNormal();
+      final double distance =
+          normal.getX() * cx + normal.getY() * cy + normal.getZ() * cz - _worldPlane[planeId].getConstant();
+      final double projected =
+          Math.abs(normal.getX()) * ex + Math.abs(normal.getY()) * ey + Math.abs(normal.getZ()) * ez;
+      if (distance + projected < 0) {
+        return -1;
+      }
+      if (distance - projected >= 0) {
+        mask |= bit;
+      }
+    }
+    return mask;
+  }
+
   /**
    * Resizes this camera's view with the given width and height.
    *
@@ -1053,6 +1197,7 @@ public class Camera implements Savable, Externalizable {
 
   public void markFrustumDirty() {
     _frustumDirty = true;
+    _frustumVersion++;
   }
 
   /**
@@ -1128,6 +1273,15 @@ public class Camera implements Savable, Externalizable {
 
     Vector3.releaseTempInstance(planeNormal);
 
+    for (int planeId = 0; planeId < Camera.FRUSTUM_PLANES; planeId++) {
+      final ReadOnlyVector3 normal = _worldPlane[planeId].getNormal();
+      final int p = planeId * 4;
+      _planeCoefficients[p] = normal.getX();
+      _planeCoefficients[p + 1] = normal.getY();
+      _planeCoefficients[p + 2] = normal.getZ();
+      _planeCoefficients[p + 3] = _worldPlane[planeId].getConstant();
+    }
+
     _updateViewMatrix = true;
     _updateViewProjectionMatrix = true;
     _updateInverseViewProjectionMatrix = true;
@@ -1137,6 +1291,7 @@ public class Camera implements Savable, Externalizable {
 
   public void markFrameDirty() {
     _frameDirty = true;
+    _frameVersion++;
   }
 
   /**
@@ -1184,7 +1339,7 @@ public class Camera implements Savable, Externalizable {
 
   public void setProjectionMatrix(final ReadOnlyMatrix4 projection) {
     _projection.set(projection);
-    _frustumDirty = true;
+    markFrustumDirty();
   }
 
   /**
@@ -1717,6 +1872,17 @@ public class Camera implements Savable, Externalizable {
 
   public boolean isFrameDirty() { return _frameDirty; }
 
+  /**
+   * @return a counter that changes whenever this camera's frame (location, direction, etc.) changes.
+   *         Useful for caching results that depend on where the camera is looking.
+   */
+  public int getFrameVersion() { return _frameVersion; }
+
+  /**
+   * @return a counter that changes whenever this camera's frustum or projection changes.
+   */
+  public int getFrustumVersion() { return _frustumVersion; }
+
   public static Camera newOrthoCamera(final Canvas canvas) {
     final int width = canvas.getContentWidth();
     final int height = canvas.getContentHeight();
@@ -15,6 +15,10 @@ public class ContextCapabilities {
 
   protected boolean _tessellationShadersSupported = false;
 
+  protected boolean _programBinarySupported = false;
+
+  protected boolean _multiDrawIndirectSupported = false;
+
   protected int _maxGLSLVertexAttribs;
 
   protected int _maxFBOColorAttachments = 1;
@@ -64,6 +68,8 @@ public class ContextCapabilities {
     _displayVendor = source._displayVendor;
     _displayVersion = source._displayVersion;
     _tessellationShadersSupported = source._tessellationShadersSupported;
+    _programBinarySupported = source._programBinarySupported;
+    _multiDrawIndirectSupported = source._multiDrawIndirectSupported;
     _maxAnisotropic = source._maxAnisotropic;
     _maxFBOColorAttachments = source._maxFBOColorAttachments;
     _maxFBOSamples = source._maxFBOSamples;
@@ -93,6 +99,18 @@ public class ContextCapabilities {
    */
   public boolean isTessellationShadersSupported() { return _tessellationShadersSupported; }
 
+  /**
+   * @return <code>true</code> if GL_ARB_get_program_binary is supported with at least one binary
+   *         format by current graphics configuration
+   */
+  public boolean isProgramBinarySupported() { return _programBinarySupported; }
+
+  /**
+   * @return <code>true</code> if GL_ARB_multi_draw_indirect (core in OpenGL 4.3) is supported by
+   *         current graphics configuration
+   */
+  public boolean isMultiDrawIndirectSupported() { return _multiDrawIndirectSupported; }
+
   /**
    * <code>getTotalNumberOfUnits</code> returns the total number of texture units this context
    * supports.
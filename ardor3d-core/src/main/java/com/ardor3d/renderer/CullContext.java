@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.bounding.PackedBounds;
+import com.ardor3d.math.Plane;
+import com.ardor3d.renderer.queue.RenderBucketType;
+import com.ardor3d.renderer.queue.RenderQueue;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.hint.CullHint;
+
+/**
+ * <p>
+ * Culls a scene against the frustum of a single camera, queuing the visible spatials into a
+ * {@link RenderQueue}. Unlike {@link Spatial#onDraw(Renderer)}, culling through a CullContext does
+ * not use the current render context or camera, and does not write to the camera, the bounding
+ * volumes or the spatials: the plane state and each bound's last culling plane are kept in the
+ * context instead. Several contexts - for example one per shadow cascade, reflection and main view -
+ * may therefore cull the same scene at the same time from different threads, as long as the scene
+ * and cameras are not modified while they do.
+ * </p>
+ * <p>
+ * A context itself is not thread safe; use one per view and thread. The filled queues are then
+ * sorted and rendered as usual, on the render thread, with the matching camera applied.
+ * </p>
+ * <p>
+ * Spatials decide what they queue through {@link Spatial#queue(CullContext, RenderQueue)}. Spatials
+ * whose draw method does more than queuing themselves or drawing their children - like those that
+ * render to textures - are simply queued.
+ * </p>
+ */
+public class CullContext {
+
+  /** Number of slots in our last culling plane cache. Must be a power of two. */
+  public static final int CHECK_PLANE_SLOTS = 1024;
+
+  protected final Camera _camera;
+
+  /** Bit mask of the frustum planes the current spatial is known to be fully inside of. */
+  protected int _planeState;
+
+  /** Intersection of the spatial currently being queued with the frustum. */
+  protected Camera.FrustumIntersect _intersect = Camera.FrustumIntersect.Intersects;
+
+  /**
+   * The plane that last culled a bound, by bound identity hash. Collisions only cost us an extra plane
+   * test, so a small direct mapped table is enough.
+   */
+  protected final byte[] _checkPlanes = new byte[CullContext.CHECK_PLANE_SLOTS];
+
+  /** Scratch space for batch culling. */
+  protected final long[] _signs = new long[64];
+
+  /**
+   * @param camera
+   *          the camera whose frustum we cull against.
+   */
+  public CullContext(final Camera camera) {
+    _camera = camera;
+  }
+
+  public Camera getCamera() { return _camera; }
+
+  /**
+   * @return a bitmask describing what frustum planes the spatial currently being culled is known to
+   *         be inside of.
+   */
+  public int getPlaneState() { return _planeState; }
+
+  public void setPlaneState(final int planeState) { _planeState = planeState; }
+
+  /**
+   * @return the intersection with the frustum of the spatial currently being queued.
+   */
+  public Camera.FrustumIntersect getIntersect() { return _intersect; }
+
+  /**
+   * Cull the given scene, adding the visible spatials to the given queue.
+   *
+   * @param scene
+   *          the root of the scene to cull.
+   * @param queue
+   *          the queue to add to.
+   */
+  public void cull(final Spatial scene, final RenderQueue queue) {
+    _planeState = 0;
+    _intersect = Camera.FrustumIntersect.Intersects;
+    cullChild(scene, queue);
+  }
+
+  /**
+   * Cull a single spatial, queuing it - or its visible children - if it is not outside of the frustum.
+   * This mirrors {@link Spatial#onDraw(Renderer)}, and is how nodes cull their children.
+   *
+   * @param spatial
+   *          the spatial to cull.
+   * @param queue
+   *          the queue to add to.
+   */
+  public void cullChild(final Spatial spatial, final RenderQueue queue) {
+    final CullHint cm = spatial.getSceneHints().getCullHint();
+    if (cm == CullHint.Always) {
+      return;
+    }
+
+    final Camera.FrustumIntersect parentIntersect = _intersect;
+    final int state = _planeState;
+
+    if (cm == CullHint.Never) {
+      _intersect = Camera.FrustumIntersect.Intersects;
+    } else {
+      final Node parent = spatial.getParent();
+      if (parent == null || parent.getWorldBound() == null) {
+        _intersect = Camera.FrustumIntersect.Intersects;
+      }
+      if (cm == CullHint.Dynamic && _intersect == Camera.FrustumIntersect.Intersects) {
+        _intersect = contains(spatial.getWorldBound());
+      }
+    }
+
+    if (_intersect != Camera.FrustumIntersect.Outside) {
+      spatial.queue(this, queue);
+    }
+
+    _intersect = parentIntersect;
+    _planeState = state;
+  }
+
+  /**
+   * Add the given spatial to the queue, in the bucket given by its scene hints, if it is not skipped
+   * and its layer passes our camera's layer filter.
+   *
+   * @param spatial
+   *          the spatial to add.
+   * @param queue
+   *          the queue to add to.
+   * @return true if the spatial was queued.
+   */
+  public boolean addToQueue(final Spatial spatial, final RenderQueue queue) {
+    final RenderBucketType bucketType = spatial.getSceneHints().getRenderBucketType();
+    if (bucketType != RenderBucketType.Skip && _camera.checkLayerPasses(spatial.getLayer())) {
+      queue.addToQueue(spatial, bucketType);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks a bounding volume against the planes of our camera's frustum, as
+   * {@link Camera#contains(BoundingVolume)} does, but using and updating this context's plane state.
+   *
+   * @param bound
+   *          the bound to check for culling
+   * @return intersection type
+   */
+  public Camera.FrustumIntersect contains(final BoundingVolume bound) {
+    if (bound == null) {
+      return Camera.FrustumIntersect.Inside;
+    }
+
+    final Plane[] worldPlanes = _camera._worldPlane;
+    final int slot = System.identityHashCode(bound) & CullContext.CHECK_PLANE_SLOTS - 1;
+    final int checkPlane = _checkPlanes[slot];
+
+    Camera.FrustumIntersect rVal = Camera.FrustumIntersect.Inside;
+    for (int planeCounter = Camera.FRUSTUM_PLANES; planeCounter >= 0; planeCounter--) {
+      if (planeCounter == checkPlane) {
+        continue; // we have already checked this plane at first iteration
+      }
+      final int planeId = planeCounter == Camera.FRUSTUM_PLANES ? checkPlane : planeCounter;
+
+      final int mask = 1 << planeId;
+      if ((_planeState & mask) == 0) {
+        switch (bound.whichSide(worldPlanes[planeId])) {
+          case Inside:
+            // object is outside of frustum
+            _checkPlanes[slot] = (byte) planeId;
+            return Camera.FrustumIntersect.Outside;
+          case Outside:
+            // object is visible on *this* plane, so mark this plane
+            // so that we don't check it for sub nodes.
+            _planeState |= mask;
+            break;
+          case Neither:
+            rVal = Camera.FrustumIntersect.Intersects;
+            break;
+        }
+      }
+    }
+
+    return rVal;
+  }
+
+  /**
+   * Checks a collection of bounds against the planes of our camera's frustum, skipping planes marked
+   * in this context's plane state.
+   *
+   * @see Camera#contains(PackedBounds, long[], int, long[])
+   */
+  public int contains(final PackedBounds bounds, final long[] visible) {
+    return _camera.contains(bounds, visible, _planeState, _signs);
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import java.nio.IntBuffer;
+
+import com.ardor3d.buffer.AbstractBufferData.VBOAccessMode;
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.buffer.IntBufferData;
+import com.ardor3d.scenegraph.MeshData;
+
+/**
+ * <p>
+ * The sections of a {@link MeshData}, written as draw-indirect commands so that a renderer can submit
+ * them with one multi-draw call per index mode instead of one draw call per section. See
+ * {@link Renderer#drawIndirect(com.ardor3d.buffer.IndexBufferData, DrawIndirectCommands)}.
+ * </p>
+ * <p>
+ * Commands use the layouts GL expects in a draw indirect buffer. For indexed data, each command is
+ * <code>{count, instanceCount, firstIndex, baseVertex, baseInstance}</code>; otherwise it is
+ * <code>{count, instanceCount, first, baseInstance}</code>. Consecutive sections sharing an index
+ * mode are grouped into runs, as a multi-draw call can only use a single mode. Empty sections are
+ * left out.
+ * </p>
+ */
+public class DrawIndirectCommands {
+
+  /** Number of ints in a command for indexed data. */
+  public static final int ELEMENTS_COMMAND_SIZE = 5;
+
+  /** Number of ints in a command for non-indexed data. */
+  public static final int ARRAYS_COMMAND_SIZE = 4;
+
+  protected final IntBufferData _data = new IntBufferData();
+
+  protected boolean _indexed;
+  protected int _instanceCount;
+  protected int _commandCount;
+
+  protected int _runCount;
+  protected IndexMode[] _runModes = new IndexMode[0];
+  protected int[] _runStarts = new int[0];
+
+  // what we last built from, to tell when to build again
+  private int[] _builtLengths;
+  private IndexMode[] _builtModes;
+  private boolean _dirty = true;
+
+  public DrawIndirectCommands() {
+    _data.setVboAccessMode(VBOAccessMode.StreamDraw);
+  }
+
+  /**
+   * Rebuild our commands if the sections of the given mesh data, or the instance count, changed
+   * since the last build.
+   *
+   * @param meshData
+   *          the mesh data to draw. Must have index lengths.
+   * @param instanceCount
+   *          the number of instances to draw of each section.
+   * @return true if the commands were rebuilt.
+   */
+  public boolean update(final MeshData meshData, final int instanceCount) {
+    final int[] lengths = meshData.getIndexLengths();
+    final IndexMode[] modes = meshData.getIndexModes();
+    final boolean indexed = meshData.getIndices() != null;
+    if (!_dirty && lengths == _builtLengths && modes == _builtModes && indexed == _indexed
+        && instanceCount == _instanceCount) {
+      return false;
+    }
+    build(lengths, modes, indexed, instanceCount);
+    return true;
+  }
+
+  /**
+   * Write one command per non-empty section, in section order.
+   *
+   * @param indexLengths
+   *          the number of indices (or vertices, if not indexed) of each section.
+   * @param modes
+   *          the index mode of each section. As in {@link MeshData}, sections past the end of this
+   *          array use its last mode.
+   * @param indexed
+   *          true if the sections index into an index buffer.
+   * @param instanceCount
+   *          the number of instances to draw of each section.
+   */
+  public void build(final int[] indexLengths, final IndexMode[] modes, final boolean indexed,
+      final int instanceCount) {
+    final int size = indexed ? DrawIndirectCommands.ELEMENTS_COMMAND_SIZE : DrawIndirectCommands.ARRAYS_COMMAND_SIZE;
+    IntBuffer buffer = _data.getBuffer();
+    if (buffer == null || buffer.capacity() < indexLengths.length * size) {
+      buffer = BufferUtils.createIntBuffer(Math.max(1, indexLengths.length) * size);
+      _data.setBuffer(buffer);
+    }
+    if (_runModes.length < indexLengths.length) {
+      _runModes = new IndexMode[indexLengths.length];
+      _runStarts = new int[indexLengths.length];
+    }
+
+    buffer.clear();
+    _commandCount = 0;
+    _runCount = 0;
+    int offset = 0;
+    for (int i = 0; i < indexLengths.length; i++) {
+      final int count = indexLengths[i];
+      final IndexMode mode = modes[Math.min(i, modes.length - 1)];
+      if (count > 0) {
+        if (_runCount == 0 || _runModes[_runCount - 1] != mode) {
+          _runModes[_runCount] = mode;
+          _runStarts[_runCount] = _commandCount;
+          _runCount++;
+        }
+
+        buffer.put(count).put(instanceCount).put(offset);
+        if (indexed) {
+          // base vertex
+          buffer.put(0);
+        }
+        // base instance
+        buffer.put(0);
+        _commandCount++;
+      }
+      offset += count;
+    }
+    buffer.flip();
+    _data.markDirty();
+
+    _indexed = indexed;
+    _instanceCount = instanceCount;
+    _builtLengths = indexLengths;
+    _builtModes = modes;
+    _dirty = false;
+  }
+
+  /**
+   * Force a rebuild on the next {@link #update(MeshData, int)}, for when sections were changed in
+   * place.
+   */
+  public void markDirty() {
+    _dirty = true;
+  }
+
+  /**
+   * @return the commands, as uploaded to the draw indirect buffer.
+   */
+  public IntBufferData getData() { return _data; }
+
+  public boolean isIndexed() { return _indexed; }
+
+  public int getInstanceCount() { return _instanceCount; }
+
+  public int getCommandCount() { return _commandCount; }
+
+  /**
+   * @return the size of a command in ints.
+   */
+  public int getCommandSize() {
+    return _indexed ? DrawIndirectCommands.ELEMENTS_COMMAND_SIZE : DrawIndirectCommands.ARRAYS_COMMAND_SIZE;
+  }
+
+  /**
+   * @param command
+   *          the command index.
+   * @return the number of indices or vertices drawn by the given command.
+   */
+  public int getCount(final int command) {
+    return _data.getBuffer().get(command * getCommandSize());
+  }
+
+  /**
+   * @param command
+   *          the command index.
+   * @return the first index or vertex drawn by the given command.
+   */
+  public int getFirst(final int command) {
+    return _data.getBuffer().get(command * getCommandSize() + 2);
+  }
+
+  /**
+   * @return the number of runs of consecutive commands sharing an index mode.
+   */
+  public int getRunCount() { return _runCount; }
+
+  /**
+   * @param run
+   *          the run index.
+   * @return the index mode of the given run.
+   */
+  public IndexMode getRunMode(final int run) {
+    return _runModes[run];
+  }
+
+  /**
+   * @param run
+   *          the run index.
+   * @return the index of the first command of the given run.
+   */
+  public int getRunStart(final int run) {
+    return _runStarts[run];
+  }
+
+  /**
+   * @param run
+   *          the run index.
+   * @return the number of commands in the given run.
+   */
+  public int getRunLength(final int run) {
+    return (run + 1 < _runCount ? _runStarts[run + 1] : _commandCount) - _runStarts[run];
+  }
+}
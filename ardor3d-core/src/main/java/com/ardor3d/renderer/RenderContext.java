@@ -18,6 +18,7 @@ import com.ardor3d.framework.CanvasRenderer;
 import com.ardor3d.renderer.material.RenderMaterial;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.RenderStateBlock;
 import com.ardor3d.renderer.state.record.RendererRecord;
 import com.ardor3d.renderer.state.record.StateRecord;
 import com.ardor3d.renderer.texture.AbstractFBOTextureRenderer;
@@ -42,6 +43,13 @@ public class RenderContext {
   protected final EnumMap<RenderState.StateType, RenderState> _currentStates =
       new EnumMap<>(RenderState.StateType.class);
 
+  /** Changes each time a current state is replaced or cleared. */
+  protected int _currentStatesVersion;
+
+  /** The state block last applied, and the current states version right after applying it. */
+  protected RenderStateBlock _appliedStateBlock;
+  protected int _appliedStateBlockVersion;
+
   protected final EnumMap<RenderState.StateType, StateRecord> _stateRecords =
       new EnumMap<>(RenderState.StateType.class);
 
@@ -69,6 +77,9 @@ public class RenderContext {
 
   protected RenderPhase _renderPhase = RenderPhase.Scene;
 
+  /** Number of frames finished in this context, advanced by the canvas renderer after each. */
+  protected int _frameNumber;
+
   public RenderContext(final Object key, final ContextCapabilities caps) {
     this(key, caps, null);
   }
@@ -151,6 +162,7 @@ public class RenderContext {
    */
   public void clearCurrentStates() {
     _currentStates.clear();
+    _currentStatesVersion++;
   }
 
   /**
@@ -159,6 +171,7 @@ public class RenderContext {
    */
   public void clearCurrentState(final RenderState.StateType type) {
     _currentStates.remove(type);
+    _currentStatesVersion++;
   }
 
   public boolean hasEnforcedStates() {
@@ -182,7 +195,33 @@ public class RenderContext {
   public Object getContextKey() { return _contextKey; }
 
   public void setCurrentState(final StateType type, final RenderState state) {
-    _currentStates.put(type, state);
+    if (_currentStates.put(type, state) != state) {
+      _currentStatesVersion++;
+    }
+  }
+
+  /**
+   * @return a counter that changes each time a current state is replaced or cleared.
+   */
+  public int getCurrentStatesVersion() { return _currentStatesVersion; }
+
+  /**
+   * @return the state block whose states are current, or null if the current states have changed since
+   *         a block was last applied.
+   */
+  public RenderStateBlock getAppliedStateBlock() {
+    return _appliedStateBlockVersion == _currentStatesVersion ? _appliedStateBlock : null;
+  }
+
+  /**
+   * Remember the given block as applied - its states, or those enforced over them, being current.
+   *
+   * @param block
+   *          the block just applied.
+   */
+  public void setAppliedStateBlock(final RenderStateBlock block) {
+    _appliedStateBlock = block;
+    _appliedStateBlockVersion = _currentStatesVersion;
   }
 
   public Camera getCurrentCamera() { return _currentCamera; }
@@ -205,6 +244,20 @@ public class RenderContext {
 
   public void setRenderPhase(final RenderPhase renderPhase) { _renderPhase = renderPhase; }
 
+  /**
+   * @return the number of frames finished in this context. Work done once per frame, such as picking
+   *         lights, can compare this to tell when a new frame has begun.
+   */
+  public int getFrameNumber() { return _frameNumber; }
+
+  /**
+   * Mark the end of a frame. Called by canvas renderers once the scene has been drawn and flushed -
+   * not by render to texture passes, which happen within a frame.
+   */
+  public void nextFrame() {
+    _frameNumber++;
+  }
+
   /**
    * Saves the currently set states to a stack. Does not changes the currently enforced states.
    */
@@ -23,6 +23,7 @@ import com.ardor3d.renderer.material.IShaderUtils;
 import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.RenderStateBlock;
 import com.ardor3d.renderer.texture.ITextureUtils;
 import com.ardor3d.renderer.texture.TextureRenderer;
 import com.ardor3d.scenegraph.Spatial;
@@ -234,6 +235,18 @@ public interface Renderer {
 
   void drawElements(IndexBufferData<?> indices, int start, int count, IndexMode mode, int instanceCount);
 
+  /**
+   * Draw every command of the given draw-indirect commands, with one multi-draw call per run of
+   * commands sharing an index mode where the context supports it, or one draw call per command
+   * otherwise.
+   *
+   * @param indices
+   *          the bound index buffer, or null if the commands are not indexed.
+   * @param commands
+   *          the commands to draw.
+   */
+  void drawIndirect(IndexBufferData<?> indices, DrawIndirectCommands commands);
+
   FloatBuffer getMatrix(RenderMatrixType type);
 
   void setMatrix(RenderMatrixType type, FloatBuffer matrix);
@@ -278,6 +291,16 @@ public interface Renderer {
    */
   RenderState applyState(StateType type, RenderState state);
 
+  /**
+   * Apply every state of the given block, as {@link #applyState(StateType, RenderState)} would. State
+   * types whose state is unchanged since the block last applied in the current RenderContext - and
+   * that are quick compared, see {@link RenderState#_quickCompare} - are skipped without being visited.
+   *
+   * @param block
+   *          the states to apply.
+   */
+  void applyStates(RenderStateBlock block);
+
   /**
    * @param type
    *          the state type to grab
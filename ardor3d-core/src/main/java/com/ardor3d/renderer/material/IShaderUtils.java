@@ -17,6 +17,7 @@ import java.util.Map;
 
 import com.ardor3d.buffer.AbstractBufferData;
 import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.material.uniform.UniformBlock;
 import com.ardor3d.renderer.material.uniform.UniformRef;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.MeshData;
@@ -41,6 +42,41 @@ public interface IShaderUtils {
 
   void sendUniformValue(int location, UniformRef uniform, Mesh mesh);
 
+  /**
+   * @param programId
+   *          the program to look in.
+   * @param blockName
+   *          the name of the uniform block.
+   * @return the index of the named uniform block in the given program, or -1 if it has no such block.
+   *         Defaults to -1, for implementations without uniform buffer support.
+   */
+  default int findUniformBlockIndex(final int programId, final String blockName) {
+    return -1;
+  }
+
+  /**
+   * Point a program's uniform block at a uniform buffer binding point.
+   *
+   * @param programId
+   *          the program.
+   * @param blockIndex
+   *          the index of the block in the program.
+   * @param binding
+   *          the binding point.
+   */
+  default void setUniformBlockBinding(final int programId, final int blockIndex, final int binding) {}
+
+  /**
+   * Send the given block's data to its uniform buffer, if it changed, and bind the buffer to the block's
+   * binding point.
+   *
+   * @param block
+   *          the block to bind.
+   * @param context
+   *          the current render context.
+   */
+  default void bindUniformBlock(final UniformBlock block, final RenderContext context) {}
+
   /**
    * Attempts to delete a OpenGL buffer associated with this buffer that is relevant to the current
    * RenderContext.
@@ -16,10 +16,17 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.CharBuffer;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +39,7 @@ import com.ardor3d.util.Constants;
 import com.ardor3d.util.MaterialUtil;
 import com.ardor3d.util.resource.ResourceLocatorTool;
 import com.ardor3d.util.resource.ResourceSource;
+import com.google.common.collect.MapMaker;
 
 public enum MaterialManager {
 
@@ -42,7 +50,21 @@ public enum MaterialManager {
 
   private RenderMaterial _defaultMaterial = null;
   private RenderMaterial _defaultOccluderMaterial = null;
-  private final Map<ResourceSource, RenderMaterial> _materialCache = new HashMap<>();
+
+  /**
+   * Loaded materials. Values are weakly held, so materials no longer used by anything are dropped
+   * and loaded again if asked for.
+   */
+  private final Map<ResourceSource, RenderMaterial> _materialCache = new MapMaker().weakValues().makeMap();
+
+  /** Loads in progress, so that concurrent requests for the same material share one load. */
+  private final ConcurrentMap<ResourceSource, CompletableFuture<RenderMaterial>> _pendingLoads =
+      new ConcurrentHashMap<>();
+
+  private volatile Executor _loaderExecutor = ForkJoinPool.commonPool();
+
+  private final ShaderSourceCache _shaderSourceCache = new ShaderSourceCache();
+  private ShaderProgramBinaryCache _programBinaryCache = null;
 
   public void setDefaultMaterial(final RenderMaterial material) { _defaultMaterial = material; }
 
@@ -52,21 +74,134 @@ public enum MaterialManager {
 
   public RenderMaterial getDefaultOccluderMaterial() { return _defaultOccluderMaterial; }
 
+  /**
+   * @return the cache of shader text used when loading materials.
+   */
+  public ShaderSourceCache getShaderSourceCache() { return _shaderSourceCache; }
+
+  /**
+   * @param cache
+   *          an on disk cache of linked shader programs to use, or null (the default) to always
+   *          compile and link shaders.
+   */
+  public void setProgramBinaryCache(final ShaderProgramBinaryCache cache) { _programBinaryCache = cache; }
+
+  public ShaderProgramBinaryCache getProgramBinaryCache() { return _programBinaryCache; }
+
+  /**
+   * @param executor
+   *          the executor to load materials on for {@link #findMaterialAsync(String)} and
+   *          {@link #prefetchMaterials(Collection)}. Defaults to the common fork join pool.
+   */
+  public void setLoaderExecutor(final Executor executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor can not be null");
+    }
+    _loaderExecutor = executor;
+  }
+
+  public Executor getLoaderExecutor() { return _loaderExecutor; }
+
+  /**
+   * Find the material at the given url, loading it on the calling thread if it is not cached. If
+   * another thread is already loading it, waits for that load instead. Safe to call from any thread.
+   *
+   * @param materialUrl
+   *          the material url.
+   * @return the material, or null if it could not be found or loaded.
+   */
   public RenderMaterial findMaterial(final String materialUrl) {
     final ResourceSource key = ResourceLocatorTool.locateResource(ResourceLocatorTool.TYPE_MATERIAL, materialUrl);
     if (key == null) {
       return null;
     }
 
-    RenderMaterial mat = _materialCache.get(key);
-    if (mat == null) {
-      mat = YamlMaterialReader.load(key);
-      if (mat != null) {
-        _materialCache.put(key, mat);
+    try {
+      return requestMaterial(key).join();
+    } catch (final CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
       }
+      throw ex;
+    }
+  }
+
+  /**
+   * Find the material at the given url, loading it on our loader executor if it is not cached.
+   *
+   * @param materialUrl
+   *          the material url.
+   * @return a future completing with the material, or with null if it could not be found or loaded.
+   */
+  public CompletableFuture<RenderMaterial> findMaterialAsync(final String materialUrl) {
+    // locate and load in the one task, so the load never runs on the thread chaining the stages
+    return CompletableFuture.supplyAsync(() -> {
+      final ResourceSource key = ResourceLocatorTool.locateResource(ResourceLocatorTool.TYPE_MATERIAL, materialUrl);
+      return key != null ? requestMaterial(key) : CompletableFuture.<RenderMaterial> completedFuture(null);
+    }, _loaderExecutor).thenCompose(load -> load);
+  }
+
+  /**
+   * Start loading all of the given materials on our loader executor, so that later calls to
+   * {@link #findMaterial(String)} find them cached. Materials only stay cached while something holds
+   * on to them, so keep the results of the returned future if they may not be used right away.
+   *
+   * @param materialUrls
+   *          the material urls.
+   * @return a future completing with the materials, in the order of the given urls, once all are
+   *         loaded. Materials that could not be found or loaded are null.
+   */
+  public CompletableFuture<List<RenderMaterial>> prefetchMaterials(final Collection<String> materialUrls) {
+    final List<CompletableFuture<RenderMaterial>> loads = new ArrayList<>(materialUrls.size());
+    for (final String url : materialUrls) {
+      loads.add(findMaterialAsync(url));
+    }
+    return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()])).thenApply(v -> {
+      final List<RenderMaterial> materials = new ArrayList<>(loads.size());
+      for (final CompletableFuture<RenderMaterial> load : loads) {
+        materials.add(load.join());
+      }
+      return materials;
+    });
+  }
+
+  /**
+   * Forget all cached materials. Materials in use are not affected, but will be loaded again as new
+   * instances if asked for.
+   */
+  public void clearMaterialCache() {
+    _materialCache.clear();
+  }
+
+  private CompletableFuture<RenderMaterial> requestMaterial(final ResourceSource key) {
+    RenderMaterial mat = _materialCache.get(key);
+    if (mat != null) {
+      return CompletableFuture.completedFuture(mat);
+    }
+
+    // join any load already in progress
+    final CompletableFuture<RenderMaterial> load = new CompletableFuture<>();
+    final CompletableFuture<RenderMaterial> pending = _pendingLoads.putIfAbsent(key, load);
+    if (pending != null) {
+      return pending;
     }
 
-    return mat;
+    // we own the load - but another may have finished between our cache check and now.
+    try {
+      mat = _materialCache.get(key);
+      if (mat == null) {
+        mat = YamlMaterialReader.load(key);
+        if (mat != null) {
+          _materialCache.put(key, mat);
+        }
+      }
+      load.complete(mat);
+    } catch (final Throwable t) {
+      load.completeExceptionally(t);
+    } finally {
+      _pendingLoads.remove(key, load);
+    }
+    return load;
   }
 
   public MaterialTechnique chooseTechnique(final Mesh mesh, final RenderPhase phase) {
@@ -186,8 +321,19 @@ public enum MaterialManager {
       MaterialManager.logger.fine("loaded shader: " + sourceUrl);
     }
 
+    String text = MaterialManager.INSTANCE._shaderSourceCache.getResourceText(src, MaterialManager::readShaderText);
+
+    if (text != null && processImports) {
+      history.push(sourceUrl);
+      text = inflateShaderImports(text, history);
+      history.pop();
+    }
+
+    return text;
+  }
+
+  private static String readShaderText(final ResourceSource src) {
     final CharBuffer buf = CharBuffer.allocate(2048);
-    String text = null;
     try (final Reader reader = new InputStreamReader(src.openStream())) {
       final StringBuilder build = new StringBuilder();
       while (reader.read(buf) != -1) {
@@ -195,20 +341,47 @@ public enum MaterialManager {
         build.append(buf);
         buf.clear();
       }
-      text = build.toString();
+      return build.toString();
     } catch (final IOException ex) {
       MaterialManager.logger.logp(Level.SEVERE, MaterialManager.class.getName(), "getShaderText(String, boolean)",
-          "Failed to read a shader source: " + sourceUrl + " Error: " + ex.getMessage());
+          "Failed to read a shader source: " + src.getName() + " Error: " + ex.getMessage());
       ex.printStackTrace();
+      return null;
     }
+  }
 
-    if (text != null && processImports) {
-      history.push(sourceUrl);
-      text = inflateShaderImports(text, history);
-      history.pop();
-    }
+  /**
+   * Inflate the imports of the given shader text and apply the given injects, reusing the result of
+   * any earlier call with the same text and injects.
+   *
+   * @param shaderText
+   *          the shader text.
+   * @param injects
+   *          lines to inject after the version line, or null.
+   * @return the processed shader text.
+   */
+  public static String processShaderText(final String shaderText, final Iterable<String> injects) {
+    return MaterialManager.INSTANCE._shaderSourceCache.getProcessedSource(shaderText, injects,
+        text -> MaterialManager.inject(MaterialManager.inflateShaderImports(text), injects));
+  }
 
-    return text;
+  /**
+   * Load the shader at the given url, inflate its imports and apply the given injects, reusing the
+   * result of any earlier load of the same text and injects.
+   *
+   * @param sourceUrl
+   *          the shader resource url.
+   * @param injects
+   *          lines to inject after the version line, or null.
+   * @return the processed shader text, or null if the shader could not be found.
+   */
+  public static String loadShaderText(final String sourceUrl, final Iterable<String> injects) {
+    final String raw = MaterialManager.getShaderText(sourceUrl, false);
+    return MaterialManager.INSTANCE._shaderSourceCache.getProcessedSource(raw, injects, text -> {
+      final Stack<String> history = new Stack<>();
+      history.push(sourceUrl);
+      return MaterialManager.inject(MaterialManager.inflateShaderImports(text, history), injects);
+    });
   }
 
   public static String inject(String program, final Iterable<String> injects) {
@@ -12,6 +12,7 @@ package com.ardor3d.renderer.material;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RenderMaterial is a named collection of MaterialTechniques, intended to encapsulate different
@@ -19,8 +20,13 @@ import java.util.List;
  */
 public class RenderMaterial {
 
+  private static final AtomicInteger NEXT_SORT_ID = new AtomicInteger();
+
   protected String _name;
 
+  /** Small id, unique per material instance, used to group draws when sorting render buckets. */
+  protected final int _sortId = NEXT_SORT_ID.incrementAndGet();
+
   protected final List<MaterialTechnique> _techniques = new ArrayList<>();
 
   public List<MaterialTechnique> getTechniques() { return _techniques; }
@@ -33,6 +39,12 @@ public class RenderMaterial {
 
   public String getName() { return _name; }
 
+  /**
+   * @return an id assigned to this material at construction. Meshes sharing a material get the same
+   *         id, and so are drawn next to each other by {@link com.ardor3d.renderer.queue.OpaqueRenderBucket}.
+   */
+  public int getSortId() { return _sortId; }
+
   @Override
   public String toString() {
     return "RenderMaterial: " + getName();
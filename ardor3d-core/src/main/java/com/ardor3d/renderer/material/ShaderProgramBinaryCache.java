@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.renderer.ContextCapabilities;
+
+/**
+ * <p>
+ * An on disk cache of linked shader program binaries, as returned by the driver, so that programs
+ * seen in an earlier run can be loaded instead of compiled and linked again. Binaries are keyed by a
+ * hash of the program's shader sources and the driver's vendor, renderer and version strings, as a
+ * binary is only valid for the driver that made it. Each binary is kept in its own file in the cache
+ * directory.
+ * </p>
+ * <p>
+ * Set an instance on {@link MaterialManager#setProgramBinaryCache(ShaderProgramBinaryCache)} to use
+ * it. Renderers only use it when {@link ContextCapabilities#isProgramBinarySupported()}, and a
+ * binary the driver rejects is removed and compiled from source instead.
+ * </p>
+ */
+public class ShaderProgramBinaryCache {
+  private static final Logger logger = Logger.getLogger(ShaderProgramBinaryCache.class.getName());
+
+  /** Marks our files, and changes if their layout does. */
+  private static final int FILE_MAGIC = 0xA3D5B001;
+
+  private static final String FILE_SUFFIX = ".bin";
+
+  private final File _directory;
+
+  /**
+   * @param directory
+   *          the directory to keep binaries in. It is created if needed.
+   */
+  public ShaderProgramBinaryCache(final File directory) {
+    _directory = directory;
+  }
+
+  public File getDirectory() { return _directory; }
+
+  /**
+   * @param shaders
+   *          the shader sources of a program, by type.
+   * @param caps
+   *          the capabilities of the context the program is for.
+   * @return the key of the program's binary for the context's driver.
+   */
+  public static String computeKey(final Map<ShaderType, List<String>> shaders, final ContextCapabilities caps) {
+    final MessageDigest md = ShaderSourceCache.newDigest();
+    ShaderProgramBinaryCache.update(md, caps.getDisplayVendor());
+    ShaderProgramBinaryCache.update(md, caps.getDisplayRenderer());
+    ShaderProgramBinaryCache.update(md, caps.getDisplayVersion());
+    for (final ShaderType type : ShaderType.values()) {
+      final List<String> sources = shaders.get(type);
+      if (sources == null) {
+        continue;
+      }
+      ShaderProgramBinaryCache.update(md, type.name());
+      for (final String source : sources) {
+        ShaderProgramBinaryCache.update(md, source);
+      }
+    }
+    return ShaderSourceCache.toHex(md.digest());
+  }
+
+  private static void update(final MessageDigest md, final String text) {
+    if (text != null) {
+      md.update(text.getBytes(StandardCharsets.UTF_8));
+    }
+    md.update((byte) 0);
+  }
+
+  /**
+   * @param key
+   *          the program key.
+   * @return the binary stored for the given key, or null if there is none or it can not be read.
+   */
+  public ProgramBinary load(final String key) {
+    final File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try (final InputStream in = Files.newInputStream(file.toPath());
+        final DataInputStream data = new DataInputStream(in)) {
+      if (data.readInt() != ShaderProgramBinaryCache.FILE_MAGIC) {
+        return null;
+      }
+      final int format = data.readInt();
+      final int length = data.readInt();
+      if (length <= 0 || length > file.length()) {
+        return null;
+      }
+      final byte[] bytes = new byte[length];
+      data.readFully(bytes);
+
+      // drivers want the binary in native memory
+      final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+      binary.put(bytes).flip();
+      return new ProgramBinary(format, binary);
+    } catch (final IOException ex) {
+      ShaderProgramBinaryCache.logger.log(Level.WARNING, "Unable to read program binary: " + file, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Store a program binary, replacing any stored for the same key.
+   *
+   * @param key
+   *          the program key.
+   * @param format
+   *          the driver specific binary format.
+   * @param binary
+   *          the binary - the bytes between its position and limit are stored.
+   */
+  public void store(final String key, final int format, final ByteBuffer binary) {
+    final File file = getFile(key);
+    File temp = null;
+    try {
+      Files.createDirectories(_directory.toPath());
+
+      // write to a temp file first, so that a crash never leaves a partial binary behind
+      temp = File.createTempFile(key, ".tmp", _directory);
+      try (final OutputStream out = Files.newOutputStream(temp.toPath());
+          final DataOutputStream data = new DataOutputStream(out)) {
+        data.writeInt(ShaderProgramBinaryCache.FILE_MAGIC);
+        data.writeInt(format);
+        data.writeInt(binary.remaining());
+        final byte[] bytes = new byte[binary.remaining()];
+        binary.duplicate().get(bytes);
+        data.write(bytes);
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      temp = null;
+    } catch (final IOException ex) {
+      ShaderProgramBinaryCache.logger.log(Level.WARNING, "Unable to store program binary: " + file, ex);
+    } finally {
+      // don't leave the temp file behind if it was not moved into place
+      if (temp != null && temp.isFile() && !temp.delete()) {
+        ShaderProgramBinaryCache.logger.warning("Unable to remove temporary program binary: " + temp);
+      }
+    }
+  }
+
+  /**
+   * Remove the binary stored for the given key, for example because the driver rejected it.
+   *
+   * @param key
+   *          the program key.
+   */
+  public void remove(final String key) {
+    final File file = getFile(key);
+    if (file.isFile() && !file.delete()) {
+      ShaderProgramBinaryCache.logger.warning("Unable to remove program binary: " + file);
+    }
+  }
+
+  private File getFile(final String key) {
+    return new File(_directory, key + ShaderProgramBinaryCache.FILE_SUFFIX);
+  }
+
+  /**
+   * A driver specific program binary and its format.
+   */
+  public static class ProgramBinary {
+    private final int _format;
+    private final ByteBuffer _binary;
+
+    public ProgramBinary(final int format, final ByteBuffer binary) {
+      _format = format;
+      _binary = binary;
+    }
+
+    public int getFormat() { return _format; }
+
+    public ByteBuffer getBinary() { return _binary; }
+  }
+}
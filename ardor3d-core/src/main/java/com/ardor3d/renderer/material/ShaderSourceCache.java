@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.ardor3d.util.Ardor3dException;
+import com.ardor3d.util.resource.ResourceSource;
+
+/**
+ * <p>
+ * In memory cache of shader source text, used by {@link MaterialManager} so that materials sharing
+ * shader files and <code>@import</code> includes do not read and inflate them again for every pass.
+ * Two levels are kept:
+ * </p>
+ * <ul>
+ * <li>the raw text of shader resources, by resource.</li>
+ * <li>fully processed source - imports inflated and injects applied - by a hash of the unprocessed
+ * text and its injects.</li>
+ * </ul>
+ * <p>
+ * Entries are never evicted, as a shader set is usually small and fixed. Call {@link #clear()} if
+ * shader resources change on disk, for example when reloading shaders during development.
+ * </p>
+ */
+public class ShaderSourceCache {
+
+  private final ConcurrentMap<ResourceSource, String> _resourceText = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, String> _processed = new ConcurrentHashMap<>();
+
+  private final AtomicLong _hits = new AtomicLong();
+  private final AtomicLong _misses = new AtomicLong();
+
+  /**
+   * @param source
+   *          the shader resource.
+   * @param reader
+   *          reads the resource's text, if we do not have it yet. May return null on failure, in
+   *          which case nothing is cached.
+   * @return the raw text of the given shader resource.
+   */
+  public String getResourceText(final ResourceSource source, final Function<ResourceSource, String> reader) {
+    String text = _resourceText.get(source);
+    if (text == null) {
+      text = reader.apply(source);
+      if (text != null) {
+        _resourceText.putIfAbsent(source, text);
+      }
+    }
+    return text;
+  }
+
+  /**
+   * @param text
+   *          unprocessed shader text.
+   * @param injects
+   *          lines to inject after the version line, or null.
+   * @param processor
+   *          turns the text into its processed form, if we do not have it yet.
+   * @return the processed form of the given text and injects.
+   */
+  public String getProcessedSource(final String text, final Iterable<String> injects,
+      final Function<String, String> processor) {
+    if (text == null) {
+      return null;
+    }
+
+    final String key = ShaderSourceCache.hash(text, injects);
+    String processed = _processed.get(key);
+    if (processed != null) {
+      _hits.incrementAndGet();
+      return processed;
+    }
+
+    _misses.incrementAndGet();
+    processed = processor.apply(text);
+    if (processed != null) {
+      _processed.putIfAbsent(key, processed);
+    }
+    return processed;
+  }
+
+  /**
+   * Forget all cached text.
+   */
+  public void clear() {
+    _resourceText.clear();
+    _processed.clear();
+  }
+
+  /**
+   * @return the number of processed sources found in the cache.
+   */
+  public long getHitCount() { return _hits.get(); }
+
+  /**
+   * @return the number of processed sources that had to be made.
+   */
+  public long getMissCount() { return _misses.get(); }
+
+  /**
+   * @param text
+   *          some text.
+   * @param extras
+   *          additional lines to hash along with the text, or null.
+   * @return a hex encoded SHA-256 hash of the given text and lines.
+   */
+  public static String hash(final String text, final Iterable<String> extras) {
+    final MessageDigest md = ShaderSourceCache.newDigest();
+    md.update(text.getBytes(StandardCharsets.UTF_8));
+    if (extras != null) {
+      for (final String extra : extras) {
+        // separate entries so that moving text between them changes the hash
+        md.update((byte) 0);
+        md.update(extra.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return ShaderSourceCache.toHex(md.digest());
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException ex) {
+      // every java platform is required to support SHA-256
+      throw new Ardor3dException("SHA-256 not available", ex);
+    }
+  }
+
+  static String toHex(final byte[] bytes) {
+    final StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+}
@@ -17,8 +17,8 @@ import java.io.Reader;
 import java.lang.ref.ReferenceQueue;
 import java.nio.Buffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,9 +28,11 @@ import com.ardor3d.renderer.ContextManager;
 import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.material.uniform.Ardor3dStateProperty;
+import com.ardor3d.renderer.material.uniform.UniformBlock;
 import com.ardor3d.renderer.material.uniform.UniformRef;
 import com.ardor3d.renderer.material.uniform.UniformType;
 import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.RenderStateBlock;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.MeshData;
 import com.ardor3d.scenegraph.SceneIndexer;
@@ -56,7 +58,12 @@ public class TechniquePass {
   /** Information about the Uniforms we care about in this pass. */
   protected List<UniformRef> _uniforms = new ArrayList<>();
 
-  protected Map<UniformRef, Integer> _cachedLocations = new IdentityHashMap<>();
+  /** Names of the shared uniform blocks this pass binds - see {@link UniformBlock}. */
+  protected List<String> _uniformBlocks = new ArrayList<>();
+
+  /** Resolved uniform locations, one table per program this pass has been drawn with. */
+  protected int[] _tableProgramIds = new int[0];
+  protected UniformLocationTable[] _uniformTables = new UniformLocationTable[0];
 
   public int getProgramId(final RenderContext context) {
     if (_shaderIdCache != null) {
@@ -77,6 +84,13 @@ public class TechniquePass {
       _shaderIdCache = ContextValueReference.newReference(this, TechniquePass._shaderRefQueue);
     }
     _shaderIdCache.put(context.getSharableContextRef(), id);
+
+    // a new program, even one reusing an id, has new locations
+    for (int i = 0; i < _tableProgramIds.length; i++) {
+      if (_tableProgramIds[i] == id) {
+        _uniformTables[i] = new UniformLocationTable("", _uniforms);
+      }
+    }
   }
 
   public void setName(final String name) { _name = name; }
@@ -108,8 +122,29 @@ public class TechniquePass {
 
   public void addUniform(final UniformRef uniform) {
     _uniforms.add(uniform);
+
+    // our tables are index aligned with our uniforms, so start over
+    _tableProgramIds = new int[0];
+    _uniformTables = new UniformLocationTable[0];
   }
 
+  /**
+   * Have this pass bind the uniform block of the given name, as found on the current
+   * {@link SceneIndexer}, for each draw.
+   *
+   * @param blockName
+   *          the name of the block in shaders.
+   */
+  public void addUniformBlock(final String blockName) {
+    _uniformBlocks.add(blockName);
+
+    // block indices live in our tables too
+    _tableProgramIds = new int[0];
+    _uniformTables = new UniformLocationTable[0];
+  }
+
+  public List<String> getUniformBlocks() { return _uniformBlocks; }
+
   /**
    * Set the value of a particular shader uniform, by shaderVariableName (which should, in theory, be
    * unique)
@@ -216,38 +251,67 @@ public class TechniquePass {
 
     final IShaderUtils shaderUtils = renderer.getShaderUtils();
     final int programId = getProgramId(context);
-    for (int i = 0; i < _uniforms.size(); i++) {
-      setupUniform(mesh, shaderUtils, programId, _uniforms.get(i), "");
-    }
+    final UniformLocationTable table = getUniformTable(programId);
+    setupUniforms(mesh, shaderUtils, programId, table, _uniforms);
+    setupUniformBlocks(shaderUtils, programId, table, context);
   }
 
-  private void setupUniform(final Mesh mesh, final IShaderUtils shaderUtils, final int programId,
-      final UniformRef uniform, final String namePrepend) {
-    // If we are a UniformSupplier, pull uniforms out and set them up instead.
-    if (uniform.getType() == UniformType.UniformSupplier) {
-      final List<UniformRef> srcUniforms = getUniformsFromSupplier(uniform, mesh);
-      if (srcUniforms != null) {
-        final String prepend = namePrepend + uniform.getShaderVariableName() + ".";
-        for (int i = 0; i < srcUniforms.size(); i++) {
-          setupUniform(mesh, shaderUtils, programId, srcUniforms.get(i), prepend);
-        }
-      }
+  private void setupUniformBlocks(final IShaderUtils shaderUtils, final int programId,
+      final UniformLocationTable table, final RenderContext context) {
+    if (_uniformBlocks.isEmpty()) {
       return;
     }
 
-    // Set up non-bundle uniform
-    int location = _cachedLocations.containsKey(uniform) ? _cachedLocations.get(uniform) : uniform.getLocation();
-    if (location == Integer.MIN_VALUE) {
-      // Use the name to find our location
-      location = shaderUtils.findUniformLocation(programId, namePrepend + uniform.getShaderVariableName());
-      if (location < 0) {
-        return;
-      } else {
-        _cachedLocations.put(uniform, location);
+    final SceneIndexer si = SceneIndexer.getCurrent();
+    for (int i = 0, maxI = _uniformBlocks.size(); i < maxI; i++) {
+      final UniformBlock block = si != null ? si.getUniformBlock(_uniformBlocks.get(i)) : null;
+      if (block == null) {
+        continue;
+      }
+
+      final int blockIndex = table.getBlockIndex(i, block, shaderUtils, programId);
+      if (blockIndex >= 0) {
+        block.update();
+        shaderUtils.bindUniformBlock(block, context);
+      }
+    }
+  }
+
+  protected UniformLocationTable getUniformTable(final int programId) {
+    for (int i = 0; i < _tableProgramIds.length; i++) {
+      if (_tableProgramIds[i] == programId) {
+        return _uniformTables[i];
       }
     }
 
-    shaderUtils.sendUniformValue(location, uniform, mesh);
+    final UniformLocationTable table = new UniformLocationTable("", _uniforms);
+    _tableProgramIds = Arrays.copyOf(_tableProgramIds, _tableProgramIds.length + 1);
+    _uniformTables = Arrays.copyOf(_uniformTables, _uniformTables.length + 1);
+    _tableProgramIds[_tableProgramIds.length - 1] = programId;
+    _uniformTables[_uniformTables.length - 1] = table;
+    return table;
+  }
+
+  private void setupUniforms(final Mesh mesh, final IShaderUtils shaderUtils, final int programId,
+      final UniformLocationTable table, final List<UniformRef> uniforms) {
+    for (int i = 0, maxI = uniforms.size(); i < maxI; i++) {
+      final UniformRef uniform = uniforms.get(i);
+
+      // If we are a UniformSupplier, pull uniforms out and set them up instead.
+      if (uniform.getType() == UniformType.UniformSupplier) {
+        final List<UniformRef> srcUniforms = getUniformsFromSupplier(uniform, mesh);
+        if (srcUniforms != null) {
+          setupUniforms(mesh, shaderUtils, programId, table.getChild(i, uniform, srcUniforms), srcUniforms);
+        }
+        continue;
+      }
+
+      // Set up non-bundle uniform
+      final int location = table.getLocation(i, uniform, shaderUtils, programId);
+      if (location >= 0) {
+        shaderUtils.sendUniformValue(location, uniform, mesh);
+      }
+    }
   }
 
   private List<UniformRef> getUniformsFromSupplier(final UniformRef uniform, final Mesh mesh) {
@@ -297,8 +361,115 @@ public class TechniquePass {
   }
 
   protected void applyRenderStates(final Renderer renderer, final Mesh mesh) {
+    final RenderStateBlock block = mesh.getWorldRenderStateBlock();
+    if (block != null) {
+      renderer.applyStates(block);
+      return;
+    }
+
     for (final StateType type : StateType.values) {
       renderer.applyState(type, mesh.getWorldRenderState(type));
     }
   }
+
+  /**
+   * The uniform locations of a single program, index aligned with a list of uniforms, so that names
+   * are only built and looked up once per program instead of on every draw. Supplied uniforms get a
+   * child table for each shape - list of names - of uniforms supplied for them. For example, the
+   * uniforms of every point light share one table per light slot, whichever light is in the slot.
+   */
+  protected static class UniformLocationTable {
+    private static final int UNRESOLVED = Integer.MIN_VALUE;
+
+    private final String _prefix;
+    private final String[] _names;
+    private final int[] _locations;
+    private final UniformLocationTable[][] _children;
+    private int[] _blockIndices = new int[0];
+
+    UniformLocationTable(final String prefix, final List<UniformRef> uniforms) {
+      _prefix = prefix;
+      _names = new String[uniforms.size()];
+      for (int i = 0; i < _names.length; i++) {
+        _names[i] = uniforms.get(i).getShaderVariableName();
+      }
+      _locations = new int[_names.length];
+      Arrays.fill(_locations, UniformLocationTable.UNRESOLVED);
+      _children = new UniformLocationTable[_names.length][];
+    }
+
+    boolean matches(final List<UniformRef> uniforms) {
+      if (uniforms.size() != _names.length) {
+        return false;
+      }
+      for (int i = 0; i < _names.length; i++) {
+        if (!_names[i].equals(uniforms.get(i).getShaderVariableName())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return the location of the given uniform, or a negative value if the program does not use it.
+     */
+    int getLocation(final int index, final UniformRef uniform, final IShaderUtils shaderUtils, final int programId) {
+      // explicit locations win
+      if (uniform.getLocation() != Integer.MIN_VALUE) {
+        return uniform.getLocation();
+      }
+
+      int location = _locations[index];
+      if (location == UniformLocationTable.UNRESOLVED) {
+        // Use the name to find our location - remembering misses too
+        location = shaderUtils.findUniformLocation(programId, _prefix + uniform.getShaderVariableName());
+        _locations[index] = location;
+      }
+      return location;
+    }
+
+    /**
+     * @return the index of the given block in the program, or a negative value if the program does not
+     *         use it. The program's block is pointed at the block's binding point when first resolved.
+     */
+    int getBlockIndex(final int index, final UniformBlock block, final IShaderUtils shaderUtils,
+        final int programId) {
+      if (index >= _blockIndices.length) {
+        final int oldLength = _blockIndices.length;
+        _blockIndices = Arrays.copyOf(_blockIndices, index + 1);
+        Arrays.fill(_blockIndices, oldLength, _blockIndices.length, UniformLocationTable.UNRESOLVED);
+      }
+
+      int blockIndex = _blockIndices[index];
+      if (blockIndex == UniformLocationTable.UNRESOLVED) {
+        blockIndex = shaderUtils.findUniformBlockIndex(programId, block.getBlockName());
+        if (blockIndex >= 0) {
+          shaderUtils.setUniformBlockBinding(programId, blockIndex, block.getBinding());
+        }
+        _blockIndices[index] = blockIndex;
+      }
+      return blockIndex;
+    }
+
+    UniformLocationTable getChild(final int index, final UniformRef uniform, final List<UniformRef> supplied) {
+      final UniformLocationTable[] shapes = _children[index];
+      if (shapes != null) {
+        for (final UniformLocationTable shape : shapes) {
+          if (shape.matches(supplied)) {
+            return shape;
+          }
+        }
+      }
+
+      final UniformLocationTable child =
+          new UniformLocationTable(_prefix + uniform.getShaderVariableName() + ".", supplied);
+      if (shapes == null) {
+        _children[index] = new UniformLocationTable[] {child};
+      } else {
+        _children[index] = Arrays.copyOf(shapes, shapes.length + 1);
+        _children[index][shapes.length] = child;
+      }
+      return child;
+    }
+  }
 }
@@ -248,6 +248,9 @@ public class YamlMaterialReader {
     // parse our uniforms
     readUniforms(properties.get("uniforms"), pass);
 
+    // parse our shared uniform blocks
+    readUniformBlocks(properties.get("blocks"), pass);
+
     return pass;
   }
 
@@ -310,8 +313,7 @@ public class YamlMaterialReader {
     // ****** HANDLE INLINE PROGRAM IF ANY
     if (program != null) {
       // inflate any import statements we find
-      final String text = MaterialManager.inflateShaderImports(program);
-      rVal.add(MaterialManager.inject(text, injects));
+      rVal.add(MaterialManager.processShaderText(program, injects));
       return rVal;
     }
 
@@ -325,10 +327,7 @@ public class YamlMaterialReader {
     }
 
     // walk through our programs, read them and inject defines, if the program starts with #version
-    sources.forEach((final String source) -> {
-      final String text = MaterialManager.getShaderText(source, true);
-      rVal.add(MaterialManager.inject(text, injects));
-    });
+    sources.forEach((final String source) -> rVal.add(MaterialManager.loadShaderText(source, injects)));
 
     return rVal;
   }
@@ -408,6 +407,22 @@ public class YamlMaterialReader {
     }
   }
 
+  private static void readUniformBlocks(final Object doc, final TechniquePass pass) {
+    if (doc == null) {
+      return;
+    }
+
+    final List<Object> items = getList(doc, false);
+    if (items == null) {
+      pass.addUniformBlock(getString(doc));
+      return;
+    }
+
+    for (final Object item : items) {
+      pass.addUniformBlock(getString(item));
+    }
+  }
+
   private static UniformRef readUniform(final Object doc, final TechniquePass pass) {
     // doc needs to be a Map here
     final Map<String, Object> properties = getMap(doc, true);
@@ -521,6 +536,12 @@ public class YamlMaterialReader {
         pass.addUniform(new UniformRef(LightManager.DefaultPropertyKey, UniformType.UniformSupplier,
             UniformSource.Ardor3dState, Ardor3dStateProperty.LightProperties, null, null));
         return;
+      case "lightIndices":
+        for (int i = 0; i < LightManager.MAX_LIGHTS; i++) {
+          pass.addUniform(new UniformRef("lightIndices[" + i + "]", UniformType.Int1, UniformSource.Ardor3dState,
+              Ardor3dStateProperty.LightBlockIndex, i, -1));
+        }
+        return;
       case "textureMatrix0":
         pass.addUniform(new UniformRef(Texture.KEY_TextureMatrix0, UniformType.Matrix4x4, UniformSource.SpatialProperty,
             Texture.KEY_TextureMatrix0, null, Matrix4.IDENTITY));
@@ -47,6 +47,12 @@ public enum Ardor3dStateProperty {
    */
   ShadowTexture,
 
+  /**
+   * Int index, within the current LightManager's light uniform block, of a light in the current
+   * selection - or -1 for none. The light index comes from the extra field, as for Light.
+   */
+  LightBlockIndex,
+
   /**
    * Current global ambient set on the current LightManager (from current SceneIndexer).
    */
@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material.uniform;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.math.type.ReadOnlyMatrix3;
+import com.ardor3d.math.type.ReadOnlyMatrix4;
+import com.ardor3d.math.type.ReadOnlyVector2;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.math.type.ReadOnlyVector4;
+
+/**
+ * <p>
+ * Describes the memory layout of a uniform block, or of a struct within one, following the std140
+ * rules of the GLSL spec. Members are added in declaration order and are given the same offsets a
+ * <code>layout(std140)</code> block in a shader would give them, so values can be packed into a
+ * buffer with {@link #write(ByteBuffer, int, UniformType, Object)} and uploaded as is.
+ * </p>
+ * <p>
+ * In short, std140 aligns scalars to 4 bytes, vec2 to 8 and vec3/vec4 to 16 bytes. Array elements,
+ * matrix columns and structs are aligned to 16 bytes, with their size rounded up to a multiple of
+ * 16.
+ * </p>
+ */
+public class Std140Layout {
+
+  private final Map<String, Member> _members = new LinkedHashMap<>();
+  private int _size;
+
+  /**
+   * Add a single value member.
+   *
+   * @param name
+   *          the member name.
+   * @param type
+   *          the member type.
+   * @return this layout, for chaining.
+   */
+  public Std140Layout add(final String name, final UniformType type) {
+    final int offset = Std140Layout.align(_size, Std140Layout.getAlignment(type));
+    return addMember(new Member(name, type, null, offset, 1, 0), offset + Std140Layout.getSize(type));
+  }
+
+  /**
+   * Add an array member.
+   *
+   * @param name
+   *          the member name.
+   * @param type
+   *          the element type.
+   * @param count
+   *          the number of elements.
+   * @return this layout, for chaining.
+   */
+  public Std140Layout addArray(final String name, final UniformType type, final int count) {
+    final int stride = Std140Layout.align(Std140Layout.getSize(type), 16);
+    final int offset = Std140Layout.align(_size, 16);
+    return addMember(new Member(name, type, null, offset, count, stride), offset + stride * count);
+  }
+
+  /**
+   * Add a struct member, or an array of structs.
+   *
+   * @param name
+   *          the member name.
+   * @param struct
+   *          the layout of the struct.
+   * @param count
+   *          the number of elements, 1 for a single struct.
+   * @return this layout, for chaining.
+   */
+  public Std140Layout addStruct(final String name, final Std140Layout struct, final int count) {
+    final int stride = struct.getSize();
+    final int offset = Std140Layout.align(_size, 16);
+    return addMember(new Member(name, null, struct, offset, count, stride), offset + stride * count);
+  }
+
+  private Std140Layout addMember(final Member member, final int end) {
+    if (_members.putIfAbsent(member._name, member) != null) {
+      throw new IllegalArgumentException("Duplicate member: " + member._name);
+    }
+    _size = end;
+    return this;
+  }
+
+  /**
+   * @return the size in bytes of a buffer holding this layout. As std140 structs are padded to 16
+   *         bytes, this is also the stride of arrays of this layout.
+   */
+  public int getSize() { return Std140Layout.align(_size, 16); }
+
+  public boolean hasMember(final String name) {
+    return _members.containsKey(name);
+  }
+
+  /**
+   * @param name
+   *          the member name.
+   * @return the byte offset of the given member, or of its first element if it is an array.
+   */
+  public int getOffset(final String name) {
+    return getMember(name)._offset;
+  }
+
+  /**
+   * @param name
+   *          the member name.
+   * @return the type of the given member, or null if it is a struct.
+   */
+  public UniformType getType(final String name) {
+    return getMember(name)._type;
+  }
+
+  /**
+   * @param name
+   *          the member name.
+   * @return the layout of the given struct member, or null if it is not a struct.
+   */
+  public Std140Layout getStruct(final String name) {
+    return getMember(name)._struct;
+  }
+
+  /**
+   * @param name
+   *          the member name.
+   * @return the number of elements of the given member, 1 if it is not an array.
+   */
+  public int getCount(final String name) {
+    return getMember(name)._count;
+  }
+
+  /**
+   * @param name
+   *          the member name.
+   * @return the byte distance between elements of the given array member.
+   */
+  public int getArrayStride(final String name) {
+    return getMember(name)._stride;
+  }
+
+  private Member getMember(final String name) {
+    final Member member = _members.get(name);
+    if (member == null) {
+      throw new IllegalArgumentException("Unknown member: " + name);
+    }
+    return member;
+  }
+
+  /**
+   * Write a single value in its std140 form.
+   *
+   * @param store
+   *          the buffer to write to. Its position is not changed.
+   * @param offset
+   *          the byte offset to write at.
+   * @param type
+   *          the type of the value in the shader.
+   * @param value
+   *          the value - a Number, Boolean, Enum (as its ordinal), math type or primitive array
+   *          matching the given type. Null writes zeros.
+   */
+  public static void write(final ByteBuffer store, final int offset, final UniformType type, final Object value) {
+    if (value == null) {
+      for (int i = 0, maxI = Std140Layout.getSize(type); i < maxI; i++) {
+        store.put(offset + i, (byte) 0);
+      }
+      return;
+    }
+
+    switch (type) {
+      case Float1:
+        store.putFloat(offset, ((Number) value).floatValue());
+        return;
+      case Float2:
+      case Float3:
+      case Float4:
+        Std140Layout.writeFloats(store, offset, Std140Layout.getComponents(type), value);
+        return;
+      case Int1:
+      case UInt1:
+        store.putInt(offset, Std140Layout.toInt(value));
+        return;
+      case Int2:
+      case Int3:
+      case Int4:
+      case UInt2:
+      case UInt3:
+      case UInt4: {
+        final int[] values = (int[]) value;
+        for (int i = 0, maxI = Std140Layout.getComponents(type); i < maxI; i++) {
+          store.putInt(offset + i * 4, values[i]);
+        }
+        return;
+      }
+      case Matrix3x3:
+        if (value instanceof ReadOnlyMatrix3) {
+          final ReadOnlyMatrix3 mat = (ReadOnlyMatrix3) value;
+          for (int col = 0; col < 3; col++) {
+            for (int row = 0; row < 3; row++) {
+              store.putFloat(offset + col * 16 + row * 4, mat.getValuef(row, col));
+            }
+          }
+        } else {
+          // column major
+          final float[] values = (float[]) value;
+          for (int i = 0; i < 9; i++) {
+            store.putFloat(offset + i / 3 * 16 + i % 3 * 4, values[i]);
+          }
+        }
+        return;
+      case Matrix4x4:
+        if (value instanceof ReadOnlyMatrix4) {
+          final ReadOnlyMatrix4 mat = (ReadOnlyMatrix4) value;
+          for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+              store.putFloat(offset + col * 16 + row * 4, mat.getValuef(row, col));
+            }
+          }
+        } else {
+          // column major
+          final float[] values = (float[]) value;
+          for (int i = 0; i < 16; i++) {
+            store.putFloat(offset + i * 4, values[i]);
+          }
+        }
+        return;
+      default:
+        throw new IllegalArgumentException("Unsupported std140 type: " + type);
+    }
+  }
+
+  private static void writeFloats(final ByteBuffer store, final int offset, final int components, final Object value) {
+    if (value instanceof ReadOnlyVector3) {
+      final ReadOnlyVector3 vec = (ReadOnlyVector3) value;
+      store.putFloat(offset, vec.getXf()).putFloat(offset + 4, vec.getYf());
+      if (components > 2) {
+        store.putFloat(offset + 8, vec.getZf());
+      }
+    } else if (value instanceof ReadOnlyColorRGBA) {
+      final ReadOnlyColorRGBA color = (ReadOnlyColorRGBA) value;
+      store.putFloat(offset, color.getRed()).putFloat(offset + 4, color.getGreen());
+      if (components > 2) {
+        store.putFloat(offset + 8, color.getBlue());
+      }
+      if (components > 3) {
+        store.putFloat(offset + 12, color.getAlpha());
+      }
+    } else if (value instanceof ReadOnlyVector2) {
+      final ReadOnlyVector2 vec = (ReadOnlyVector2) value;
+      store.putFloat(offset, vec.getXf()).putFloat(offset + 4, vec.getYf());
+    } else if (value instanceof ReadOnlyVector4) {
+      final ReadOnlyVector4 vec = (ReadOnlyVector4) value;
+      store.putFloat(offset, vec.getXf()).putFloat(offset + 4, vec.getYf());
+      if (components > 2) {
+        store.putFloat(offset + 8, vec.getZf());
+      }
+      if (components > 3) {
+        store.putFloat(offset + 12, vec.getWf());
+      }
+    } else {
+      final float[] values = (float[]) value;
+      for (int i = 0; i < components; i++) {
+        store.putFloat(offset + i * 4, values[i]);
+      }
+    }
+  }
+
+  private static int toInt(final Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).intValue();
+    }
+    if (value instanceof Boolean) {
+      return ((Boolean) value).booleanValue() ? 1 : 0;
+    }
+    if (value instanceof Enum<?>) {
+      return ((Enum<?>) value).ordinal();
+    }
+    throw new IllegalArgumentException("Not an int value: " + value);
+  }
+
+  /**
+   * @return the std140 base alignment of a single value of the given type.
+   */
+  public static int getAlignment(final UniformType type) {
+    switch (type) {
+      case Float1:
+      case Int1:
+      case UInt1:
+        return 4;
+      case Float2:
+      case Int2:
+      case UInt2:
+        return 8;
+      case Float3:
+      case Float4:
+      case Int3:
+      case Int4:
+      case UInt3:
+      case UInt4:
+      case Matrix3x3:
+      case Matrix4x4:
+        return 16;
+      default:
+        throw new IllegalArgumentException("Unsupported std140 type: " + type);
+    }
+  }
+
+  /**
+   * @return the size in bytes of a single value of the given type, not counting trailing padding.
+   */
+  public static int getSize(final UniformType type) {
+    switch (type) {
+      case Matrix3x3:
+        // three vec4 aligned columns
+        return 48;
+      case Matrix4x4:
+        return 64;
+      default:
+        // throws for types we do not support
+        Std140Layout.getAlignment(type);
+        return Std140Layout.getComponents(type) * 4;
+    }
+  }
+
+  private static int getComponents(final UniformType type) {
+    switch (type) {
+      case Float2:
+      case Int2:
+      case UInt2:
+        return 2;
+      case Float3:
+      case Int3:
+      case UInt3:
+        return 3;
+      case Float4:
+      case Int4:
+      case UInt4:
+        return 4;
+      default:
+        return 1;
+    }
+  }
+
+  private static int align(final int offset, final int alignment) {
+    return (offset + alignment - 1) / alignment * alignment;
+  }
+
+  private static class Member {
+    final String _name;
+    final UniformType _type;
+    final Std140Layout _struct;
+    final int _offset;
+    final int _count;
+    final int _stride;
+
+    Member(final String name, final UniformType type, final Std140Layout struct, final int offset, final int count,
+        final int stride) {
+      _name = name;
+      _type = type;
+      _struct = struct;
+      _offset = offset;
+      _count = count;
+      _stride = stride;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material.uniform;
+
+import java.nio.ByteBuffer;
+
+import com.ardor3d.buffer.AbstractBufferData.VBOAccessMode;
+import com.ardor3d.buffer.ByteBufferData;
+
+/**
+ * <p>
+ * A std140 packed uniform buffer, shared by every program that declares a uniform block of the same
+ * name. Values are written once into our buffer - typically once per frame - instead of being sent
+ * to each program on each draw. The buffer is bound to a fixed binding point, and passes that list the
+ * block's name (under <code>blocks</code> in material yaml) point their program's block at it.
+ * </p>
+ * <p>
+ * Subclasses fill the buffer in {@link #update()}, which is called before every bind and should
+ * return quickly when nothing changed.
+ * </p>
+ */
+public abstract class UniformBlock {
+
+  protected final String _blockName;
+  protected final int _binding;
+  protected final Std140Layout _layout;
+  protected final ByteBufferData _data;
+
+  /**
+   * @param blockName
+   *          the name of the uniform block in shaders.
+   * @param binding
+   *          the uniform buffer binding point to use.
+   * @param layout
+   *          the layout of the block.
+   */
+  protected UniformBlock(final String blockName, final int binding, final Std140Layout layout) {
+    _blockName = blockName;
+    _binding = binding;
+    _layout = layout;
+    _data = new ByteBufferData(layout.getSize());
+    _data.setVboAccessMode(VBOAccessMode.StreamDraw);
+  }
+
+  public String getBlockName() { return _blockName; }
+
+  public int getBinding() { return _binding; }
+
+  public Std140Layout getLayout() { return _layout; }
+
+  /**
+   * @return the data of this block, as uploaded to the uniform buffer.
+   */
+  public ByteBufferData getData() { return _data; }
+
+  /**
+   * Bring our data up to date, if needed. Called before binding the block for a draw.
+   */
+  public abstract void update();
+
+  /**
+   * Flag our data to be sent to the card again.
+   */
+  protected void markDirty() {
+    _data.markDirty();
+  }
+
+  protected ByteBuffer getBuffer() { return _data.getBuffer(); }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material.uniform;
+
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ardor3d.util.Constants;
+import com.ardor3d.util.stat.StatCollector;
+import com.ardor3d.util.stat.StatType;
+
+/**
+ * Keeps a shadow copy of the uniform values last sent to each shader program, by uniform location, so
+ * that shader utils can skip sending values a program already has. Values are compared by their raw
+ * bits, element by element.
+ * <p>
+ * One cache is kept per render context, in its {@link com.ardor3d.renderer.state.record.RendererRecord
+ * RendererRecord}. Uniform values are program state, so a program's entries stay valid while other
+ * programs are in use, but must be dropped when a program id is (re)created.
+ * </p>
+ */
+public class UniformValueCache {
+
+  /** Locations at or above this are not tracked, and always sent. */
+  public static final int MAX_TRACKED_LOCATION = 4096;
+
+  private final Map<Integer, long[][]> _programs = new HashMap<>();
+
+  private int _lastProgramId = Integer.MIN_VALUE;
+  private long[][] _lastProgram;
+
+  private long _uploads;
+  private long _skips;
+
+  /**
+   * Check a uniform value against the value last sent to the given program and location, remembering
+   * it if it differs. The buffer's position and limit are not modified.
+   *
+   * @param programId
+   *          the program the value is for.
+   * @param location
+   *          the location of the uniform in the program.
+   * @param value
+   *          the value about to be sent - the elements between its position and limit are compared.
+   * @return true if the value must be sent, false if the program already has it.
+   */
+  public boolean update(final int programId, final int location, final Buffer value) {
+    if (location < 0 || location >= UniformValueCache.MAX_TRACKED_LOCATION) {
+      return countUpload();
+    }
+
+    long[][] program = _lastProgram;
+    if (programId != _lastProgramId) {
+      program = _programs.get(programId);
+      if (program == null) {
+        program = new long[Math.max(16, location + 1)][];
+        _programs.put(programId, program);
+      }
+      _lastProgramId = programId;
+      _lastProgram = program;
+    }
+    if (location >= program.length) {
+      program = Arrays.copyOf(program, Math.max(location + 1, program.length * 2));
+      _programs.put(programId, program);
+      _lastProgram = program;
+    }
+
+    final int start = value.position();
+    final int count = value.remaining();
+    long[] shadow = program[location];
+    if (shadow == null || shadow.length != count) {
+      shadow = new long[count];
+      program[location] = shadow;
+      UniformValueCache.copy(value, start, count, shadow);
+      return countUpload();
+    }
+
+    boolean changed = false;
+    if (value instanceof FloatBuffer) {
+      final FloatBuffer buffer = (FloatBuffer) value;
+      for (int i = 0; i < count; i++) {
+        final long bits = Float.floatToRawIntBits(buffer.get(start + i));
+        changed |= shadow[i] != bits;
+        shadow[i] = bits;
+      }
+    } else if (value instanceof IntBuffer) {
+      final IntBuffer buffer = (IntBuffer) value;
+      for (int i = 0; i < count; i++) {
+        final long bits = buffer.get(start + i);
+        changed |= shadow[i] != bits;
+        shadow[i] = bits;
+      }
+    } else if (value instanceof DoubleBuffer) {
+      final DoubleBuffer buffer = (DoubleBuffer) value;
+      for (int i = 0; i < count; i++) {
+        final long bits = Double.doubleToRawLongBits(buffer.get(start + i));
+        changed |= shadow[i] != bits;
+        shadow[i] = bits;
+      }
+    } else {
+      // not a type we know how to compare
+      program[location] = null;
+      return countUpload();
+    }
+
+    if (changed) {
+      return countUpload();
+    }
+
+    _skips++;
+    if (Constants.stats) {
+      StatCollector.addStat(StatType.STAT_UNIFORM_SKIPS, 1);
+    }
+    return false;
+  }
+
+  private boolean countUpload() {
+    _uploads++;
+    if (Constants.stats) {
+      StatCollector.addStat(StatType.STAT_UNIFORM_UPLOADS, 1);
+    }
+    return true;
+  }
+
+  private static void copy(final Buffer value, final int start, final int count, final long[] store) {
+    if (value instanceof FloatBuffer) {
+      for (int i = 0; i < count; i++) {
+        store[i] = Float.floatToRawIntBits(((FloatBuffer) value).get(start + i));
+      }
+    } else if (value instanceof IntBuffer) {
+      for (int i = 0; i < count; i++) {
+        store[i] = ((IntBuffer) value).get(start + i);
+      }
+    } else if (value instanceof DoubleBuffer) {
+      for (int i = 0; i < count; i++) {
+        store[i] = Double.doubleToRawLongBits(((DoubleBuffer) value).get(start + i));
+      }
+    }
+  }
+
+  /**
+   * Forget the values sent to the given program, for example because its id was reused.
+   *
+   * @param programId
+   *          the program id.
+   */
+  public void invalidateProgram(final int programId) {
+    _programs.remove(programId);
+    if (_lastProgramId == programId) {
+      _lastProgramId = Integer.MIN_VALUE;
+      _lastProgram = null;
+    }
+  }
+
+  /**
+   * Forget all values sent to all programs.
+   */
+  public void invalidate() {
+    _programs.clear();
+    _lastProgramId = Integer.MIN_VALUE;
+    _lastProgram = null;
+  }
+
+  /**
+   * @return the number of values that had to be sent since this cache was created.
+   */
+  public long getUploadCount() { return _uploads; }
+
+  /**
+   * @return the number of values skipped since this cache was created.
+   */
+  public long getSkipCount() { return _skips; }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.occlusion;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * A small software depth buffer for occlusion culling. Triangles are given in clip space, clipped
+ * against the near plane and queued with {@link #addTriangle}; {@link #rasterize()} then writes their
+ * nearest depths, sampled at pixel centers, and builds a hierarchical Z level holding the farthest
+ * depth of each {@link #TILE_SIZE} square tile. {@link #isOccluded} tests a screen rectangle at a
+ * given nearest depth against the tiles first, and against single pixels only where a tile cannot
+ * decide.
+ * </p>
+ * <p>
+ * Depths are normalized device z, -1 at the near plane and 1 at the far plane, which is affine in
+ * screen space so it can be interpolated without a perspective divide per pixel. Rasterization may be
+ * split into bands of tile rows run on a {@link ForkJoinPool}; bands write disjoint rows, so the
+ * result is the same as a serial run.
+ * </p>
+ */
+public class DepthRasterizer {
+
+  /** Side of the square tiles of the hierarchical Z level, in pixels. */
+  public static final int TILE_SIZE = 8;
+
+  protected final int _width, _height;
+  protected final int _tilesX, _tilesY;
+  protected final float[] _depth;
+  protected final float[] _tileMax;
+
+  /** Queued screen space triangles, as x, y, z for each of three vertices. */
+  protected float[] _triangles = new float[9 * 256];
+  protected int _triangleCount;
+
+  protected ForkJoinPool _pool;
+
+  // scratch for near plane clipping, in clip space x, y, z, w
+  private final double[] _in = new double[16];
+  private final double[] _out = new double[20];
+
+  /**
+   * @param width
+   *          the width of the buffer in pixels, rounded up to a multiple of {@link #TILE_SIZE}.
+   * @param height
+   *          the height of the buffer in pixels, rounded up to a multiple of {@link #TILE_SIZE}.
+   */
+  public DepthRasterizer(final int width, final int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("width and height must be > 0");
+    }
+    _tilesX = (width + DepthRasterizer.TILE_SIZE - 1) / DepthRasterizer.TILE_SIZE;
+    _tilesY = (height + DepthRasterizer.TILE_SIZE - 1) / DepthRasterizer.TILE_SIZE;
+    _width = _tilesX * DepthRasterizer.TILE_SIZE;
+    _height = _tilesY * DepthRasterizer.TILE_SIZE;
+    _depth = new float[_width * _height];
+    _tileMax = new float[_tilesX * _tilesY];
+    clear();
+  }
+
+  public int getWidth() { return _width; }
+
+  public int getHeight() { return _height; }
+
+  /**
+   * @return the pool rasterization is split over, or null to rasterize on the calling thread.
+   */
+  public ForkJoinPool getPool() { return _pool; }
+
+  public void setPool(final ForkJoinPool pool) { _pool = pool; }
+
+  /**
+   * @return the number of triangles queued since the last clear, after near plane clipping.
+   */
+  public int getTriangleCount() { return _triangleCount; }
+
+  /**
+   * Reset all depths to the far plane and drop any queued triangles.
+   */
+  public void clear() {
+    Arrays.fill(_depth, 1f);
+    Arrays.fill(_tileMax, 1f);
+    _triangleCount = 0;
+  }
+
+  /**
+   * @param x
+   *          the pixel column.
+   * @param y
+   *          the pixel row, 0 at the bottom.
+   * @return the depth at the given pixel, as of the last {@link #rasterize()}.
+   */
+  public float getDepth(final int x, final int y) {
+    return _depth[y * _width + x];
+  }
+
+  /**
+   * Queue a triangle, given by the clip space coordinates of its vertices. Parts in front of the near
+   * plane are clipped away.
+   */
+  public void addTriangle(final double x0, final double y0, final double z0, final double w0, final double x1,
+      final double y1, final double z1, final double w1, final double x2, final double y2, final double z2,
+      final double w2) {
+    final double[] in = _in;
+    in[0] = x0;
+    in[1] = y0;
+    in[2] = z0;
+    in[3] = w0;
+    in[4] = x1;
+    in[5] = y1;
+    in[6] = z1;
+    in[7] = w1;
+    in[8] = x2;
+    in[9] = y2;
+    in[10] = z2;
+    in[11] = w2;
+
+    // keep z >= -w, the visible side of the near plane
+    final double d0 = z0 + w0, d1 = z1 + w1, d2 = z2 + w2;
+    if (d0 >= 0 && d1 >= 0 && d2 >= 0) {
+      queue(in, 0, 4, 8);
+      return;
+    }
+    if (d0 < 0 && d1 < 0 && d2 < 0) {
+      return;
+    }
+
+    int count = 0;
+    final double[] out = _out;
+    for (int i = 0; i < 3; i++) {
+      final int a = i * 4, b = (i + 1) % 3 * 4;
+      final double da = in[a + 2] + in[a + 3], db = in[b + 2] + in[b + 3];
+      if (da >= 0) {
+        System.arraycopy(in, a, out, count * 4, 4);
+        count++;
+      }
+      if (da >= 0 != db >= 0) {
+        final double t = da / (da - db);
+        for (int c = 0; c < 4; c++) {
+          out[count * 4 + c] = in[a + c] + (in[b + c] - in[a + c]) * t;
+        }
+        count++;
+      }
+    }
+    for (int i = 2; i < count; i++) {
+      queue(out, 0, (i - 1) * 4, i * 4);
+    }
+  }
+
+  /** Project a clipped triangle to the screen and queue it. */
+  private void queue(final double[] verts, final int a, final int b, final int c) {
+    if (_triangleCount * 9 == _triangles.length) {
+      _triangles = Arrays.copyOf(_triangles, _triangles.length * 2);
+    }
+    final int base = _triangleCount * 9;
+    project(verts, a, base);
+    project(verts, b, base + 3);
+    project(verts, c, base + 6);
+    _triangleCount++;
+  }
+
+  private void project(final double[] verts, final int v, final int store) {
+    // a vertex right on the near plane may have w = 0 if the projection is unusual
+    final double w = Math.max(verts[v + 3], 1e-12);
+    _triangles[store] = (float) ((verts[v] / w + 1) * 0.5 * _width);
+    _triangles[store + 1] = (float) ((verts[v + 1] / w + 1) * 0.5 * _height);
+    _triangles[store + 2] = (float) (verts[v + 2] / w);
+  }
+
+  /**
+   * Rasterize all queued triangles, then rebuild the hierarchical Z level. Queued triangles are kept
+   * until the next {@link #clear()}.
+   */
+  public void rasterize() {
+    if (_pool == null || _tilesY == 1) {
+      for (int band = 0; band < _tilesY; band++) {
+        rasterizeBand(band);
+      }
+    } else {
+      _pool.submit(() -> IntStream.range(0, _tilesY).parallel().forEach(this::rasterizeBand)).join();
+    }
+  }
+
+  /**
+   * Rasterize the queued triangles into one row of tiles, and update those tiles' farthest depth.
+   */
+  protected void rasterizeBand(final int band) {
+    final int minRow = band * DepthRasterizer.TILE_SIZE;
+    final int maxRow = minRow + DepthRasterizer.TILE_SIZE - 1;
+    final float[] tris = _triangles;
+    for (int t = 0, maxT = _triangleCount * 9; t < maxT; t += 9) {
+      rasterizeTriangle(tris[t], tris[t + 1], tris[t + 2], tris[t + 3], tris[t + 4], tris[t + 5], tris[t + 6],
+          tris[t + 7], tris[t + 8], minRow, maxRow);
+    }
+
+    for (int tx = 0; tx < _tilesX; tx++) {
+      float max = -1f;
+      for (int y = minRow; y <= maxRow; y++) {
+        for (int i = y * _width + tx * DepthRasterizer.TILE_SIZE, maxI = i + DepthRasterizer.TILE_SIZE; i < maxI; i++) {
+          max = Math.max(max, _depth[i]);
+        }
+      }
+      _tileMax[band * _tilesX + tx] = max;
+    }
+  }
+
+  private void rasterizeTriangle(final float x0, final float y0, final float z0, final float x1, final float y1,
+      final float z1, final float x2, final float y2, final float z2, final int minRow, final int maxRow) {
+    // rows whose centers may be covered, clamped to the band - most triangles miss most bands
+    final int startY = Math.max(minRow, (int) Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f));
+    final int endY = Math.min(maxRow, (int) Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f));
+    if (startY > endY) {
+      return;
+    }
+
+    // twice the signed area - both windings are drawn, so occluders need no consistent winding
+    final float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+    if (area == 0 || Float.isNaN(area)) {
+      return;
+    }
+
+    // columns likewise, clamped to the screen
+    final int startX = Math.max(0, (int) Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f));
+    final int endX = Math.min(_width - 1, (int) Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f));
+    if (startX > endX) {
+      return;
+    }
+
+    // edge functions and depth as planes in screen space, a * x + b * y + c, normalized so each
+    // edge function is the barycentric weight of the vertex opposite it
+    final float inverseArea = 1f / area;
+    final float a0 = (y1 - y2) * inverseArea, b0 = (x2 - x1) * inverseArea, c0 = (x1 * y2 - x2 * y1) * inverseArea;
+    final float a1 = (y2 - y0) * inverseArea, b1 = (x0 - x2) * inverseArea, c1 = (x2 * y0 - x0 * y2) * inverseArea;
+    final float a2 = (y0 - y1) * inverseArea, b2 = (x1 - x0) * inverseArea, c2 = (x0 * y1 - x1 * y0) * inverseArea;
+    final float az = a0 * z0 + a1 * z1 + a2 * z2;
+    final float bz = b0 * z0 + b1 * z1 + b2 * z2;
+    final float cz = c0 * z0 + c1 * z1 + c2 * z2;
+
+    final float px = startX + 0.5f;
+    for (int y = startY; y <= endY; y++) {
+      // start each row afresh, so a row's result never depends on how rows were split into bands
+      final float py = y + 0.5f;
+      float w0 = a0 * px + b0 * py + c0;
+      float w1 = a1 * px + b1 * py + c1;
+      float w2 = a2 * px + b2 * py + c2;
+      float z = az * px + bz * py + cz;
+      for (int i = y * _width + startX, maxI = i + endX - startX; i <= maxI; i++) {
+        if (w0 >= 0 && w1 >= 0 && w2 >= 0 && z < _depth[i]) {
+          _depth[i] = z;
+        }
+        w0 += a0;
+        w1 += a1;
+        w2 += a2;
+        z += az;
+      }
+    }
+  }
+
+  /**
+   * Test whether everything within a screen rectangle is behind the depths in this buffer.
+   *
+   * @param minX
+   *          left edge of the rectangle, in pixels.
+   * @param minY
+   *          bottom edge of the rectangle, in pixels.
+   * @param maxX
+   *          right edge of the rectangle, in pixels.
+   * @param maxY
+   *          top edge of the rectangle, in pixels.
+   * @param nearestDepth
+   *          the nearest depth of what is tested.
+   * @return true if every on screen pixel touched by the rectangle holds a depth nearer than
+   *         nearestDepth. A rectangle entirely off screen is left to frustum culling, and is not
+   *         occluded.
+   */
+  public boolean isOccluded(final double minX, final double minY, final double maxX, final double maxY,
+      final double nearestDepth) {
+    if (maxX < 0 || maxY < 0 || minX >= _width || minY >= _height || Double.isNaN(nearestDepth)) {
+      return false;
+    }
+    final int startX = (int) Math.max(0, minX), startY = (int) Math.max(0, minY);
+    final int endX = (int) Math.min(_width - 1, maxX), endY = (int) Math.min(_height - 1, maxY);
+
+    for (int ty = startY / DepthRasterizer.TILE_SIZE, maxTy = endY / DepthRasterizer.TILE_SIZE; ty <= maxTy; ty++) {
+      for (int tx = startX / DepthRasterizer.TILE_SIZE, maxTx = endX / DepthRasterizer.TILE_SIZE; tx <= maxTx; tx++) {
+        if (_tileMax[ty * _tilesX + tx] < nearestDepth) {
+          // the whole tile is in front
+          continue;
+        }
+
+        // check the pixels of this tile within the rectangle
+        final int y0 = Math.max(startY, ty * DepthRasterizer.TILE_SIZE);
+        final int y1 = Math.min(endY, ty * DepthRasterizer.TILE_SIZE + DepthRasterizer.TILE_SIZE - 1);
+        final int x0 = Math.max(startX, tx * DepthRasterizer.TILE_SIZE);
+        final int x1 = Math.min(endX, tx * DepthRasterizer.TILE_SIZE + DepthRasterizer.TILE_SIZE - 1);
+        for (int y = y0; y <= y1; y++) {
+          for (int x = x0, i = y * _width + x0; x <= x1; x++, i++) {
+            if (_depth[i] >= nearestDepth) {
+              return false;
+            }
+          }
+        }
+      }
+    }
+    return true;
+  }
+}
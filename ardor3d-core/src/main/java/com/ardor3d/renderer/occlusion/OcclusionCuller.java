@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.occlusion;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.buffer.FloatBufferData;
+import com.ardor3d.math.Matrix4;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.SpatialIndex;
+
+/**
+ * <p>
+ * Culls spatials hidden behind designated occluders, on the CPU. Occluders - typically large, simple
+ * meshes such as walls, terrain or buildings, or low polygon proxies standing in for them - are drawn
+ * into a low resolution {@link DepthRasterizer} by {@link #prepare(Camera)}. {@link #isOccluded}
+ * then projects the world bound of a spatial and reports it hidden if every pixel it covers already
+ * holds a nearer occluder depth.
+ * </p>
+ * <p>
+ * Tests are conservative in that bounds crossing the near plane, occluders themselves and spatials
+ * without a bound are never occluded. Occluder silhouettes are sampled at pixel centers, so a lower
+ * resolution trades accuracy at their edges for speed.
+ * </p>
+ * <p>
+ * A renderer given a culler through
+ * {@link com.ardor3d.renderer.AbstractRenderer#setOcclusionCuller(OcclusionCuller)} prepares it on
+ * the first test of each frame, and skips queueing occluded spatials.
+ * </p>
+ */
+public class OcclusionCuller {
+
+  /** An occluder, drawn with the geometry of a mesh and the world transform of its owner. */
+  protected static class Occluder {
+    final Spatial _owner;
+    final Mesh _geometry;
+
+    Occluder(final Spatial owner, final Mesh geometry) {
+      _owner = owner;
+      _geometry = geometry;
+    }
+  }
+
+  protected final DepthRasterizer _rasterizer;
+  protected final List<Occluder> _occluders = new ArrayList<>();
+  protected final Set<Spatial> _owners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** How much nearer, in normalized device depth, an occluder must be than a bound to hide it. */
+  protected double _depthBias = 1e-6;
+
+  // the view projection we were last prepared for
+  protected final double[] _preparedViewProjection = new double[16];
+  protected boolean _prepared;
+
+  // scratch
+  private final Matrix4 _modelViewProjection = new Matrix4();
+  private final Matrix4 _world = new Matrix4();
+  private final double[] _mvp = new double[16];
+  private final double[] _box = new double[6];
+  private double[] _clip = new double[4 * 64];
+  private int[] _primitive = new int[3];
+
+  /**
+   * @param width
+   *          the width of the depth buffer, in pixels.
+   * @param height
+   *          the height of the depth buffer, in pixels. Keeping the aspect ratio of the cameras used
+   *          is not required, but gives an even accuracy across the screen.
+   */
+  public OcclusionCuller(final int width, final int height) {
+    _rasterizer = new DepthRasterizer(width, height);
+  }
+
+  public DepthRasterizer getRasterizer() { return _rasterizer; }
+
+  public double getDepthBias() { return _depthBias; }
+
+  /**
+   * @param depthBias
+   *          how much nearer, in normalized device depth, an occluder must be than a bound to hide it.
+   */
+  public void setDepthBias(final double depthBias) { _depthBias = depthBias; }
+
+  /**
+   * Add a mesh as an occluder, drawn with its own geometry.
+   */
+  public void addOccluder(final Mesh mesh) {
+    addOccluder(mesh, mesh);
+  }
+
+  /**
+   * Add an occluder drawn with proxy geometry.
+   *
+   * @param owner
+   *          the spatial whose world transform places the proxy. It will not be occluded itself.
+   * @param proxy
+   *          a mesh whose vertices, in the owner's model space, should lie within the owner's
+   *          rendered shape. Its own transform is ignored.
+   */
+  public void addOccluder(final Spatial owner, final Mesh proxy) {
+    _occluders.add(new Occluder(owner, proxy));
+    _owners.add(owner);
+    invalidate();
+  }
+
+  /**
+   * Add every mesh at or under the given spatial that has an occluder material, see
+   * {@link Spatial#getWorldOccluderMaterial()}, as an occluder.
+   *
+   * @return the number of occluders added.
+   */
+  public int addOccluders(final Spatial root) {
+    final int before = _occluders.size();
+    root.acceptVisitor(spatial -> {
+      if (spatial instanceof Mesh && spatial.getWorldOccluderMaterial() != null) {
+        addOccluder((Mesh) spatial);
+      }
+    }, true);
+    return _occluders.size() - before;
+  }
+
+  /**
+   * Remove every occluder owned by the given spatial.
+   *
+   * @return true if any were removed.
+   */
+  public boolean removeOccluder(final Spatial owner) {
+    if (!_owners.remove(owner)) {
+      return false;
+    }
+    _occluders.removeIf(occluder -> occluder._owner == owner);
+    invalidate();
+    return true;
+  }
+
+  public void clearOccluders() {
+    _occluders.clear();
+    _owners.clear();
+    invalidate();
+  }
+
+  public int getOccluderCount() { return _occluders.size(); }
+
+  public boolean isOccluder(final Spatial spatial) {
+    return _owners.contains(spatial);
+  }
+
+  /**
+   * Force the next {@link #isPreparedFor(Camera)} to fail, for example once per frame as occluders
+   * may have moved.
+   */
+  public void invalidate() {
+    _prepared = false;
+  }
+
+  /**
+   * @return true if we were prepared for the current view projection of the given camera, and not
+   *         invalidated since.
+   */
+  public boolean isPreparedFor(final Camera camera) {
+    if (!_prepared) {
+      return false;
+    }
+    camera.getViewProjectionMatrix().toArray(_mvp);
+    for (int i = 0; i < 16; i++) {
+      if (_mvp[i] != _preparedViewProjection[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rasterize all occluders as seen from the given camera.
+   */
+  public void prepare(final Camera camera) {
+    _rasterizer.clear();
+    camera.getViewProjectionMatrix().toArray(_preparedViewProjection);
+    for (int i = 0, maxI = _occluders.size(); i < maxI; i++) {
+      final Occluder occluder = _occluders.get(i);
+      occluder._owner.getWorldTransform().getHomogeneousMatrix(_world);
+      camera.getViewProjectionMatrix().multiply(_world, _modelViewProjection);
+      addTriangles(occluder._geometry.getMeshData(), _modelViewProjection);
+    }
+    _rasterizer.rasterize();
+    _prepared = true;
+  }
+
+  /**
+   * Queue the triangles of the given mesh data, transformed to clip space.
+   */
+  protected void addTriangles(final MeshData meshData, final Matrix4 modelViewProjection) {
+    final FloatBufferData coords = meshData.getVertexCoords();
+    if (coords == null) {
+      return;
+    }
+    final FloatBuffer vertices = coords.getBuffer();
+    final int tupleSize = coords.getValuesPerTuple();
+    final int vertexCount = meshData.getVertexCount();
+
+    // transform each vertex once
+    if (_clip.length < vertexCount * 4) {
+      _clip = new double[vertexCount * 4];
+    }
+    final double[] m = modelViewProjection.toArray(_mvp);
+    final double[] clip = _clip;
+    for (int v = 0; v < vertexCount; v++) {
+      final int in = v * tupleSize;
+      final double x = vertices.get(in);
+      final double y = tupleSize > 1 ? vertices.get(in + 1) : 0;
+      final double z = tupleSize > 2 ? vertices.get(in + 2) : 0;
+      final int out = v * 4;
+      clip[out] = m[0] * x + m[1] * y + m[2] * z + m[3];
+      clip[out + 1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+      clip[out + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+      clip[out + 3] = m[12] * x + m[13] * y + m[14] * z + m[15];
+    }
+
+    for (int section = 0, maxSection = meshData.getSectionCount(); section < maxSection; section++) {
+      final IndexMode mode = meshData.getIndexMode(section);
+      if (mode != IndexMode.Triangles && mode != IndexMode.TriangleStrip && mode != IndexMode.TriangleFan) {
+        continue;
+      }
+      for (int p = 0, maxP = meshData.getPrimitiveCount(section); p < maxP; p++) {
+        _primitive = meshData.getPrimitiveIndices(p, section, _primitive);
+        final int a = _primitive[0] * 4, b = _primitive[1] * 4, c = _primitive[2] * 4;
+        _rasterizer.addTriangle(clip[a], clip[a + 1], clip[a + 2], clip[a + 3], clip[b], clip[b + 1], clip[b + 2],
+            clip[b + 3], clip[c], clip[c + 1], clip[c + 2], clip[c + 3]);
+      }
+    }
+  }
+
+  /**
+   * @param spatial
+   *          the spatial to test.
+   * @return true if the world bound of the given spatial is entirely hidden by occluders, as of the
+   *         last {@link #prepare(Camera)}.
+   */
+  public boolean isOccluded(final Spatial spatial) {
+    final BoundingVolume bound = spatial.getWorldBound();
+    if (bound == null || _owners.contains(spatial)) {
+      return false;
+    }
+    return isOccluded(bound);
+  }
+
+  /**
+   * @param bound
+   *          a world bound to test.
+   * @return true if the given bound is entirely hidden by occluders, as of the last
+   *         {@link #prepare(Camera)}.
+   */
+  public boolean isOccluded(final BoundingVolume bound) {
+    if (!_prepared || _occluders.isEmpty()) {
+      return false;
+    }
+
+    SpatialIndex.getBox(bound, _box);
+    final double[] m = _preparedViewProjection;
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int corner = 0; corner < 8; corner++) {
+      final double x = _box[(corner & 1) == 0 ? 0 : 3];
+      final double y = _box[(corner & 2) == 0 ? 1 : 4];
+      final double z = _box[(corner & 4) == 0 ? 2 : 5];
+      final double cw = m[12] * x + m[13] * y + m[14] * z + m[15];
+      final double cz = m[8] * x + m[9] * y + m[10] * z + m[11];
+      if (cz < -cw || cw <= 0) {
+        // crosses the near plane - treat as visible
+        return false;
+      }
+      final double cx = (m[0] * x + m[1] * y + m[2] * z + m[3]) / cw;
+      final double cy = (m[4] * x + m[5] * y + m[6] * z + m[7]) / cw;
+      minX = Math.min(minX, cx);
+      maxX = Math.max(maxX, cx);
+      minY = Math.min(minY, cy);
+      maxY = Math.max(maxY, cy);
+      minZ = Math.min(minZ, cz / cw);
+    }
+
+    final int width = _rasterizer.getWidth(), height = _rasterizer.getHeight();
+    return _rasterizer.isOccluded((minX + 1) * 0.5 * width, (minY + 1) * 0.5 * height, (maxX + 1) * 0.5 * width,
+        (maxY + 1) * 0.5 * height, minZ - _depthBias);
+  }
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.queue;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.ardor3d.buffer.AbstractBufferData;
+import com.ardor3d.buffer.AbstractBufferData.VBOAccessMode;
+import com.ardor3d.buffer.FloatBufferData;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.RenderPhase;
+import com.ardor3d.renderer.Renderable;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.material.RenderMaterial;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * <p>
+ * An opaque bucket that draws queued meshes sharing the same {@link MeshData}, material, render
+ * states and default color with a single instanced draw call, instead of one draw per mesh. The
+ * meshes' world transforms are packed into a {@link MeshData#KEY_InstanceMatrix} buffer, and the
+ * group is drawn with an instanced variant of their material - one whose shaders read that
+ * attribute, such as <code>lit/untextured/basic_phong_instanced.yaml</code> for
+ * <code>lit/untextured/basic_phong.yaml</code>. Only materials given a variant through
+ * {@link #setInstancedMaterial(RenderMaterial, RenderMaterial)} are batched.
+ * </p>
+ * <p>
+ * Batching only happens in the scene phase and without an enforced material. Lights are selected
+ * once for a whole group, using the merged bounds of its meshes, and spatial properties are read from
+ * the group's first mesh.
+ * </p>
+ */
+public class InstancingRenderBucket extends OpaqueRenderBucket {
+
+  /** Default smallest number of meshes drawn as a single instanced batch. */
+  public static final int DEFAULT_MIN_INSTANCES = 2;
+
+  protected final Map<RenderMaterial, RenderMaterial> _instancedMaterials = new IdentityHashMap<>();
+  protected int _minInstances = InstancingRenderBucket.DEFAULT_MIN_INSTANCES;
+
+  /** Groups of meshes found during the current render, chained by mesh data. */
+  protected final Map<MeshData, InstanceGroup> _groupsByData = new IdentityHashMap<>();
+  protected final List<InstanceGroup> _groupPool = new ArrayList<>();
+  protected int _groupCount;
+  protected InstanceGroup[] _itemGroups = new InstanceGroup[32];
+
+  /** Stands in for a group when drawing it. */
+  protected final InstanceBatch _batch = new InstanceBatch();
+
+  public InstancingRenderBucket() {
+    super();
+  }
+
+  /**
+   * Set the material used to draw batches of meshes using the given material.
+   *
+   * @param material
+   *          the material of the meshes to batch.
+   * @param instancedMaterial
+   *          the variant of that material whose shaders read an instance matrix attribute, or null
+   *          to stop batching meshes using the material.
+   */
+  public void setInstancedMaterial(final RenderMaterial material, final RenderMaterial instancedMaterial) {
+    if (instancedMaterial == null) {
+      _instancedMaterials.remove(material);
+    } else {
+      _instancedMaterials.put(material, instancedMaterial);
+    }
+  }
+
+  public RenderMaterial getInstancedMaterial(final RenderMaterial material) {
+    return _instancedMaterials.get(material);
+  }
+
+  public int getMinInstances() { return _minInstances; }
+
+  /**
+   * @param minInstances
+   *          the smallest number of meshes drawn as a single instanced batch. Smaller groups are drawn
+   *          one mesh at a time.
+   */
+  public void setMinInstances(final int minInstances) { _minInstances = Math.max(2, minInstances); }
+
+  @Override
+  public void render(final Renderer renderer) {
+    final RenderContext context = ContextManager.getCurrentContext();
+    if (_instancedMaterials.isEmpty() || _currentListSize < _minInstances || context == null
+        || context.getRenderPhase() != RenderPhase.Scene || context.getEnforcedMaterial() != null) {
+      super.render(renderer);
+      return;
+    }
+
+    try {
+      groupItems();
+      for (int i = 0; i < _currentListSize; i++) {
+        final InstanceGroup group = _itemGroups[i];
+        if (group == null || group._count < _minInstances) {
+          _currentList[i].draw(renderer);
+        } else if (group._members.get(0) == _currentList[i]) {
+          // draw the whole group in place of its first member
+          _batch.setup(group, _instancedMaterials.get(group._material), renderer);
+          renderer.draw((Renderable) _batch);
+        }
+      }
+    } finally {
+      releaseGroups();
+    }
+  }
+
+  protected void groupItems() {
+    if (_itemGroups.length < _currentListSize) {
+      _itemGroups = new InstanceGroup[_currentList.length];
+    }
+
+    final Camera camera = Camera.getCurrentCamera();
+    for (int i = 0; i < _currentListSize; i++) {
+      final Spatial spatial = _currentList[i];
+      if (!(spatial instanceof Mesh) || !isBatchable((Mesh) spatial, camera)) {
+        _itemGroups[i] = null;
+        continue;
+      }
+
+      final Mesh mesh = (Mesh) spatial;
+      final MeshData data = mesh.getMeshData();
+      InstanceGroup group = _groupsByData.get(data);
+      while (group != null && !group.accepts(mesh)) {
+        group = group._next;
+      }
+      if (group == null) {
+        group = obtainGroup(mesh);
+        group._next = _groupsByData.get(data);
+        _groupsByData.put(data, group);
+      }
+      group.add(mesh);
+      _itemGroups[i] = group;
+    }
+  }
+
+  protected boolean isBatchable(final Mesh mesh, final Camera camera) {
+    final RenderMaterial material = mesh.getWorldRenderMaterial();
+    return material != null && _instancedMaterials.containsKey(material) && mesh.getInstanceCount() == 1
+        && mesh.isVisible() && mesh.getWorldBound() != null && camera.checkLayerPasses(mesh.getLayer())
+        && !mesh.getMeshData().containsKey(MeshData.KEY_InstanceMatrix);
+  }
+
+  private InstanceGroup obtainGroup(final Mesh first) {
+    if (_groupCount == _groupPool.size()) {
+      _groupPool.add(new InstanceGroup());
+    }
+    final InstanceGroup group = _groupPool.get(_groupCount++);
+    group.init(first);
+    return group;
+  }
+
+  private void releaseGroups() {
+    for (int i = 0; i < _groupCount; i++) {
+      _groupPool.get(i).clear();
+    }
+    _groupCount = 0;
+    _groupsByData.clear();
+    for (int i = 0; i < _currentListSize; i++) {
+      _itemGroups[i] = null;
+    }
+    _batch.release();
+  }
+
+  /**
+   * Meshes that can be drawn together.
+   */
+  protected static class InstanceGroup {
+    final List<Mesh> _members = new ArrayList<>();
+    int _count;
+    RenderMaterial _material;
+    InstanceGroup _next;
+
+    void init(final Mesh first) {
+      _material = first.getWorldRenderMaterial();
+    }
+
+    boolean accepts(final Mesh mesh) {
+      final Mesh first = _members.get(0);
+      if (mesh.getWorldRenderMaterial() != _material || !mesh.getDefaultColor().equals(first.getDefaultColor())) {
+        return false;
+      }
+      for (final StateType type : StateType.values) {
+        if (mesh.getWorldRenderState(type) != first.getWorldRenderState(type)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void add(final Mesh mesh) {
+      _members.add(mesh);
+      _count++;
+    }
+
+    void clear() {
+      _members.clear();
+      _count = 0;
+      _material = null;
+      _next = null;
+    }
+  }
+
+  /**
+   * A mesh drawing the shared geometry of an instance group once per member, with the members' world
+   * transforms as instance matrices.
+   */
+  protected static class InstanceBatch extends Mesh {
+    protected FloatBufferData _matrices = InstanceBatch.createMatrices(64);
+    protected Mesh _first;
+
+    public InstanceBatch() {
+      super("instanceBatch");
+    }
+
+    private static FloatBufferData createMatrices(final int instances) {
+      final FloatBufferData matrices = new FloatBufferData(instances * 16, 4);
+      matrices.setVboAccessMode(VBOAccessMode.StreamDraw);
+      return matrices;
+    }
+
+    void setup(final InstanceGroup group, final RenderMaterial material, final Renderer renderer) {
+      final List<Mesh> members = group._members;
+      _first = members.get(0);
+
+      // share the group's geometry - and only its, not attributes of the last group we drew
+      final MeshData source = _first.getMeshData();
+      final MeshData data = getMeshData();
+      clearSourceData();
+      for (final Entry<String, AbstractBufferData<? extends Buffer>> item : source.listDataItems()) {
+        data.setCoords(item.getKey(), item.getValue());
+      }
+      data.updateVertexCount();
+      data.setIndices(source.getIndices());
+      data.setIndexLengths(source.getIndexLengths());
+      data.setIndexModes(source.getIndexModes());
+
+      // pack the member transforms
+      if (_matrices.getBufferCapacity() < group._count * 16) {
+        // outgrown - free the old buffer's vbo before replacing it
+        if (renderer != null) {
+          renderer.getShaderUtils().deleteBuffer(_matrices);
+        }
+        _matrices = InstanceBatch.createMatrices(Math.max(group._count, _matrices.getBufferCapacity() / 8));
+      }
+      final FloatBuffer buffer = _matrices.getBuffer();
+      buffer.clear();
+      for (int i = 0; i < group._count; i++) {
+        members.get(i).getWorldTransform().getGLApplyMatrix(buffer);
+      }
+      buffer.flip();
+      _matrices.markDirty();
+      data.setCoords(MeshData.KEY_InstanceMatrix, _matrices);
+      setInstanceCount(group._count);
+
+      // and everything else the first member would be drawn with
+      setRenderMaterial(material);
+      _states.clear();
+      for (final StateType type : StateType.values) {
+        final var state = _first.getWorldRenderState(type);
+        if (state != null) {
+          _states.put(type, state);
+        }
+      }
+      _stateBlock = _first.getWorldRenderStateBlock();
+      _worldBound = _first.getWorldBound().clone(_worldBound);
+      for (int i = 1; i < group._count; i++) {
+        _worldBound.mergeLocal(members.get(i).getWorldBound());
+      }
+
+      // we stand in for several groups a frame, so lights must be selected again
+      getLightSelection().invalidate();
+    }
+
+    void release() {
+      _first = null;
+      clearSourceData();
+      _states.clear();
+      _stateBlock = null;
+    }
+
+    /** Drop the buffers shared from a group's first member, keeping our own matrices. */
+    private void clearSourceData() {
+      final MeshData data = getMeshData();
+      for (final Entry<String, AbstractBufferData<? extends Buffer>> item : new ArrayList<>(data.listDataItems())) {
+        if (item.getValue() != _matrices) {
+          data.setCoords(item.getKey(), null);
+        }
+      }
+      data.setIndices(null);
+    }
+
+    @Override
+    public <T> T getProperty(final String key, final T defaultValue) {
+      return _first != null ? _first.getProperty(key, defaultValue) : super.getProperty(key, defaultValue);
+    }
+
+    @Override
+    public int getLayer() { return _first != null ? _first.getLayer() : super.getLayer(); }
+  }
+}
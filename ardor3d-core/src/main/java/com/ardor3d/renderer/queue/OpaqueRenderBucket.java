@@ -10,89 +10,122 @@
 
 package com.ardor3d.renderer.queue;
 
-import java.util.Comparator;
+import java.util.Arrays;
 
+import com.ardor3d.renderer.material.RenderMaterial;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.SortUtil;
 import com.ardor3d.util.TextureKey;
 
+/**
+ * Bucket for opaque items. Rather than comparing items against each other, each item is given a 64
+ * bit sort key once per sort, packing (from most to least significant):
+ * <ul>
+ * <li>16 bits - the sort id of the item's world {@link RenderMaterial}, so items sharing shaders are
+ * drawn together.</li>
+ * <li>24 bits - a digest of the item's texture keys, so items sharing textures are drawn
+ * together.</li>
+ * <li>24 bits - the item's distance to the camera, so within a group items are drawn front to back.
+ * </li>
+ * </ul>
+ * The keys are then ordered with a radix sort.
+ */
 public class OpaqueRenderBucket extends AbstractRenderBucket {
 
+  protected long[] _sortKeys = new long[32];
+  protected long[] _sortKeysWork = new long[32];
+  protected int[] _sortIndices = new int[32];
+  protected int[] _sortIndicesWork = new int[32];
+  protected final int[] _radixCounts = new int[SortUtil.RADIX_COUNTS_SIZE];
+
   public OpaqueRenderBucket() {
     super();
-
-    _comparator = new OpaqueComparator();
   }
 
-  private class OpaqueComparator implements Comparator<Spatial> {
-    @Override
-    public int compare(final Spatial o1, final Spatial o2) {
-      if (o1 instanceof Mesh && o2 instanceof Mesh) {
-        return compareByStates((Mesh) o1, (Mesh) o2);
-      }
+  @Override
+  public void sort() {
+    // only sort if we have more than one item in our bucket.
+    if (_currentListSize < 2) {
+      return;
+    }
 
-      final double d1 = distanceToCam(o1);
-      final double d2 = distanceToCam(o2);
-      if (d1 > d2) {
-        return 1;
-      } else if (d1 < d2) {
-        return -1;
-      } else {
-        return 0;
-      }
+    if (_sortKeys.length < _currentListSize) {
+      final int size = _currentList.length;
+      _sortKeys = new long[size];
+      _sortKeysWork = new long[size];
+      _sortIndices = new int[size];
+      _sortIndicesWork = new int[size];
     }
 
-    /**
-     * Compare opaque items by their texture states - generally the most expensive switch. Later this
-     * might expand to comparisons by other states as well, such as lighting or material.
-     */
-    private int compareByStates(final Mesh mesh1, final Mesh mesh2) {
-      final TextureState ts1 = (TextureState) mesh1.getWorldRenderState(RenderState.StateType.Texture);
-      final TextureState ts2 = (TextureState) mesh2.getWorldRenderState(RenderState.StateType.Texture);
-      if (ts1 == ts2) {
-        return 0;
-      } else if (ts1 == null) {
-        return -1;
-      } else if (ts2 == null) {
-        return 1;
-      }
+    for (int i = 0; i < _currentListSize; i++) {
+      _sortKeys[i] = computeSortKey(_currentList[i]);
+      _sortIndices[i] = i;
+    }
 
-      for (int x = 0, maxIndex =
-          Math.min(ts1.getMaxTextureIndexUsed(), ts2.getMaxTextureIndexUsed()); x <= maxIndex; x++) {
-
-        final TextureKey key1 = ts1.getTextureKey(x);
-        final TextureKey key2 = ts2.getTextureKey(x);
-
-        if (key1 == null) {
-          if (key2 == null) {
-            continue;
-          } else {
-            return -1;
-          }
-        } else if (key2 == null) {
-          return 1;
-        }
-
-        final int tid1 = key1.hashCode();
-        final int tid2 = key2.hashCode();
-
-        if (tid1 == tid2) {
-          continue;
-        } else if (tid1 < tid2) {
-          return -1;
-        } else {
-          return 1;
-        }
-      }
+    SortUtil.radixSort(_sortKeys, _sortIndices, _currentListSize, _sortKeysWork, _sortIndicesWork, _radixCounts);
 
-      if (ts1.getMaxTextureIndexUsed() != ts2.getMaxTextureIndexUsed()) {
-        return ts2.getMaxTextureIndexUsed() - ts1.getMaxTextureIndexUsed();
-      }
+    // apply the new order
+    System.arraycopy(_currentList, 0, _tempList, 0, _currentListSize);
+    for (int i = 0; i < _currentListSize; i++) {
+      _currentList[i] = _tempList[_sortIndices[i]];
+    }
+
+    // null fill to remove references
+    Arrays.fill(_tempList, 0, _currentListSize, null);
+  }
 
-      return 0;
+  /**
+   * Compute the key used to order the given spatial in this bucket. Items are drawn in ascending key
+   * order, comparing keys as unsigned values.
+   *
+   * @param spatial
+   *          the queued item
+   * @return the sort key
+   */
+  protected long computeSortKey(final Spatial spatial) {
+    final RenderMaterial material = spatial.getWorldRenderMaterial();
+    final long materialBits = material != null ? material.getSortId() & 0xFFFF : 0;
+
+    long textureBits = 0;
+    if (spatial instanceof Mesh) {
+      final TextureState ts = ((Mesh) spatial).getWorldRenderState(RenderState.StateType.Texture);
+      if (ts != null) {
+        textureBits = textureDigest(ts);
+      }
     }
+
+    // non-negative floats order the same as their bit patterns - keep the top 24 of the 31 used bits
+    final float distance = (float) Math.max(0.0, distanceToCam(spatial));
+    final long depthBits = Float.floatToIntBits(distance) >>> 7;
+
+    return materialBits << 48 | textureBits << 24 | depthBits;
   }
 
+  /**
+   * @return 24 bits identifying the textures of the given state - the first unit's key decides the
+   *         top 16 bits, so items sharing their main texture stay together even if other units differ.
+   */
+  private static long textureDigest(final TextureState ts) {
+    int first = 0;
+    int rest = 0;
+    for (int x = 0, maxIndex = ts.getMaxTextureIndexUsed(); x <= maxIndex; x++) {
+      final TextureKey key = ts.getTextureKey(x);
+      if (key == null) {
+        continue;
+      }
+      if (x == 0) {
+        first = key.hashCode();
+      } else {
+        rest = 31 * rest + key.hashCode();
+      }
+    }
+    // fold the hashes down to the bits we have room for
+    first ^= first >>> 16;
+    rest ^= rest >>> 16;
+    rest ^= rest >>> 8;
+    return (first & 0xFFFFL) << 8 | rest & 0xFFL;
+  }
 }
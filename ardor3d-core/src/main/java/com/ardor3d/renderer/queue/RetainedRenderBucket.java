@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.event.DirtyEventListener;
+import com.ardor3d.scenegraph.event.DirtyType;
+
+/**
+ * <p>
+ * A RenderBucket that keeps the sorted contents of another bucket from one frame to the next,
+ * instead of clearing them after rendering. While nothing has changed, items added to the bucket are
+ * ignored, sorting is skipped and the retained items are simply drawn again.
+ * </p>
+ * <p>
+ * The retained contents are thrown away and rebuilt from the next frame's items when:
+ * <ul>
+ * <li>a dirty event (transform, bounds, attach, detach, render state...) is raised anywhere under a
+ * watched scene root - see {@link #watch(Spatial)}.</li>
+ * <li>the current camera changes, or its frame or frustum changes.</li>
+ * <li>{@link #invalidate()} is called, for changes that do not raise dirty events such as setting a
+ * new material or scene hint.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Example, retaining opaque items of a mostly static scene:
+ *
+ * <pre>
+ * final RetainedRenderBucket opaque = new RetainedRenderBucket(new OpaqueRenderBucket());
+ * opaque.watch(rootNode);
+ * renderer.getQueue().setRenderBucket(RenderBucketType.Opaque, opaque);
+ * </pre>
+ *
+ * If the retained bucket is the only one the scene adds to, the scene traversal itself can be skipped
+ * while {@link #isUpToDate()} returns true.
+ * </p>
+ */
+public class RetainedRenderBucket implements RenderBucket, DirtyEventListener {
+
+  protected final RenderBucket _delegate;
+
+  protected final List<Spatial> _watched = new ArrayList<>();
+
+  /** true if our delegate holds a complete, sorted list from a previous frame. */
+  protected boolean _retained;
+
+  /** true once we've decided, for the current frame, whether to reuse the retained items. */
+  protected boolean _frameStarted;
+
+  /** Set from dirty events, which may arrive from other threads. */
+  protected volatile boolean _dirty = true;
+
+  /** Depth of pushBucket calls. Nested rendering is passed straight through to the delegate. */
+  protected int _pushDepth;
+
+  protected Camera _camera;
+  protected int _cameraFrameVersion;
+  protected int _cameraFrustumVersion;
+
+  /**
+   * @param delegate
+   *          the bucket used to sort and render our items.
+   */
+  public RetainedRenderBucket(final RenderBucket delegate) {
+    _delegate = delegate;
+  }
+
+  public RenderBucket getDelegate() { return _delegate; }
+
+  /**
+   * Listen for dirty events from the given scene root and any of its descendants.
+   *
+   * @param root
+   *          the root to watch.
+   */
+  public void watch(final Spatial root) {
+    root.addListener(this);
+    _watched.add(root);
+    invalidate();
+  }
+
+  /**
+   * Stop listening to dirty events from the given scene root.
+   *
+   * @param root
+   *          the root to stop watching.
+   */
+  public void unwatch(final Spatial root) {
+    root.removeListener(this);
+    _watched.remove(root);
+    invalidate();
+  }
+
+  /**
+   * Force the bucket to be rebuilt from the items added in the next frame.
+   */
+  public void invalidate() {
+    _dirty = true;
+  }
+
+  /**
+   * @return true if the retained items are still valid for the current camera - in other words, if the
+   *         next frame would reuse them rather than rebuild.
+   */
+  public boolean isUpToDate() {
+    if (!_retained || _dirty) {
+      return false;
+    }
+    final Camera camera = Camera.getCurrentCamera();
+    return camera == _camera && camera.getFrameVersion() == _cameraFrameVersion
+        && camera.getFrustumVersion() == _cameraFrustumVersion;
+  }
+
+  /**
+   * Decide, once per frame, whether we can reuse our retained items.
+   */
+  protected void startFrame() {
+    if (_frameStarted) {
+      return;
+    }
+    _frameStarted = true;
+    if (isUpToDate()) {
+      return;
+    }
+    if (_retained) {
+      _delegate.clear();
+      _retained = false;
+    }
+    // any event from here on invalidates what we build this frame
+    _dirty = false;
+  }
+
+  @Override
+  public void add(final Spatial spatial) {
+    if (_pushDepth > 0) {
+      _delegate.add(spatial);
+      return;
+    }
+    startFrame();
+    if (!_retained) {
+      _delegate.add(spatial);
+    }
+  }
+
+  @Override
+  public void remove(final Spatial spatial) {
+    _delegate.remove(spatial);
+  }
+
+  @Override
+  public void clear() {
+    if (_pushDepth > 0) {
+      _delegate.clear();
+      return;
+    }
+    if (!_frameStarted) {
+      // a clear without a frame - eg. Renderer.clearQueue() - drop everything.
+      _delegate.clear();
+      _retained = false;
+      return;
+    }
+
+    // end of frame - keep what we have and remember what it was built for.
+    _frameStarted = false;
+    if (!_retained) {
+      final Camera camera = Camera.getCurrentCamera();
+      _camera = camera;
+      _cameraFrameVersion = camera != null ? camera.getFrameVersion() : 0;
+      _cameraFrustumVersion = camera != null ? camera.getFrustumVersion() : 0;
+      _retained = camera != null;
+      if (!_retained) {
+        _delegate.clear();
+      }
+    }
+  }
+
+  @Override
+  public void sort() {
+    if (_pushDepth > 0) {
+      _delegate.sort();
+      return;
+    }
+    startFrame();
+    if (!_retained) {
+      _delegate.sort();
+    }
+  }
+
+  @Override
+  public void render(final Renderer renderer) {
+    if (_pushDepth == 0) {
+      startFrame();
+    }
+    _delegate.render(renderer);
+  }
+
+  @Override
+  public void pushBucket() {
+    _pushDepth++;
+    _delegate.pushBucket();
+  }
+
+  @Override
+  public void popBucket() {
+    _delegate.popBucket();
+    _pushDepth--;
+  }
+
+  @Override
+  public boolean spatialDirty(final Spatial spatial, final DirtyType dirtyType) {
+    _dirty = true;
+    return false;
+  }
+
+  @Override
+  public boolean spatialClean(final Spatial spatial, final DirtyType dirtyType) {
+    return false;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.google.common.collect.MapMaker;
+
+/**
+ * <p>
+ * An immutable, shared set of render states - one (or none) per {@link StateType} - as compiled for a
+ * mesh when its world render states are updated. Blocks are interned: meshes whose states are the same
+ * objects share the same block, so the renderer can tell with a single comparison that a draw uses
+ * the states it just applied, and otherwise only visit the state types that differ. See
+ * {@link com.ardor3d.renderer.Renderer#applyStates(RenderStateBlock)}.
+ * </p>
+ * <p>
+ * Blocks compare states by identity. Changes made to a state object do not change its blocks, and are
+ * picked up through {@link RenderState#needsRefresh()} as before.
+ * </p>
+ */
+public final class RenderStateBlock {
+
+  /** Blocks by their states, dropped once no mesh holds them. */
+  private static final ConcurrentMap<Key, RenderStateBlock> _blocks = new MapMaker().weakValues().makeMap();
+
+  private static final AtomicInteger _nextId = new AtomicInteger();
+
+  /** The block with no states at all - every type uses its default. */
+  public static final RenderStateBlock EMPTY = RenderStateBlock.of(new RenderState[StateType.values.length]);
+
+  private final int _id;
+  private final RenderState[] _states;
+
+  private RenderStateBlock(final RenderState[] states) {
+    _id = RenderStateBlock._nextId.incrementAndGet();
+    _states = states;
+  }
+
+  /**
+   * @param states
+   *          states by type, as held by a mesh.
+   * @return the shared block holding the given states.
+   */
+  public static RenderStateBlock of(final Map<StateType, RenderState> states) {
+    final RenderState[] array = new RenderState[StateType.values.length];
+    for (final Map.Entry<StateType, RenderState> entry : states.entrySet()) {
+      array[entry.getKey().ordinal()] = entry.getValue();
+    }
+    return RenderStateBlock.of(array);
+  }
+
+  private static RenderStateBlock of(final RenderState[] states) {
+    final Key key = new Key(states);
+    final RenderStateBlock block = RenderStateBlock._blocks.get(key);
+    if (block != null) {
+      return block;
+    }
+    final RenderStateBlock created = new RenderStateBlock(states);
+    final RenderStateBlock existing = RenderStateBlock._blocks.putIfAbsent(key, created);
+    return existing != null ? existing : created;
+  }
+
+  /**
+   * @return an id unique to this block, for as long as it is in use.
+   */
+  public int getId() { return _id; }
+
+  /**
+   * @param type
+   *          the state type.
+   * @return our state of the given type, or null to use the default.
+   */
+  public RenderState get(final StateType type) {
+    return _states[type.ordinal()];
+  }
+
+  /**
+   * @param other
+   *          another block, or null.
+   * @return a bit mask, by state type ordinal, of the types whose states differ between the blocks. All
+   *         types differ from null.
+   */
+  public int getDifferences(final RenderStateBlock other) {
+    if (other == this) {
+      return 0;
+    }
+    int mask = 0;
+    for (int i = 0; i < _states.length; i++) {
+      if (other == null || _states[i] != other._states[i]) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
+  }
+
+  @Override
+  public String toString() {
+    return "RenderStateBlock [id=" + _id + "]";
+  }
+
+  /**
+   * States compared by identity.
+   */
+  private static final class Key {
+    private final RenderState[] _states;
+    private final int _hash;
+
+    Key(final RenderState[] states) {
+      _states = states;
+      int hash = 1;
+      for (final RenderState state : states) {
+        hash = 31 * hash + System.identityHashCode(state);
+      }
+      _hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final RenderState[] other = ((Key) obj)._states;
+      for (int i = 0; i < _states.length; i++) {
+        if (_states[i] != other[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
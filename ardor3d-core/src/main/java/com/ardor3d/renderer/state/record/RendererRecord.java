@@ -10,11 +10,13 @@
 
 package com.ardor3d.renderer.state.record;
 
+import java.util.Arrays;
 import java.util.Stack;
 
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.type.ReadOnlyRectangle2;
 import com.ardor3d.renderer.DrawBufferTarget;
+import com.ardor3d.renderer.material.uniform.UniformValueCache;
 
 public class RendererRecord extends StateRecord {
   private int _matrixMode = -1;
@@ -31,6 +33,9 @@ public class RendererRecord extends StateRecord {
   private int _currentTextureArraysUnit = 0;
   private int _programId;
   private boolean _shaderPointSize;
+  private transient final UniformValueCache _uniformValues = new UniformValueCache();
+  /** Id of the buffer bound to each uniform buffer binding point, or 0 if not known. */
+  private int[] _uniformBufferBindings = new int[0];
 
   @Override
   public void invalidate() {
@@ -41,6 +46,8 @@ public class RendererRecord extends StateRecord {
     _texturesValid = false;
     _currentTextureArraysUnit = -1;
     _programId = -1;
+    _uniformValues.invalidate();
+    invalidateUniformBufferBindings();
   }
 
   @Override
@@ -58,6 +65,10 @@ public class RendererRecord extends StateRecord {
     _currentVaoId = -1;
   }
 
+  public void invalidateUniformBufferBindings() {
+    Arrays.fill(_uniformBufferBindings, 0);
+  }
+
   public int getMatrixMode() { return _matrixMode; }
 
   public void setMatrixMode(final int matrixMode) { _matrixMode = matrixMode; }
@@ -108,6 +119,27 @@ public class RendererRecord extends StateRecord {
 
   public void setProgramId(final int programId) { _programId = programId; }
 
+  /**
+   * @return the uniform values last sent to each shader program in this context.
+   */
+  public UniformValueCache getUniformValues() { return _uniformValues; }
+
+  /**
+   * @param binding
+   *          the uniform buffer binding point.
+   * @return the id of the buffer last bound to the given binding point, or 0 if not known.
+   */
+  public int getUniformBufferBinding(final int binding) {
+    return binding < _uniformBufferBindings.length ? _uniformBufferBindings[binding] : 0;
+  }
+
+  public void setUniformBufferBinding(final int binding, final int bufferId) {
+    if (binding >= _uniformBufferBindings.length) {
+      _uniformBufferBindings = Arrays.copyOf(_uniformBufferBindings, binding + 1);
+    }
+    _uniformBufferBindings[binding] = bufferId;
+  }
+
   public boolean isShaderPointSize() { return _shaderPointSize; }
 
   public void setShaderPointSize(final boolean shaderPointSize) { _shaderPointSize = shaderPointSize; }
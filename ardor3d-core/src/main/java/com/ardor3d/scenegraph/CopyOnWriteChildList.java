@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * A list of children for {@link Node} that keeps its contents in an immutable array snapshot which is
+ * replaced on every modification. Reads - including the traversals done by Node during update, draw
+ * and bound merging - never take a lock and always see a consistent set of children, while
+ * modifications (for example from a loader thread) are serialized against each other.
+ * <p>
+ * This trades more expensive attach and detach calls for cheaper traversal, so it suits nodes whose
+ * children are read every frame but change rarely. Use it by passing an instance to
+ * {@link Node#Node(String, java.util.List)}.
+ * </p>
+ */
+public class CopyOnWriteChildList extends AbstractList<Spatial> implements RandomAccess {
+
+  private static final Snapshot EMPTY = new Snapshot(new Spatial[0]);
+
+  /** Current snapshot, replaced - never modified - on each change, so traversals need not copy it. */
+  private volatile Snapshot _snapshot = CopyOnWriteChildList.EMPTY;
+
+  public CopyOnWriteChildList() {}
+
+  public CopyOnWriteChildList(final Collection<? extends Spatial> children) {
+    publish(children.toArray(new Spatial[children.size()]));
+  }
+
+  /**
+   * @return the current contents of this list. The returned array is shared and must not be
+   *         modified. It does not reflect changes made to the list after this call.
+   */
+  public Spatial[] getArray() { return _snapshot._array; }
+
+  /**
+   * @return a read only view of the current contents of this list, which does not reflect changes made
+   *         to the list after this call. The same view is returned until the list changes.
+   */
+  public List<Spatial> snapshot() {
+    return _snapshot;
+  }
+
+  private void publish(final Spatial[] array) {
+    _snapshot = array.length == 0 ? CopyOnWriteChildList.EMPTY : new Snapshot(array);
+  }
+
+  @Override
+  public Spatial get(final int index) {
+    return _snapshot._array[index];
+  }
+
+  @Override
+  public int size() {
+    return _snapshot._array.length;
+  }
+
+  @Override
+  public synchronized boolean add(final Spatial element) {
+    add(size(), element);
+    return true;
+  }
+
+  @Override
+  public synchronized Spatial set(final int index, final Spatial element) {
+    final Spatial[] array = _snapshot._array.clone();
+    final Spatial old = array[index];
+    array[index] = element;
+    publish(array);
+    return old;
+  }
+
+  @Override
+  public synchronized void add(final int index, final Spatial element) {
+    final Spatial[] array = _snapshot._array;
+    if (index < 0 || index > array.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + array.length);
+    }
+    final Spatial[] newArray = new Spatial[array.length + 1];
+    System.arraycopy(array, 0, newArray, 0, index);
+    newArray[index] = element;
+    System.arraycopy(array, index, newArray, index + 1, array.length - index);
+    publish(newArray);
+    modCount++;
+  }
+
+  @Override
+  public synchronized boolean addAll(final Collection<? extends Spatial> c) {
+    if (c.isEmpty()) {
+      return false;
+    }
+    final Spatial[] array = _snapshot._array;
+    final Spatial[] added = c.toArray(new Spatial[c.size()]);
+    final Spatial[] newArray = Arrays.copyOf(array, array.length + added.length);
+    System.arraycopy(added, 0, newArray, array.length, added.length);
+    publish(newArray);
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public synchronized Spatial remove(final int index) {
+    final Spatial[] array = _snapshot._array;
+    final Spatial old = array[index];
+    final Spatial[] newArray = new Spatial[array.length - 1];
+    System.arraycopy(array, 0, newArray, 0, index);
+    System.arraycopy(array, index + 1, newArray, index, array.length - index - 1);
+    publish(newArray);
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public synchronized boolean remove(final Object o) {
+    final int index = indexOf(o);
+    if (index < 0) {
+      return false;
+    }
+    remove(index);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean removeIf(final Predicate<? super Spatial> filter) {
+    final Spatial[] array = _snapshot._array;
+    final Spatial[] kept = new Spatial[array.length];
+    int count = 0;
+    for (final Spatial child : array) {
+      if (!filter.test(child)) {
+        kept[count++] = child;
+      }
+    }
+    if (count == array.length) {
+      return false;
+    }
+    publish(Arrays.copyOf(kept, count));
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    return removeIf(c::contains);
+  }
+
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    return removeIf(child -> !c.contains(child));
+  }
+
+  @Override
+  public synchronized void clear() {
+    _snapshot = CopyOnWriteChildList.EMPTY;
+    modCount++;
+  }
+
+  /**
+   * Iterates over the snapshot current at the time of the call. Removing through the iterator removes
+   * the last returned child from this list, wherever it now is.
+   */
+  @Override
+  public Iterator<Spatial> iterator() {
+    final Spatial[] array = _snapshot._array;
+    return new Iterator<>() {
+      private int _next;
+      private Spatial _last;
+
+      @Override
+      public boolean hasNext() {
+        return _next < array.length;
+      }
+
+      @Override
+      public Spatial next() {
+        if (_next >= array.length) {
+          throw new NoSuchElementException();
+        }
+        return _last = array[_next++];
+      }
+
+      @Override
+      public void remove() {
+        if (_last == null) {
+          throw new IllegalStateException();
+        }
+        CopyOnWriteChildList.this.remove(_last);
+        _last = null;
+      }
+    };
+  }
+
+  @Override
+  public Object[] toArray() {
+    return _snapshot._array.clone();
+  }
+
+  /** Read only list over a published array. */
+  private static final class Snapshot extends AbstractList<Spatial> implements RandomAccess {
+    private final Spatial[] _array;
+
+    Snapshot(final Spatial[] array) {
+      _array = array;
+    }
+
+    @Override
+    public Spatial get(final int index) {
+      return _array[index];
+    }
+
+    @Override
+    public int size() {
+      return _array.length;
+    }
+  }
+}
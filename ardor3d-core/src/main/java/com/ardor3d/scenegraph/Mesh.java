@@ -20,6 +20,7 @@ import com.ardor3d.bounding.BoundingSphere;
 import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.bounding.CollisionTree;
 import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.bounding.TriangleBVH;
 import com.ardor3d.buffer.BufferUtils;
 import com.ardor3d.buffer.FloatBufferData;
 import com.ardor3d.buffer.IndexBufferData;
@@ -27,12 +28,14 @@ import com.ardor3d.intersection.IntersectionRecord;
 import com.ardor3d.intersection.Pickable;
 import com.ardor3d.intersection.PrimitiveKey;
 import com.ardor3d.light.LightProperties;
+import com.ardor3d.light.LightSelection;
 import com.ardor3d.math.Ray3;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.type.ReadOnlyColorRGBA;
 import com.ardor3d.math.util.MathUtils;
 import com.ardor3d.renderer.Camera;
 import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.DrawIndirectCommands;
 import com.ardor3d.renderer.IndexMode;
 import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.RenderMatrixType;
@@ -44,6 +47,7 @@ import com.ardor3d.renderer.material.MaterialTechnique;
 import com.ardor3d.renderer.material.TechniquePass;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.RenderStateBlock;
 import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.util.Constants;
 import com.ardor3d.util.export.InputCapsule;
@@ -69,12 +73,18 @@ public class Mesh extends Spatial implements Renderable, Pickable {
    */
   protected final EnumMap<RenderState.StateType, RenderState> _states = new EnumMap<>(RenderState.StateType.class);
 
+  /** The shared block holding _states, compiled along with them. */
+  protected RenderStateBlock _stateBlock;
+
   /** Visibility setting that can be used after the scenegraph hierarchical culling */
   protected boolean _isVisible = true;
 
   /** Number of instances drawn for this Mesh. */
   protected int _instanceCount = 1;
 
+  /** The lights picked for this mesh by the light manager, reused for the rest of the frame. */
+  protected transient LightSelection _lightSelection;
+
   /**
    * Constructs a new Mesh.
    */
@@ -99,6 +109,16 @@ public class Mesh extends Spatial implements Renderable, Pickable {
    */
   public MeshData getMeshData() { return _meshData; }
 
+  /**
+   * @return the lights last selected for this mesh by the current scene's light manager.
+   */
+  public LightSelection getLightSelection() {
+    if (_lightSelection == null) {
+      _lightSelection = new LightSelection();
+    }
+    return _lightSelection;
+  }
+
   /**
    * Sets the mesh data object for this mesh.
    *
@@ -282,7 +302,9 @@ public class Mesh extends Spatial implements Renderable, Pickable {
     }
 
     // Walk through the passes of the technique and draw this mesh for each
-    for (final TechniquePass pass : technique.getPasses()) {
+    final List<TechniquePass> passes = technique.getPasses();
+    for (int p = 0, maxP = passes.size(); p < maxP; p++) {
+      final TechniquePass pass = passes.get(p);
       // setup for drawing this pass - shaders, data, states, etc.
       pass.setupForDraw(renderer, this, meshData);
 
@@ -297,6 +319,10 @@ public class Mesh extends Spatial implements Renderable, Pickable {
         } else {
           renderer.drawArrays(0, meshData.getVertexCount(), modes[0], _instanceCount);
         }
+      } else if (meshData.isUseDrawIndirect()) {
+        final DrawIndirectCommands commands = meshData.getDrawIndirectCommands();
+        commands.update(meshData, _instanceCount);
+        renderer.drawIndirect(indices, commands);
       } else {
         int offset = 0;
         int modeIndex = 0;
@@ -358,6 +384,7 @@ public class Mesh extends Spatial implements Renderable, Pickable {
 
     // Go through each state stack and apply to our states list.
     stack.extract(_states, this);
+    _stateBlock = RenderStateBlock.of(_states);
   }
 
   public boolean isVisible() { return _isVisible; }
@@ -378,6 +405,12 @@ public class Mesh extends Spatial implements Renderable, Pickable {
     r.draw((Renderable) this);
   }
 
+  /**
+   * @return the shared block holding this Mesh's compiled RenderStates, or null if they have not been
+   *         compiled yet.
+   */
+  public RenderStateBlock getWorldRenderStateBlock() { return _stateBlock; }
+
   /**
    * @param type
    *          StateType of RenderState we want to grab
@@ -461,62 +494,156 @@ public class Mesh extends Spatial implements Renderable, Pickable {
 
   @Override
   public IntersectionRecord intersectsPrimitivesWhere(final Ray3 ray) {
-    final List<PrimitiveKey> primitives = new ArrayList<>();
-
-    // What about Lines and Points?
-    final CollisionTree ct = CollisionTreeManager.getInstance().getCollisionTree(this);
-    if (ct != null) {
-      ct.getBounds().transform(getWorldTransform(), ct.getWorldBounds());
-      ct.intersect(ray, primitives);
-    }
+    return intersectsPrimitivesWhere(ray, 0, Double.POSITIVE_INFINITY);
+  }
 
-    if (primitives.isEmpty()) {
-      return null;
+  /**
+   * Find the nearest of this mesh's primitives hit by the given ray. The ray is taken into model space
+   * once and primitives are tested there, keeping only as many of the nearest hits as asked for.
+   *
+   * @param ray
+   *          the world space ray.
+   * @param maxHits
+   *          the most hits to report, or 0 to report every hit.
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   * @return a record of the hits, nearest first, or null if none.
+   */
+  public IntersectionRecord intersectsPrimitivesWhere(final Ray3 ray, final int maxHits, final double maxDistance) {
+    final Ray3 modelRay = toModelSpace(ray);
+    final double limit = maxDistance / ray.getDirection().length();
+    final TriangleBVH.Hits hits = new TriangleBVH.Hits(maxHits);
+
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    final TriangleBVH bvh = manager.getTriangleBVH(this);
+    if (bvh == null && manager.isBuildPending(this)) {
+      return intersectsBoundWhere(ray, maxDistance);
     }
+    List<PrimitiveKey> candidates = null;
+    if (bvh != null) {
+      bvh.intersectAll(modelRay, limit, hits);
+    } else {
+      // What about Lines and Points?
+      candidates = new ArrayList<>();
+      final CollisionTree ct = manager.getCollisionTree(this);
+      if (ct == null && manager.isBuildPending(this)) {
+        return intersectsBoundWhere(ray, maxDistance);
+      }
+      if (ct != null) {
+        ct.getBounds().transform(getWorldTransform(), ct.getWorldBounds());
+        ct.intersect(ray, candidates);
+      }
 
-    Vector3[] vertices = null;
-    final double[] distances = new double[primitives.size()];
-    for (int i = 0; i < primitives.size(); i++) {
-      final PrimitiveKey key = primitives.get(i);
-      vertices = getMeshData().getPrimitiveVertices(key.getPrimitiveIndex(), key.getSection(), vertices);
-      // convert to world coord space
-      final int max = getMeshData().getIndexMode(key.getSection()).getVertexCount();
-      for (int j = 0; j < max; j++) {
-        if (vertices[j] != null) {
-          getWorldTransform().applyForward(vertices[j]);
+      Vector3[] vertices = null;
+      final Vector3 hit = Vector3.fetchTempInstance();
+      for (int i = 0, maxI = candidates.size(); i < maxI; i++) {
+        final PrimitiveKey key = candidates.get(i);
+        vertices = getMeshData().getPrimitiveVertices(key.getPrimitiveIndex(), key.getSection(), vertices);
+        final int count = getMeshData().getIndexMode(key.getSection()).getVertexCount();
+        // the planar tests store the distance along the model space ray in x
+        final boolean intersects;
+        if (count == 3) {
+          intersects = modelRay.intersectsTrianglePlanar(vertices[0], vertices[1], vertices[2], hit);
+        } else {
+          intersects = count == 4
+              && modelRay.intersectsQuadPlanar(vertices[0], vertices[1], vertices[2], vertices[3], hit);
         }
-      }
-      final double triDistanceSq = ray.getDistanceToPrimitive(vertices);
-      distances[i] = triDistanceSq;
-    }
-
-    // FIXME: optimize! ugly bubble sort for now
-    boolean sorted = false;
-    while (!sorted) {
-      sorted = true;
-      for (int sort = 0; sort < distances.length - 1; sort++) {
-        if (distances[sort] > distances[sort + 1]) {
-          // swap
-          sorted = false;
-          final double temp = distances[sort + 1];
-          distances[sort + 1] = distances[sort];
-          distances[sort] = temp;
-
-          // swap primitives too
-          final PrimitiveKey temp2 = primitives.get(sort + 1);
-          primitives.set(sort + 1, primitives.get(sort));
-          primitives.set(sort, temp2);
+        if (intersects && hit.getX() <= limit) {
+          hits.add(i, hit.getX());
         }
       }
+      Vector3.releaseTempInstance(hit);
     }
 
-    final Vector3[] positions = new Vector3[distances.length];
+    if (hits.size() == 0) {
+      return null;
+    }
+    hits.sort();
+    final double[] distances = new double[hits.size()];
+    final Vector3[] positions = new Vector3[hits.size()];
+    final List<PrimitiveKey> primitives = new ArrayList<>(hits.size());
     for (int i = 0; i < distances.length; i++) {
-      positions[i] = ray.getDirection().multiply(distances[i], new Vector3()).addLocal(ray.getOrigin());
+      positions[i] = pointAlong(ray, hits.getDistance(i));
+      distances[i] = ray.getOrigin().distance(positions[i]);
+      primitives.add(bvh != null ? bvh.getPrimitiveKey(hits.getTriangle(i)) : candidates.get(hits.getTriangle(i)));
     }
     return new IntersectionRecord(distances, positions, primitives);
   }
 
+  /**
+   * Find the nearest of this mesh's primitives hit by the given ray.
+   *
+   * @param ray
+   *          the world space ray.
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   * @return a record of the nearest hit, or null if none.
+   */
+  public IntersectionRecord intersectsPrimitivesClosest(final Ray3 ray, final double maxDistance) {
+    final TriangleBVH bvh = CollisionTreeManager.getInstance().getTriangleBVH(this);
+    if (bvh == null) {
+      return intersectsPrimitivesWhere(ray, 1, maxDistance);
+    }
+
+    final Vector3 hit = new Vector3();
+    final int triangle = bvh.intersectClosest(toModelSpace(ray), maxDistance / ray.getDirection().length(), hit);
+    if (triangle < 0) {
+      return null;
+    }
+    final Vector3 position = pointAlong(ray, hit.getX());
+    return new IntersectionRecord(new double[] {ray.getOrigin().distance(position)}, new Vector3[] {position},
+        List.of(bvh.getPrimitiveKey(triangle)));
+  }
+
+  /**
+   * Test whether the given ray hits any of this mesh's primitives, stopping at the first hit found -
+   * for line of sight checks and the like.
+   *
+   * @param ray
+   *          the world space ray.
+   * @param maxDistance
+   *          ignore hits further than this from the ray's origin.
+   * @return true if a primitive is hit within the given distance.
+   */
+  public boolean intersectsPrimitives(final Ray3 ray, final double maxDistance) {
+    final TriangleBVH bvh = CollisionTreeManager.getInstance().getTriangleBVH(this);
+    if (bvh == null) {
+      return intersectsPrimitivesWhere(ray, 1, maxDistance) != null;
+    }
+    return bvh.intersectsAny(toModelSpace(ray), maxDistance / ray.getDirection().length());
+  }
+
+  /**
+   * @return the nearest hit of the given ray on this mesh's world bound, with no primitive, or null if
+   *         none within the given distance - for while the mesh's tree is being built in the background.
+   */
+  private IntersectionRecord intersectsBoundWhere(final Ray3 ray, final double maxDistance) {
+    final IntersectionRecord record = getWorldBound() != null ? getWorldBound().intersectsWhere(ray) : null;
+    if (record == null || record.getNumberOfIntersections() == 0) {
+      return null;
+    }
+    final int closest = record.getClosestIntersection();
+    final double distance = record.getIntersectionDistance(closest);
+    if (distance > maxDistance) {
+      return null;
+    }
+    return new IntersectionRecord(new double[] {distance},
+        new Vector3[] {new Vector3(record.getIntersectionPoint(closest))});
+  }
+
+  /**
+   * @return the given world space ray in this mesh's model space. The direction is not normalized, so
+   *         that distances along it are the same parameter as along the world ray.
+   */
+  private Ray3 toModelSpace(final Ray3 ray) {
+    return new Ray3(getWorldTransform().applyInverse(ray.getOrigin(), null),
+        getWorldTransform().applyInverseVector(ray.getDirection(), null));
+  }
+
+  private static Vector3 pointAlong(final Ray3 ray, final double distance) {
+    return ray.getDirection().multiply(distance, new Vector3()).addLocal(ray.getOrigin());
+  }
+
   @Override
   public Mesh makeCopy(final boolean shareGeometricData) {
     // get copy of basic spatial info
@@ -39,6 +39,7 @@ import com.ardor3d.math.Vector2;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.util.MathUtils;
 import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.DrawIndirectCommands;
 import com.ardor3d.renderer.IndexMode;
 import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.RenderContext.RenderContextRef;
@@ -97,6 +98,10 @@ public class MeshData implements Savable {
   protected int[] _indexLengths;
   protected IndexMode[] _indexModes = new IndexMode[] {IndexMode.Triangles};
 
+  /** If true, sections are drawn with one multi-draw call per index mode, where supported. */
+  protected boolean _useDrawIndirect;
+  protected transient DrawIndirectCommands _drawIndirectCommands;
+
   protected transient ContextValueReference<MeshData, Integer> _vaoIdCache;
 
   public MeshData() {
@@ -186,6 +191,29 @@ public class MeshData implements Savable {
     data.markDirty();
   }
 
+  /**
+   * Mark part of a specific data buffer as dirty in this MeshData, so that only the changed values
+   * need to be sent to the card.
+   *
+   * @param key
+   *          the key of the buffer to mark dirty.
+   * @param offset
+   *          the position of the first changed value in the buffer - in values, not tuples.
+   * @param length
+   *          the number of changed values.
+   * @throws Ardor3DException
+   *           if buffer is not found
+   * @see AbstractBufferData#markDirty(int, int)
+   */
+  public void markBufferDirty(final String key, final int offset, final int length) {
+    final AbstractBufferData<?> data = getCoords(key);
+    if (data == null) {
+      throw new Ardor3dException("Buffer not found: " + key);
+    }
+
+    data.markDirty(offset, length);
+  }
+
   /**
    * Marks the indices as dirty in this MeshData. Also calls {@link #markBuffersDirty()}
    *
@@ -637,6 +665,7 @@ public class MeshData implements Savable {
    */
   public void setIndices(final IndexBufferData<?> bufferData) {
     _indexBuffer = bufferData;
+    markDrawIndirectDirty();
     updatePrimitiveCounts();
   }
 
@@ -648,6 +677,7 @@ public class MeshData implements Savable {
    */
   public void setIndexMode(final IndexMode indexMode) {
     _indexModes[0] = indexMode;
+    markDrawIndirectDirty();
     updatePrimitiveCounts();
   }
 
@@ -666,6 +696,7 @@ public class MeshData implements Savable {
    */
   public void setIndexLengths(final int[] indexLengths) {
     _indexLengths = indexLengths;
+    markDrawIndirectDirty();
     updatePrimitiveCounts();
   }
 
@@ -699,9 +730,47 @@ public class MeshData implements Savable {
    */
   public void setIndexModes(final IndexMode[] indexModes) {
     _indexModes = indexModes;
+    markDrawIndirectDirty();
     updatePrimitiveCounts();
   }
 
+  /**
+   * @return true if our sections are drawn through draw-indirect commands.
+   */
+  public boolean isUseDrawIndirect() { return _useDrawIndirect; }
+
+  /**
+   * Opt in to drawing our sections through draw-indirect commands, built once from our index lengths
+   * and modes and submitted with one multi-draw call per index mode. Worthwhile for data with many
+   * sections, such as imported models. Renderers that do not support multi-draw indirect fall back to
+   * one draw call per section.
+   *
+   * @param useDrawIndirect
+   *          true to draw through draw-indirect commands.
+   */
+  public void setUseDrawIndirect(final boolean useDrawIndirect) { _useDrawIndirect = useDrawIndirect; }
+
+  /**
+   * @return the draw-indirect commands for our sections, created on first call. Bring them up to date
+   *         with {@link DrawIndirectCommands#update(MeshData, int)} before drawing.
+   */
+  public DrawIndirectCommands getDrawIndirectCommands() {
+    if (_drawIndirectCommands == null) {
+      _drawIndirectCommands = new DrawIndirectCommands();
+    }
+    return _drawIndirectCommands;
+  }
+
+  /**
+   * Flag our draw-indirect commands to be rebuilt. Call this after changing index lengths or modes in
+   * place.
+   */
+  public void markDrawIndirectDirty() {
+    if (_drawIndirectCommands != null) {
+      _drawIndirectCommands.markDirty();
+    }
+  }
+
   /**
    * Gets the section count.
    *
@@ -1172,6 +1241,7 @@ public class MeshData implements Savable {
     }
     data._indexModes = new IndexMode[_indexModes.length];
     System.arraycopy(_indexModes, 0, data._indexModes, 0, _indexModes.length);
+    data._useDrawIndirect = _useDrawIndirect;
 
     return data;
   }
@@ -1191,6 +1261,7 @@ public class MeshData implements Savable {
     capsule.write(_indexBuffer, "indexBuffer", null);
     capsule.write(_indexLengths, "indexLengths", null);
     capsule.write(_indexModes, "indexModes");
+    capsule.write(_useDrawIndirect, "useDrawIndirect", false);
   }
 
   @Override
@@ -1201,6 +1272,7 @@ public class MeshData implements Savable {
     _indexBuffer = capsule.readSavable("indexBuffer", null);
     _indexLengths = capsule.readIntArray("indexLengths", null);
     _indexModes = capsule.readEnumArray("indexModes", IndexMode.class, new IndexMode[] {IndexMode.Triangles});
+    _useDrawIndirect = capsule.readBoolean("useDrawIndirect", false);
 
     updatePrimitiveCounts();
   }
@@ -15,12 +15,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.scenegraph.visitor.Visitor;
@@ -36,15 +39,31 @@ import com.ardor3d.util.export.OutputCapsule;
 public class Node extends Spatial {
   private static final Logger logger = Logger.getLogger(Node.class.getName());
 
+  /** Default minimum number of spatials per task when updating children in parallel. */
+  public static final int DEFAULT_PARALLEL_UPDATE_THRESHOLD = 512;
+
   /** This node's children. */
   protected final List<Spatial> _children;
 
+  /** Our children, if they are kept in a list that supports lock free traversal, otherwise null. */
+  protected final CopyOnWriteChildList _childSnapshots;
+
+  /** If not null, large child subtrees are updated concurrently using this pool. */
+  protected ForkJoinPool _parallelUpdatePool;
+
+  /** Minimum number of spatials a group of children must hold to be updated as its own task. */
+  protected int _parallelUpdateThreshold = Node.DEFAULT_PARALLEL_UPDATE_THRESHOLD;
+
+  /** Cached number of spatials in this subtree, including this node, or -1 if not yet known. */
+  protected transient int _subtreeSize = -1;
+
   /**
    * Constructs a new Spatial.
    */
   public Node() {
     super();
     _children = Collections.synchronizedList(new ArrayList<Spatial>(1));
+    _childSnapshots = null;
   }
 
   /**
@@ -64,11 +83,14 @@ public class Node extends Spatial {
    *          the name of the node. This is required for identification purposes.
    * @param children
    *          the list to use for storing children. Defaults to a synchronized ArrayList, but using
-   *          this constructor, you can select a different kind of list.
+   *          this constructor, you can select a different kind of list. Passing a
+   *          {@link CopyOnWriteChildList} lets update, draw and bound merging walk the children
+   *          without locking.
    */
   public Node(final String name, final List<Spatial> children) {
     super(name);
     _children = children;
+    _childSnapshots = children instanceof CopyOnWriteChildList ? (CopyOnWriteChildList) children : null;
   }
 
   /**
@@ -92,6 +114,7 @@ public class Node extends Spatial {
         }
         child.setParent(this);
         _children.add(child);
+        invalidateSubtreeSize();
         child.markDirty(DirtyType.Attached);
         if (Node.logger.isLoggable(Level.FINE)) {
           Node.logger.fine("Child (" + child.getName() + ") attached to this" + " node (" + getName() + ")");
@@ -123,6 +146,7 @@ public class Node extends Spatial {
         }
         child.setParent(this);
         _children.add(index, child);
+        invalidateSubtreeSize();
         child.markDirty(DirtyType.Attached);
         if (Node.logger.isLoggable(Level.FINE)) {
           Node.logger.fine("Child (" + child.getName() + ") attached to this" + " node (" + getName() + ")");
@@ -191,6 +215,7 @@ public class Node extends Spatial {
     final Spatial child = _children.remove(index);
     if (child != null) {
       child.setParent(null);
+      invalidateSubtreeSize();
       markDirty(child, DirtyType.Detached);
       if (Node.logger.isLoggable(Level.INFO)) {
         Node.logger.fine("Child removed.");
@@ -242,10 +267,78 @@ public class Node extends Spatial {
     _children.add(index2, c1);
   }
 
+  /**
+   * Enable or disable parallel updating of this node's children. When enabled,
+   * {@link #updateGeometricState(double, boolean)} splits the children into groups holding at least
+   * <code>threshold</code> spatials and updates each group as a separate task on the given pool.
+   * Bounds are still merged, and dirty events still delivered to listeners, on the calling thread
+   * and in the same order as a serial update, so results do not depend on scheduling.
+   * <p>
+   * Controllers of spatials under this node may be run concurrently with one another when this is
+   * enabled, so they must not share mutable state across subtrees.
+   * </p>
+   *
+   * @param pool
+   *          the pool to update children on, or null to update serially (the default.)
+   * @param threshold
+   *          minimum number of spatials per task. Children are always updated serially if the
+   *          whole subtree could not be split into at least two such groups.
+   */
+  public void setParallelUpdate(final ForkJoinPool pool, final int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be positive: " + threshold);
+    }
+    _parallelUpdatePool = pool;
+    _parallelUpdateThreshold = threshold;
+  }
+
+  /**
+   * @return the pool used to update children in parallel, or null if children are updated serially.
+   */
+  public ForkJoinPool getParallelUpdatePool() { return _parallelUpdatePool; }
+
+  /**
+   * @return minimum number of spatials per task when updating children in parallel.
+   */
+  public int getParallelUpdateThreshold() { return _parallelUpdateThreshold; }
+
+  /**
+   * @return the number of spatials in the subtree rooted at this node, including this node.
+   */
+  public int getSubtreeSize() {
+    if (_subtreeSize < 0) {
+      int size = 1;
+      for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
+        final Spatial child = _children.get(i);
+        size += child instanceof Node ? ((Node) child).getSubtreeSize() : 1;
+      }
+      _subtreeSize = size;
+    }
+    return _subtreeSize;
+  }
+
+  /**
+   * Clear the cached subtree size of this node and its ancestors. Called when children are attached
+   * or detached.
+   */
+  protected void invalidateSubtreeSize() {
+    // if a node's size is unknown, so is its parent's - no need to go further.
+    for (Node node = this; node != null && node._subtreeSize != -1; node = node._parent) {
+      node._subtreeSize = -1;
+    }
+  }
+
   @Override
   protected void updateChildren(final double time) {
-    for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-      final Spatial pkChild = getChild(i);
+    if (_parallelUpdatePool != null && getNumberOfChildren() > 1
+        && getSubtreeSize() > 2 * _parallelUpdateThreshold
+        && ParallelUpdateTask.updateChildren(this, time, _parallelUpdatePool, _parallelUpdateThreshold)) {
+      return;
+    }
+
+    final List<Spatial> children = getTraversalChildren();
+    for (int i = children.size() - 1; i >= 0; i--) {
+      final Spatial pkChild = children.get(i);
       if (pkChild != null) {
         pkChild.updateGeometricState(time, false);
       }
@@ -312,6 +405,14 @@ public class Node extends Spatial {
     return false;
   }
 
+  /**
+   * @return our children to walk through during update, draw and bound merging: an unchanging
+   *         snapshot if they are kept in a {@link CopyOnWriteChildList}, otherwise the list itself.
+   */
+  protected List<Spatial> getTraversalChildren() {
+    return _childSnapshots != null ? _childSnapshots.snapshot() : _children;
+  }
+
   /**
    *
    * <code>getNumberOfChildren</code> returns the number of children this node maintains.
@@ -324,8 +425,9 @@ public class Node extends Spatial {
   protected void propagateDirtyDown(final EnumSet<DirtyType> dirtyTypes) {
     super.propagateDirtyDown(dirtyTypes);
 
-    for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-      final Spatial child = _children.get(i);
+    final List<Spatial> children = getTraversalChildren();
+    for (int i = children.size() - 1; i >= 0; i--) {
+      final Spatial child = children.get(i);
 
       child.propagateDirtyDown(dirtyTypes);
     }
@@ -336,8 +438,9 @@ public class Node extends Spatial {
     super.updateWorldTransform(recurse);
 
     if (recurse) {
-      for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-        _children.get(i).updateWorldTransform(true);
+      final List<Spatial> children = getTraversalChildren();
+      for (int i = children.size() - 1; i >= 0; i--) {
+        children.get(i).updateWorldTransform(true);
       }
     }
   }
@@ -347,8 +450,9 @@ public class Node extends Spatial {
     super.updateWorldRenderStates(recurse, stack);
 
     if (recurse) {
-      for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-        _children.get(i).updateWorldRenderStates(true, stack);
+      final List<Spatial> children = getTraversalChildren();
+      for (int i = children.size() - 1; i >= 0; i--) {
+        children.get(i).updateWorldRenderStates(true, stack);
       }
     }
   }
@@ -362,15 +466,28 @@ public class Node extends Spatial {
    */
   @Override
   public void draw(final Renderer r) {
+    final List<Spatial> children = getTraversalChildren();
     Spatial child;
-    for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-      child = _children.get(i);
+    for (int i = children.size() - 1; i >= 0; i--) {
+      child = children.get(i);
       if (child != null) {
         child.onDraw(r);
       }
     }
   }
 
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    final List<Spatial> children = getTraversalChildren();
+    Spatial child;
+    for (int i = children.size() - 1; i >= 0; i--) {
+      child = children.get(i);
+      if (child != null) {
+        context.cullChild(child, queue);
+      }
+    }
+  }
+
   /**
    * <code>updateWorldBound</code> merges the bounds of all the children maintained by this node. This
    * will allow for faster culling operations.
@@ -380,8 +497,9 @@ public class Node extends Spatial {
   @Override
   public void updateWorldBound(final boolean recurse) {
     BoundingVolume worldBound = null;
-    for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-      final Spatial child = _children.get(i);
+    final List<Spatial> children = getTraversalChildren();
+    for (int i = children.size() - 1; i >= 0; i--) {
+      final Spatial child = children.get(i);
       if (child != null) {
         if (recurse) {
           child.updateWorldBound(true);
@@ -412,9 +530,10 @@ public class Node extends Spatial {
       visitor.visit(this);
     }
 
+    final List<Spatial> children = getTraversalChildren();
     Spatial child;
-    for (int i = getNumberOfChildren() - 1; i >= 0; i--) {
-      child = _children.get(i);
+    for (int i = children.size() - 1; i >= 0; i--) {
+      child = children.get(i);
       if (child != null) {
         child.acceptVisitor(visitor, preexecute);
       }
@@ -458,6 +577,7 @@ public class Node extends Spatial {
     super.read(capsule);
     final List<Spatial> cList = capsule.readSavableList("children", null);
     _children.clear();
+    invalidateSubtreeSize();
     if (cList != null) {
       _children.addAll(cList);
     }
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ardor3d.scenegraph.event.DirtyType;
+
+/**
+ * Task used by {@link Node} to update a contiguous range of its children on a {@link ForkJoinPool}.
+ * <p>
+ * While a task is running, dirty and clean events raised in its subtree are not sent to listeners
+ * directly. Instead they are recorded and, once all tasks for a node have completed, replayed on the
+ * calling thread in the same order a serial update would have produced them. This keeps listeners
+ * such as {@link SceneIndexer} single threaded and makes the result of a parallel update independent
+ * of scheduling.
+ * </p>
+ * <p>
+ * Likewise, the passes of {@link TransformStore}s bound to spatials in the subtree are put off until
+ * the join, as a pass writes the world transforms of spatials in other tasks' subtrees.
+ * </p>
+ */
+final class ParallelUpdateTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The task currently running on this thread, if any. */
+  private static final ThreadLocal<ParallelUpdateTask> CURRENT = new ThreadLocal<>();
+
+  /** Number of parallel updates in flight. Lets the serial path skip the thread local lookup. */
+  private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+  private final Node _node;
+  private final int _fromIndex;
+  private final int _toIndex;
+  private final double _time;
+  private final List<DeferredEvent> _events = new ArrayList<>();
+  private final List<TransformStore> _stores = new ArrayList<>();
+
+  private ParallelUpdateTask(final Node node, final int fromIndex, final int toIndex, final double time) {
+    _node = node;
+    _fromIndex = fromIndex;
+    _toIndex = toIndex;
+    _time = time;
+  }
+
+  @Override
+  protected void compute() {
+    final ParallelUpdateTask previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      // same order as Node.updateChildren
+      for (int i = _toIndex - 1; i >= _fromIndex; i--) {
+        final Spatial child = _node.getChild(i);
+        if (child != null) {
+          child.updateGeometricState(_time, false);
+        }
+      }
+    } finally {
+      if (previous != null) {
+        CURRENT.set(previous);
+      } else {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  /**
+   * Update the children of the given node, splitting them into groups of at least the given number
+   * of spatials and running each group as a separate task.
+   *
+   * @param node
+   *          the node whose children we are updating.
+   * @param time
+   *          the time per frame.
+   * @param pool
+   *          the pool to run on.
+   * @param threshold
+   *          minimum subtree size of a group of children.
+   * @return false if the children could not be usefully split, in which case nothing was updated.
+   */
+  static boolean updateChildren(final Node node, final double time, final ForkJoinPool pool, final int threshold) {
+    final List<ParallelUpdateTask> tasks = new ArrayList<>();
+    int groupSize = 0;
+    int groupEnd = node.getNumberOfChildren();
+    for (int i = groupEnd - 1; i >= 0; i--) {
+      final Spatial child = node.getChild(i);
+      groupSize += child instanceof Node ? ((Node) child).getSubtreeSize() : 1;
+      if (groupSize >= threshold) {
+        tasks.add(new ParallelUpdateTask(node, i, groupEnd, time));
+        groupEnd = i;
+        groupSize = 0;
+      }
+    }
+    if (groupEnd > 0) {
+      tasks.add(new ParallelUpdateTask(node, 0, groupEnd, time));
+    }
+
+    if (tasks.size() < 2) {
+      return false;
+    }
+
+    ACTIVE.incrementAndGet();
+    try {
+      if (ForkJoinTask.getPool() == pool) {
+        // already a worker of this pool (nested parallel node) - fork from here
+        ForkJoinTask.invokeAll(tasks);
+      } else {
+        pool.invoke(new RecursiveAction() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected void compute() {
+            ForkJoinTask.invokeAll(tasks);
+          }
+        });
+      }
+    } finally {
+      ACTIVE.decrementAndGet();
+    }
+
+    // run the store passes put off by the tasks - or hand them on to the task we are part of
+    for (final ParallelUpdateTask task : tasks) {
+      for (final TransformStore store : task._stores) {
+        if (!ParallelUpdateTask.deferStore(store)) {
+          store.update();
+        }
+      }
+    }
+
+    // deterministic join - hand recorded events to listeners in serial update order
+    for (final ParallelUpdateTask task : tasks) {
+      for (final DeferredEvent event : task._events) {
+        event._source.propageEventUp(event._caller, event._dirtyType, event._dirty);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Record a dirty event raised on the current thread, if the thread is running a parallel update.
+   *
+   * @return true if the event was taken care of (recorded, or dropped because nothing above the source
+   *         listens for events) and should not be propagated now.
+   */
+  static boolean defer(final Spatial source, final Spatial caller, final DirtyType dirtyType, final boolean dirty) {
+    if (ACTIVE.get() == 0) {
+      return false;
+    }
+    final ParallelUpdateTask task = CURRENT.get();
+    if (task == null) {
+      return false;
+    }
+    final List<DeferredEvent> events = task._events;
+    // only keep events that someone will actually hear about
+    for (Spatial spat = source; spat != null; spat = spat._parent) {
+      if (spat._listeners != null && !spat._listeners.isEmpty()) {
+        events.add(new DeferredEvent(source, caller, dirtyType, dirty));
+        break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Put off the pass of a transform store until the parallel update running on the current thread, if
+   * any, joins.
+   *
+   * @return true if the pass was put off, in which case the caller should not run it now.
+   */
+  static boolean deferStore(final TransformStore store) {
+    if (ACTIVE.get() == 0) {
+      return false;
+    }
+    final ParallelUpdateTask task = CURRENT.get();
+    if (task == null) {
+      return false;
+    }
+    if (!task._stores.contains(store)) {
+      task._stores.add(store);
+    }
+    return true;
+  }
+
+  private static final class DeferredEvent {
+    final Spatial _source;
+    final Spatial _caller;
+    final DirtyType _dirtyType;
+    final boolean _dirty;
+
+    DeferredEvent(final Spatial source, final Spatial caller, final DirtyType dirtyType, final boolean dirty) {
+      _source = source;
+      _caller = caller;
+      _dirtyType = dirtyType;
+      _dirty = dirty;
+    }
+  }
+}
@@ -11,14 +11,19 @@
 package com.ardor3d.scenegraph;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.light.LightManager;
+import com.ardor3d.light.LightUniformBlock;
+import com.ardor3d.renderer.Camera;
 import com.ardor3d.renderer.ContextManager;
 import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.Renderable;
 import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.material.uniform.UniformBlock;
 import com.ardor3d.scenegraph.event.DirtyEventListener;
 import com.ardor3d.scenegraph.event.DirtyType;
 
@@ -26,6 +31,9 @@ public class SceneIndexer implements DirtyEventListener, Renderable {
 
   protected List<Spatial> _rootIndex = new ArrayList<>();
   protected LightManager _lightManager = new LightManager();
+  protected final Map<String, UniformBlock> _uniformBlocks = new HashMap<>();
+  protected SpatialIndex _spatialIndex;
+  protected final List<Mesh> _visibleMeshes = new ArrayList<>();
 
   public static SceneIndexer getCurrent() {
     final RenderContext context = ContextManager.getCurrentContext();
@@ -39,9 +47,57 @@ public class SceneIndexer implements DirtyEventListener, Renderable {
 
   public void setLightManager(final LightManager manager) { _lightManager = manager; }
 
+  public SpatialIndex getSpatialIndex() { return _spatialIndex; }
+
+  /**
+   * Set a spatial index to keep up to date with the meshes of our scene roots, and to cull them
+   * through when rendering instead of walking the scene graph. Meshes of roots already added are
+   * indexed right away.
+   *
+   * @param index
+   *          the index to use, or null to render by walking the scene graph.
+   */
+  public void setSpatialIndex(final SpatialIndex index) {
+    _spatialIndex = index;
+    if (index != null) {
+      for (int i = 0, maxI = _rootIndex.size(); i < maxI; i++) {
+        index.addAll(_rootIndex.get(i));
+      }
+    }
+  }
+
+  /**
+   * Make a uniform block available to passes listing it by name.
+   *
+   * @param block
+   *          the block to add, replacing any of the same name.
+   */
+  public void addUniformBlock(final UniformBlock block) {
+    _uniformBlocks.put(block.getBlockName(), block);
+  }
+
+  public void removeUniformBlock(final String blockName) {
+    _uniformBlocks.remove(blockName);
+  }
+
+  /**
+   * @param blockName
+   *          the name of the block in shaders.
+   * @return the block of the given name - our light manager's light block or one added with
+   *         {@link #addUniformBlock(UniformBlock)} - or null if there is none.
+   */
+  public UniformBlock getUniformBlock(final String blockName) {
+    final UniformBlock block = _uniformBlocks.get(blockName);
+    if (block == null && _lightManager != null && LightUniformBlock.BLOCK_NAME.equals(blockName)) {
+      return _lightManager.getLightBlock();
+    }
+    return block;
+  }
+
   public void onRender(final Renderer renderer) {
     if (_lightManager != null) {
       _lightManager.cleanLights();
+      _lightManager.assignLights();
       _lightManager.renderShadowMaps(renderer, this);
     }
   }
@@ -62,17 +118,26 @@ public class SceneIndexer implements DirtyEventListener, Renderable {
     if (_lightManager != null) {
       _lightManager.addLights(spat);
     }
+    if (_spatialIndex != null) {
+      _spatialIndex.addAll(spat);
+    }
   }
 
   protected void onSpatialRemoved(final Spatial spat) {
     if (_lightManager != null) {
       _lightManager.removeLights(spat);
     }
+    if (_spatialIndex != null) {
+      _spatialIndex.removeAll(spat);
+    }
   }
 
   @Override
   public boolean spatialClean(final Spatial spatial, final DirtyType dirtyType) {
-    // nothing to do here - we only care about dirty
+    // a mesh's world bound was recomputed - refit its leaf before the next query
+    if (_spatialIndex != null && dirtyType == DirtyType.Bounding && spatial instanceof Mesh) {
+      _spatialIndex.markDirty(spatial);
+    }
     return false;
   }
 
@@ -82,12 +147,40 @@ public class SceneIndexer implements DirtyEventListener, Renderable {
       onSpatialAttached(caller);
     } else if (dirtyType == DirtyType.Detached) {
       onSpatialRemoved(caller);
+    } else if (dirtyType == DirtyType.Transform && _spatialIndex != null) {
+      _spatialIndex.markDirty(caller);
     }
     return false;
   }
 
   @Override
   public boolean render(final Renderer renderer) {
+    if (_spatialIndex != null) {
+      // cull through the index, then draw the survivors as the scene graph walk would
+      _visibleMeshes.clear();
+      _spatialIndex.findVisible(Camera.getCurrentCamera(), _visibleMeshes);
+      for (int i = 0, maxI = _visibleMeshes.size(); i < maxI; i++) {
+        final Mesh mesh = _visibleMeshes.get(i);
+        mesh.setLastFrustumIntersection(Camera.FrustumIntersect.Intersects);
+        mesh.draw(renderer);
+      }
+      _visibleMeshes.clear();
+      // branches with their own draw logic are culled and drawn by walking them
+      final List<Spatial> unindexed = _spatialIndex.getUnindexed();
+      for (int i = 0, maxI = unindexed.size(); i < maxI; i++) {
+        final Spatial spatial = unindexed.get(i);
+        if (SpatialIndex.isHidden(spatial)) {
+          continue;
+        }
+        // the parent was not culled by a walk, so must not pass on a stale result
+        if (spatial.getParent() != null) {
+          spatial.getParent().setLastFrustumIntersection(Camera.FrustumIntersect.Intersects);
+        }
+        spatial.onDraw(renderer);
+      }
+      return !_rootIndex.isEmpty();
+    }
+
     for (int i = _rootIndex.size(); --i >= 0;) {
       final var root = _rootIndex.get(i);
       root.draw(renderer);
@@ -35,9 +35,11 @@ import com.ardor3d.math.type.ReadOnlyQuaternion;
 import com.ardor3d.math.type.ReadOnlyTransform;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.material.MaterialManager;
 import com.ardor3d.renderer.material.RenderMaterial;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.RenderState;
 import com.ardor3d.renderer.state.RenderState.StateStack;
 import com.ardor3d.renderer.state.RenderState.StateType;
@@ -113,6 +115,12 @@ public abstract class Spatial implements Savable, Hintable {
 
   public transient double _queueDistance = Double.NEGATIVE_INFINITY;
 
+  /** The store computing our world transform, if we are bound to one - see {@link TransformStore}. */
+  protected transient TransformStore _transformStore;
+
+  /** Our id in {@link #_transformStore}. */
+  protected transient int _transformStoreId = -1;
+
   protected static final EnumSet<DirtyType> ON_DIRTY_TRANSFORM_ONLY = EnumSet.of(DirtyType.Transform);
   protected static final EnumSet<DirtyType> ON_DIRTY_TRANSFORM = EnumSet.of(DirtyType.Bounding, DirtyType.Transform);
   protected static final EnumSet<DirtyType> ON_DIRTY_RENDERSTATE = EnumSet.of(DirtyType.RenderState);
@@ -206,7 +214,12 @@ public abstract class Spatial implements Savable, Hintable {
    * @param parent
    *          the parent of this node.
    */
-  protected void setParent(final Node parent) { _parent = parent; }
+  protected void setParent(final Node parent) {
+    _parent = parent;
+    if (_transformStore != null) {
+      _transformStore.spatialChanged(_transformStoreId, true);
+    }
+  }
 
   /**
    * <code>removeFromParent</code> removes this Spatial from it's parent.
@@ -302,6 +315,9 @@ public abstract class Spatial implements Savable, Hintable {
   protected void markDirty(final Spatial caller, final DirtyType dirtyType) {
     switch (dirtyType) {
       case Transform:
+        if (_transformStore != null) {
+          _transformStore.spatialChanged(_transformStoreId, false);
+        }
         propagateDirtyDown(Spatial.ON_DIRTY_TRANSFORM);
         if (_parent != null) {
           _parent.propagateDirtyUp(Spatial.ON_DIRTY_BOUNDING);
@@ -390,6 +406,11 @@ public abstract class Spatial implements Savable, Hintable {
    */
   protected void propagateDirtyDown(final EnumSet<DirtyType> dirtyTypes) {
     _dirtyMark.addAll(dirtyTypes);
+    // roots of a transform store must be recomputed when an ancestor outside of the store moves
+    if (_transformStore != null && dirtyTypes.contains(DirtyType.Transform)
+        && (_parent == null || _parent._transformStore != _transformStore)) {
+      _transformStore.spatialChanged(_transformStoreId, false);
+    }
   }
 
   /**
@@ -403,6 +424,11 @@ public abstract class Spatial implements Savable, Hintable {
    *          true if this is a dirty event, false if clean
    */
   protected void propageEventUp(final Spatial spatial, final DirtyType dirtyType, final boolean dirty) {
+    if (ParallelUpdateTask.defer(this, spatial, dirtyType, dirty)) {
+      // we are part of a parallel update - our node will replay this once its children are done.
+      return;
+    }
+
     boolean consumed;
     if (_listeners != null) {
       for (final var listener : _listeners) {
@@ -718,6 +744,17 @@ public abstract class Spatial implements Savable, Hintable {
    */
   public ReadOnlyTransform getWorldTransform() { return _worldTransform; }
 
+  /**
+   * @return the store computing our world transform, or null if we compute it ourselves.
+   * @see TransformStore#bind(Spatial)
+   */
+  public TransformStore getTransformStore() { return _transformStore; }
+
+  /**
+   * @return our id in {@link #getTransformStore()}, or -1 if we are not bound to a store.
+   */
+  public int getTransformStoreId() { return _transformStoreId; }
+
   /**
    * <code>getWorldBound</code> retrieves the world bound at this level.
    *
@@ -771,6 +808,20 @@ public abstract class Spatial implements Savable, Hintable {
    */
   public abstract void draw(final Renderer renderer);
 
+  /**
+   * Called by {@link CullContext} once this spatial has passed culling. Adds this spatial to the given
+   * queue if it is geometry, or culls its children if it is a node. This is the counterpart of
+   * {@link #draw(Renderer)} for culling away from the render thread, so must not modify the scene.
+   *
+   * @param context
+   *          the context doing the culling.
+   * @param queue
+   *          the queue to add to.
+   */
+  public void queue(final CullContext context, final RenderQueue queue) {
+    context.addToQueue(this, queue);
+  }
+
   /**
    * Update geometric state.
    *
@@ -860,7 +911,15 @@ public abstract class Spatial implements Savable, Hintable {
    *          transforms for a branch without updating the full geometric state.
    */
   public void updateWorldTransform(final boolean recurse) {
-    if (_parent != null) {
+    // during a parallel update, the store's pass waits for the join and we compute our own transform
+    if (_transformStore != null && !ParallelUpdateTask.deferStore(_transformStore)) {
+      // our world transform is computed - and written back to us - by the store
+      _transformStore.update();
+      if (_transformStore.isDeferred(_transformStoreId)) {
+        // the store waits for our parent to be updated, so stay dirty until then
+        return;
+      }
+    } else if (_parent != null) {
       _parent._worldTransform.multiply(_localTransform, _worldTransform);
     } else {
       _worldTransform.set(_localTransform);
@@ -874,6 +933,14 @@ public abstract class Spatial implements Savable, Hintable {
   protected void updateWorldTransformToRoot() {
     if (_parent != null) {
       _parent.updateWorldTransformToRoot();
+    }
+    if (_transformStore != null && !ParallelUpdateTask.deferStore(_transformStore)) {
+      _transformStore.update();
+      if (_transformStore.isDeferred(_transformStoreId)) {
+        // the store waits for our parent's dirty mark to clear, but its world transform is current now
+        _parent._worldTransform.multiply(_localTransform, _worldTransform);
+      }
+    } else if (_parent != null) {
       _parent._worldTransform.multiply(_localTransform, _worldTransform);
     } else {
       _worldTransform.set(_localTransform);
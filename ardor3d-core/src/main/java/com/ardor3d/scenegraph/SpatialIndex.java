@@ -0,0 +1,822 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.math.type.ReadOnlyRay3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.extension.SwitchNode;
+import com.ardor3d.scenegraph.hint.CullHint;
+
+/**
+ * <p>
+ * A dynamic AABB tree over the {@link Mesh} leaves of a scene, independent of how the scene's nodes
+ * are organized. Frustum, ray and bounds queries walk this tree instead of the node hierarchy, which
+ * makes them logarithmic even for flat scenes with a great many meshes under one node. Install one
+ * with {@link SceneIndexer#setSpatialIndex(SpatialIndex)} to have meshes registered and refit as the
+ * scene changes, and rendering culled through it.
+ * </p>
+ * <p>
+ * Leaves hold each mesh's world bound as an axis aligned box, grown by a loose margin. Moving a mesh
+ * within its loose box costs nothing; only meshes that leave it are removed and reinserted. Inserts
+ * pick the sibling that least grows the tree's surface area, and the tree is kept balanced with
+ * rotations. Nodes are stored in flat arrays.
+ * </p>
+ * <p>
+ * Changes are queued with {@link #markDirty(Spatial)} and applied by {@link #refit()}, which each
+ * query calls first, so the world bounds used are those of the last geometric update. Meshes without
+ * a world bound, or with an effective {@link CullHint#Never}, are never culled by frustum queries, as
+ * in {@link Spatial#onDraw}. A changed cull hint is only seen once the mesh is refit, so mark it dirty
+ * after setting one. Queries leave out meshes hidden by a {@link CullHint#Always} or an inactive
+ * {@link SwitchNode} child above them.
+ * </p>
+ * <p>
+ * Branches that do not draw as a plain Node or Mesh would - such as a Node subclass with its own
+ * draw logic, or a Spatial that is neither Node nor Mesh - are not indexed. They are listed by
+ * {@link #getUnindexed()} for rendering and picking to walk as usual. This class is not thread safe.
+ * </p>
+ */
+public class SpatialIndex {
+
+  private static final int NULL = -1;
+
+  /** Fraction of a leaf's largest extent added on each side of its box. */
+  protected final double _looseness;
+
+  protected int _root = SpatialIndex.NULL;
+  protected int _nodeCapacity;
+  protected int _nodeCount;
+  protected int _freeList = SpatialIndex.NULL;
+
+  protected double[] _minX, _minY, _minZ, _maxX, _maxY, _maxZ;
+  protected int[] _parent, _child1, _child2, _height;
+  protected Mesh[] _meshes;
+
+  /** Leaf node of each indexed mesh, NULL for those kept out of the tree. */
+  protected final Map<Mesh, Integer> _leaves = new IdentityHashMap<>();
+  /** Indexed meshes kept out of the tree, as frustum queries must never cull them. */
+  protected final List<Mesh> _uncullable = new ArrayList<>();
+  /** Branches left to a walk of the scene graph. */
+  protected final List<Spatial> _unindexed = new ArrayList<>();
+  protected final Set<Spatial> _pending = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private int[] _stack = new int[64];
+  private int[] _maskStack = new int[64];
+  private final double[] _box = new double[6];
+  private final double[] _queryBox = new double[6];
+
+  public SpatialIndex() {
+    this(0.1);
+  }
+
+  /**
+   * @param looseness
+   *          fraction of a mesh's largest extent its leaf box is grown by on each side. Larger values
+   *          mean fewer reinserts for moving meshes, but looser culling.
+   */
+  public SpatialIndex(final double looseness) {
+    if (looseness < 0) {
+      throw new IllegalArgumentException("looseness must be >= 0");
+    }
+    _looseness = looseness;
+    allocateArrays(64);
+  }
+
+  /**
+   * @return the number of indexed meshes.
+   */
+  public int size() {
+    return _leaves.size();
+  }
+
+  public boolean contains(final Mesh mesh) {
+    return _leaves.containsKey(mesh);
+  }
+
+  /**
+   * @return the height of the tree - 0 for a single leaf, -1 if empty.
+   */
+  public int getHeight() { return _root == SpatialIndex.NULL ? -1 : _height[_root]; }
+
+  /**
+   * Add a mesh at its current world bound.
+   *
+   * @param mesh
+   *          the mesh to add.
+   * @return false if the mesh was already indexed.
+   */
+  public boolean add(final Mesh mesh) {
+    if (_leaves.containsKey(mesh)) {
+      return false;
+    }
+    _leaves.put(mesh, insertMesh(mesh));
+    return true;
+  }
+
+  /**
+   * Remove a mesh.
+   *
+   * @param mesh
+   *          the mesh to remove.
+   * @return false if the mesh was not indexed.
+   */
+  public boolean remove(final Mesh mesh) {
+    final Integer leaf = _leaves.remove(mesh);
+    if (leaf == null) {
+      return false;
+    }
+    removeMesh(mesh, leaf);
+    _pending.remove(mesh);
+    return true;
+  }
+
+  /**
+   * Add every mesh in the given branch. Parts of the branch that can not be drawn through the index
+   * are added to {@link #getUnindexed()} instead.
+   *
+   * @param spatial
+   *          the branch to add.
+   */
+  public void addAll(final Spatial spatial) {
+    if (!SpatialIndex.isIndexable(spatial)) {
+      if (!_unindexed.contains(spatial)) {
+        _unindexed.add(spatial);
+      }
+    } else if (spatial instanceof Mesh) {
+      add((Mesh) spatial);
+    } else if (spatial instanceof Node) {
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        addAll(node.getChild(i));
+      }
+    }
+  }
+
+  /**
+   * Remove every mesh in the given branch.
+   *
+   * @param spatial
+   *          the branch to remove.
+   */
+  public void removeAll(final Spatial spatial) {
+    if (_unindexed.remove(spatial)) {
+      return;
+    }
+    if (spatial instanceof Mesh) {
+      remove((Mesh) spatial);
+    } else if (spatial instanceof Node) {
+      _pending.remove(spatial);
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        removeAll(node.getChild(i));
+      }
+    }
+  }
+
+  /**
+   * @return the branches added to us that we do not index, as they draw themselves differently from a
+   *         plain Node or Mesh. These must be drawn, picked and so on by walking them.
+   */
+  public List<Spatial> getUnindexed() { return Collections.unmodifiableList(_unindexed); }
+
+  /**
+   * Flag the meshes of a branch as moved or resized, to be refit on the next {@link #refit()}.
+   *
+   * @param spatial
+   *          the changed mesh, or node whose meshes changed.
+   */
+  public void markDirty(final Spatial spatial) {
+    _pending.add(spatial);
+  }
+
+  /**
+   * Bring the leaves of all meshes flagged with {@link #markDirty(Spatial)} up to date with their
+   * world bounds.
+   */
+  public void refit() {
+    if (_pending.isEmpty()) {
+      return;
+    }
+    for (final Spatial spatial : _pending) {
+      refitAll(spatial);
+    }
+    _pending.clear();
+  }
+
+  private void refitAll(final Spatial spatial) {
+    if (spatial instanceof Mesh) {
+      update((Mesh) spatial);
+    } else if (spatial instanceof Node && SpatialIndex.isIndexable(spatial)) {
+      final Node node = (Node) spatial;
+      for (int i = 0, maxI = node.getNumberOfChildren(); i < maxI; i++) {
+        refitAll(node.getChild(i));
+      }
+    }
+  }
+
+  /**
+   * Bring a mesh's leaf up to date with its world bound now.
+   *
+   * @param mesh
+   *          the mesh to update.
+   * @return true if the mesh left its loose box and was moved in the tree.
+   */
+  public boolean update(final Mesh mesh) {
+    final Integer leaf = _leaves.get(mesh);
+    if (leaf == null) {
+      return false;
+    }
+    final boolean uncullable = SpatialIndex.isUncullable(mesh);
+    if (leaf == SpatialIndex.NULL && uncullable) {
+      return false;
+    }
+    if (leaf != SpatialIndex.NULL && !uncullable) {
+      SpatialIndex.getBox(mesh.getWorldBound(), _box);
+      final int id = leaf;
+      if (_minX[id] <= _box[0] && _minY[id] <= _box[1] && _minZ[id] <= _box[2] && _maxX[id] >= _box[3]
+          && _maxY[id] >= _box[4] && _maxZ[id] >= _box[5]) {
+        return false;
+      }
+    }
+    removeMesh(mesh, leaf);
+    _leaves.put(mesh, insertMesh(mesh));
+    return true;
+  }
+
+  /**
+   * Find the meshes that may be seen by the given camera: those whose world bound is not fully
+   * outside of its frustum, or which have no world bound or a {@link CullHint#Never}. Planes set in
+   * the camera's plane state are skipped. Hidden meshes - see {@link #isHidden(Spatial)} - are left
+   * out. Branches in {@link #getUnindexed()} must be culled separately.
+   *
+   * @param camera
+   *          the camera to cull against.
+   * @param store
+   *          the list to add the meshes to.
+   * @return the number of meshes added.
+   */
+  public int findVisible(final Camera camera, final List<Mesh> store) {
+    refit();
+    int found = 0;
+    for (int i = 0, maxI = _uncullable.size(); i < maxI; i++) {
+      found += addIfNotCulled(_uncullable.get(i), store);
+    }
+    if (_root == SpatialIndex.NULL) {
+      return found;
+    }
+
+    final int inside = (1 << Camera.FRUSTUM_PLANES) - 1;
+    int top = push(0, _root, camera.getPlaneState());
+    while (top > 0) {
+      top--;
+      final int node = _stack[top];
+      int mask = _maskStack[top];
+      if (mask != inside) {
+        mask = camera.contains(_minX[node], _minY[node], _minZ[node], _maxX[node], _maxY[node], _maxZ[node], mask);
+        if (mask < 0) {
+          continue;
+        }
+      }
+
+      if (_child1[node] == SpatialIndex.NULL) {
+        final Mesh mesh = _meshes[node];
+        final BoundingVolume bound = mesh.getWorldBound();
+        if (mask != inside && bound != null) {
+          // test the mesh's own bound, not the loose box, against the planes still in question
+          final int state = camera.getPlaneState();
+          camera.setPlaneState(mask);
+          final boolean outside = camera.contains(bound) == Camera.FrustumIntersect.Outside;
+          camera.setPlaneState(state);
+          if (outside) {
+            continue;
+          }
+        }
+        found += addIfNotCulled(mesh, store);
+      } else {
+        top = push(top, _child1[node], mask);
+        top = push(top, _child2[node], mask);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Find the meshes whose world bound is hit by the given ray.
+   *
+   * @param ray
+   *          the ray to test.
+   * @param store
+   *          the list to add the meshes to.
+   * @return the number of meshes added.
+   */
+  public int findIntersecting(final ReadOnlyRay3 ray, final List<Mesh> store) {
+    refit();
+    int found = 0;
+    for (int i = 0, maxI = _uncullable.size(); i < maxI; i++) {
+      final Mesh mesh = _uncullable.get(i);
+      if (mesh.getWorldBound() != null && mesh.getWorldBound().intersects(ray)) {
+        store.add(mesh);
+        found++;
+      }
+    }
+    if (_root == SpatialIndex.NULL) {
+      return found;
+    }
+
+    final ReadOnlyVector3 origin = ray.getOrigin();
+    final ReadOnlyVector3 direction = ray.getDirection();
+    final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+    final double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+
+    int top = push(0, _root, 0);
+    while (top > 0) {
+      final int node = _stack[--top];
+      if (!rayHits(node, ox, oy, oz, dx, dy, dz)) {
+        continue;
+      }
+
+      if (_child1[node] == SpatialIndex.NULL) {
+        final Mesh mesh = _meshes[node];
+        final BoundingVolume bound = mesh.getWorldBound();
+        if (bound != null && bound.intersects(ray)) {
+          store.add(mesh);
+          found++;
+        }
+      } else {
+        top = push(top, _child1[node], 0);
+        top = push(top, _child2[node], 0);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Find the meshes whose world bound intersects the given volume.
+   *
+   * @param volume
+   *          the volume to test.
+   * @param store
+   *          the list to add the meshes to.
+   * @return the number of meshes added.
+   */
+  public int findIntersecting(final BoundingVolume volume, final List<Mesh> store) {
+    refit();
+    int found = 0;
+    for (int i = 0, maxI = _uncullable.size(); i < maxI; i++) {
+      final Mesh mesh = _uncullable.get(i);
+      if (mesh.getWorldBound() != null && mesh.getWorldBound().intersects(volume)) {
+        store.add(mesh);
+        found++;
+      }
+    }
+    if (_root == SpatialIndex.NULL) {
+      return found;
+    }
+
+    final double[] box = _queryBox;
+    SpatialIndex.getBox(volume, box);
+
+    int top = push(0, _root, 0);
+    while (top > 0) {
+      final int node = _stack[--top];
+      if (_minX[node] > box[3] || _maxX[node] < box[0] || _minY[node] > box[4] || _maxY[node] < box[1]
+          || _minZ[node] > box[5] || _maxZ[node] < box[2]) {
+        continue;
+      }
+
+      if (_child1[node] == SpatialIndex.NULL) {
+        final Mesh mesh = _meshes[node];
+        final BoundingVolume bound = mesh.getWorldBound();
+        if (bound != null && bound.intersects(volume)) {
+          store.add(mesh);
+          found++;
+        }
+      } else {
+        top = push(top, _child1[node], 0);
+        top = push(top, _child2[node], 0);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @param spatial
+   *          the spatial to check.
+   * @return true if the given spatial or one of its ancestors has {@link CullHint#Always}, or is a
+   *         child a {@link SwitchNode} does not show, meaning it would not be drawn by a walk of the
+   *         scene graph.
+   */
+  public static boolean isHidden(final Spatial spatial) {
+    for (Spatial current = spatial; current != null;) {
+      if (current.getSceneHints().getLocalCullHint() == CullHint.Always) {
+        return true;
+      }
+      final Node parent = current.getParent();
+      if (parent instanceof SwitchNode
+          && !((SwitchNode) parent).getVisible(parent.getChildren().indexOf(current))) {
+        return true;
+      }
+      current = parent;
+    }
+    return false;
+  }
+
+  /**
+   * @param spatial
+   *          the spatial to check.
+   * @return true if the given spatial draws as a plain Node or Mesh would, so that it - and for a Node
+   *         its children - may be culled and drawn through an index rather than by its own onDraw.
+   */
+  public static boolean isIndexable(final Spatial spatial) {
+    return SpatialIndex.STANDARD_DRAW.get(spatial.getClass());
+  }
+
+  /** Whether each class of spatial keeps the draw logic of Node or Mesh. */
+  private static final ClassValue<Boolean> STANDARD_DRAW = new ClassValue<>() {
+    @Override
+    protected Boolean computeValue(final Class<?> type) {
+      try {
+        if (type.getMethod("onDraw", Renderer.class).getDeclaringClass() != Spatial.class) {
+          return false;
+        }
+        if (Mesh.class.isAssignableFrom(type)) {
+          return true;
+        }
+        if (Node.class.isAssignableFrom(type)) {
+          // a switch node only draws its shown children, which isHidden accounts for
+          final Class<?> draw = type.getMethod("draw", Renderer.class).getDeclaringClass();
+          return draw == Node.class || draw == SwitchNode.class;
+        }
+        return false;
+      } catch (final NoSuchMethodException ex) {
+        return false;
+      }
+    }
+  };
+
+  private static boolean isUncullable(final Mesh mesh) {
+    return mesh.getWorldBound() == null || mesh.getSceneHints().getCullHint() == CullHint.Never;
+  }
+
+  private static int addIfNotCulled(final Mesh mesh, final List<Mesh> store) {
+    if (SpatialIndex.isHidden(mesh)) {
+      return 0;
+    }
+    store.add(mesh);
+    return 1;
+  }
+
+  /**
+   * Slab test of a ray against the box of a node.
+   */
+  private boolean rayHits(final int node, final double ox, final double oy, final double oz, final double dx,
+      final double dy, final double dz) {
+    double near = 0, far = Double.POSITIVE_INFINITY;
+    if (dx != 0) {
+      final double t1 = (_minX[node] - ox) / dx, t2 = (_maxX[node] - ox) / dx;
+      near = Math.max(near, Math.min(t1, t2));
+      far = Math.min(far, Math.max(t1, t2));
+    } else if (ox < _minX[node] || ox > _maxX[node]) {
+      return false;
+    }
+    if (dy != 0) {
+      final double t1 = (_minY[node] - oy) / dy, t2 = (_maxY[node] - oy) / dy;
+      near = Math.max(near, Math.min(t1, t2));
+      far = Math.min(far, Math.max(t1, t2));
+    } else if (oy < _minY[node] || oy > _maxY[node]) {
+      return false;
+    }
+    if (dz != 0) {
+      final double t1 = (_minZ[node] - oz) / dz, t2 = (_maxZ[node] - oz) / dz;
+      near = Math.max(near, Math.min(t1, t2));
+      far = Math.min(far, Math.max(t1, t2));
+    } else if (oz < _minZ[node] || oz > _maxZ[node]) {
+      return false;
+    }
+    return near <= far;
+  }
+
+  private int push(final int top, final int node, final int mask) {
+    if (top == _stack.length) {
+      _stack = Arrays.copyOf(_stack, top * 2);
+      _maskStack = Arrays.copyOf(_maskStack, top * 2);
+    }
+    _stack[top] = node;
+    _maskStack[top] = mask;
+    return top + 1;
+  }
+
+  /**
+   * Write the axis aligned box of a bounding volume as {minX, minY, minZ, maxX, maxY, maxZ}. Boxes
+   * use their extents, other volumes their bounding sphere.
+   */
+  public static void getBox(final BoundingVolume volume, final double[] store) {
+    final ReadOnlyVector3 c = volume.getCenter();
+    double ex, ey, ez;
+    if (volume instanceof BoundingBox) {
+      final BoundingBox box = (BoundingBox) volume;
+      ex = box.getXExtent();
+      ey = box.getYExtent();
+      ez = box.getZExtent();
+    } else {
+      ex = ey = ez = volume.getRadius();
+    }
+    store[0] = c.getX() - ex;
+    store[1] = c.getY() - ey;
+    store[2] = c.getZ() - ez;
+    store[3] = c.getX() + ex;
+    store[4] = c.getY() + ey;
+    store[5] = c.getZ() + ez;
+  }
+
+  // ---- tree maintenance ----
+
+  private int insertMesh(final Mesh mesh) {
+    if (SpatialIndex.isUncullable(mesh)) {
+      _uncullable.add(mesh);
+      return SpatialIndex.NULL;
+    }
+    final BoundingVolume bound = mesh.getWorldBound();
+
+    SpatialIndex.getBox(bound, _box);
+    final double margin =
+        _looseness * Math.max(_box[3] - _box[0], Math.max(_box[4] - _box[1], _box[5] - _box[2])) * 0.5;
+    final int leaf = allocateNode();
+    _minX[leaf] = _box[0] - margin;
+    _minY[leaf] = _box[1] - margin;
+    _minZ[leaf] = _box[2] - margin;
+    _maxX[leaf] = _box[3] + margin;
+    _maxY[leaf] = _box[4] + margin;
+    _maxZ[leaf] = _box[5] + margin;
+    _meshes[leaf] = mesh;
+    insertLeaf(leaf);
+    return leaf;
+  }
+
+  private void removeMesh(final Mesh mesh, final int leaf) {
+    if (leaf == SpatialIndex.NULL) {
+      _uncullable.remove(mesh);
+    } else {
+      removeLeaf(leaf);
+      freeNode(leaf);
+    }
+  }
+
+  private void insertLeaf(final int leaf) {
+    if (_root == SpatialIndex.NULL) {
+      _root = leaf;
+      _parent[leaf] = SpatialIndex.NULL;
+      return;
+    }
+
+    // find the sibling that grows the tree's surface area the least
+    int index = _root;
+    while (_child1[index] != SpatialIndex.NULL) {
+      final int child1 = _child1[index], child2 = _child2[index];
+      final double area = area(index);
+      final double combinedArea = unionArea(index, leaf);
+
+      // cost of making a new parent for this node and the leaf, and the cost pushed down to children
+      final double cost = 2 * combinedArea;
+      final double inheritanceCost = 2 * (combinedArea - area);
+      final double cost1 = descendCost(child1, leaf) + inheritanceCost;
+      final double cost2 = descendCost(child2, leaf) + inheritanceCost;
+
+      if (cost < cost1 && cost < cost2) {
+        break;
+      }
+      index = cost1 < cost2 ? child1 : child2;
+    }
+
+    final int sibling = index;
+    final int oldParent = _parent[sibling];
+    final int newParent = allocateNode();
+    _parent[newParent] = oldParent;
+    setUnion(newParent, sibling, leaf);
+    _height[newParent] = _height[sibling] + 1;
+    if (oldParent != SpatialIndex.NULL) {
+      if (_child1[oldParent] == sibling) {
+        _child1[oldParent] = newParent;
+      } else {
+        _child2[oldParent] = newParent;
+      }
+    } else {
+      _root = newParent;
+    }
+    _child1[newParent] = sibling;
+    _child2[newParent] = leaf;
+    _parent[sibling] = newParent;
+    _parent[leaf] = newParent;
+
+    fixUpwards(_parent[leaf]);
+  }
+
+  private double descendCost(final int child, final int leaf) {
+    if (_child1[child] == SpatialIndex.NULL) {
+      return unionArea(child, leaf);
+    }
+    return unionArea(child, leaf) - area(child);
+  }
+
+  private void removeLeaf(final int leaf) {
+    if (leaf == _root) {
+      _root = SpatialIndex.NULL;
+      return;
+    }
+
+    final int parent = _parent[leaf];
+    final int grandParent = _parent[parent];
+    final int sibling = _child1[parent] == leaf ? _child2[parent] : _child1[parent];
+
+    if (grandParent != SpatialIndex.NULL) {
+      if (_child1[grandParent] == parent) {
+        _child1[grandParent] = sibling;
+      } else {
+        _child2[grandParent] = sibling;
+      }
+      _parent[sibling] = grandParent;
+      freeNode(parent);
+      fixUpwards(grandParent);
+    } else {
+      _root = sibling;
+      _parent[sibling] = SpatialIndex.NULL;
+      freeNode(parent);
+    }
+  }
+
+  /** Rebalance and refit the given node and its ancestors. */
+  private void fixUpwards(final int start) {
+    int index = start;
+    while (index != SpatialIndex.NULL) {
+      index = balance(index);
+      final int child1 = _child1[index], child2 = _child2[index];
+      _height[index] = 1 + Math.max(_height[child1], _height[child2]);
+      setUnion(index, child1, child2);
+      index = _parent[index];
+    }
+  }
+
+  /**
+   * Rotate the taller child of a node up if the node is out of balance.
+   *
+   * @return the node now at the given node's place.
+   */
+  private int balance(final int a) {
+    if (_child1[a] == SpatialIndex.NULL || _height[a] < 2) {
+      return a;
+    }
+
+    final int b = _child1[a], c = _child2[a];
+    final int difference = _height[c] - _height[b];
+    if (difference > 1) {
+      rotateUp(a, c, b, false);
+      return c;
+    }
+    if (difference < -1) {
+      rotateUp(a, b, c, true);
+      return b;
+    }
+    return a;
+  }
+
+  /**
+   * Make the tall child of a its parent, moving the tall child's shorter child under a.
+   *
+   * @param a
+   *          the node out of balance.
+   * @param tall
+   *          the taller child of a.
+   * @param other
+   *          the other child of a.
+   * @param tallIsFirst
+   *          true if tall is child1 of a.
+   */
+  private void rotateUp(final int a, final int tall, final int other, final boolean tallIsFirst) {
+    final int f = _child1[tall], g = _child2[tall];
+
+    _child1[tall] = a;
+    _parent[tall] = _parent[a];
+    _parent[a] = tall;
+    final int parent = _parent[tall];
+    if (parent != SpatialIndex.NULL) {
+      if (_child1[parent] == a) {
+        _child1[parent] = tall;
+      } else {
+        _child2[parent] = tall;
+      }
+    } else {
+      _root = tall;
+    }
+
+    // keep the taller grandchild up with tall, give the shorter to a in tall's old place
+    final int keep = _height[f] > _height[g] ? f : g;
+    final int move = keep == f ? g : f;
+    _child2[tall] = keep;
+    if (tallIsFirst) {
+      _child1[a] = move;
+    } else {
+      _child2[a] = move;
+    }
+    _parent[move] = a;
+
+    setUnion(a, other, move);
+    _height[a] = 1 + Math.max(_height[other], _height[move]);
+    setUnion(tall, a, keep);
+    _height[tall] = 1 + Math.max(_height[a], _height[keep]);
+  }
+
+  private double area(final int node) {
+    final double dx = _maxX[node] - _minX[node], dy = _maxY[node] - _minY[node], dz = _maxZ[node] - _minZ[node];
+    return dx * dy + dy * dz + dz * dx;
+  }
+
+  private double unionArea(final int a, final int b) {
+    final double dx = Math.max(_maxX[a], _maxX[b]) - Math.min(_minX[a], _minX[b]);
+    final double dy = Math.max(_maxY[a], _maxY[b]) - Math.min(_minY[a], _minY[b]);
+    final double dz = Math.max(_maxZ[a], _maxZ[b]) - Math.min(_minZ[a], _minZ[b]);
+    return dx * dy + dy * dz + dz * dx;
+  }
+
+  private void setUnion(final int store, final int a, final int b) {
+    _minX[store] = Math.min(_minX[a], _minX[b]);
+    _minY[store] = Math.min(_minY[a], _minY[b]);
+    _minZ[store] = Math.min(_minZ[a], _minZ[b]);
+    _maxX[store] = Math.max(_maxX[a], _maxX[b]);
+    _maxY[store] = Math.max(_maxY[a], _maxY[b]);
+    _maxZ[store] = Math.max(_maxZ[a], _maxZ[b]);
+  }
+
+  private int allocateNode() {
+    final int node;
+    if (_freeList != SpatialIndex.NULL) {
+      node = _freeList;
+      _freeList = _parent[node];
+    } else {
+      if (_nodeCount == _nodeCapacity) {
+        allocateArrays(_nodeCapacity * 2);
+      }
+      node = _nodeCount++;
+    }
+    _parent[node] = SpatialIndex.NULL;
+    _child1[node] = SpatialIndex.NULL;
+    _child2[node] = SpatialIndex.NULL;
+    _height[node] = 0;
+    _meshes[node] = null;
+    return node;
+  }
+
+  private void freeNode(final int node) {
+    _meshes[node] = null;
+    _height[node] = -1;
+    _parent[node] = _freeList;
+    _freeList = node;
+  }
+
+  private void allocateArrays(final int capacity) {
+    _nodeCapacity = capacity;
+    if (_minX == null) {
+      _minX = new double[capacity];
+      _minY = new double[capacity];
+      _minZ = new double[capacity];
+      _maxX = new double[capacity];
+      _maxY = new double[capacity];
+      _maxZ = new double[capacity];
+      _parent = new int[capacity];
+      _child1 = new int[capacity];
+      _child2 = new int[capacity];
+      _height = new int[capacity];
+      _meshes = new Mesh[capacity];
+      return;
+    }
+    _minX = Arrays.copyOf(_minX, capacity);
+    _minY = Arrays.copyOf(_minY, capacity);
+    _minZ = Arrays.copyOf(_minZ, capacity);
+    _maxX = Arrays.copyOf(_maxX, capacity);
+    _maxY = Arrays.copyOf(_maxY, capacity);
+    _maxZ = Arrays.copyOf(_maxZ, capacity);
+    _parent = Arrays.copyOf(_parent, capacity);
+    _child1 = Arrays.copyOf(_child1, capacity);
+    _child2 = Arrays.copyOf(_child2, capacity);
+    _height = Arrays.copyOf(_height, capacity);
+    _meshes = Arrays.copyOf(_meshes, capacity);
+  }
+}
@@ -0,0 +1,634 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.ardor3d.math.Matrix3;
+import com.ardor3d.math.Transform;
+import com.ardor3d.math.type.ReadOnlyMatrix3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.scenegraph.event.DirtyType;
+
+/**
+ * <p>
+ * A compact transform hierarchy for large, flat scenes. Local and world transforms of every entry are
+ * kept in flat primitive arrays indexed by an integer id, rather than in {@link Transform} objects,
+ * and world transforms are computed for all changed entries in one pass over those arrays - see
+ * {@link #update()}.
+ * </p>
+ * <p>
+ * Entries may be used on their own, for example to drive instanced geometry through
+ * {@link #getWorldMatrix(int, FloatBuffer)}, or be bound to an existing Spatial with
+ * {@link #bind(Spatial)}. A bound Spatial keeps its usual transform API, but no longer computes its
+ * own world transform: the store reads its local transform when it changes and writes the new world
+ * transform back during its pass, which runs automatically when a bound Spatial updates its world
+ * transform and there are changes pending.
+ * </p>
+ * <p>
+ * Bound Spatials whose parent is bound to the same store use that parent's entry. Others are roots of
+ * the store and use their parent's world transform. While that parent's transform is still dirty - a
+ * pass may be triggered by another bound Spatial before the parent is updated - the root and its
+ * entries are left pending, and computed by a later pass once the parent is clean.
+ * </p>
+ * <p>
+ * During a parallel update of a {@link Node}, bound Spatials compute their own world transform and the
+ * store's pass is run once the update joins, so it never writes to Spatials other threads are
+ * updating. Other than {@link #update()}, the store is not thread safe.
+ * </p>
+ */
+public class TransformStore {
+
+  /** Local transforms: 3x3 rotation (row major), scale and translation. */
+  static final int LOCAL_STRIDE = 15;
+
+  /** World transforms: 3x3 matrix including scale (row major) and translation. */
+  static final int WORLD_STRIDE = 12;
+
+  private static final byte FLAG_USED = 1;
+  private static final byte FLAG_LOCAL_CHANGED = 2;
+  private static final byte FLAG_WORLD_CHANGED = 4;
+  private static final byte FLAG_READ_SPATIAL = 8;
+
+  private static final double[] IDENTITY_LOCAL = new double[] { 1, 0, 0, 0, 1, 0, 0, 0, 1, 1, 1, 1, 0, 0, 0 };
+
+  protected int _size;
+  protected int[] _parent;
+  protected byte[] _flags;
+  protected double[] _local;
+  protected double[] _world;
+  protected Spatial[] _spatials;
+
+  protected int[] _free = new int[16];
+  protected int _freeCount;
+
+  /** Entries ordered so parents come before their children. */
+  protected int[] _order = new int[0];
+  protected int _orderCount;
+  protected boolean _orderDirty;
+
+  /** World transform of the outside parent of a root entry, during our pass. */
+  protected final double[] _rootParent = new double[TransformStore.WORLD_STRIDE];
+
+  /** true if any entry changed since the last pass, or was left pending by it. */
+  protected volatile boolean _pending;
+
+  /** true if any entry changed since the last pass. */
+  protected volatile boolean _changed;
+
+  /** Root entries the last pass left pending, as their parent outside of the store was still dirty. */
+  protected int[] _deferred = new int[8];
+  protected int _deferredCount;
+
+  public TransformStore() {
+    this(256);
+  }
+
+  /**
+   * @param initialCapacity
+   *          the number of entries we expect to hold.
+   */
+  public TransformStore(final int initialCapacity) {
+    final int capacity = Math.max(1, initialCapacity);
+    _parent = new int[capacity];
+    _flags = new byte[capacity];
+    _local = new double[capacity * TransformStore.LOCAL_STRIDE];
+    _world = new double[capacity * TransformStore.WORLD_STRIDE];
+    _spatials = new Spatial[capacity];
+  }
+
+  /**
+   * Add a new entry with an identity local transform.
+   *
+   * @param parentId
+   *          the id of the parent entry, or -1 for a root entry.
+   * @return the id of the new entry.
+   */
+  public synchronized int add(final int parentId) {
+    if (parentId != -1) {
+      checkId(parentId);
+    }
+    final int id;
+    if (_freeCount > 0) {
+      id = _free[--_freeCount];
+    } else {
+      ensureCapacity(_size + 1);
+      id = _size++;
+    }
+    _parent[id] = parentId;
+    _flags[id] = TransformStore.FLAG_USED | TransformStore.FLAG_LOCAL_CHANGED;
+    System.arraycopy(TransformStore.IDENTITY_LOCAL, 0, _local, id * TransformStore.LOCAL_STRIDE,
+        TransformStore.LOCAL_STRIDE);
+    _orderDirty = true;
+    _changed = true;
+    _pending = true;
+    return id;
+  }
+
+  /**
+   * Add an entry for the given spatial and bind the two together. The entry's parent is the entry of
+   * the spatial's parent, if that is bound to this store. Children of the spatial are not bound, but
+   * those already bound to this store become children of the new entry.
+   *
+   * @param spatial
+   *          the spatial to bind. Must not be bound to a store already.
+   * @return the id of the new entry.
+   */
+  public synchronized int bind(final Spatial spatial) {
+    if (spatial._transformStore != null) {
+      throw new IllegalArgumentException("Spatial is already bound to a TransformStore: " + spatial);
+    }
+    final int id = add(findParentId(spatial));
+    _spatials[id] = spatial;
+    _flags[id] |= TransformStore.FLAG_READ_SPATIAL;
+    spatial._transformStore = this;
+    spatial._transformStoreId = id;
+    if (spatial instanceof Node) {
+      for (final Spatial child : ((Node) spatial).getChildren()) {
+        if (child._transformStore == this) {
+          spatialChanged(child._transformStoreId, true);
+        }
+      }
+    }
+    spatial.markDirty(DirtyType.Transform);
+    return id;
+  }
+
+  /**
+   * Remove an entry, unbinding its spatial if it has one. The id may be reused by later additions.
+   *
+   * @param id
+   *          the entry to remove. Must not have any children.
+   */
+  public synchronized void remove(final int id) {
+    checkId(id);
+    for (int i = 0; i < _size; i++) {
+      if ((_flags[i] & TransformStore.FLAG_USED) != 0 && _parent[i] == id) {
+        throw new IllegalStateException("Can not remove entry " + id + " while it has children.");
+      }
+    }
+    final Spatial spatial = _spatials[id];
+    if (spatial != null) {
+      spatial._transformStore = null;
+      spatial._transformStoreId = -1;
+      _spatials[id] = null;
+    }
+    _flags[id] = 0;
+    if (_freeCount == _free.length) {
+      _free = Arrays.copyOf(_free, _freeCount * 2);
+    }
+    _free[_freeCount++] = id;
+    _orderDirty = true;
+  }
+
+  /**
+   * @return the number of entries in use.
+   */
+  public synchronized int getCount() { return _size - _freeCount; }
+
+  public int getParent(final int id) {
+    checkId(id);
+    return _parent[id];
+  }
+
+  /**
+   * @param id
+   *          the entry to move.
+   * @param parentId
+   *          the new parent entry, or -1 to make it a root.
+   */
+  public synchronized void setParent(final int id, final int parentId) {
+    checkId(id);
+    if (parentId != -1) {
+      checkId(parentId);
+      for (int p = parentId; p != -1; p = _parent[p]) {
+        if (p == id) {
+          throw new IllegalArgumentException("Entry " + parentId + " is a descendant of " + id);
+        }
+      }
+    }
+    _parent[id] = parentId;
+    markLocalChanged(id);
+    _orderDirty = true;
+  }
+
+  public Spatial getSpatial(final int id) {
+    checkId(id);
+    return _spatials[id];
+  }
+
+  /**
+   * Sets the local translation of the given entry.
+   */
+  public void setTranslation(final int id, final double x, final double y, final double z) {
+    checkUnbound(id);
+    final int o = id * TransformStore.LOCAL_STRIDE;
+    _local[o + 12] = x;
+    _local[o + 13] = y;
+    _local[o + 14] = z;
+    markLocalChanged(id);
+  }
+
+  /**
+   * Sets the local rotation of the given entry.
+   *
+   * @param rotation
+   *          an orthonormal rotation matrix.
+   */
+  public void setRotation(final int id, final ReadOnlyMatrix3 rotation) {
+    checkUnbound(id);
+    final int o = id * TransformStore.LOCAL_STRIDE;
+    _local[o] = rotation.getM00();
+    _local[o + 1] = rotation.getM01();
+    _local[o + 2] = rotation.getM02();
+    _local[o + 3] = rotation.getM10();
+    _local[o + 4] = rotation.getM11();
+    _local[o + 5] = rotation.getM12();
+    _local[o + 6] = rotation.getM20();
+    _local[o + 7] = rotation.getM21();
+    _local[o + 8] = rotation.getM22();
+    markLocalChanged(id);
+  }
+
+  /**
+   * Sets the local scale of the given entry.
+   */
+  public void setScale(final int id, final double x, final double y, final double z) {
+    checkUnbound(id);
+    final int o = id * TransformStore.LOCAL_STRIDE;
+    _local[o + 9] = x;
+    _local[o + 10] = y;
+    _local[o + 11] = z;
+    markLocalChanged(id);
+  }
+
+  /**
+   * Sets the local transform of the given entry.
+   */
+  public void setLocalTransform(final int id, final ReadOnlyTransform transform) {
+    checkUnbound(id);
+    readLocal(id, transform);
+    markLocalChanged(id);
+  }
+
+  /**
+   * @return the world transform of the given entry, as of the last {@link #update()}.
+   */
+  public Transform getWorldTransform(final int id, final Transform store) {
+    checkId(id);
+    final Transform result = store != null ? store : new Transform();
+    writeWorld(id, result);
+    return result;
+  }
+
+  /**
+   * Writes the world transform of the given entry, as of the last {@link #update()}, into the given
+   * buffer as a column major 4x4 matrix - the layout of {@link Transform#getGLApplyMatrix(FloatBuffer)}.
+   */
+  public void getWorldMatrix(final int id, final FloatBuffer store) {
+    checkId(id);
+    final double[] w = _world;
+    final int o = id * TransformStore.WORLD_STRIDE;
+    store.put((float) w[o]).put((float) w[o + 3]).put((float) w[o + 6]).put(0f);
+    store.put((float) w[o + 1]).put((float) w[o + 4]).put((float) w[o + 7]).put(0f);
+    store.put((float) w[o + 2]).put((float) w[o + 5]).put((float) w[o + 8]).put(0f);
+    store.put((float) w[o + 9]).put((float) w[o + 10]).put((float) w[o + 11]).put(1f);
+  }
+
+  /**
+   * Called by bound spatials when their local transform or parent changes.
+   */
+  void spatialChanged(final int id, final boolean reparented) {
+    synchronized (this) {
+      if (reparented) {
+        _parent[id] = findParentId(_spatials[id]);
+        _orderDirty = true;
+      }
+      _flags[id] |= TransformStore.FLAG_READ_SPATIAL;
+      markLocalChanged(id);
+    }
+  }
+
+  /**
+   * Compute the world transform of every entry whose local transform, or one of whose ancestors' local
+   * transform, changed since the last call, and write them back to any bound spatials. Does nothing if
+   * nothing changed. Root entries whose bound spatial's parent has a dirty transform are left pending,
+   * with their descendants, until a call after that parent is updated.
+   */
+  public void update() {
+    if (!_pending) {
+      return;
+    }
+    synchronized (this) {
+      if (!_pending || !_changed && !isDeferredReady()) {
+        return;
+      }
+      _changed = false;
+      _deferredCount = 0;
+      if (_orderDirty) {
+        rebuildOrder();
+      }
+
+      final int[] order = _order;
+      final int[] parents = _parent;
+      final byte[] flags = _flags;
+      final double[] l = _local;
+      final double[] w = _world;
+      for (int n = 0; n < _orderCount; n++) {
+        final int id = order[n];
+        final int parent = parents[id];
+        byte flag = flags[id];
+        if (parent != -1 && (flags[parent] & TransformStore.FLAG_WORLD_CHANGED) != 0) {
+          flag |= TransformStore.FLAG_LOCAL_CHANGED;
+        }
+        if ((flag & TransformStore.FLAG_LOCAL_CHANGED) == 0) {
+          continue;
+        }
+        final Spatial spatial = _spatials[id];
+        if (parent != -1 ? (flags[parent] & TransformStore.FLAG_LOCAL_CHANGED) != 0 : isParentDirty(spatial)) {
+          // wait for our parent to be up to date
+          if (parent == -1) {
+            defer(id);
+          }
+          flags[id] = flag;
+          continue;
+        }
+        if ((flag & TransformStore.FLAG_READ_SPATIAL) != 0 && spatial != null) {
+          readLocal(id, spatial._localTransform);
+        }
+
+        final int lo = id * TransformStore.LOCAL_STRIDE;
+        final int wo = id * TransformStore.WORLD_STRIDE;
+        // local matrix, with scale folded into its columns
+        final double sx = l[lo + 9], sy = l[lo + 10], sz = l[lo + 11];
+        final double a00 = l[lo] * sx, a01 = l[lo + 1] * sy, a02 = l[lo + 2] * sz;
+        final double a10 = l[lo + 3] * sx, a11 = l[lo + 4] * sy, a12 = l[lo + 5] * sz;
+        final double a20 = l[lo + 6] * sx, a21 = l[lo + 7] * sy, a22 = l[lo + 8] * sz;
+        final double tx = l[lo + 12], ty = l[lo + 13], tz = l[lo + 14];
+
+        if (parent != -1) {
+          final int po = parent * TransformStore.WORLD_STRIDE;
+          multiply(w, po, a00, a01, a02, a10, a11, a12, a20, a21, a22, tx, ty, tz, w, wo);
+        } else if (spatial != null && spatial._parent != null) {
+          final double[] p = TransformStore.toWorldArray(spatial._parent._worldTransform, _rootParent);
+          multiply(p, 0, a00, a01, a02, a10, a11, a12, a20, a21, a22, tx, ty, tz, w, wo);
+        } else {
+          w[wo] = a00;
+          w[wo + 1] = a01;
+          w[wo + 2] = a02;
+          w[wo + 3] = a10;
+          w[wo + 4] = a11;
+          w[wo + 5] = a12;
+          w[wo + 6] = a20;
+          w[wo + 7] = a21;
+          w[wo + 8] = a22;
+          w[wo + 9] = tx;
+          w[wo + 10] = ty;
+          w[wo + 11] = tz;
+        }
+        flags[id] = (byte) (flag & ~(TransformStore.FLAG_LOCAL_CHANGED | TransformStore.FLAG_READ_SPATIAL)
+            | TransformStore.FLAG_WORLD_CHANGED);
+      }
+
+      // second pass: write back and reset our change flags
+      for (int n = 0; n < _orderCount; n++) {
+        final int id = order[n];
+        if ((flags[id] & TransformStore.FLAG_WORLD_CHANGED) != 0) {
+          flags[id] &= ~TransformStore.FLAG_WORLD_CHANGED;
+          final Spatial spatial = _spatials[id];
+          if (spatial != null) {
+            writeWorld(id, spatial._worldTransform);
+          }
+        }
+      }
+      _pending = _deferredCount > 0;
+    }
+  }
+
+  /**
+   * @return true if the given entry was left pending by the last pass, as its parent - or that of its
+   *         root entry - outside of the store was not up to date yet.
+   */
+  synchronized boolean isDeferred(final int id) {
+    return (_flags[id] & TransformStore.FLAG_LOCAL_CHANGED) != 0;
+  }
+
+  private static boolean isParentDirty(final Spatial spatial) {
+    return spatial != null && spatial._parent != null && spatial._parent.isDirty(DirtyType.Transform);
+  }
+
+  private void defer(final int id) {
+    if (_deferredCount == _deferred.length) {
+      _deferred = Arrays.copyOf(_deferred, _deferredCount * 2);
+    }
+    _deferred[_deferredCount++] = id;
+  }
+
+  /**
+   * @return true if the parent of any entry left pending by the last pass has been updated since.
+   */
+  private boolean isDeferredReady() {
+    for (int i = 0; i < _deferredCount; i++) {
+      final int id = _deferred[i];
+      if ((_flags[id] & TransformStore.FLAG_USED) == 0 || !TransformStore.isParentDirty(_spatials[id])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void multiply(final double[] p, final int po, final double a00, final double a01,
+      final double a02, final double a10, final double a11, final double a12, final double a20, final double a21,
+      final double a22, final double tx, final double ty, final double tz, final double[] w, final int wo) {
+    final double p00 = p[po], p01 = p[po + 1], p02 = p[po + 2];
+    final double p10 = p[po + 3], p11 = p[po + 4], p12 = p[po + 5];
+    final double p20 = p[po + 6], p21 = p[po + 7], p22 = p[po + 8];
+    w[wo] = p00 * a00 + p01 * a10 + p02 * a20;
+    w[wo + 1] = p00 * a01 + p01 * a11 + p02 * a21;
+    w[wo + 2] = p00 * a02 + p01 * a12 + p02 * a22;
+    w[wo + 3] = p10 * a00 + p11 * a10 + p12 * a20;
+    w[wo + 4] = p10 * a01 + p11 * a11 + p12 * a21;
+    w[wo + 5] = p10 * a02 + p11 * a12 + p12 * a22;
+    w[wo + 6] = p20 * a00 + p21 * a10 + p22 * a20;
+    w[wo + 7] = p20 * a01 + p21 * a11 + p22 * a21;
+    w[wo + 8] = p20 * a02 + p21 * a12 + p22 * a22;
+    w[wo + 9] = p00 * tx + p01 * ty + p02 * tz + p[po + 9];
+    w[wo + 10] = p10 * tx + p11 * ty + p12 * tz + p[po + 10];
+    w[wo + 11] = p20 * tx + p21 * ty + p22 * tz + p[po + 11];
+  }
+
+  /** Sort our entries by depth, so parents are always computed before their children. */
+  private void rebuildOrder() {
+    final int[] depth = new int[_size];
+    int maxDepth = 0;
+    for (int id = 0; id < _size; id++) {
+      if ((_flags[id] & TransformStore.FLAG_USED) != 0) {
+        maxDepth = Math.max(maxDepth, depthOf(id, depth));
+      }
+    }
+
+    // counting sort - depth[] holds depth plus one, so counts[d + 1] is the number of entries at depth d
+    final int[] counts = new int[maxDepth + 2];
+    for (int id = 0; id < _size; id++) {
+      if ((_flags[id] & TransformStore.FLAG_USED) != 0) {
+        counts[depth[id]]++;
+      }
+    }
+    for (int d = 1; d < counts.length; d++) {
+      counts[d] += counts[d - 1];
+    }
+    _orderCount = counts[counts.length - 1];
+    if (_order.length < _orderCount) {
+      _order = new int[_size];
+    }
+    for (int id = 0; id < _size; id++) {
+      if ((_flags[id] & TransformStore.FLAG_USED) != 0) {
+        _order[counts[depth[id] - 1]++] = id;
+      }
+    }
+    _orderDirty = false;
+  }
+
+  private int depthOf(final int id, final int[] depth) {
+    if (depth[id] == 0) {
+      // walk up to the first ancestor with a known depth. depths are stored plus one, so 0 is unknown.
+      int d = 1;
+      for (int p = _parent[id]; p != -1; p = _parent[p]) {
+        if (depth[p] != 0) {
+          d += depth[p];
+          break;
+        }
+        d++;
+      }
+      depth[id] = d;
+    }
+    return depth[id] - 1;
+  }
+
+  private void readLocal(final int id, final ReadOnlyTransform transform) {
+    final double[] l = _local;
+    final int o = id * TransformStore.LOCAL_STRIDE;
+    final ReadOnlyMatrix3 m = transform.getMatrix();
+    l[o] = m.getM00();
+    l[o + 1] = m.getM01();
+    l[o + 2] = m.getM02();
+    l[o + 3] = m.getM10();
+    l[o + 4] = m.getM11();
+    l[o + 5] = m.getM12();
+    l[o + 6] = m.getM20();
+    l[o + 7] = m.getM21();
+    l[o + 8] = m.getM22();
+    if (transform.isRotationMatrix()) {
+      final ReadOnlyVector3 s = transform.getScale();
+      l[o + 9] = s.getX();
+      l[o + 10] = s.getY();
+      l[o + 11] = s.getZ();
+    } else {
+      l[o + 9] = l[o + 10] = l[o + 11] = 1;
+    }
+    final ReadOnlyVector3 t = transform.getTranslation();
+    l[o + 12] = t.getX();
+    l[o + 13] = t.getY();
+    l[o + 14] = t.getZ();
+  }
+
+  private void writeWorld(final int id, final Transform store) {
+    final double[] w = _world;
+    final int o = id * TransformStore.WORLD_STRIDE;
+
+    // try to split the matrix back into rotation and scale, so the result keeps Transform's fast paths
+    final double sx = Math.sqrt(w[o] * w[o] + w[o + 3] * w[o + 3] + w[o + 6] * w[o + 6]);
+    final double sy = Math.sqrt(w[o + 1] * w[o + 1] + w[o + 4] * w[o + 4] + w[o + 7] * w[o + 7]);
+    final double sz = Math.sqrt(w[o + 2] * w[o + 2] + w[o + 5] * w[o + 5] + w[o + 8] * w[o + 8]);
+    final Matrix3 matrix = Matrix3.fetchTempInstance();
+    store.setIdentity();
+    boolean split = false;
+    if (sx != 0 && sy != 0 && sz != 0) {
+      matrix.set(w[o] / sx, w[o + 1] / sy, w[o + 2] / sz, w[o + 3] / sx, w[o + 4] / sy, w[o + 5] / sz, w[o + 6] / sx,
+          w[o + 7] / sy, w[o + 8] / sz);
+      store.setRotation(matrix);
+      split = store.isRotationMatrix();
+    }
+    if (split) {
+      if (sx != 1 || sy != 1 || sz != 1) {
+        store.setScale(sx, sy, sz);
+      }
+    } else {
+      matrix.set(w[o], w[o + 1], w[o + 2], w[o + 3], w[o + 4], w[o + 5], w[o + 6], w[o + 7], w[o + 8]);
+      store.setRotation(matrix);
+    }
+    store.setTranslation(w[o + 9], w[o + 10], w[o + 11]);
+    Matrix3.releaseTempInstance(matrix);
+  }
+
+  private static double[] toWorldArray(final ReadOnlyTransform transform, final double[] store) {
+    final ReadOnlyMatrix3 m = transform.getMatrix();
+    double sx = 1, sy = 1, sz = 1;
+    if (transform.isRotationMatrix()) {
+      final ReadOnlyVector3 s = transform.getScale();
+      sx = s.getX();
+      sy = s.getY();
+      sz = s.getZ();
+    }
+    store[0] = m.getM00() * sx;
+    store[1] = m.getM01() * sy;
+    store[2] = m.getM02() * sz;
+    store[3] = m.getM10() * sx;
+    store[4] = m.getM11() * sy;
+    store[5] = m.getM12() * sz;
+    store[6] = m.getM20() * sx;
+    store[7] = m.getM21() * sy;
+    store[8] = m.getM22() * sz;
+    final ReadOnlyVector3 t = transform.getTranslation();
+    store[9] = t.getX();
+    store[10] = t.getY();
+    store[11] = t.getZ();
+    return store;
+  }
+
+  private int findParentId(final Spatial spatial) {
+    final Node parent = spatial.getParent();
+    return parent != null && parent._transformStore == this ? parent._transformStoreId : -1;
+  }
+
+  private void markLocalChanged(final int id) {
+    _flags[id] |= TransformStore.FLAG_LOCAL_CHANGED;
+    _changed = true;
+    _pending = true;
+  }
+
+  private void checkId(final int id) {
+    if (id < 0 || id >= _size || (_flags[id] & TransformStore.FLAG_USED) == 0) {
+      throw new IllegalArgumentException("No such entry: " + id);
+    }
+  }
+
+  private void checkUnbound(final int id) {
+    checkId(id);
+    if (_spatials[id] != null) {
+      throw new IllegalStateException("Entry " + id + " is bound to a Spatial - set its transform instead.");
+    }
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity <= _parent.length) {
+      return;
+    }
+    final int newCapacity = Math.max(capacity, _parent.length * 2);
+    _parent = Arrays.copyOf(_parent, newCapacity);
+    _flags = Arrays.copyOf(_flags, newCapacity);
+    _local = Arrays.copyOf(_local, newCapacity * TransformStore.LOCAL_STRIDE);
+    _world = Arrays.copyOf(_world, newCapacity * TransformStore.WORLD_STRIDE);
+    _spatials = Arrays.copyOf(_spatials, newCapacity);
+  }
+}
@@ -18,7 +18,9 @@ import com.ardor3d.math.type.ReadOnlyMatrix3;
 import com.ardor3d.math.type.ReadOnlyVector3;
 import com.ardor3d.math.util.MathUtils;
 import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.scenegraph.Node;
 import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.util.export.InputCapsule;
@@ -117,6 +119,15 @@ public class BillboardNode extends Node {
     super.draw(r);
   }
 
+  /**
+   * Queues this node as a whole, rather than its children, so that it is turned to face the camera by
+   * {@link #draw(Renderer)} when the queue is rendered - culling must not modify the scene.
+   */
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    context.addToQueue(this, queue);
+  }
+
   /**
    * Normally a billboard triggers transform and bounds updates on its children. Setting this to false
    * will only trigger dirty flags for transform, potentially saving some expensive bounds
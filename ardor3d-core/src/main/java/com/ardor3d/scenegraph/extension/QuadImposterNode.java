@@ -25,9 +25,11 @@ import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.Vector2;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.material.uniform.AlphaTestConsts;
 import com.ardor3d.renderer.queue.RenderBucketType;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.BlendState;
 import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.renderer.texture.TextureRenderer;
@@ -206,6 +208,15 @@ public class QuadImposterNode extends Node {
     _imposterQuad.draw(r);
   }
 
+  /**
+   * Queues this node as a whole, rather than its target scene, so that the imposter is updated - and
+   * drawn in its place - by {@link #draw(Renderer)} when the queue is rendered.
+   */
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    context.addToQueue(this, queue);
+  }
+
   @Override
   protected void updateChildren(final double time) {
     _imposterQuad.updateGeometricState(time, false);
@@ -12,7 +12,9 @@ package com.ardor3d.scenegraph.extension;
 
 import java.util.BitSet;
 
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.scenegraph.Node;
 import com.ardor3d.scenegraph.Spatial;
 
@@ -45,6 +47,21 @@ public class SwitchNode extends Node {
     }
   }
 
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    if (_children == null) {
+      return;
+    }
+    for (int i = 0, max = Math.min(_childMask.length(), _children.size()); i < max; i++) {
+      if (_childMask.get(i)) {
+        final Spatial child = _children.get(i);
+        if (child != null) {
+          context.cullChild(child, queue);
+        }
+      }
+    }
+  }
+
   @Override
   protected void updateChildren(final double time) {
     if (_children == null) {
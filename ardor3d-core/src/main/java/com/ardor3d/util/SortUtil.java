@@ -10,10 +10,11 @@
 
 package com.ardor3d.util;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 /**
- * Shell and merge sort implementations with the goal of reducing garbage and allowing tuning.
+ * Shell, merge and radix sort implementations with the goal of reducing garbage and allowing tuning.
  */
 public abstract class SortUtil {
 
@@ -22,6 +23,12 @@ public abstract class SortUtil {
    */
   public static int SHELL_SORT_THRESHOLD = 17;
 
+  /**
+   * Minimum length of the counts work space passed to
+   * {@link #radixSort(long[], int[], int, long[], int[], int[])}.
+   */
+  public static final int RADIX_COUNTS_SIZE = 8 * 256;
+
   /**
    * <p>
    * Merge sorts the supplied data, in the given range, using the given comparator.
@@ -171,4 +178,84 @@ public abstract class SortUtil {
       }
     }
   }
+
+  /**
+   * <p>
+   * Stable LSD radix sort of the first <code>length</code> keys, treated as unsigned 64 bit values,
+   * moving each associated value along with its key. Passes over bytes that are the same for every key
+   * are skipped, so keys that only use their low bits are cheap to sort.
+   * </p>
+   * <p>
+   * No garbage is created - all work space is supplied by the caller.
+   * </p>
+   *
+   * @param keys
+   *          the keys to sort. Will hold the sorted keys on completion.
+   * @param values
+   *          values associated with each key, such as indices into another array. Will be reordered
+   *          to match the sorted keys.
+   * @param length
+   *          number of keys to sort, starting at index 0.
+   * @param keyWork
+   *          work space, at least <code>length</code> long.
+   * @param valueWork
+   *          work space, at least <code>length</code> long.
+   * @param counts
+   *          work space, at least {@link #RADIX_COUNTS_SIZE} long.
+   */
+  public static void radixSort(final long[] keys, final int[] values, final int length, final long[] keyWork,
+      final int[] valueWork, final int[] counts) {
+    if (length < 2) {
+      return;
+    }
+
+    // histogram every byte of every key in a single pass
+    Arrays.fill(counts, 0, RADIX_COUNTS_SIZE, 0);
+    for (int i = 0; i < length; i++) {
+      final long key = keys[i];
+      for (int pass = 0; pass < 8; pass++) {
+        counts[(pass << 8) | ((int) (key >>> (pass << 3)) & 0xFF)]++;
+      }
+    }
+
+    long[] srcKeys = keys, dstKeys = keyWork;
+    int[] srcValues = values, dstValues = valueWork;
+    for (int pass = 0; pass < 8; pass++) {
+      final int base = pass << 8;
+      final int shift = pass << 3;
+
+      // all keys share this byte - nothing to do
+      if (counts[base | ((int) (srcKeys[0] >>> shift) & 0xFF)] == length) {
+        continue;
+      }
+
+      // turn counts into starting offsets
+      int sum = 0;
+      for (int b = 0; b < 256; b++) {
+        final int count = counts[base | b];
+        counts[base | b] = sum;
+        sum += count;
+      }
+
+      // scatter
+      for (int i = 0; i < length; i++) {
+        final long key = srcKeys[i];
+        final int index = counts[base | ((int) (key >>> shift) & 0xFF)]++;
+        dstKeys[index] = key;
+        dstValues[index] = srcValues[i];
+      }
+
+      final long[] tmpKeys = srcKeys;
+      srcKeys = dstKeys;
+      dstKeys = tmpKeys;
+      final int[] tmpValues = srcValues;
+      srcValues = dstValues;
+      dstValues = tmpValues;
+    }
+
+    if (srcKeys != keys) {
+      System.arraycopy(srcKeys, 0, keys, 0, length);
+      System.arraycopy(srcValues, 0, values, 0, length);
+    }
+  }
 }
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.util.geom;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.material.RenderMaterial;
+import com.ardor3d.renderer.state.RenderState;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.geom.MeshCombiner.MeshCombineLogic;
+
+/**
+ * <p>
+ * Combines static meshes into batches with {@link MeshCombiner}, to cut down on draw calls, while
+ * keeping frustum culling useful. Meshes are grouped by world material, world render states and
+ * default color, then split into cubic chunks of a given size by the center of their world bound.
+ * Each group and chunk becomes one combined mesh, all attached to the node returned by
+ * {@link #build()}.
+ * </p>
+ * <p>
+ * The batcher remembers where each source mesh ended up, so a single source can later be hidden,
+ * shown or moved with {@link #setVisible(Mesh, boolean)} and {@link #update(Mesh)}, which only rewrite
+ * that source's vertices in its batch. A moved source stays in its original chunk, growing the
+ * chunk's bound; rebuild if sources move far. The source meshes themselves are left untouched - they
+ * would normally be detached from the scene once batched.
+ * </p>
+ */
+public class StaticBatcher {
+
+  /** Default chunk size, in world units. */
+  public static final double DEFAULT_CHUNK_SIZE = 64;
+
+  protected final double _chunkSize;
+  protected final List<Mesh> _sources = new ArrayList<>();
+  protected final Map<Mesh, SourceEntry> _entries = new IdentityHashMap<>();
+  protected final Node _batchNode = new Node("staticBatch");
+
+  public StaticBatcher() {
+    this(StaticBatcher.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param chunkSize
+   *          the edge length of the cubic chunks meshes are split into.
+   */
+  public StaticBatcher(final double chunkSize) {
+    if (!(chunkSize > 0)) {
+      throw new IllegalArgumentException("chunkSize must be > 0");
+    }
+    _chunkSize = chunkSize;
+  }
+
+  public double getChunkSize() { return _chunkSize; }
+
+  /**
+   * @return the node holding our combined meshes.
+   */
+  public Node getBatchNode() { return _batchNode; }
+
+  /**
+   * @return the number of combined meshes made by the last build.
+   */
+  public int getBatchCount() { return _batchNode.getNumberOfChildren(); }
+
+  /**
+   * Add the given mesh, or every mesh under the given node, to the meshes to batch. Their world
+   * transforms, render states and bounds should be up to date.
+   *
+   * @param source
+   *          the mesh or scene to add.
+   */
+  public void add(final Spatial source) {
+    source.acceptVisitor((final Spatial spatial) -> {
+      if (spatial instanceof Mesh && !_entries.containsKey(spatial)) {
+        final Mesh mesh = (Mesh) spatial;
+        final MeshData data = mesh.getMeshData();
+        if (data.getVertexCoords() == null || data.getVertexCoords().getValuesPerTuple() != 3) {
+          throw new IllegalArgumentException("Static batching requires 3 component vertices: " + mesh);
+        }
+        _sources.add(mesh);
+        _entries.put(mesh, new SourceEntry(mesh));
+      }
+    }, true);
+  }
+
+  /**
+   * Remove all sources and batches.
+   */
+  public void clear() {
+    _sources.clear();
+    _entries.clear();
+    _batchNode.detachAllChildren();
+  }
+
+  /**
+   * (Re)build the combined meshes from all added sources.
+   *
+   * @return the node holding our combined meshes.
+   */
+  public Node build() {
+    _batchNode.detachAllChildren();
+
+    final Map<BatchKey, List<Mesh>> groups = new LinkedHashMap<>();
+    for (final Mesh mesh : _sources) {
+      groups.computeIfAbsent(new BatchKey(mesh, _chunkSize), k -> new ArrayList<>()).add(mesh);
+    }
+
+    for (final Map.Entry<BatchKey, List<Mesh>> group : groups.entrySet()) {
+      final List<Mesh> members = group.getValue();
+      final Mesh batch = MeshCombiner.combine(members, new MeshCombineLogic());
+      final Mesh first = members.get(0);
+      batch.setName("staticBatch" + _batchNode.getNumberOfChildren());
+      batch.setRenderMaterial(first.getWorldRenderMaterial());
+      batch.setDefaultColor(first.getDefaultColor());
+      for (final StateType type : StateType.values) {
+        final RenderState state = first.getWorldRenderState(type);
+        if (state != null) {
+          batch.setRenderState(state);
+        } else {
+          batch.clearRenderState(type);
+        }
+      }
+
+      // remember where each source went - sources are combined in order
+      int vertexStart = 0;
+      for (final Mesh member : members) {
+        final SourceEntry entry = _entries.get(member);
+        entry._batch = batch;
+        entry._vertexStart = vertexStart;
+        entry._visible = true;
+        vertexStart += entry._vertexCount;
+      }
+
+      _batchNode.attachChild(batch);
+    }
+
+    _batchNode.updateGeometricState(0);
+    return _batchNode;
+  }
+
+  /**
+   * @param source
+   *          a batched source mesh.
+   * @return the combined mesh holding the given source, or null if it is not batched.
+   */
+  public Mesh getBatch(final Mesh source) {
+    final SourceEntry entry = _entries.get(source);
+    return entry != null ? entry._batch : null;
+  }
+
+  /**
+   * @param source
+   *          a batched source mesh.
+   * @return the index of the source's first vertex in its batch.
+   */
+  public int getVertexStart(final Mesh source) {
+    return getEntry(source)._vertexStart;
+  }
+
+  public boolean isVisible(final Mesh source) {
+    final SourceEntry entry = getEntry(source);
+    return entry._visible;
+  }
+
+  /**
+   * Hide or show a single source in its batch. Hidden sources have all their vertices collapsed onto a
+   * single point, so their primitives are degenerate and not drawn. Shown sources are written from their
+   * current world transform, as by {@link #update(Mesh)}.
+   *
+   * @param source
+   *          a batched source mesh.
+   * @param visible
+   *          true to show the source.
+   */
+  public void setVisible(final Mesh source, final boolean visible) {
+    final SourceEntry entry = getEntry(source);
+    if (entry._visible == visible) {
+      return;
+    }
+    entry._visible = visible;
+    if (visible) {
+      // the source may have moved while hidden, as update skips hidden sources
+      entry._source.updateWorldTransform(false);
+      writeSource(entry);
+      entry._batch.updateModelBound();
+      return;
+    }
+
+    final MeshData data = entry._batch.getMeshData();
+    final FloatBuffer vertices = data.getVertexBuffer();
+    final int start = entry._vertexStart * 3;
+    final float x = vertices.get(start), y = vertices.get(start + 1), z = vertices.get(start + 2);
+    for (int i = 1; i < entry._vertexCount; i++) {
+      vertices.put(start + i * 3, x).put(start + i * 3 + 1, y).put(start + i * 3 + 2, z);
+    }
+    data.markBufferDirty(MeshData.KEY_VertexCoords, start, entry._vertexCount * 3);
+  }
+
+  /**
+   * Rewrite a single source's vertices and normals in its batch from its current world transform, for
+   * example after moving it. The batch's bound is updated to match.
+   *
+   * @param source
+   *          a batched source mesh.
+   */
+  public void update(final Mesh source) {
+    final SourceEntry entry = getEntry(source);
+    source.updateWorldTransform(false);
+    if (entry._visible) {
+      writeSource(entry);
+      entry._batch.updateModelBound();
+    }
+  }
+
+  private void writeSource(final SourceEntry entry) {
+    final Mesh source = entry._source;
+    final MeshData data = entry._batch.getMeshData();
+    final int start = entry._vertexStart * 3;
+    final int length = entry._vertexCount * 3;
+
+    final FloatBuffer vertices = data.getVertexBuffer();
+    StaticBatcher.copy(source.getWorldVectors(null), vertices, start, length);
+    data.markBufferDirty(MeshData.KEY_VertexCoords, start, length);
+
+    final FloatBuffer normals = data.getNormalBuffer();
+    if (normals != null && source.getMeshData().getNormalBuffer() != null) {
+      StaticBatcher.copy(source.getWorldNormals(null), normals, start, length);
+      data.markBufferDirty(MeshData.KEY_NormalCoords, start, length);
+    }
+  }
+
+  private static void copy(final FloatBuffer from, final FloatBuffer to, final int start, final int length) {
+    for (int i = 0; i < length; i++) {
+      to.put(start + i, from.get(i));
+    }
+  }
+
+  private SourceEntry getEntry(final Mesh source) {
+    final SourceEntry entry = _entries.get(source);
+    if (entry == null || entry._batch == null) {
+      throw new IllegalArgumentException("Mesh is not batched: " + source);
+    }
+    return entry;
+  }
+
+  /**
+   * Where a source mesh's vertices are found in its batch.
+   */
+  protected static class SourceEntry {
+    final Mesh _source;
+    final int _vertexCount;
+    Mesh _batch;
+    int _vertexStart;
+    boolean _visible = true;
+
+    SourceEntry(final Mesh source) {
+      _source = source;
+      _vertexCount = source.getMeshData().getVertexCount();
+    }
+  }
+
+  /**
+   * What meshes must share to be combined: material, render states, default color and chunk.
+   */
+  protected static class BatchKey {
+    private final RenderMaterial _material;
+    private final RenderState[] _states = new RenderState[StateType.values.length];
+    private final ReadOnlyColorRGBA _color;
+    private final long _chunkX, _chunkY, _chunkZ;
+    private final int _hash;
+
+    BatchKey(final Mesh mesh, final double chunkSize) {
+      _material = mesh.getWorldRenderMaterial();
+      for (final StateType type : StateType.values) {
+        _states[type.ordinal()] = mesh.getWorldRenderState(type);
+      }
+      _color = mesh.getDefaultColor();
+
+      final ReadOnlyVector3 center = mesh.getWorldBound() != null ? mesh.getWorldBound().getCenter()
+          : mesh.getWorldTranslation();
+      _chunkX = (long) Math.floor(center.getX() / chunkSize);
+      _chunkY = (long) Math.floor(center.getY() / chunkSize);
+      _chunkZ = (long) Math.floor(center.getZ() / chunkSize);
+
+      int hash = System.identityHashCode(_material);
+      for (final RenderState state : _states) {
+        hash = 31 * hash + System.identityHashCode(state);
+      }
+      hash = 31 * hash + _color.hashCode();
+      hash = 31 * hash + Long.hashCode(_chunkX);
+      hash = 31 * hash + Long.hashCode(_chunkY);
+      hash = 31 * hash + Long.hashCode(_chunkZ);
+      _hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof BatchKey)) {
+        return false;
+      }
+      final BatchKey other = (BatchKey) obj;
+      if (_material != other._material || _chunkX != other._chunkX || _chunkY != other._chunkY
+          || _chunkZ != other._chunkZ || !Objects.equals(_color, other._color)) {
+        return false;
+      }
+      for (int i = 0; i < _states.length; i++) {
+        if (_states[i] != other._states[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StaticBatcher [sources=" + _sources.size() + ", batches=" + getBatchCount() + ", chunkSize="
+        + _chunkSize + "]";
+  }
+}
@@ -21,6 +21,10 @@ public class StatType implements Comparable<StatType> {
   public static final StatType STAT_MESH_COUNT = new StatType("_meshCount");
   public static final StatType STAT_TEXTURE_BINDS = new StatType("_texBind");
   public static final StatType STAT_SHADER_BINDS = new StatType("_shaderBind");
+  public static final StatType STAT_UNIFORM_UPLOADS = new StatType("_uniformUpload");
+  public static final StatType STAT_UNIFORM_SKIPS = new StatType("_uniformSkip");
+  public static final StatType STAT_STATE_SKIPS = new StatType("_stateSkip");
+  public static final StatType STAT_OCCLUDED_COUNT = new StatType("_occludedCount");
 
   public static final StatType STAT_UNSPECIFIED_TIMER = new StatType("_timedOther");
   public static final StatType STAT_RENDER_TIMER = new StatType("_timedRenderer");
@@ -53,7 +53,9 @@ struct LightingResult {
 
 uniform struct LightProperties {
 	vec3 globalAmbient;
+#ifndef LIGHT_BLOCK
 	Light lights[MAX_LIGHTS];
+#endif
 	sampler2DShadow spotShadowMaps[MAX_LIGHTS];
 	samplerCubeShadow pointShadowMaps[MAX_LIGHTS];
 
@@ -63,4 +65,39 @@ uniform struct LightProperties {
 	float splitDistances[MAX_SPLITS];
 } lightProps;
 
+#ifdef LIGHT_BLOCK
+#ifndef MAX_BLOCK_LIGHTS
+#define MAX_BLOCK_LIGHTS 32
+#endif
+
+// every light of the frame, shared by all programs - see LightUniformBlock
+layout(std140) uniform Ardor3dLights {
+	int blockLightCount;
+	Light blockLights[MAX_BLOCK_LIGHTS];
+};
+
+// index in blockLights of each light selected for this mesh, or -1
+uniform int lightIndices[MAX_LIGHTS];
+
+bool hasLight(const int i)
+{
+	return lightIndices[i] >= 0;
+}
+
+Light getLight(const int i)
+{
+	return blockLights[lightIndices[i]];
+}
+#else
+bool hasLight(const int i)
+{
+	return true;
+}
+
+Light getLight(const int i)
+{
+	return lightProps.lights[i];
+}
+#endif
+
 #endif
\ No newline at end of file
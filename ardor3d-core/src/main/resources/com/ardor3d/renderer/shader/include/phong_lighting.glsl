@@ -222,7 +222,8 @@ const vec3 viewPos, const vec3 viewDir, const ColorSurface surface)
     totalResult.specular = vec3(0.0);
     for (int i = 0; i < MAX_LIGHTS; i++)
     {
-        light = lightProps.lights[i];
+        if (!hasLight(i)) continue;
+        light = getLight(i);
         if (!light.enabled) continue;
         
         switch (light.type)
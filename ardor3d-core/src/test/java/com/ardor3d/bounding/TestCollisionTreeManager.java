@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.bounding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ardor3d.intersection.PickData;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+public class TestCollisionTreeManager {
+
+  private final CollisionTreeManager _manager = CollisionTreeManager.getInstance();
+  private final List<Mesh> _meshes = new ArrayList<>();
+
+  @After
+  public void restore() {
+    _manager.setBuildExecutor(null);
+    _manager.setGenerateTrees(true);
+    _manager.setMaxPrimitives(CollisionTreeManager.DEFAULT_MAX_PRIMITIVES);
+    _manager.setMaxElements(Integer.MAX_VALUE);
+    for (final Mesh mesh : _meshes) {
+      _manager.removeCollisionTree(mesh);
+    }
+  }
+
+  private Sphere createSphere(final String name) {
+    final Sphere sphere = new Sphere(name, 16, 16, 1);
+    sphere.setModelBound(new BoundingBox());
+    sphere.updateGeometricState(0);
+    _meshes.add(sphere);
+    return sphere;
+  }
+
+  private boolean isCached(final Mesh mesh) {
+    _manager.setGenerateTrees(false);
+    try {
+      return _manager.getCollisionTree(mesh) != null;
+    } finally {
+      _manager.setGenerateTrees(true);
+    }
+  }
+
+  @Test
+  public void testBackgroundBuild() {
+    final Node scene = new Node("scene");
+    final Sphere sphere = createSphere("sphere");
+    scene.attachChild(sphere);
+    scene.updateGeometricState(0);
+    final Ray3 ray = new Ray3(new Vector3(0.5, 0.5, 10), new Vector3(0, 0, -1));
+
+    // builds only run when we say so
+    final List<Runnable> builds = new ArrayList<>();
+    _manager.setBuildExecutor(builds::add);
+
+    // picks make do with the bound until the hierarchy is built
+    final PickData boundPick = PickingUtil.findClosestPick(scene, ray, true);
+    assertTrue(_manager.isBuildPending(sphere));
+    assertEquals(1, builds.size());
+    assertSame(sphere, boundPick.getTarget());
+    assertEquals(9, boundPick.getIntersectionRecord().getIntersectionDistance(0), 1e-9);
+    assertNull(boundPick.getIntersectionRecord().getIntersectionPrimitive(0));
+    assertNull(_manager.getTriangleBVH(sphere));
+    assertEquals(1, builds.size());
+
+    // as do collision checks, for trees
+    final Sphere other = createSphere("other");
+    other.setTranslation(1.9, 1.9, 0);
+    other.updateGeometricState(0);
+    assertTrue(PickingUtil.hasPrimitiveCollision(sphere, other));
+    assertNull(_manager.getCollisionTree(sphere));
+    assertEquals(3, builds.size());
+
+    builds.forEach(Runnable::run);
+    assertFalse(_manager.isBuildPending(sphere));
+    assertNotNull(_manager.getTriangleBVH(sphere));
+    final PickData pick = PickingUtil.findClosestPick(scene, ray, true);
+    assertTrue(pick.getIntersectionRecord().getIntersectionDistance(0) > 9.2);
+    assertNotNull(pick.getIntersectionRecord().getIntersectionPrimitive(0));
+    // the bounds overlap, the spheres do not
+    assertFalse(PickingUtil.hasPrimitiveCollision(sphere, other));
+    assertEquals(3, builds.size());
+  }
+
+  @Test
+  public void testRequestAndConcurrentLookups() throws Exception {
+    final Sphere sphere = createSphere("sphere");
+    final TriangleBVH bvh = _manager.requestTriangleBVH(sphere).join();
+    assertNotNull(bvh);
+    assertSame(bvh, _manager.getTriangleBVH(sphere));
+
+    // threads asking for the same tree at once all get the one tree
+    final Sphere shared = createSphere("shared");
+    final ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<CollisionTree>> trees = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        trees.add(threads.submit(() -> _manager.getCollisionTree(shared)));
+      }
+      for (final Future<CollisionTree> tree : trees) {
+        assertSame(_manager.getCollisionTree(shared), tree.get());
+      }
+    } finally {
+      threads.shutdown();
+    }
+  }
+
+  @Test
+  public void testWeightedEviction() {
+    final Sphere a = createSphere("a"), b = createSphere("b"), c = createSphere("c"), big = createSphere("big");
+    final int primitives = a.getMeshData().getTotalPrimitiveCount();
+    // room for two spheres' trees
+    _manager.setMaxPrimitives(primitives * 5 / 2);
+
+    _manager.getCollisionTree(a);
+    _manager.getCollisionTree(b);
+    _manager.getCollisionTree(a);
+    _manager.getCollisionTree(c);
+    // b is the least recently used
+    assertTrue(isCached(a));
+    assertFalse(isCached(b));
+    assertTrue(isCached(c));
+
+    // protected trees are kept, and the newest is kept whatever its size
+    _manager.setProtected(a);
+    _manager.setMaxPrimitives(primitives / 2);
+    _manager.getCollisionTree(big);
+    assertTrue(isCached(a));
+    assertFalse(isCached(c));
+    assertTrue(isCached(big));
+    _manager.removeProtected(a);
+
+    // trees may also be limited by count, through the controller
+    _manager.setMaxPrimitives(CollisionTreeManager.DEFAULT_MAX_PRIMITIVES);
+    _manager.getCollisionTree(b);
+    _manager.getCollisionTree(c);
+    assertTrue(isCached(a));
+    _manager.setMaxElements(1);
+    _manager.getCollisionTree(a);
+    _manager.removeCollisionTree(a);
+    _manager.getCollisionTree(a);
+    assertTrue(isCached(a));
+    assertFalse(isCached(big));
+    assertFalse(isCached(b));
+    assertFalse(isCached(c));
+  }
+}
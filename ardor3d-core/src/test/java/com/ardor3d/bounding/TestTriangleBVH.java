@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.bounding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.intersection.IntersectionRecord;
+import com.ardor3d.intersection.PickData;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.intersection.PrimitivePickResults;
+import com.ardor3d.intersection.PrimitiveKey;
+import com.ardor3d.math.Quaternion;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+public class TestTriangleBVH {
+
+  private static Ray3 randomRay(final Random random) {
+    final Vector3 origin = new Vector3(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5)
+        .normalizeLocal().multiplyLocal(5);
+    final Vector3 target = new Vector3(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5)
+        .multiplyLocal(2.5);
+    return new Ray3(origin, target.subtractLocal(origin).normalizeLocal());
+  }
+
+  @Test
+  public void testQueriesMatchBruteForce() {
+    final MeshData meshData = new Sphere("sphere", 24, 32, 1).getMeshData();
+    final TriangleBVH bvh = new TriangleBVH(meshData);
+    assertEquals(meshData.getTotalPrimitiveCount(), bvh.getTriangleCount());
+    assertTrue(bvh.getNodeCount() > 1);
+
+    final Random random = new Random(5);
+    final Vector3 hit = new Vector3();
+    Vector3[] vertices = null;
+    for (int r = 0; r < 300; r++) {
+      final Ray3 ray = randomRay(random);
+
+      final Set<PrimitiveKey> expected = new HashSet<>();
+      double nearest = Double.POSITIVE_INFINITY;
+      for (int section = 0; section < meshData.getSectionCount(); section++) {
+        for (int p = 0; p < meshData.getPrimitiveCount(section); p++) {
+          vertices = meshData.getPrimitiveVertices(p, section, vertices);
+          final double distance = ray.getDistanceToPrimitive(vertices);
+          if (distance != Double.POSITIVE_INFINITY) {
+            expected.add(new PrimitiveKey(p, section));
+            nearest = Math.min(nearest, distance);
+          }
+        }
+      }
+
+      final TriangleBVH.Hits hits = new TriangleBVH.Hits();
+      bvh.intersectAll(ray, Double.POSITIVE_INFINITY, hits);
+      final Set<PrimitiveKey> found = new HashSet<>();
+      for (int i = 0; i < hits.size(); i++) {
+        found.add(bvh.getPrimitiveKey(hits.getTriangle(i)));
+      }
+      assertEquals(expected, found);
+
+      final int closest = bvh.intersectClosest(ray, Double.POSITIVE_INFINITY, hit);
+      assertEquals(!expected.isEmpty(), closest >= 0);
+      assertEquals(!expected.isEmpty(), bvh.intersectsAny(ray, Double.POSITIVE_INFINITY));
+      if (closest >= 0) {
+        assertEquals(nearest, hit.getX(), 1e-6);
+        // nothing nearer than the nearest hit
+        assertFalse(bvh.intersectsAny(ray, nearest * 0.999));
+        hits.sort();
+        assertEquals(nearest, hits.getDistance(0), 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testMeshPickingMatchesCollisionTree() {
+    final Sphere sphere = new Sphere("sphere", 16, 16, 1);
+    sphere.setModelBound(new BoundingBox());
+    sphere.setTranslation(3, -1, 2);
+    sphere.setScale(2, 1, 3);
+    sphere.setRotation(new Quaternion().fromAngleAxis(0.7, new Vector3(1, 1, 0).normalizeLocal()));
+    sphere.updateGeometricState(0);
+
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    final Random random = new Random(9);
+    try {
+      for (int r = 0; r < 100; r++) {
+        final Ray3 ray = randomRay(random);
+        ray.setOrigin(ray.getOrigin().multiply(3, null).addLocal(3, -1, 2));
+
+        manager.setUseTriangleBVH(false);
+        final IntersectionRecord expected = sphere.intersectsPrimitivesWhere(ray);
+        manager.setUseTriangleBVH(true);
+        final IntersectionRecord actual = sphere.intersectsPrimitivesWhere(ray);
+
+        if (expected == null) {
+          assertNull(actual);
+          assertNull(sphere.intersectsPrimitivesClosest(ray, Double.POSITIVE_INFINITY));
+          continue;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getNumberOfIntersections(), actual.getNumberOfIntersections());
+        final Set<PrimitiveKey> expectedKeys = new HashSet<>(), actualKeys = new HashSet<>();
+        for (int i = 0; i < expected.getNumberOfIntersections(); i++) {
+          assertEquals(expected.getIntersectionDistance(i), actual.getIntersectionDistance(i), 1e-6);
+          expectedKeys.add(expected.getIntersectionPrimitive(i));
+          actualKeys.add(actual.getIntersectionPrimitive(i));
+        }
+        assertEquals(expectedKeys, actualKeys);
+
+        final IntersectionRecord closest = sphere.intersectsPrimitivesClosest(ray, Double.POSITIVE_INFINITY);
+        assertEquals(expected.getIntersectionDistance(0), closest.getIntersectionDistance(0), 1e-6);
+        assertTrue(closest.getIntersectionPoint(0).distance(expected.getIntersectionPoint(0)) < 1e-6);
+        assertTrue(sphere.intersectsPrimitives(ray, expected.getIntersectionDistance(0) + 1e-6));
+        assertFalse(sphere.intersectsPrimitives(ray, expected.getIntersectionDistance(0) * 0.999));
+      }
+    } finally {
+      manager.setUseTriangleBVH(true);
+    }
+  }
+
+  @Test
+  public void testNearestHits() {
+    final MeshData meshData = new Sphere("sphere", 24, 32, 1).getMeshData();
+    final TriangleBVH bvh = new TriangleBVH(meshData);
+    final Random random = new Random(7);
+    final TriangleBVH.Hits all = new TriangleBVH.Hits();
+    final TriangleBVH.Hits nearest = new TriangleBVH.Hits(3);
+    for (int r = 0; r < 200; r++) {
+      // through the sphere from far out, hitting a few triangles around the entry and exit points
+      final Ray3 ray = randomRay(random);
+      all.clear();
+      nearest.clear();
+      bvh.intersectAll(ray, Double.POSITIVE_INFINITY, all);
+      bvh.intersectAll(ray, Double.POSITIVE_INFINITY, nearest);
+      all.sort();
+      nearest.sort();
+      assertEquals(Math.min(3, all.size()), nearest.size());
+      for (int i = 0; i < nearest.size(); i++) {
+        assertEquals(all.getDistance(i), nearest.getDistance(i), 0);
+      }
+    }
+
+    // the heap on its own
+    final TriangleBVH.Hits hits = new TriangleBVH.Hits(4);
+    final double[] distances = {5, 3, 9, 1, 7, 2, 8, 4, 6, 0};
+    for (int i = 0; i < distances.length; i++) {
+      hits.add(i, distances[i]);
+    }
+    assertEquals(3, hits.getCutoff(), 0);
+    assertFalse(hits.add(10, 3.5));
+    hits.sort();
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i, hits.getDistance(i), 0);
+    }
+  }
+
+  @Test
+  public void testMeshNearestPicks() {
+    final Sphere sphere = new Sphere("sphere", 16, 16, 1);
+    sphere.setModelBound(new BoundingBox());
+    sphere.setTranslation(0, 0, -5);
+    sphere.setScale(2);
+    sphere.updateGeometricState(0);
+    final Ray3 ray = new Ray3(new Vector3(0.1, 0.2, 0), Vector3.NEG_UNIT_Z);
+
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    try {
+      for (final boolean useBVH : new boolean[] {true, false}) {
+        manager.setUseTriangleBVH(useBVH);
+        final IntersectionRecord all = sphere.intersectsPrimitivesWhere(ray);
+        assertEquals(2, all.getNumberOfIntersections());
+        final IntersectionRecord nearest = sphere.intersectsPrimitivesWhere(ray, 1, Double.POSITIVE_INFINITY);
+        assertEquals(1, nearest.getNumberOfIntersections());
+        assertEquals(all.getIntersectionDistance(0), nearest.getIntersectionDistance(0), 1e-9);
+        assertEquals(all.getIntersectionPrimitive(0), nearest.getIntersectionPrimitive(0));
+        assertNull(sphere.intersectsPrimitivesWhere(ray, 0, all.getIntersectionDistance(0) * 0.99));
+        assertEquals(1, sphere.intersectsPrimitivesWhere(ray, 0, 5).getNumberOfIntersections());
+
+        final PrimitivePickResults results = new PrimitivePickResults();
+        results.setCheckDistance(true);
+        results.setMaxPrimitiveHits(1);
+        PickingUtil.findPick(sphere, ray, results);
+        assertEquals(1, results.getNumber());
+        assertEquals(1, results.getPickData(0).getIntersectionRecord().getNumberOfIntersections());
+        assertEquals(all.getIntersectionDistance(0),
+            results.getPickData(0).getIntersectionRecord().getIntersectionDistance(0), 1e-9);
+      }
+    } finally {
+      manager.setUseTriangleBVH(true);
+    }
+  }
+
+  @Test
+  public void testRebuild() {
+    final Sphere sphere = new Sphere("sphere", 8, 8, 1);
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    final TriangleBVH bvh = manager.getTriangleBVH(sphere);
+    assertSame(bvh, manager.getTriangleBVH(sphere));
+
+    // meshes sharing data share the hierarchy
+    final Mesh copy = sphere.makeCopy(true);
+    assertSame(bvh, manager.getTriangleBVH(copy));
+
+    // replaced buffers are noticed, in place changes need an update
+    final MeshData meshData = sphere.getMeshData();
+    meshData.setVertexBuffer(BufferUtils.clone(meshData.getVertexBuffer()));
+    final TriangleBVH rebuilt = manager.getTriangleBVH(sphere);
+    assertNotSame(bvh, rebuilt);
+    assertTrue(rebuilt.isBuiltFrom(meshData));
+    manager.updateCollisionTree(sphere);
+    assertNotSame(rebuilt, manager.getTriangleBVH(sphere));
+  }
+
+  @Test
+  public void testPickingUtil() {
+    final Node root = new Node("root");
+    final Sphere near = new Sphere("near", 12, 12, 1);
+    near.setTranslation(0, 0, -5);
+    final Sphere far = new Sphere("far", 12, 12, 1);
+    far.setTranslation(0, 0, -10);
+    root.attachChild(far);
+    root.attachChild(near);
+    near.setModelBound(new BoundingBox());
+    far.setModelBound(new BoundingBox());
+    root.updateGeometricState(0);
+
+    final Ray3 ray = new Ray3(Vector3.ZERO, Vector3.NEG_UNIT_Z);
+    final PickData pick = PickingUtil.findClosestPick(root, ray, true);
+    assertSame(near, pick.getTarget());
+    assertEquals(1, pick.getIntersectionRecord().getNumberOfIntersections());
+    assertEquals(4, pick.getIntersectionRecord().getIntersectionDistance(0), 1e-2);
+
+    assertTrue(PickingUtil.hasPrimitivePick(root, ray, 4.5, true));
+    assertFalse(PickingUtil.hasPrimitivePick(root, ray, 3.5, true));
+    assertNull(PickingUtil.findClosestPick(root, new Ray3(Vector3.ZERO, Vector3.UNIT_Z), true));
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.scenegraph.MeshData;
+
+public class TestBufferDirtyRanges {
+
+  private static final RenderContext CONTEXT = new RenderContext(new Object(), new ContextCapabilities());
+
+  private static int[] ranges(final AbstractBufferData<?> data) {
+    final int[] result = new int[data.getDirtyRangeCount() * 2];
+    for (int i = 0; i < data.getDirtyRangeCount(); i++) {
+      result[i * 2] = data.getDirtyRangeOffset(i);
+      result[i * 2 + 1] = data.getDirtyRangeLength(i);
+    }
+    return result;
+  }
+
+  private static FloatBufferData uploaded() {
+    final FloatBufferData data = new FloatBufferData(300, 3);
+    data.markClean(CONTEXT);
+    return data;
+  }
+
+  @Test
+  public void testRangesMerged() {
+    final FloatBufferData data = uploaded();
+    data.markDirty(30, 6);
+    assertFalse(data.isBufferClean(CONTEXT));
+    data.markDirty(60, 3);
+    data.markDirty(0, 3);
+    assertArrayEquals(new int[] { 0, 3, 30, 6, 60, 3 }, ranges(data));
+
+    // overlapping and adjacent ranges merge, even across several ranges
+    data.markDirty(3, 3);
+    data.markDirty(34, 30);
+    assertArrayEquals(new int[] { 0, 6, 30, 34 }, ranges(data));
+
+    data.markClean(CONTEXT);
+    assertEquals(0, data.getDirtyRangeCount());
+  }
+
+  @Test
+  public void testFullyDirty() {
+    // never uploaded, so ranges don't help
+    final FloatBufferData data = new FloatBufferData(300, 3);
+    data.markDirty(30, 6);
+    assertEquals(0, data.getDirtyRangeCount());
+
+    // a full mark wins over ranges
+    final FloatBufferData uploaded = uploaded();
+    uploaded.markDirty(30, 6);
+    uploaded.markDirty();
+    uploaded.markDirty(90, 6);
+    assertEquals(0, uploaded.getDirtyRangeCount());
+    assertFalse(uploaded.isBufferClean(CONTEXT));
+  }
+
+  @Test
+  public void testTooManyRanges() {
+    final FloatBufferData data = uploaded();
+    for (int i = 0; i < AbstractBufferData.MAX_DIRTY_RANGES; i++) {
+      data.markDirty(i * 10, 2);
+    }
+    assertEquals(AbstractBufferData.MAX_DIRTY_RANGES, data.getDirtyRangeCount());
+    data.markDirty(200, 2);
+    assertArrayEquals(new int[] { 0, 202 }, ranges(data));
+  }
+
+  @Test
+  public void testMeshData() {
+    final MeshData meshData = new MeshData();
+    meshData.setVertexCoords(uploaded());
+    meshData.markBufferDirty(MeshData.KEY_VertexCoords, 9, 3);
+    assertArrayEquals(new int[] { 9, 3 }, ranges(meshData.getVertexCoords()));
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.intersection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.math.Quaternion;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.scenegraph.shape.Box;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+public class TestBatchRayCaster {
+
+  private static Node createScene() {
+    final Node root = new Node("root");
+    final Random random = new Random(3);
+    for (int i = 0; i < 12; i++) {
+      final Sphere sphere = new Sphere("sphere" + i, 10, 12, 1 + random.nextDouble());
+      sphere.setModelBound(i % 2 == 0 ? new BoundingBox() : new BoundingSphere());
+      sphere.setTranslation(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10,
+          random.nextDouble() * 20 - 10);
+      sphere.setScale(0.5 + random.nextDouble(), 0.5 + random.nextDouble(), 0.5 + random.nextDouble());
+      sphere.setRotation(new Quaternion().fromAngleAxis(random.nextDouble() * 3, Vector3.UNIT_Y));
+      root.attachChild(sphere);
+    }
+    final Box hidden = new Box("hidden", Vector3.ZERO, 30, 30, 0.1);
+    hidden.getSceneHints().setCullHint(CullHint.Always);
+    root.attachChild(hidden);
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static RayBatch createRays(final int count) {
+    final Random random = new Random(8);
+    final RayBatch batch = new RayBatch(count);
+    for (int i = 0; i < count; i++) {
+      final Vector3 origin = new Vector3(random.nextDouble() * 30 - 15, random.nextDouble() * 30 - 15, 20);
+      final Vector3 target = new Vector3(random.nextDouble() * 24 - 12, random.nextDouble() * 24 - 12,
+          random.nextDouble() * 24 - 12);
+      // directions are left unnormalized, at various lengths
+      final Vector3 direction = target.subtractLocal(origin).multiplyLocal(0.1 + random.nextDouble());
+      batch.setRay(i, origin, direction, i % 5 == 0 ? 25 : Double.POSITIVE_INFINITY);
+    }
+    return batch;
+  }
+
+  private static Ray3 getRay(final RayBatch batch, final int i) {
+    final double[] o = batch.getOrigins(), d = batch.getDirections();
+    return new Ray3(new Vector3(o[i * 3], o[i * 3 + 1], o[i * 3 + 2]),
+        new Vector3(d[i * 3], d[i * 3 + 1], d[i * 3 + 2]).normalizeLocal());
+  }
+
+  private static void assertMatchesPicking(final Node scene, final RayBatch batch) {
+    int hits = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      final PickData pick = PickingUtil.findClosestPick(scene, getRay(batch, i), true);
+      final double maxDistance = batch.getMaxDistances()[i];
+      if (pick == null || pick.getIntersectionRecord().getIntersectionDistance(0) > maxDistance) {
+        assertFalse(batch.isHit(i));
+        assertEquals(Double.POSITIVE_INFINITY, batch.getDistances()[i], 0);
+        continue;
+      }
+      hits++;
+      assertTrue(batch.isHit(i));
+      assertSame(pick.getTarget(), batch.getTargets()[i]);
+      assertEquals(pick.getIntersectionRecord().getIntersectionDistance(0), batch.getDistances()[i], 1e-6);
+      final PrimitiveKey key = pick.getIntersectionRecord().getIntersectionPrimitive(0);
+      assertEquals(key.getPrimitiveIndex(), batch.getPrimitiveIndices()[i]);
+      assertEquals(key.getSection(), batch.getSections()[i]);
+    }
+    assertTrue(hits > batch.size() / 10);
+  }
+
+  @Test
+  public void testClosestMatchesPicking() {
+    final Node scene = createScene();
+    final RayBatch batch = createRays(500);
+    final BatchRayCaster caster = new BatchRayCaster();
+
+    caster.castClosest(scene, batch);
+    assertMatchesPicking(scene, batch);
+
+    // the same in parallel, and with other packet sizes
+    final ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      caster.setPool(pool);
+      for (final int packetSize : new int[] {1, 7, 64}) {
+        caster.setPacketSize(packetSize);
+        caster.castClosest(scene, batch);
+        assertMatchesPicking(scene, batch);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAnyMatchesPicking() {
+    final Node scene = createScene();
+    final RayBatch batch = createRays(300);
+    new BatchRayCaster().castAny(scene, batch);
+    for (int i = 0; i < batch.size(); i++) {
+      final Ray3 ray = getRay(batch, i);
+      assertEquals(PickingUtil.hasPrimitivePick(scene, ray, batch.getMaxDistances()[i], true), batch.isHit(i));
+      if (batch.isHit(i)) {
+        assertTrue(batch.getDistances()[i] <= batch.getMaxDistances()[i]);
+        final PickData pick = PickingUtil.findClosestPick(scene, ray, true);
+        assertTrue(batch.getDistances()[i] >= pick.getIntersectionRecord().getIntersectionDistance(0) - 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testCollisionTreeFallback() {
+    final Node scene = createScene();
+    final RayBatch batch = createRays(200);
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    try {
+      manager.setUseTriangleBVH(false);
+      new BatchRayCaster().castClosest(scene, batch);
+      assertMatchesPicking(scene, batch);
+    } finally {
+      manager.setUseTriangleBVH(true);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    final RayBatch batch = new RayBatch(new double[] {0, 0, 0}, new double[] {0, 0, -1});
+    new BatchRayCaster().castClosest(new Node("empty"), batch);
+    assertFalse(batch.isHit(0));
+    assertNull(batch.getTargets()[0]);
+    assertEquals(-1, batch.getPrimitiveIndices()[0]);
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.intersection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.hint.PickingHint;
+import com.ardor3d.scenegraph.shape.Box;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+public class TestSweepAndPrune {
+
+  private static Node createScene(final Random random, final int count) {
+    final Node root = new Node("root");
+    final Node group = new Node("group");
+    root.attachChild(group);
+    for (int i = 0; i < count; i++) {
+      final Mesh mesh = i % 2 == 0 ? new Box("box" + i, Vector3.ZERO, 0.5 + random.nextDouble(), 0.5, 1)
+          : new Sphere("sphere" + i, 8, 8, 0.5 + random.nextDouble());
+      mesh.setModelBound(i % 3 == 0 ? new BoundingSphere() : new BoundingBox());
+      mesh.setTranslation(random.nextDouble() * 30, random.nextDouble() * 10, random.nextDouble() * 10);
+      (i % 4 == 0 ? group : root).attachChild(mesh);
+    }
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static void collectMeshes(final Spatial spatial, final List<Mesh> store) {
+    if (spatial instanceof Mesh) {
+      store.add((Mesh) spatial);
+    } else if (spatial instanceof Node) {
+      for (final Spatial child : ((Node) spatial).getChildren()) {
+        collectMeshes(child, store);
+      }
+    }
+  }
+
+  private static Set<String> toPairs(final List<Mesh> meshes) {
+    final Set<String> pairs = new HashSet<>();
+    for (int i = 0; i < meshes.size(); i += 2) {
+      final String a = meshes.get(i).getName(), b = meshes.get(i + 1).getName();
+      assertTrue(pairs.add(a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a));
+    }
+    return pairs;
+  }
+
+  private static Set<String> bruteForce(final Node root, final boolean primitives) {
+    final List<Mesh> meshes = new ArrayList<>();
+    collectMeshes(root, meshes);
+    final List<Mesh> pairs = new ArrayList<>();
+    for (int i = 0; i < meshes.size(); i++) {
+      for (int j = i + 1; j < meshes.size(); j++) {
+        final Mesh a = meshes.get(i), b = meshes.get(j);
+        if (!a.getSceneHints().isPickingHintEnabled(PickingHint.Collidable)
+            || !b.getSceneHints().isPickingHintEnabled(PickingHint.Collidable)) {
+          continue;
+        }
+        if (primitives ? PickingUtil.hasPrimitiveCollision(a, b)
+            : a.getWorldBound().intersects(b.getWorldBound())) {
+          pairs.add(a);
+          pairs.add(b);
+        }
+      }
+    }
+    return toPairs(pairs);
+  }
+
+  private static Set<String> boundPairs(final SweepAndPrune sap) {
+    final List<Mesh> store = new ArrayList<>();
+    final BoundingCollisionResults results = new BoundingCollisionResults();
+    sap.findCollisions(results);
+    for (int i = 0; i < results.getNumber(); i++) {
+      store.add(results.getCollisionData(i).getSourceMesh());
+      store.add(results.getCollisionData(i).getTargetMesh());
+    }
+    return toPairs(store);
+  }
+
+  private static Set<String> primitivePairs(final SweepAndPrune sap) {
+    final List<Mesh> store = new ArrayList<>();
+    final int count = sap.findPrimitiveCollisions(store);
+    assertEquals(count * 2, store.size());
+    return toPairs(store);
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    final Node root = createScene(new Random(5), 150);
+    final SweepAndPrune sap = new SweepAndPrune();
+    sap.attach(root);
+    assertEquals(150, sap.size());
+
+    final Set<String> expected = bruteForce(root, false);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, boundPairs(sap));
+    // the scene is spread furthest along x
+    assertEquals(0, sap.getSweepAxis());
+
+    final Set<String> primitives = bruteForce(root, true);
+    assertFalse(primitives.isEmpty());
+    assertTrue(expected.containsAll(primitives));
+    assertEquals(primitives, primitivePairs(sap));
+  }
+
+  @Test
+  public void testIncrementalUpdates() {
+    final Random random = new Random(11);
+    final Node root = createScene(random, 120);
+    final SweepAndPrune sap = new SweepAndPrune();
+    sap.attach(root);
+    assertEquals(bruteForce(root, false), boundPairs(sap));
+
+    final Node group = (Node) root.getChild(0);
+    for (int step = 0; step < 10; step++) {
+      // move some meshes a little, and the whole group now and then
+      for (int i = 1; i < root.getNumberOfChildren(); i += 3) {
+        root.getChild(i).addTranslation(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5);
+      }
+      if (step % 3 == 0) {
+        group.addTranslation(1.5, 0, 0);
+      }
+      // stretch the scene along z part way through, to switch the sweep axis
+      if (step == 5) {
+        for (int i = 1; i < root.getNumberOfChildren(); i++) {
+          root.getChild(i).addTranslation(0, 0, i * 2);
+        }
+      }
+      root.updateGeometricState(0);
+      assertEquals(bruteForce(root, false), boundPairs(sap));
+    }
+    assertEquals(2, sap.getSweepAxis());
+
+    // attach, detach and turn off collision
+    final Box added = new Box("added", Vector3.ZERO, 40, 40, 40);
+    added.setModelBound(new BoundingBox());
+    root.attachChild(added);
+    root.detachChild(group);
+    root.getChild(1).getSceneHints().setPickingHint(PickingHint.Collidable, false);
+    root.updateGeometricState(0);
+    assertEquals(120 - 30 + 1, sap.size());
+    assertTrue(sap.contains(added));
+    assertFalse(sap.contains((Mesh) group.getChild(0)));
+    assertEquals(bruteForce(root, false), boundPairs(sap));
+
+    sap.detach(root);
+    assertEquals(0, sap.size());
+    assertTrue(boundPairs(sap).isEmpty());
+  }
+
+  @Test
+  public void testParallelNarrowPhase() {
+    final Node root = createScene(new Random(2), 200);
+    final SweepAndPrune sap = new SweepAndPrune();
+    sap.attach(root);
+    final Set<String> serial = primitivePairs(sap);
+    assertFalse(serial.isEmpty());
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      sap.setPool(pool);
+      for (int i = 0; i < 5; i++) {
+        assertEquals(serial, primitivePairs(sap));
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(bruteForce(root, true), serial);
+  }
+}
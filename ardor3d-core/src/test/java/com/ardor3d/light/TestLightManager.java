@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.light;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestLightManager {
+
+  private static Node buildLights(final List<PointLight> lights) {
+    final Random random = new Random(7);
+    final Node root = new Node("lights");
+    for (int i = 0; i < 200; i++) {
+      final PointLight light = new PointLight();
+      light.setEnabled(i % 10 != 3);
+      light.setColor(new ColorRGBA(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1));
+      light.setLinear(0.1f);
+      light.setQuadratic(random.nextFloat() * 0.05f);
+      light.setRange(5 + random.nextFloat() * 20);
+      light.setTranslation(random.nextDouble() * 200 - 100, random.nextDouble() * 10, random.nextDouble() * 200 - 100);
+      root.attachChild(light);
+      lights.add(light);
+    }
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static Mesh createMesh(final double x, final double z, final double size) {
+    final Box box = new Box("box", Vector3.ZERO, size, size, size);
+    box.setModelBound(new BoundingBox());
+    box.setTranslation(x, 2, z);
+    box.updateGeometricState(0);
+    return box;
+  }
+
+  /** Brute force version of the selection: every light in range, scored and sorted. */
+  private static List<Light> expectedLights(final List<? extends Light> lights, final Mesh mesh) {
+    final List<Light> result = new ArrayList<>();
+    for (final Light light : lights) {
+      if (!light.isEnabled()) {
+        continue;
+      }
+      if (light instanceof PointLight) {
+        final double reach = ((PointLight) light).getRange() + mesh.getWorldBound().getRadius();
+        if (mesh.getWorldBound().distanceTo(light.getWorldTranslation()) > reach) {
+          continue;
+        }
+      }
+      result.add(light);
+    }
+    result.sort((a, b) -> Double.compare(LightManager.getValueFor(b, mesh.getWorldBound()),
+        LightManager.getValueFor(a, mesh.getWorldBound())));
+    return result;
+  }
+
+  private static void assertSelection(final LightManager manager, final List<Light> expected, final Mesh mesh) {
+    for (int i = 0; i < LightManager.MAX_LIGHTS; i++) {
+      final Light light = manager.getCurrentLight(i);
+      if (i >= expected.size()) {
+        assertNull(light);
+      } else {
+        // compare values rather than lights, ties may be broken either way
+        assertEquals(LightManager.getValueFor(expected.get(i), mesh.getWorldBound()),
+            LightManager.getValueFor(light, mesh.getWorldBound()), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    final List<PointLight> lights = new ArrayList<>();
+    final LightManager manager = new LightManager();
+    manager.addLights(buildLights(lights));
+    manager.assignLights();
+
+    final Random random = new Random(11);
+    for (int i = 0; i < 100; i++) {
+      final Mesh mesh = createMesh(random.nextDouble() * 220 - 110, random.nextDouble() * 220 - 110,
+          i % 10 == 0 ? 60 : 1 + random.nextDouble() * 5);
+      manager.sortLightsFor(mesh);
+      assertSelection(manager, expectedLights(lights, mesh), mesh);
+    }
+  }
+
+  @Test
+  public void testDirectionalShadowLight() {
+    final List<PointLight> lights = new ArrayList<>();
+    final LightManager manager = new LightManager();
+    manager.addLights(buildLights(lights));
+    final DirectionalLight sun = new DirectionalLight();
+    sun.setShadowCaster(true);
+    manager.addLights(sun);
+
+    final Mesh mesh = createMesh(0, 0, 5);
+    manager.sortLightsFor(mesh);
+    assertSame(sun, manager.getCurrentLight(-1));
+    final List<Light> expected = expectedLights(lights, mesh);
+    assertSelection(manager, expected, mesh);
+  }
+
+  @Test
+  public void testSelectionCachedPerFrame() {
+    final PointLight near = new PointLight();
+    near.setEnabled(true);
+    near.setLinear(0.5f);
+    near.setTranslation(0, 0, 2);
+    near.updateGeometricState(0);
+    final PointLight far = new PointLight();
+    far.setEnabled(true);
+    far.setLinear(0.5f);
+    far.setTranslation(0, 0, 500);
+    far.updateGeometricState(0);
+
+    final LightManager manager = new LightManager();
+    manager.addLights(near);
+    manager.addLights(far);
+    final Mesh mesh = createMesh(0, 0, 1);
+    final Mesh other = createMesh(0, 499, 1);
+    manager.sortLightsFor(mesh);
+    assertSame(near, manager.getCurrentLight(0));
+    assertNull(manager.getCurrentLight(1));
+    manager.sortLightsFor(other);
+    assertSame(far, manager.getCurrentLight(0));
+
+    // moving a light does not change selections until the next assignment
+    far.setTranslation(0, 0, 3);
+    far.updateGeometricState(0);
+    manager.sortLightsFor(mesh);
+    assertSame(near, manager.getCurrentLight(0));
+    assertNull(manager.getCurrentLight(1));
+
+    manager.assignLights();
+    manager.sortLightsFor(mesh);
+    assertSame(near, manager.getCurrentLight(0));
+    assertSame(far, manager.getCurrentLight(1));
+
+    // or until the render context starts a new frame, for apps not calling assignLights
+    final Object key = new Object();
+    ContextManager.addContext(key, new RenderContext(key, new ContextCapabilities()));
+    try {
+      final RenderContext context = ContextManager.switchContext(key);
+      far.setTranslation(0, 0, 500);
+      far.updateGeometricState(0);
+      manager.sortLightsFor(mesh);
+      assertNull(manager.getCurrentLight(1));
+
+      far.setTranslation(0, 0, 3);
+      far.updateGeometricState(0);
+      manager.sortLightsFor(mesh);
+      assertNull(manager.getCurrentLight(1));
+      context.nextFrame();
+      manager.sortLightsFor(mesh);
+      assertSame(far, manager.getCurrentLight(1));
+    } finally {
+      ContextManager.removeContext(key);
+    }
+  }
+
+  @Test
+  public void testLightBlock() {
+    final List<PointLight> lights = new ArrayList<>();
+    final LightManager manager = new LightManager();
+    manager.addLights(buildLights(lights));
+    manager.assignLights();
+
+    final LightUniformBlock block = manager.getLightBlock();
+    block.update();
+    assertEquals(LightUniformBlock.MAX_BLOCK_LIGHTS, block.getLightCount());
+    assertEquals(LightUniformBlock.MAX_BLOCK_LIGHTS, block.getData().getBuffer().getInt(0));
+
+    // block indices point at the selected lights, or -1 for lights not in the block
+    final Random random = new Random(5);
+    for (int i = 0; i < 50; i++) {
+      final Mesh mesh = createMesh(random.nextDouble() * 220 - 110, random.nextDouble() * 220 - 110, 5);
+      manager.sortLightsFor(mesh);
+      for (int j = 0; j < LightManager.MAX_LIGHTS; j++) {
+        final int index = manager.getCurrentLightBlockIndex(j);
+        final Light light = manager.getCurrentLight(j);
+        if (index >= 0) {
+          assertSame(light, manager.getFrameLight(index));
+        } else if (light != null) {
+          int frameIndex = 0;
+          while (manager.getFrameLight(frameIndex) != light) {
+            frameIndex++;
+          }
+          assertTrue(frameIndex >= LightUniformBlock.MAX_BLOCK_LIGHTS);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLightBlockFollowsLights() {
+    final List<PointLight> lights = new ArrayList<>();
+    final LightManager manager = new LightManager();
+    manager.addLights(buildLights(lights));
+    manager.assignLights();
+    final LightUniformBlock block = manager.getLightBlock();
+    block.update();
+
+    // a light moved without lights being gathered again is still rewritten
+    final Light light = manager.getFrameLight(3);
+    light.setTranslation(1, 2, 3);
+    light.updateGeometricState(0);
+    block.update();
+    final int offset = LightUniformBlock.BLOCK_LAYOUT.getOffset("blockLights")
+        + 3 * LightUniformBlock.BLOCK_LAYOUT.getArrayStride("blockLights")
+        + LightUniformBlock.LIGHT_LAYOUT.getOffset("position");
+    final ByteBuffer buffer = block.getData().getBuffer();
+    assertEquals(1, buffer.getFloat(offset), 0);
+    assertEquals(2, buffer.getFloat(offset + 4), 0);
+    assertEquals(3, buffer.getFloat(offset + 8), 0);
+
+    // as is one switched off
+    final int enabled = LightUniformBlock.BLOCK_LAYOUT.getOffset("blockLights")
+        + 3 * LightUniformBlock.BLOCK_LAYOUT.getArrayStride("blockLights")
+        + LightUniformBlock.LIGHT_LAYOUT.getOffset("enabled");
+    assertEquals(1, buffer.getInt(enabled));
+    light.setEnabled(false);
+    block.update();
+    assertEquals(0, buffer.getInt(enabled));
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ardor3d.buffer.IndexBufferData;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.renderer.material.IShaderUtils;
+import com.ardor3d.renderer.state.RenderState;
+import com.ardor3d.renderer.texture.ITextureUtils;
+import com.ardor3d.renderer.texture.TextureRenderer;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.Ardor3dException;
+
+/**
+ * A renderer for tests that draws nothing. Applied states are made current, as the real state utils
+ * do, and optionally recorded.
+ */
+public class StubRenderer extends AbstractRenderer {
+  private final IShaderUtils _shaderUtils;
+  private final List<RenderState> _applied = new ArrayList<>();
+  private boolean _recordStates;
+
+  public StubRenderer() {
+    this(null);
+  }
+
+  /**
+   * @param shaderUtils
+   *          the shader utils to hand out, or null.
+   */
+  public StubRenderer(final IShaderUtils shaderUtils) {
+    _shaderUtils = shaderUtils;
+  }
+
+  /**
+   * @param record
+   *          true to keep each applied state in {@link #getAppliedStates()}.
+   */
+  public void setRecordStates(final boolean record) { _recordStates = record; }
+
+  /**
+   * @return the states applied while recording, in order. May be cleared.
+   */
+  public List<RenderState> getAppliedStates() { return _applied; }
+
+  @Override
+  protected void doApplyState(final RenderState state) {
+    if (_recordStates) {
+      _applied.add(state);
+    }
+    ContextManager.getCurrentContext().setCurrentState(state.getType(), state);
+  }
+
+  @Override
+  public IShaderUtils getShaderUtils() { return _shaderUtils; }
+
+  @Override
+  public ITextureUtils getTextureUtils() { return null; }
+
+  @Override
+  public IScissorUtils getScissorUtils() { return null; }
+
+  @Override
+  public TextureRenderer createTextureRenderer(final int width, final int height, final int depthBits,
+      final int samples, final int stencilBits) {
+    return null;
+  }
+
+  @Override
+  public void grabScreenContents(final ByteBuffer store, final ImageDataFormat format, final PixelDataType type,
+      final int x, final int y, final int w, final int h) {}
+
+  @Override
+  public void setBackgroundColor(final ReadOnlyColorRGBA c) {}
+
+  @Override
+  public void clearBuffers(final int buffers, final boolean strict) {}
+
+  @Override
+  public void clearBuffers(final int buffers) {}
+
+  @Override
+  public void flushFrame(final boolean doSwap) {}
+
+  @Override
+  public void renderBuckets(final boolean doSort, final boolean doClear) {}
+
+  @Override
+  public void renderBuckets() {}
+
+  @Override
+  public void clearQueue() {}
+
+  @Override
+  public void draw(final Spatial s) {}
+
+  @Override
+  public void draw(final Renderable renderable) {}
+
+  @Override
+  public void flushGraphics() {}
+
+  @Override
+  public void finishGraphics() {}
+
+  @Override
+  public boolean checkAndAdd(final Spatial s) {
+    return false;
+  }
+
+  @Override
+  public void checkCardError() throws Ardor3dException {}
+
+  @Override
+  public void drawArrays(final int start, final int count, final IndexMode mode, final int instanceCount) {}
+
+  @Override
+  public void drawElements(final IndexBufferData<?> indices, final int start, final int count, final IndexMode mode,
+      final int instanceCount) {}
+
+  @Override
+  public void setViewport(final int x, final int y, final int width, final int height) {}
+
+  @Override
+  public void setDepthRange(final double depthRangeNear, final double depthRangeFar) {}
+
+  @Override
+  public void setDrawBuffer(final DrawBufferTarget target) {}
+
+  @Override
+  public void setPointSize(final boolean antialiased, final float size) {}
+}
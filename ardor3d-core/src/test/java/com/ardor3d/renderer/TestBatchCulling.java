@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.bounding.PackedBounds;
+import com.ardor3d.math.Vector3;
+
+public class TestBatchCulling {
+
+  private static Camera createCamera() {
+    final Camera camera = new Camera(800, 600);
+    camera.setFrustumPerspective(60, 800 / 600.0, 1, 200);
+    camera.setFrame(new Vector3(0, 0, 10), new Vector3(-1, 0, 0), Vector3.UNIT_Y, Vector3.NEG_UNIT_Z);
+    camera.update();
+    return camera;
+  }
+
+  @Test
+  public void testMatchesSingleContains() {
+    final Camera camera = createCamera();
+    final Random rand = new Random(1234);
+
+    final List<BoundingVolume> volumes = new ArrayList<>();
+    final PackedBounds packed = new PackedBounds(4);
+    for (int i = 0; i < 1000; i++) {
+      final Vector3 center = new Vector3(rand.nextDouble() * 400 - 200, rand.nextDouble() * 400 - 200,
+          rand.nextDouble() * 400 - 200);
+      final BoundingVolume volume = i % 3 == 0 ? new BoundingSphere(rand.nextDouble() * 10, center)
+          : new BoundingBox(center, rand.nextDouble() * 10, rand.nextDouble() * 10, rand.nextDouble() * 10);
+      volumes.add(volume);
+      packed.add(volume);
+    }
+    assertEquals(1000, packed.size());
+
+    final long[] visible = new long[(packed.size() + 63) / 64];
+    final int count = camera.contains(packed, visible);
+
+    int expected = 0;
+    for (int i = 0; i < volumes.size(); i++) {
+      // contains marks planes the bound is fully inside of, which would skew the next check
+      camera.setPlaneState(0);
+      final boolean inside = camera.contains(volumes.get(i)) != Camera.FrustumIntersect.Outside;
+      assertEquals("bound " + i, inside, (visible[i >> 6] & 1L << i) != 0);
+      if (inside) {
+        expected++;
+      }
+    }
+    assertEquals(expected, count);
+  }
+
+  @Test
+  public void testSkipsPlanesInPlaneState() {
+    final Camera camera = createCamera();
+    final PackedBounds packed = new PackedBounds();
+    // straight ahead but past the far plane, so only outside of that plane
+    packed.addBox(0, 0, -300, 1, 1, 1);
+
+    final long[] visible = new long[1];
+    assertEquals(0, camera.contains(packed, visible));
+
+    camera.setPlaneState(1 << Camera.FAR_PLANE);
+    assertEquals(1, camera.contains(packed, visible));
+    assertEquals(1L, visible[0]);
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.queue.RenderBucket;
+import com.ardor3d.renderer.queue.RenderBucketType;
+import com.ardor3d.renderer.queue.RenderQueue;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.extension.BillboardNode;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestCullContext {
+
+  private static Node buildScene(final List<Mesh> meshes) {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    final Node root = new Node("root");
+    for (int i = 0; i < 10; i++) {
+      final Node row = new Node("row" + i);
+      for (int j = 0; j < 10; j++) {
+        final Mesh mesh = source.makeCopy(true);
+        mesh.setTranslation((i - 5) * 10, 0, (j - 5) * 10);
+        row.attachChild(mesh);
+        meshes.add(mesh);
+      }
+      root.attachChild(row);
+    }
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static Camera createCamera(final ReadOnlyVector3 target) {
+    final Camera camera = new Camera(800, 600);
+    camera.setFrustumPerspective(45, 800 / 600.0, 1, 60);
+    camera.lookAt(target, Vector3.UNIT_Y);
+    camera.update();
+    return camera;
+  }
+
+  private static RenderQueue createQueue(final Set<Spatial> store) {
+    final RenderQueue queue = new RenderQueue();
+    queue.setRenderBucket(RenderBucketType.Opaque, new RecordingBucket(store));
+    return queue;
+  }
+
+  @Test
+  public void testConcurrentViews() throws Exception {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node scene = buildScene(meshes);
+
+    final Camera[] cameras = new Camera[] { createCamera(Vector3.UNIT_X), createCamera(Vector3.NEG_UNIT_Z),
+        createCamera(new Vector3(-1, -0.1, 1)) };
+
+    final ExecutorService executor = Executors.newFixedThreadPool(cameras.length);
+    try {
+      final List<Future<Set<Spatial>>> results = new ArrayList<>();
+      for (final Camera camera : cameras) {
+        results.add(executor.submit(() -> {
+          final Set<Spatial> queued = new HashSet<>();
+          final CullContext context = new CullContext(camera);
+          for (int i = 0; i < 20; i++) {
+            queued.clear();
+            context.cull(scene, createQueue(queued));
+          }
+          return queued;
+        }));
+      }
+
+      for (int i = 0; i < cameras.length; i++) {
+        final Set<Spatial> expected = new HashSet<>();
+        for (final Mesh mesh : meshes) {
+          cameras[i].setPlaneState(0);
+          if (cameras[i].contains(mesh.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+            expected.add(mesh);
+          }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, results.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCullHints() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node scene = buildScene(meshes);
+    final CullContext context = new CullContext(createCamera(Vector3.UNIT_X));
+
+    // a row behind the camera is queued when never culled, a visible mesh is not when always culled
+    final Mesh behind = meshes.get(0);
+    behind.getParent().getSceneHints().setCullHint(CullHint.Never);
+    final Mesh visible = meshes.get(75);
+    visible.getSceneHints().setCullHint(CullHint.Always);
+
+    final Set<Spatial> queued = new HashSet<>();
+    context.cull(scene, createQueue(queued));
+    assertTrue(queued.contains(behind));
+    assertFalse(queued.contains(visible));
+    assertTrue(queued.contains(meshes.get(65)));
+    assertEquals(0, context.getPlaneState());
+  }
+
+  @Test
+  public void testSelfDrawingNodes() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node scene = buildScene(meshes);
+    final BillboardNode billboard = new BillboardNode("billboard");
+    final Mesh child = meshes.get(65).makeCopy(true);
+    billboard.attachChild(child);
+    scene.attachChild(billboard);
+    scene.updateGeometricState(0);
+
+    // queued whole, to be turned to the camera when drawn
+    final Set<Spatial> queued = new HashSet<>();
+    new CullContext(createCamera(Vector3.UNIT_X)).cull(scene, createQueue(queued));
+    assertTrue(queued.contains(billboard));
+    assertFalse(queued.contains(child));
+  }
+
+  private static class RecordingBucket implements RenderBucket {
+    private final Set<Spatial> _store;
+
+    RecordingBucket(final Set<Spatial> store) {
+      _store = store;
+    }
+
+    @Override
+    public void add(final Spatial spatial) {
+      _store.add(spatial);
+    }
+
+    @Override
+    public void remove(final Spatial spatial) {
+      _store.remove(spatial);
+    }
+
+    @Override
+    public void clear() {
+      _store.clear();
+    }
+
+    @Override
+    public void sort() {}
+
+    @Override
+    public void render(final Renderer renderer) {}
+
+    @Override
+    public void pushBucket() {}
+
+    @Override
+    public void popBucket() {}
+  }
+}
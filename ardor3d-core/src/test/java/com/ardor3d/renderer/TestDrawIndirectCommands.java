@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.IntBuffer;
+
+import org.junit.Test;
+
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.scenegraph.MeshData;
+
+public class TestDrawIndirectCommands {
+
+  @Test
+  public void testElementCommands() {
+    final DrawIndirectCommands commands = new DrawIndirectCommands();
+    commands.build(new int[] {3, 6, 0, 9, 4},
+        new IndexMode[] {IndexMode.Triangles, IndexMode.TriangleStrip, IndexMode.TriangleStrip, IndexMode.Lines},
+        true, 2);
+
+    // the empty section is left out
+    assertTrue(commands.isIndexed());
+    assertEquals(4, commands.getCommandCount());
+    assertEquals(DrawIndirectCommands.ELEMENTS_COMMAND_SIZE, commands.getCommandSize());
+
+    final IntBuffer data = commands.getData().getBuffer();
+    assertEquals(4 * DrawIndirectCommands.ELEMENTS_COMMAND_SIZE, data.limit());
+    assertCommand(data, 0, 5, 3, 2, 0);
+    assertCommand(data, 1, 5, 6, 2, 3);
+    assertCommand(data, 2, 5, 9, 2, 9);
+    assertCommand(data, 3, 5, 4, 2, 18);
+
+    // sections past the end of the modes use the last mode, so the last two share a run
+    assertEquals(3, commands.getRunCount());
+    assertRun(commands, 0, IndexMode.Triangles, 0, 1);
+    assertRun(commands, 1, IndexMode.TriangleStrip, 1, 1);
+    assertRun(commands, 2, IndexMode.Lines, 2, 2);
+  }
+
+  @Test
+  public void testArrayCommands() {
+    final DrawIndirectCommands commands = new DrawIndirectCommands();
+    commands.build(new int[] {4, 4, 8}, new IndexMode[] {IndexMode.TriangleStrip}, false, 1);
+
+    assertFalse(commands.isIndexed());
+    assertEquals(DrawIndirectCommands.ARRAYS_COMMAND_SIZE, commands.getCommandSize());
+    final IntBuffer data = commands.getData().getBuffer();
+    assertCommand(data, 0, 4, 4, 1, 0);
+    assertCommand(data, 1, 4, 4, 1, 4);
+    assertCommand(data, 2, 4, 8, 1, 8);
+    assertEquals(1, commands.getRunCount());
+    assertRun(commands, 0, IndexMode.TriangleStrip, 0, 3);
+    assertEquals(8, commands.getFirst(2));
+    assertEquals(8, commands.getCount(2));
+  }
+
+  @Test
+  public void testUpdate() {
+    final MeshData meshData = new MeshData();
+    meshData.setIndices(BufferUtils.createIndexBufferData(12, 11));
+    meshData.setIndexLengths(new int[] {3, 9});
+
+    final DrawIndirectCommands commands = meshData.getDrawIndirectCommands();
+    assertTrue(commands.update(meshData, 1));
+    assertFalse(commands.update(meshData, 1));
+
+    // instance count changes rebuild
+    assertTrue(commands.update(meshData, 3));
+    assertEquals(3, commands.getInstanceCount());
+
+    // so do new sections, and in place changes once flagged
+    meshData.setIndexLengths(new int[] {6, 6});
+    assertTrue(commands.update(meshData, 3));
+    assertEquals(6, commands.getFirst(1));
+    meshData.getIndexLengths()[0] = 3;
+    assertFalse(commands.update(meshData, 3));
+    meshData.markDrawIndirectDirty();
+    assertTrue(commands.update(meshData, 3));
+    assertEquals(3, commands.getFirst(1));
+  }
+
+  private static void assertCommand(final IntBuffer data, final int command, final int size, final int count,
+      final int instances, final int first) {
+    final int base = command * size;
+    assertEquals(count, data.get(base));
+    assertEquals(instances, data.get(base + 1));
+    assertEquals(first, data.get(base + 2));
+    // base vertex and/or base instance
+    for (int i = 3; i < size; i++) {
+      assertEquals(0, data.get(base + i));
+    }
+  }
+
+  private static void assertRun(final DrawIndirectCommands commands, final int run, final IndexMode mode,
+      final int start, final int length) {
+    assertEquals(mode, commands.getRunMode(run));
+    assertEquals(start, commands.getRunStart(run));
+    assertEquals(length, commands.getRunLength(run));
+  }
+}
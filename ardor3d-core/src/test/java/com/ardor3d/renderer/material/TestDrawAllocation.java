@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.Buffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ardor3d.buffer.AbstractBufferData;
+import com.ardor3d.light.LightManager;
+import com.ardor3d.light.PointLight;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.StubRenderer;
+import com.ardor3d.renderer.material.uniform.UniformRef;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestDrawAllocation {
+
+  private static final String MATERIAL = "com/ardor3d/renderer/material/lit/untextured/basic_phong.yaml";
+
+  private final Object _contextKey = new Object();
+
+  @Before
+  public void setUp() {
+    final RenderContext context = new RenderContext(_contextKey, new ContextCapabilities());
+    ContextManager.addContext(_contextKey, context);
+    ContextManager.switchContext(_contextKey);
+    context.setCurrentCamera(new Camera(800, 600));
+  }
+
+  @After
+  public void tearDown() {
+    ContextManager.removeContext(_contextKey);
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  @Test
+  public void testSteadyStateDrawAllocatesNothing() {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).isThreadAllocatedMemorySupported());
+
+    // a few lights, so light uniforms are supplied several levels deep
+    final Node lights = new Node("lights");
+    for (int i = 0; i < 6; i++) {
+      final PointLight light = new PointLight();
+      light.setTranslation(i * 3, 2, 0);
+      lights.attachChild(light);
+    }
+    lights.updateGeometricState(0);
+    final LightManager lightManager = ContextManager.getCurrentContext().getSceneIndexer().getLightManager();
+    lightManager.addLights(lights);
+
+    final RenderMaterial material = MaterialManager.INSTANCE.findMaterial(MATERIAL);
+    assertNotNull(material);
+    final Mesh[] meshes = new Mesh[4];
+    for (int i = 0; i < meshes.length; i++) {
+      meshes[i] = new Box("box", Vector3.ZERO, 1, 1, 1);
+      meshes[i].setRenderMaterial(material);
+      meshes[i].setTranslation(i * 4, 0, 0);
+      meshes[i].updateGeometricState(0);
+    }
+
+    final StubShaderUtils utils = new StubShaderUtils();
+    final StubRenderer renderer = new StubRenderer(utils);
+    for (int i = 0; i < 20000; i++) {
+      lightManager.assignLights();
+      meshes[i % meshes.length].render(renderer);
+    }
+    final int lookups = utils._lookups;
+    assertTrue(utils._sent > 0);
+
+    // the bean allocates a little itself, and the vm now and then, so rather than expect exactly
+    // nothing, check that draws average under a byte each - any object per draw is at least 16.
+    final int draws = 50000;
+    allocatedBytes();
+    final long before = allocatedBytes();
+    for (int i = 0; i < draws; i++) {
+      lightManager.assignLights();
+      meshes[i % meshes.length].render(renderer);
+    }
+    final long allocated = allocatedBytes() - before;
+
+    assertTrue("allocated " + allocated + " bytes in " + draws + " draws", allocated < draws);
+    // and every location was resolved once, during warm up
+    assertEquals(lookups, utils._lookups);
+  }
+
+  /**
+   * Shader utils that hand out locations by name and count what is sent, without a card.
+   */
+  private static class StubShaderUtils implements IShaderUtils {
+    final Map<String, Integer> _locations = new HashMap<>();
+    int _lookups;
+    int _sent;
+
+    @Override
+    public int createShaderProgram(final Map<ShaderType, List<String>> shaders, final RenderContext context) {
+      return 1;
+    }
+
+    @Override
+    public void useShaderProgram(final int id, final RenderContext context) {}
+
+    @Override
+    public int createVertexArrayObject(final RenderContext context) {
+      return 1;
+    }
+
+    @Override
+    public void setBoundVAO(final int id, final RenderContext context) {}
+
+    @Override
+    public int findAttributeLocation(final int programId, final String attributeName) {
+      return 0;
+    }
+
+    @Override
+    public int setupBufferObject(final AbstractBufferData<? extends Buffer> buffer, final boolean isEBO,
+        final RenderContext context) {
+      return 1;
+    }
+
+    @Override
+    public void bindVertexAttribute(final VertexAttributeRef attribute,
+        final AbstractBufferData<? extends Buffer> buffer) {}
+
+    @Override
+    public int findUniformLocation(final int programId, final String uniformName) {
+      _lookups++;
+      return _locations.computeIfAbsent(uniformName, name -> _locations.size());
+    }
+
+    @Override
+    public void sendUniformValue(final int location, final UniformRef uniform, final Mesh mesh) {
+      _sent++;
+    }
+
+    @Override
+    public void deleteBuffer(final AbstractBufferData<?> buffer) {}
+
+    @Override
+    public void deleteBuffers(final Collection<Integer> ids) {}
+
+    @Override
+    public void deleteVertexArray(final MeshData data) {}
+
+    @Override
+    public void deleteVertexArrays(final Collection<Integer> ids) {}
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestMaterialManager {
+
+  private static final String WHITE = "com/ardor3d/renderer/material/basic_white.yaml";
+  private static final String INSTANCED = "com/ardor3d/renderer/material/lit/untextured/basic_phong_instanced.yaml";
+
+  @After
+  public void tearDown() {
+    MaterialManager.INSTANCE.clearMaterialCache();
+    MaterialManager.INSTANCE.setLoaderExecutor(ForkJoinPool.commonPool());
+  }
+
+  @Test
+  public void testFindCached() {
+    MaterialManager.INSTANCE.clearMaterialCache();
+    final RenderMaterial white = MaterialManager.INSTANCE.findMaterial(WHITE);
+    assertNotNull(white);
+    assertSame(white, MaterialManager.INSTANCE.findMaterial(WHITE));
+
+    MaterialManager.INSTANCE.clearMaterialCache();
+    assertNotSame(white, MaterialManager.INSTANCE.findMaterial(WHITE));
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    MaterialManager.INSTANCE.clearMaterialCache();
+    final AtomicInteger tasks = new AtomicInteger();
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      MaterialManager.INSTANCE.setLoaderExecutor(command -> {
+        tasks.incrementAndGet();
+        pool.execute(command);
+      });
+
+      final List<RenderMaterial> materials = MaterialManager.INSTANCE
+          .prefetchMaterials(Arrays.asList(WHITE, INSTANCED, WHITE, "no/such/material.yaml")).get();
+      assertEquals(4, tasks.get());
+      assertEquals(4, materials.size());
+      assertNotNull(materials.get(0));
+      assertNotNull(materials.get(1));
+      assertSame(materials.get(0), materials.get(2));
+      assertNull(materials.get(3));
+
+      // now cached
+      assertSame(materials.get(0), MaterialManager.INSTANCE.findMaterial(WHITE));
+      assertSame(materials.get(1), MaterialManager.INSTANCE.findMaterial(INSTANCED));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testConcurrentLoadsShared() throws Exception {
+    final ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      for (int round = 0; round < 5; round++) {
+        MaterialManager.INSTANCE.clearMaterialCache();
+        final List<CompletableFuture<RenderMaterial>> loads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+          loads.add(CompletableFuture.supplyAsync(() -> MaterialManager.INSTANCE.findMaterial(WHITE), pool));
+        }
+        final RenderMaterial first = loads.get(0).get();
+        assertNotNull(first);
+        for (final CompletableFuture<RenderMaterial> load : loads) {
+          assertSame(first, load.get());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
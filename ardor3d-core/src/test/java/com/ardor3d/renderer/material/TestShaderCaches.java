@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.material.ShaderProgramBinaryCache.ProgramBinary;
+
+public class TestShaderCaches {
+
+  private static final String SHADER = "#version 330 core\n\nvoid main() {\n  gl_Position = vec4(0.0);\n}\n";
+
+  @Test
+  public void testProcessedSourceCached() {
+    final ShaderSourceCache cache = MaterialManager.INSTANCE.getShaderSourceCache();
+    cache.clear();
+    final long misses = cache.getMissCount(), hits = cache.getHitCount();
+
+    final List<String> injects = Arrays.asList("#define LIT", "#define MAX 4");
+    final String first = MaterialManager.processShaderText(SHADER, injects);
+    assertEquals(MaterialManager.inject(MaterialManager.inflateShaderImports(SHADER), injects), first);
+    assertEquals(misses + 1, cache.getMissCount());
+
+    // same text and injects - the very same string comes back
+    assertSame(first, MaterialManager.processShaderText(SHADER, Arrays.asList("#define LIT", "#define MAX 4")));
+    assertEquals(hits + 1, cache.getHitCount());
+
+    // different injects are processed separately
+    final String other = MaterialManager.processShaderText(SHADER, Arrays.asList("#define LIT"));
+    assertNotEquals(first, other);
+    assertTrue(other.contains("#define LIT"));
+    assertEquals(misses + 2, cache.getMissCount());
+
+    cache.clear();
+    MaterialManager.processShaderText(SHADER, injects);
+    assertEquals(misses + 3, cache.getMissCount());
+  }
+
+  @Test
+  public void testHashSeparatesInjects() {
+    assertNotEquals(ShaderSourceCache.hash("a", Arrays.asList("bc")),
+        ShaderSourceCache.hash("a", Arrays.asList("b", "c")));
+    assertEquals(ShaderSourceCache.hash("a", null), ShaderSourceCache.hash("a", null));
+  }
+
+  private static class TestCapabilities extends ContextCapabilities {
+    TestCapabilities(final String version) {
+      _displayVendor = "vendor";
+      _displayRenderer = "renderer";
+      _displayVersion = version;
+    }
+  }
+
+  @Test
+  public void testProgramBinaryRoundTrip() throws IOException {
+    final File dir = Files.createTempDirectory("programs").toFile();
+    try {
+      final ShaderProgramBinaryCache cache = new ShaderProgramBinaryCache(new File(dir, "cache"));
+      final Map<ShaderType, List<String>> shaders = new EnumMap<>(ShaderType.class);
+      shaders.put(ShaderType.Vertex, Arrays.asList(SHADER));
+      shaders.put(ShaderType.Fragment, Arrays.asList(SHADER));
+
+      final String key = ShaderProgramBinaryCache.computeKey(shaders, new TestCapabilities("4.6"));
+      assertEquals(key, ShaderProgramBinaryCache.computeKey(shaders, new TestCapabilities("4.6")));
+      // a new driver or different sources need a new binary
+      assertNotEquals(key, ShaderProgramBinaryCache.computeKey(shaders, new TestCapabilities("4.5")));
+      shaders.put(ShaderType.Fragment, Arrays.asList(SHADER + "\n"));
+      assertNotEquals(key, ShaderProgramBinaryCache.computeKey(shaders, new TestCapabilities("4.6")));
+
+      assertNull(cache.load(key));
+      final ByteBuffer binary = ByteBuffer.wrap(new byte[] {9, 8, 7, 6, 5});
+      binary.position(1);
+      cache.store(key, 0x8E21, binary);
+
+      final ProgramBinary loaded = cache.load(key);
+      assertEquals(0x8E21, loaded.getFormat());
+      assertTrue(loaded.getBinary().isDirect());
+      assertEquals(4, loaded.getBinary().remaining());
+      assertEquals(8, loaded.getBinary().get(0));
+      assertEquals(5, loaded.getBinary().get(3));
+
+      cache.remove(key);
+      assertNull(cache.load(key));
+    } finally {
+      for (final File file : new File(dir, "cache").listFiles()) {
+        file.delete();
+      }
+      new File(dir, "cache").delete();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testProgramBinaryStoreFailure() throws IOException {
+    final File dir = Files.createTempDirectory("programs").toFile();
+    final ShaderProgramBinaryCache cache = new ShaderProgramBinaryCache(dir);
+    final ByteBuffer binary = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    cache.store("key", 1, binary);
+    final File[] stored = dir.listFiles();
+    assertEquals(1, stored.length);
+
+    // a directory where the binary should go makes the move fail
+    final File target = stored[0];
+    final File blocker = new File(target, "blocker");
+    try {
+      assertTrue(target.delete() && target.mkdir() && blocker.createNewFile());
+      cache.store("key", 1, binary);
+      assertEquals(Arrays.asList(target), Arrays.asList(dir.listFiles()));
+    } finally {
+      blocker.delete();
+      for (final File file : dir.listFiles()) {
+        file.delete();
+      }
+      dir.delete();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.ardor3d.buffer.AbstractBufferData;
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.material.uniform.UniformRef;
+import com.ardor3d.renderer.material.uniform.UniformSource;
+import com.ardor3d.renderer.material.uniform.UniformType;
+import com.ardor3d.renderer.material.uniform.UniformValueCache;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+
+public class TestUniformTracking {
+
+  @Test
+  public void testRedundantValuesSkipped() {
+    final RecordingShaderUtils utils = new RecordingShaderUtils();
+    final Vector3 color = new Vector3(1, 0, 0);
+    final UniformRef colorRef =
+        new UniformRef(0, UniformType.Float3, UniformSource.Supplier, (Supplier<Vector3>) () -> color);
+    final UniformRef countRef = new UniformRef(1, UniformType.Int1, UniformSource.Value, 4);
+
+    utils.useShaderProgram(1, null);
+    for (int i = 0; i < 3; i++) {
+      utils.sendUniformValue(0, colorRef, null);
+      utils.sendUniformValue(1, countRef, null);
+    }
+    assertEquals(List.of("1:0", "1:1"), utils._sent);
+    assertEquals(4, utils._cache.getSkipCount());
+
+    // changing a value sends it again
+    color.setY(0.5);
+    utils.sendUniformValue(0, colorRef, null);
+    utils.sendUniformValue(1, countRef, null);
+    assertEquals(List.of("1:0", "1:1", "1:0"), utils._sent);
+  }
+
+  @Test
+  public void testValuesTrackedPerProgram() {
+    final RecordingShaderUtils utils = new RecordingShaderUtils();
+    final FloatBuffer matrix = BufferUtils.createFloatBuffer(16);
+    final UniformRef matrixRef = new UniformRef(0, UniformType.Matrix4x4, UniformSource.Value, matrix);
+
+    utils.useShaderProgram(1, null);
+    utils.sendUniformValue(0, matrixRef, null);
+    utils.useShaderProgram(2, null);
+    utils.sendUniformValue(0, matrixRef, null);
+    utils.useShaderProgram(1, null);
+    utils.sendUniformValue(0, matrixRef, null);
+    assertEquals(List.of("1:0", "2:0"), utils._sent);
+
+    // a buffer modified in place is noticed
+    matrix.put(5, 2f);
+    utils.sendUniformValue(0, matrixRef, null);
+    assertEquals(List.of("1:0", "2:0", "1:0"), utils._sent);
+
+    // a recreated program starts from scratch
+    utils._cache.invalidateProgram(2);
+    utils.useShaderProgram(2, null);
+    utils.sendUniformValue(0, matrixRef, null);
+    assertEquals(List.of("1:0", "2:0", "1:0", "2:0"), utils._sent);
+    assertEquals(4, utils._cache.getUploadCount());
+    assertEquals(1, utils._cache.getSkipCount());
+  }
+
+  /**
+   * Shader utils that record the uniforms they would send to the card, instead of sending them.
+   * Only values and suppliers of floats, ints and float buffers are handled.
+   */
+  private static class RecordingShaderUtils implements IShaderUtils {
+    final UniformValueCache _cache = new UniformValueCache();
+    final List<String> _sent = new ArrayList<>();
+    int _programId;
+
+    @Override
+    public int createShaderProgram(final Map<ShaderType, List<String>> shaders, final RenderContext context) {
+      return 0;
+    }
+
+    @Override
+    public void useShaderProgram(final int id, final RenderContext context) {
+      _programId = id;
+    }
+
+    @Override
+    public int createVertexArrayObject(final RenderContext context) {
+      return 0;
+    }
+
+    @Override
+    public void setBoundVAO(final int id, final RenderContext context) {}
+
+    @Override
+    public int findAttributeLocation(final int programId, final String attributeName) {
+      return -1;
+    }
+
+    @Override
+    public int setupBufferObject(final AbstractBufferData<? extends Buffer> buffer, final boolean isEBO,
+        final RenderContext context) {
+      return 0;
+    }
+
+    @Override
+    public void bindVertexAttribute(final VertexAttributeRef attribute,
+        final AbstractBufferData<? extends Buffer> buffer) {}
+
+    @Override
+    public int findUniformLocation(final int programId, final String uniformName) {
+      return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void sendUniformValue(final int location, final UniformRef uniform, final Mesh mesh) {
+      Object value = uniform.getValue();
+      if (uniform.getSource() == UniformSource.Supplier) {
+        value = ((Supplier<Object>) value).get();
+      }
+
+      final Buffer buffer;
+      if (value instanceof Vector3) {
+        final Vector3 vec = (Vector3) value;
+        buffer = BufferUtils.createFloatBuffer(vec.getXf(), vec.getYf(), vec.getZf());
+      } else if (value instanceof Integer) {
+        buffer = BufferUtils.createIntBuffer(1).put((Integer) value).flip();
+      } else {
+        buffer = (Buffer) value;
+      }
+
+      buffer.rewind();
+      if (_cache.update(_programId, location, buffer)) {
+        _sent.add(_programId + ":" + location);
+      }
+    }
+
+    @Override
+    public void deleteBuffer(final AbstractBufferData<?> buffer) {}
+
+    @Override
+    public void deleteBuffers(final Collection<Integer> ids) {}
+
+    @Override
+    public void deleteVertexArray(final MeshData data) {}
+
+    @Override
+    public void deleteVertexArrays(final Collection<Integer> ids) {}
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.material.uniform;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.light.LightUniformBlock;
+import com.ardor3d.light.PointLight;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Matrix4;
+import com.ardor3d.math.Vector3;
+
+public class TestStd140Layout {
+
+  @Test
+  public void testAlignment() {
+    final Std140Layout layout = new Std140Layout() //
+        .add("a", UniformType.Float1) //
+        .add("b", UniformType.Float2) //
+        .add("c", UniformType.Float3) //
+        .add("d", UniformType.Float1) //
+        .add("e", UniformType.Int1) //
+        .addArray("f", UniformType.Float1, 3) //
+        .add("g", UniformType.Matrix3x3) //
+        .add("h", UniformType.Float1);
+
+    assertEquals(0, layout.getOffset("a"));
+    assertEquals(8, layout.getOffset("b"));
+    assertEquals(16, layout.getOffset("c"));
+    // a scalar fills the end of a vec3
+    assertEquals(28, layout.getOffset("d"));
+    assertEquals(32, layout.getOffset("e"));
+    // array elements are vec4 aligned
+    assertEquals(48, layout.getOffset("f"));
+    assertEquals(16, layout.getArrayStride("f"));
+    assertEquals(96, layout.getOffset("g"));
+    assertEquals(144, layout.getOffset("h"));
+    assertEquals(160, layout.getSize());
+  }
+
+  @Test
+  public void testStructs() {
+    final Std140Layout struct = new Std140Layout().add("v", UniformType.Float3);
+    final Std140Layout layout = new Std140Layout() //
+        .add("a", UniformType.Float1) //
+        .addStruct("s", struct, 2) //
+        .add("b", UniformType.Float1);
+
+    assertEquals(16, struct.getSize());
+    assertEquals(16, layout.getOffset("s"));
+    assertEquals(16, layout.getArrayStride("s"));
+    assertEquals(48, layout.getOffset("b"));
+  }
+
+  @Test
+  public void testLightLayout() {
+    // offsets a GL driver reports for the Light struct of light.glsl
+    final Std140Layout layout = LightUniformBlock.LIGHT_LAYOUT;
+    assertEquals(16, layout.getOffset("shadowMatrix"));
+    assertEquals(272, layout.getOffset("bias"));
+    assertEquals(276, layout.getOffset("filterMode"));
+    assertEquals(288, layout.getOffset("position"));
+    assertEquals(304, layout.getOffset("direction"));
+    assertEquals(316, layout.getOffset("constant"));
+    assertEquals(328, layout.getOffset("range"));
+    assertEquals(336, layout.getOffset("color"));
+    assertEquals(348, layout.getOffset("intensity"));
+    assertEquals(356, layout.getOffset("innerAngle"));
+    assertEquals(368, layout.getSize());
+    assertEquals(16, LightUniformBlock.BLOCK_LAYOUT.getOffset("blockLights"));
+  }
+
+  @Test
+  public void testWrite() {
+    final ByteBuffer buffer = BufferUtils.createByteBuffer(128);
+    Std140Layout.write(buffer, 0, UniformType.Float3, new Vector3(1, 2, 3));
+    Std140Layout.write(buffer, 12, UniformType.Int1, Boolean.TRUE);
+    final Matrix4 mat = new Matrix4().setValue(2, 1, 5);
+    Std140Layout.write(buffer, 16, UniformType.Matrix4x4, mat);
+
+    assertEquals(0, buffer.position());
+    assertEquals(1, buffer.getFloat(0), 0);
+    assertEquals(3, buffer.getFloat(8), 0);
+    assertEquals(1, buffer.getInt(12));
+    // column major - row 2 of column 1
+    assertEquals(5, buffer.getFloat(16 + 16 + 8), 0);
+    assertEquals(1, buffer.getFloat(16 + 16 + 4), 0);
+  }
+
+  @Test
+  public void testWriteLight() {
+    final PointLight light = new PointLight();
+    light.setColor(new ColorRGBA(0.5f, 0.25f, 1, 1));
+    light.setRange(12);
+    light.setTranslation(4, 5, 6);
+    light.updateGeometricState(0);
+
+    final ByteBuffer buffer = BufferUtils.createByteBuffer(LightUniformBlock.LIGHT_LAYOUT.getSize() + 16);
+    // garbage from a previous light should be cleared
+    buffer.putFloat(16 + 304, 9);
+    LightUniformBlock.writeLight(buffer, 16, light);
+
+    final Std140Layout layout = LightUniformBlock.LIGHT_LAYOUT;
+    assertEquals(PointLight.Type.Point.ordinal(), buffer.getInt(16 + layout.getOffset("type")));
+    assertEquals(1, buffer.getInt(16 + layout.getOffset("enabled")));
+    assertEquals(5, buffer.getFloat(16 + layout.getOffset("position") + 4), 0);
+    assertEquals(12, buffer.getFloat(16 + layout.getOffset("range")), 0);
+    assertEquals(0.25f, buffer.getFloat(16 + layout.getOffset("color") + 4), 0);
+    assertEquals(0, buffer.getFloat(16 + layout.getOffset("direction")), 0);
+  }
+}
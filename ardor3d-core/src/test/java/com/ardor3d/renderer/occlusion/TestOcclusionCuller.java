@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.occlusion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.material.RenderMaterial;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+import com.ardor3d.scenegraph.shape.Quad;
+
+public class TestOcclusionCuller {
+
+  private static Camera createCamera() {
+    final Camera camera = new Camera(800, 600);
+    camera.setFrustumPerspective(60, 800 / 600.0, 1, 200);
+    camera.setLocation(new Vector3(0, 0, 0));
+    camera.lookAt(new Vector3(0, 0, -1), Vector3.UNIT_Y);
+    camera.update();
+    return camera;
+  }
+
+  private static Mesh createBox(final String name, final double x, final double y, final double z) {
+    final Box box = new Box(name, Vector3.ZERO, 1, 1, 1);
+    box.setModelBound(new BoundingBox());
+    box.setTranslation(x, y, z);
+    return box;
+  }
+
+  @Test
+  public void testWallHidesWhatIsBehind() {
+    final Node root = new Node("root");
+    // an 8 x 8 wall, 10 units in front of the camera
+    final Box wall = new Box("wall", Vector3.ZERO, 4, 4, 0.5);
+    wall.setModelBound(new BoundingBox());
+    wall.setTranslation(0, 0, -10);
+    root.attachChild(wall);
+
+    final Mesh behind = createBox("behind", 0, 0, -30);
+    final Mesh inFront = createBox("inFront", 0, 0, -5);
+    final Mesh beside = createBox("beside", 20, 0, -30);
+    final Mesh peeking = createBox("peeking", 4.5, 0, -12);
+    final Mesh sphereBehind = createBox("sphereBehind", 3, 3, -50);
+    sphereBehind.setModelBound(new BoundingSphere());
+    root.attachChild(behind);
+    root.attachChild(inFront);
+    root.attachChild(beside);
+    root.attachChild(peeking);
+    root.attachChild(sphereBehind);
+    root.updateGeometricState(0);
+
+    final OcclusionCuller culler = new OcclusionCuller(128, 96);
+    culler.addOccluder(wall);
+    final Camera camera = createCamera();
+    assertFalse(culler.isPreparedFor(camera));
+    culler.prepare(camera);
+    assertTrue(culler.isPreparedFor(camera));
+
+    assertTrue(culler.isOccluded(behind));
+    assertTrue(culler.isOccluded(sphereBehind));
+    assertFalse(culler.isOccluded(inFront));
+    assertFalse(culler.isOccluded(beside));
+    assertFalse(culler.isOccluded(peeking));
+    // occluders never hide themselves
+    assertFalse(culler.isOccluded(wall));
+
+    // moving the camera needs a new prepare
+    camera.setLocation(new Vector3(10, 0, 0));
+    camera.update();
+    assertFalse(culler.isPreparedFor(camera));
+    culler.prepare(camera);
+    assertFalse(culler.isOccluded(behind));
+
+    // and so does moving occluders, once invalidated
+    camera.setLocation(Vector3.ZERO);
+    camera.update();
+    culler.prepare(camera);
+    assertTrue(culler.isOccluded(behind));
+    wall.setTranslation(0, 30, -10);
+    root.updateGeometricState(0);
+    culler.invalidate();
+    assertFalse(culler.isPreparedFor(camera));
+    culler.prepare(camera);
+    assertFalse(culler.isOccluded(behind));
+  }
+
+  @Test
+  public void testNearPlaneAndProxies() {
+    final Node root = new Node("root");
+    // a large box with the camera inside it - clipped by the near plane, and never occluded itself
+    final Box room = new Box("room", Vector3.ZERO, 50, 50, 50);
+    room.setModelBound(new BoundingBox());
+    root.attachChild(room);
+    // a node drawn with a proxy quad standing in for its shape
+    final Node building = new Node("building");
+    building.setTranslation(0, 0, -20);
+    building.attachChild(createBox("walls", 0, 0, 0));
+    root.attachChild(building);
+    final Mesh hidden = createBox("hidden", 0, 0, -40);
+    root.attachChild(hidden);
+    final Mesh crossing = createBox("crossing", 0, 0, -1);
+    root.attachChild(crossing);
+    root.updateGeometricState(0);
+
+    final OcclusionCuller culler = new OcclusionCuller(64, 48);
+    culler.addOccluder(building, new Quad("proxy", 8, 8));
+    final Camera camera = createCamera();
+    culler.prepare(camera);
+    assertTrue(culler.isOccluder(building));
+    assertTrue(culler.isOccluded(hidden));
+    assertFalse(culler.isOccluded(building));
+    // bounds crossing the near plane are always visible
+    assertFalse(culler.isOccluded(crossing));
+
+    // the room's back faces are beyond everything, so it hides nothing in it
+    culler.clearOccluders();
+    culler.addOccluder(room);
+    culler.prepare(camera);
+    assertFalse(culler.isOccluded(hidden));
+    assertTrue(culler.getRasterizer().getTriangleCount() > 0);
+
+    assertTrue(culler.removeOccluder(room));
+    assertFalse(culler.removeOccluder(room));
+    assertEquals(0, culler.getOccluderCount());
+  }
+
+  @Test
+  public void testOccluderMaterial() {
+    final Node root = new Node("root");
+    final Node walls = new Node("walls");
+    walls.setOccluderMaterial(new RenderMaterial());
+    walls.attachChild(createBox("a", 0, 0, -10));
+    walls.attachChild(createBox("b", 5, 0, -10));
+    root.attachChild(walls);
+    root.attachChild(createBox("c", 0, 0, -30));
+    root.updateGeometricState(0);
+
+    final OcclusionCuller culler = new OcclusionCuller(64, 48);
+    assertEquals(2, culler.addOccluders(root));
+  }
+
+  @Test
+  public void testParallelMatchesSerial() {
+    final DepthRasterizer serial = new DepthRasterizer(100, 70);
+    final DepthRasterizer parallel = new DepthRasterizer(100, 70);
+    parallel.setPool(ForkJoinPool.commonPool());
+    // sizes round up to whole tiles
+    assertEquals(104, serial.getWidth());
+    assertEquals(72, serial.getHeight());
+
+    final Random random = new Random(3);
+    for (int i = 0; i < 300; i++) {
+      final double[] v = new double[12];
+      for (int j = 0; j < 12; j++) {
+        v[j] = random.nextDouble() * 4 - 2;
+      }
+      // keep w positive but let some vertices cross the near plane
+      v[3] = Math.abs(v[3]) + 0.5;
+      v[7] = Math.abs(v[7]) + 0.5;
+      v[11] = Math.abs(v[11]) + 0.5;
+      serial.addTriangle(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10], v[11]);
+      parallel.addTriangle(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9], v[10], v[11]);
+    }
+    serial.rasterize();
+    parallel.rasterize();
+    assertEquals(serial.getTriangleCount(), parallel.getTriangleCount());
+
+    boolean written = false;
+    for (int y = 0; y < serial.getHeight(); y++) {
+      for (int x = 0; x < serial.getWidth(); x++) {
+        assertEquals(serial.getDepth(x, y), parallel.getDepth(x, y), 0);
+        written |= serial.getDepth(x, y) < 1;
+      }
+    }
+    assertTrue(written);
+  }
+
+  @Test
+  public void testRasterizerCoverage() {
+    final DepthRasterizer rasterizer = new DepthRasterizer(16, 16);
+    // a quad covering the left half of the screen at depth 0, as two triangles
+    rasterizer.addTriangle(-1, -1, 0, 1, 0, -1, 0, 1, 0, 1, 0, 1);
+    rasterizer.addTriangle(-1, -1, 0, 1, 0, 1, 0, 1, -1, 1, 0, 1);
+    rasterizer.rasterize();
+
+    assertEquals(0, rasterizer.getDepth(0, 0), 0);
+    assertEquals(0, rasterizer.getDepth(7, 15), 0);
+    assertEquals(1, rasterizer.getDepth(8, 0), 0);
+    assertTrue(rasterizer.isOccluded(0, 0, 7.9, 15.9, 0.5));
+    assertFalse(rasterizer.isOccluded(0, 0, 8.5, 15.9, 0.5));
+    assertFalse(rasterizer.isOccluded(0, 0, 7.9, 15.9, -0.5));
+    // off screen parts are ignored, fully off screen is left alone
+    assertTrue(rasterizer.isOccluded(-10, -10, 7.9, 15.9, 0.5));
+    assertFalse(rasterizer.isOccluded(-10, -10, -1, -1, 0.5));
+  }
+}
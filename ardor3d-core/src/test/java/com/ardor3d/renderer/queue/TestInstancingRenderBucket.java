@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.FloatBuffer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.material.RenderMaterial;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestInstancingRenderBucket {
+
+  private static final Object CONTEXT_KEY = new Object();
+
+  @BeforeClass
+  public static void setupContext() {
+    final Object key = TestInstancingRenderBucket.CONTEXT_KEY;
+    ContextManager.addContext(key, new RenderContext(key, new ContextCapabilities()));
+    ContextManager.switchContext(key);
+    ContextManager.getCurrentContext().setCurrentCamera(new Camera(800, 600));
+  }
+
+  @AfterClass
+  public static void removeContext() {
+    ContextManager.removeContext(TestInstancingRenderBucket.CONTEXT_KEY);
+  }
+
+  @Test
+  public void testGrouping() {
+    final RenderMaterial material = new RenderMaterial();
+    final RenderMaterial instanced = new RenderMaterial();
+    final RenderMaterial other = new RenderMaterial();
+    final InstancingRenderBucket bucket = new InstancingRenderBucket();
+    bucket.setInstancedMaterial(material, instanced);
+
+    final Node root = new Node("root");
+    root.setRenderMaterial(material);
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    final Mesh[] meshes = new Mesh[6];
+    for (int i = 0; i < meshes.length; i++) {
+      meshes[i] = source.makeCopy(true);
+      meshes[i].setTranslation(i * 2, 0, 0);
+      root.attachChild(meshes[i]);
+    }
+    // one with a different color, one with an unbatched material, one with its own geometry
+    meshes[3].setDefaultColor(ColorRGBA.RED);
+    meshes[4].setRenderMaterial(other);
+    meshes[5] = source.makeCopy(false);
+    root.attachChild(meshes[5]);
+    root.updateGeometricState(0);
+
+    for (final Mesh mesh : meshes) {
+      bucket.add(mesh);
+    }
+    bucket.groupItems();
+
+    final InstancingRenderBucket.InstanceGroup group = bucket._itemGroups[0];
+    assertEquals(3, group._count);
+    assertSame(group, bucket._itemGroups[1]);
+    assertSame(group, bucket._itemGroups[2]);
+    assertNotSame(group, bucket._itemGroups[3]);
+    assertEquals(1, bucket._itemGroups[3]._count);
+    assertNull(bucket._itemGroups[4]);
+    assertEquals(1, bucket._itemGroups[5]._count);
+
+    // the batch draws the shared geometry once per member
+    final InstancingRenderBucket.InstanceBatch batch = bucket._batch;
+    batch.setup(group, instanced, null);
+    assertSame(instanced, batch.getWorldRenderMaterial());
+    assertEquals(3, batch.getInstanceCount());
+    assertSame(source.getMeshData().getVertexCoords(), batch.getMeshData().getVertexCoords());
+    assertSame(source.getMeshData().getIndices(), batch.getMeshData().getIndices());
+
+    final FloatBuffer matrices = batch.getMeshData().getBuffer(MeshData.KEY_InstanceMatrix);
+    assertEquals(48, matrices.limit());
+    final FloatBuffer expected = BufferUtils.createFloatBuffer(16);
+    meshes[2].getWorldTransform().getGLApplyMatrix(expected);
+    for (int i = 0; i < 16; i++) {
+      assertEquals(expected.get(i), matrices.get(32 + i), 0f);
+    }
+    assertEquals(new BoundingBox(new Vector3(2, 0, 0), 2.5, 0.5, 0.5), batch.getWorldBound());
+
+    // attributes of one group do not leak into the next drawn
+    meshes[5].getMeshData().setColorBuffer(BufferUtils.createFloatBuffer(source.getMeshData().getVertexCount() * 4));
+    batch.setup(bucket._itemGroups[5], instanced, null);
+    assertSame(meshes[5].getMeshData().getColorCoords(), batch.getMeshData().getColorCoords());
+    batch.setup(group, instanced, null);
+    assertNull(batch.getMeshData().getColorCoords());
+    assertSame(source.getMeshData().getVertexCoords(), batch.getMeshData().getVertexCoords());
+    assertEquals(3, batch.getInstanceCount());
+  }
+}
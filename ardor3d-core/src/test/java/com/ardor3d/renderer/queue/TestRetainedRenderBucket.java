@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.event.DirtyType;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestRetainedRenderBucket {
+
+  /** Bucket that records what it is asked to do. */
+  private static class RecordingBucket implements RenderBucket {
+    final List<Spatial> _items = new ArrayList<>();
+    int _sorts;
+    int _renders;
+
+    @Override
+    public void add(final Spatial spatial) {
+      _items.add(spatial);
+    }
+
+    @Override
+    public void remove(final Spatial spatial) {
+      _items.remove(spatial);
+    }
+
+    @Override
+    public void clear() {
+      _items.clear();
+    }
+
+    @Override
+    public void sort() {
+      _sorts++;
+    }
+
+    @Override
+    public void render(final Renderer renderer) {
+      _renders++;
+    }
+
+    @Override
+    public void pushBucket() {}
+
+    @Override
+    public void popBucket() {}
+  }
+
+  private Camera _camera;
+  private Node _root;
+  private RecordingBucket _delegate;
+  private RetainedRenderBucket _bucket;
+
+  @Before
+  public void setup() {
+    final Object key = new Object();
+    ContextManager.addContext(key, new RenderContext(key, new ContextCapabilities()));
+    ContextManager.switchContext(key);
+    _camera = new Camera(800, 600);
+    ContextManager.getCurrentContext().setCurrentCamera(_camera);
+
+    _root = new Node("root");
+    for (int i = 0; i < 3; i++) {
+      _root.attachChild(new Box("box" + i, Vector3.ZERO, 1, 1, 1));
+    }
+    _root.updateGeometricState(0);
+    _delegate = new RecordingBucket();
+    _bucket = new RetainedRenderBucket(_delegate);
+    _bucket.watch(_root);
+  }
+
+  /** Queue, sort, render and clear our meshes, as the render queue does each frame. */
+  private void renderFrame() {
+    for (final Spatial child : _root.getChildren()) {
+      _bucket.add(child);
+    }
+    _bucket.sort();
+    _bucket.render(null);
+    _bucket.clear();
+  }
+
+  @Test
+  public void testReuseWhileUnchanged() {
+    renderFrame();
+    assertEquals(1, _delegate._sorts);
+    assertEquals(3, _delegate._items.size());
+    assertTrue(_bucket.isUpToDate());
+
+    // the sorted items are drawn again, without being added or sorted again
+    for (int i = 0; i < 3; i++) {
+      renderFrame();
+    }
+    assertEquals(1, _delegate._sorts);
+    assertEquals(4, _delegate._renders);
+    assertEquals(3, _delegate._items.size());
+  }
+
+  @Test
+  public void testResortOnCameraChange() {
+    renderFrame();
+
+    _camera.onFrameChange();
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(2, _delegate._sorts);
+    assertEquals(3, _delegate._items.size());
+    assertTrue(_bucket.isUpToDate());
+
+    _camera.onFrustumChange();
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(3, _delegate._sorts);
+
+    // as does a different camera
+    ContextManager.getCurrentContext().setCurrentCamera(new Camera(_camera));
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(4, _delegate._sorts);
+  }
+
+  @Test
+  public void testResortOnSceneChange() {
+    renderFrame();
+
+    // a mesh added
+    final Mesh added = new Box("added", Vector3.ZERO, 1, 1, 1);
+    _root.attachChild(added);
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(2, _delegate._sorts);
+    assertEquals(4, _delegate._items.size());
+
+    // removed
+    _root.detachChild(added);
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(3, _delegate._sorts);
+    assertEquals(3, _delegate._items.size());
+
+    // dirtied
+    _root.updateGeometricState(0);
+    renderFrame();
+    final int sorts = _delegate._sorts;
+    _root.getChild(1).markDirty(DirtyType.RenderState);
+    assertFalse(_bucket.isUpToDate());
+    renderFrame();
+    assertEquals(sorts + 1, _delegate._sorts);
+    assertTrue(_bucket.isUpToDate());
+  }
+
+  @Test
+  public void testCameraVersions() {
+    final int frame = _camera.getFrameVersion(), frustum = _camera.getFrustumVersion();
+
+    _camera.setLocation(1, 2, 3);
+    assertEquals(frame + 1, _camera.getFrameVersion());
+    assertEquals(frustum, _camera.getFrustumVersion());
+
+    _camera.setFrustumPerspective(60, 1, 1, 100);
+    assertEquals(frame + 1, _camera.getFrameVersion());
+    assertEquals(frustum + 1, _camera.getFrustumVersion());
+
+    _camera.onFrameChange();
+    _camera.onFrustumChange();
+    assertEquals(frame + 2, _camera.getFrameVersion());
+    assertEquals(frustum + 2, _camera.getFrustumVersion());
+  }
+}
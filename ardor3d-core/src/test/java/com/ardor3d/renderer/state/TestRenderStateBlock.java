@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.renderer.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.StubRenderer;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestRenderStateBlock {
+
+  private final Object _contextKey = new Object();
+  private RenderContext _context;
+
+  @Before
+  public void setUp() {
+    _context = new RenderContext(_contextKey, new ContextCapabilities());
+    ContextManager.addContext(_contextKey, _context);
+    ContextManager.switchContext(_contextKey);
+  }
+
+  @After
+  public void tearDown() {
+    ContextManager.removeContext(_contextKey);
+  }
+
+  @Test
+  public void testShared() {
+    final Node root = new Node("root");
+    final BlendState blend = new BlendState();
+    root.setRenderState(blend);
+    final Box a = new Box("a", Vector3.ZERO, 1, 1, 1);
+    final Box b = new Box("b", Vector3.ZERO, 1, 1, 1);
+    final Box c = new Box("c", Vector3.ZERO, 1, 1, 1);
+    c.setRenderState(new WireframeState());
+    root.attachChild(a);
+    root.attachChild(b);
+    root.attachChild(c);
+    root.updateGeometricState(0);
+
+    assertSame(a.getWorldRenderStateBlock(), b.getWorldRenderStateBlock());
+    assertNotSame(a.getWorldRenderStateBlock(), c.getWorldRenderStateBlock());
+    assertSame(blend, a.getWorldRenderStateBlock().get(StateType.Blend));
+    assertNull(a.getWorldRenderStateBlock().get(StateType.Wireframe));
+
+    final int differences = a.getWorldRenderStateBlock().getDifferences(c.getWorldRenderStateBlock());
+    assertEquals(1 << StateType.Wireframe.ordinal(), differences);
+    assertEquals(0, a.getWorldRenderStateBlock().getDifferences(b.getWorldRenderStateBlock()));
+  }
+
+  @Test
+  public void testApplyOnlyDifferences() {
+    final StubRenderer renderer = new StubRenderer();
+    renderer.setRecordStates(true);
+    final BlendState blend = new BlendState();
+    final CullState cull = new CullState();
+    final RenderStateBlock first = RenderStateBlock.of(Map.of(StateType.Blend, blend));
+    final RenderStateBlock second = RenderStateBlock.of(Map.of(StateType.Blend, blend, StateType.Cull, cull));
+
+    // nothing known yet - every type is visited
+    renderer.applyStates(first);
+    assertEquals(StateType.values.length, renderer.getAppliedStates().size());
+    assertSame(first, _context.getAppliedStateBlock());
+
+    // the same block again - only types that are not quick compared are applied
+    renderer.getAppliedStates().clear();
+    renderer.applyStates(first);
+    for (final RenderState state : renderer.getAppliedStates()) {
+      assertTrue(!RenderState._quickCompare.contains(state.getType()));
+    }
+
+    // a different block - only cull changes among the quick compared types
+    renderer.getAppliedStates().clear();
+    renderer.applyStates(second);
+    assertTrue(renderer.getAppliedStates().contains(cull));
+    assertTrue(!renderer.getAppliedStates().contains(blend));
+
+    // a state needing refresh is applied again
+    renderer.getAppliedStates().clear();
+    blend.setNeedsRefresh(true);
+    renderer.applyStates(second);
+    assertTrue(renderer.getAppliedStates().contains(blend));
+
+    // states changed behind our back invalidate the applied block
+    _context.setCurrentState(StateType.Blend, new BlendState());
+    assertNull(_context.getAppliedStateBlock());
+    renderer.getAppliedStates().clear();
+    renderer.applyStates(second);
+    assertTrue(renderer.getAppliedStates().contains(blend));
+  }
+}
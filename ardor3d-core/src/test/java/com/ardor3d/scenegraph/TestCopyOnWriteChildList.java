@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestCopyOnWriteChildList {
+
+  private static Node[] createChildren(final int count) {
+    final Node[] children = new Node[count];
+    for (int i = 0; i < count; i++) {
+      children[i] = new Node("child" + i);
+    }
+    return children;
+  }
+
+  @Test
+  public void testModifyWhileIterating() throws Exception {
+    final Node[] children = createChildren(50);
+    final Node parent = new Node("parent", new CopyOnWriteChildList());
+    for (final Node child : children) {
+      parent.attachChild(child);
+    }
+
+    // an iterator sees the children as they were when it was made
+    final Iterator<Spatial> it = parent.getChildren().iterator();
+    parent.detachChild(children[0]);
+    parent.getChildren().set(1, children[0]);
+    int count = 0;
+    while (it.hasNext()) {
+      assertSame(children[count], it.next());
+      count++;
+    }
+    assertEquals(50, count);
+
+    // another thread traverses while we keep changing the children
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Thread reader = new Thread(() -> {
+      try {
+        started.countDown();
+        for (int pass = 0; pass < 2000; pass++) {
+          for (final Spatial child : parent.getChildren()) {
+            assertNotNull(child);
+          }
+          parent.updateGeometricState(0);
+        }
+      } catch (final Throwable t) {
+        failure.set(t);
+      }
+    });
+    reader.start();
+    started.await();
+    final Node extra = new Node("extra");
+    for (int i = 0; i < 2000; i++) {
+      parent.attachChild(extra);
+      parent.getChildren().set(0, parent.getChild(0));
+      parent.detachChild(extra);
+    }
+    reader.join();
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(49, parent.getNumberOfChildren());
+  }
+
+  @Test
+  public void testBulkRemoval() {
+    final Node[] children = createChildren(10);
+    final List<Spatial> list = new CopyOnWriteChildList(Arrays.asList(children));
+
+    assertTrue(list.removeIf(child -> child.getName().endsWith("3")));
+    assertFalse(list.removeIf(child -> child.getName().endsWith("3")));
+    assertEquals(9, list.size());
+    assertFalse(list.contains(children[3]));
+
+    assertTrue(list.removeAll(Arrays.asList(children[0], children[9])));
+    assertEquals(Arrays.asList(children[1], children[2], children[4], children[5], children[6], children[7],
+        children[8]), list);
+
+    assertTrue(list.retainAll(Arrays.asList(children[2], children[5], children[6], children[7])));
+    assertEquals(Arrays.asList(children[2], children[5], children[6], children[7]), list);
+
+    // removing through an iterator finds the child even after the list changed
+    final Iterator<Spatial> it = list.iterator();
+    assertSame(children[2], it.next());
+    assertSame(children[5], it.next());
+    list.remove(children[2]);
+    it.remove();
+    assertSame(children[6], it.next());
+    assertEquals(Arrays.asList(children[6], children[7]), list);
+
+    // snapshots are shared until the list changes, and do not follow it
+    final List<Spatial> snapshot = ((CopyOnWriteChildList) list).snapshot();
+    assertSame(snapshot, ((CopyOnWriteChildList) list).snapshot());
+    list.clear();
+    assertEquals(Arrays.asList(children[6], children[7]), snapshot);
+    assertTrue(list.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    final CopyOnWriteChildList list = new CopyOnWriteChildList();
+    final Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (final Node child : createChildren(500)) {
+          list.add(child);
+        }
+      });
+      threads[t].start();
+    }
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(2000, list.size());
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.event.DirtyEventListener;
+import com.ardor3d.scenegraph.event.DirtyType;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestParallelUpdate {
+
+  private static Node buildScene() {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    final Node root = new Node("root");
+    for (int i = 0; i < 8; i++) {
+      final Node group = new Node("group" + i);
+      for (int j = 0; j < 20; j++) {
+        final Spatial mesh = source.makeCopy(true);
+        mesh.setTranslation(i * 3, j, -j);
+        group.attachChild(mesh);
+      }
+      root.attachChild(group);
+    }
+    return root;
+  }
+
+  @Test
+  public void testSubtreeSize() {
+    final Node root = buildScene();
+    assertEquals(1 + 8 * 21, root.getSubtreeSize());
+
+    ((Node) root.getChild(0)).detachChildAt(0);
+    assertEquals(8 * 21, root.getSubtreeSize());
+
+    root.attachChild(new Node("extra"));
+    assertEquals(8 * 21 + 1, root.getSubtreeSize());
+  }
+
+  @Test
+  public void testMatchesSerialUpdate() {
+    final Node serial = buildScene();
+    final Node parallel = buildScene();
+
+    final List<String> serialEvents = new ArrayList<>();
+    final List<String> parallelEvents = new ArrayList<>();
+    serial.addListener(new RecordingListener(serialEvents, null));
+    parallel.addListener(new RecordingListener(parallelEvents, Thread.currentThread()));
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      parallel.setParallelUpdate(pool, 10);
+      serial.updateGeometricState(0);
+      parallel.updateGeometricState(0);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(serial.getWorldBound(), parallel.getWorldBound());
+    assertEquals(serialEvents, parallelEvents);
+    assertFalse(parallel.isDirty(DirtyType.Bounding));
+  }
+
+  private static class RecordingListener implements DirtyEventListener {
+    private final List<String> _events;
+    private final Thread _expectedThread;
+
+    RecordingListener(final List<String> events, final Thread expectedThread) {
+      _events = events;
+      _expectedThread = expectedThread;
+    }
+
+    @Override
+    public boolean spatialDirty(final Spatial spatial, final DirtyType dirtyType) {
+      return record(spatial, dirtyType, "dirty");
+    }
+
+    @Override
+    public boolean spatialClean(final Spatial spatial, final DirtyType dirtyType) {
+      return record(spatial, dirtyType, "clean");
+    }
+
+    private boolean record(final Spatial spatial, final DirtyType dirtyType, final String kind) {
+      if (_expectedThread != null) {
+        assertSame(_expectedThread, Thread.currentThread());
+      }
+      final Node parent = spatial.getParent();
+      _events.add(kind + " " + dirtyType + " " + spatial.getName() + " "
+          + (parent != null ? parent.getName() + "#" + parent.getChildIndex(spatial) : ""));
+      return false;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.intersection.BoundingPickResults;
+import com.ardor3d.intersection.PickResults;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.scenegraph.extension.BillboardNode;
+import com.ardor3d.scenegraph.extension.SwitchNode;
+import com.ardor3d.scenegraph.hint.CullHint;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestSpatialIndex {
+
+  private static Node buildFlatScene(final int count, final List<Mesh> meshes) {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    final Random random = new Random(7);
+    final Node root = new Node("root");
+    for (int i = 0; i < count; i++) {
+      final Mesh mesh = source.makeCopy(true);
+      if (i % 3 == 0) {
+        mesh.setModelBound(new BoundingSphere());
+      }
+      mesh.setTranslation(random.nextDouble() * 200 - 100, random.nextDouble() * 20 - 10,
+          random.nextDouble() * 200 - 100);
+      root.attachChild(mesh);
+      meshes.add(mesh);
+    }
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static Camera createCamera(final Vector3 location, final Vector3 target) {
+    final Camera camera = new Camera(800, 600);
+    camera.setFrustumPerspective(45, 800 / 600.0, 1, 80);
+    camera.setLocation(location);
+    camera.lookAt(target, Vector3.UNIT_Y);
+    camera.update();
+    return camera;
+  }
+
+  private static Set<Mesh> expectedVisible(final Camera camera, final List<Mesh> meshes) {
+    final Set<Mesh> expected = new HashSet<>();
+    for (final Mesh mesh : meshes) {
+      camera.setPlaneState(0);
+      if (camera.contains(mesh.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+        expected.add(mesh);
+      }
+    }
+    camera.setPlaneState(0);
+    return expected;
+  }
+
+  private static Set<Mesh> findVisible(final SpatialIndex index, final Camera camera) {
+    final List<Mesh> found = new ArrayList<>();
+    index.findVisible(camera, found);
+    final Set<Mesh> set = new HashSet<>(found);
+    assertEquals("duplicates found", found.size(), set.size());
+    return set;
+  }
+
+  @Test
+  public void testQueriesMatchBruteForce() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node root = buildFlatScene(2000, meshes);
+    final SpatialIndex index = new SpatialIndex();
+    index.addAll(root);
+    assertEquals(2000, index.size());
+
+    // balanced - a perfectly balanced tree of 2000 leaves has height 11
+    assertTrue("height " + index.getHeight(), index.getHeight() <= 22);
+
+    final Camera camera = createCamera(new Vector3(0, 5, 0), new Vector3(1, 0, 0.3));
+    final Set<Mesh> expected = expectedVisible(camera, meshes);
+    assertFalse(expected.isEmpty());
+    assertEquals(expected, findVisible(index, camera));
+
+    final BoundingBox region = new BoundingBox(new Vector3(20, 0, -10), 15, 5, 25);
+    final Set<Mesh> inRegion = new HashSet<>();
+    for (final Mesh mesh : meshes) {
+      if (mesh.getWorldBound().intersects(region)) {
+        inRegion.add(mesh);
+      }
+    }
+    final List<Mesh> found = new ArrayList<>();
+    index.findIntersecting(region, found);
+    assertFalse(inRegion.isEmpty());
+    assertEquals(inRegion, new HashSet<>(found));
+
+    final Ray3 ray = new Ray3(new Vector3(-120, 0, 0), Vector3.UNIT_X);
+    final Set<Mesh> hit = new HashSet<>();
+    for (final Mesh mesh : meshes) {
+      if (mesh.getWorldBound().intersects(ray)) {
+        hit.add(mesh);
+      }
+    }
+    found.clear();
+    index.findIntersecting(ray, found);
+    assertEquals(hit, new HashSet<>(found));
+  }
+
+  @Test
+  public void testRemove() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node root = buildFlatScene(500, meshes);
+    final SpatialIndex index = new SpatialIndex();
+    index.addAll(root);
+    for (int i = 0; i < meshes.size(); i += 2) {
+      assertTrue(index.remove(meshes.get(i)));
+    }
+    assertFalse(index.remove(meshes.get(0)));
+    assertEquals(250, index.size());
+
+    final List<Mesh> remaining = new ArrayList<>();
+    for (int i = 1; i < meshes.size(); i += 2) {
+      remaining.add(meshes.get(i));
+    }
+    final Camera camera = createCamera(new Vector3(0, 5, 0), new Vector3(-1, 0, -0.5));
+    assertEquals(expectedVisible(camera, remaining), findVisible(index, camera));
+
+    index.removeAll(root);
+    assertEquals(0, index.size());
+    assertEquals(-1, index.getHeight());
+    assertTrue(findVisible(index, camera).isEmpty());
+  }
+
+  @Test
+  public void testSceneIndexerRefit() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node root = buildFlatScene(300, meshes);
+    final SceneIndexer indexer = new SceneIndexer();
+    indexer.addSceneRoot(root);
+    final SpatialIndex index = new SpatialIndex();
+    indexer.setSpatialIndex(index);
+    assertEquals(300, index.size());
+
+    final Camera camera = createCamera(new Vector3(0, 5, 0), new Vector3(0, 5, 1));
+
+    // move a mesh from behind the camera into view
+    final Mesh mover = meshes.get(0);
+    mover.setTranslation(0, 5, -50);
+    root.updateGeometricState(0);
+    assertFalse(findVisible(index, camera).contains(mover));
+    mover.setTranslation(0, 5, 30);
+    root.updateGeometricState(0);
+    assertTrue(findVisible(index, camera).contains(mover));
+
+    // moving the parent moves everything
+    root.setTranslation(0, 0, 40);
+    root.updateGeometricState(0);
+    assertEquals(expectedVisible(camera, meshes), findVisible(index, camera));
+
+    // attach and detach
+    final Mesh added = mover.makeCopy(true);
+    added.setTranslation(0, 5, 0);
+    root.attachChild(added);
+    root.updateGeometricState(0);
+    assertTrue(index.contains(added));
+    assertTrue(findVisible(index, camera).contains(added));
+    root.detachChild(added);
+    assertFalse(index.contains(added));
+
+    // cull hints are honored
+    mover.getSceneHints().setCullHint(CullHint.Always);
+    assertFalse(findVisible(index, camera).contains(mover));
+  }
+
+  @Test
+  public void testPick() {
+    final List<Mesh> meshes = new ArrayList<>();
+    final Node root = buildFlatScene(1000, meshes);
+    final SpatialIndex index = new SpatialIndex();
+    index.addAll(root);
+
+    final Ray3 ray = new Ray3(new Vector3(0, 0, -120), Vector3.UNIT_Z);
+    final PickResults fromScene = new BoundingPickResults();
+    PickingUtil.findPick(root, ray, fromScene);
+    final PickResults fromIndex = new BoundingPickResults();
+    PickingUtil.findPick(index, ray, fromIndex, true);
+
+    final Set<Object> expected = new HashSet<>();
+    for (int i = 0; i < fromScene.getNumber(); i++) {
+      expected.add(fromScene.getPickData(i).getTarget());
+    }
+    final Set<Object> actual = new HashSet<>();
+    for (int i = 0; i < fromIndex.getNumber(); i++) {
+      actual.add(fromIndex.getPickData(i).getTarget());
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testLeftToSceneGraph() {
+    final Node root = new Node("root");
+    final SwitchNode switchNode = new SwitchNode("switch");
+    final Mesh shown = new Box("shown", new Vector3(0, 0, 10), 1, 1, 1);
+    final Mesh switchedOff = new Box("switchedOff", new Vector3(0, 0, 10), 1, 1, 1);
+    switchNode.attachChild(shown);
+    switchNode.attachChild(switchedOff);
+    switchNode.setSingleVisible(0);
+    root.attachChild(switchNode);
+    final Mesh never = new Box("never", new Vector3(0, 0, -30), 1, 1, 1);
+    never.getSceneHints().setCullHint(CullHint.Never);
+    root.attachChild(never);
+    final BillboardNode billboard = new BillboardNode("billboard");
+    final Mesh billboarded = new Box("billboarded", new Vector3(0, 0, 20), 1, 1, 1);
+    billboard.attachChild(billboarded);
+    root.attachChild(billboard);
+    root.updateGeometricState(0);
+
+    final SpatialIndex index = new SpatialIndex();
+    index.addAll(root);
+    assertEquals(3, index.size());
+    assertFalse(index.contains(billboarded));
+    assertEquals(List.of(billboard), index.getUnindexed());
+
+    // children a switch hides are left out, and never culled meshes are kept behind the camera
+    final Camera camera = createCamera(new Vector3(0, 0, 0), new Vector3(0, 0, 1));
+    assertEquals(Set.of(shown, never), findVisible(index, camera));
+    // a switch only updates the children it shows
+    switchNode.setSingleVisible(1);
+    root.updateGeometricState(0);
+    index.markDirty(switchedOff);
+    assertEquals(Set.of(switchedOff, never), findVisible(index, camera));
+
+    // picking sees the same, and walks the branch the index left out
+    final PickResults results = new BoundingPickResults();
+    PickingUtil.findPick(index, new Ray3(new Vector3(0, 0, -120), Vector3.UNIT_Z), results, true);
+    final Set<Object> picked = new HashSet<>();
+    for (int i = 0; i < results.getNumber(); i++) {
+      picked.add(results.getPickData(i).getTarget());
+    }
+    assertEquals(Set.of(switchedOff, never, billboarded), picked);
+
+    index.removeAll(root);
+    assertEquals(0, index.size());
+    assertTrue(index.getUnindexed().isEmpty());
+  }
+}
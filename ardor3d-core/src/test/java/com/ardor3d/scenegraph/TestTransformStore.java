@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.scenegraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.buffer.BufferUtils;
+import com.ardor3d.math.Matrix3;
+import com.ardor3d.math.Transform;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.scenegraph.event.DirtyType;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestTransformStore {
+
+  private static final double EPSILON = 1e-9;
+
+  private static void assertTransformEquals(final ReadOnlyTransform expected, final ReadOnlyTransform actual) {
+    final Vector3 point = new Vector3(1, 2, 3);
+    final Vector3 a = expected.applyForward(point, null);
+    final Vector3 b = actual.applyForward(point, null);
+    assertTrue(a + " != " + b, a.distance(b) < EPSILON);
+    assertTrue(expected.getTranslation().distance(actual.getTranslation()) < EPSILON);
+  }
+
+  @Test
+  public void testStandaloneHierarchy() {
+    final Transform parentLocal = new Transform().setRotation(new Matrix3().fromAngles(0.3, 0.2, 0.1))
+        .setScale(2, 2, 2).setTranslation(1, 2, 3);
+    final Transform childLocal = new Transform().setRotation(new Matrix3().fromAngles(-0.5, 0, 0.7))
+        .setScale(1, 3, 0.5).setTranslation(-4, 0, 2);
+
+    final TransformStore store = new TransformStore(1);
+    final int parent = store.add(-1);
+    final int child = store.add(parent);
+    store.setLocalTransform(parent, parentLocal);
+    store.setLocalTransform(child, childLocal);
+    store.update();
+
+    final Transform expected = parentLocal.multiply(childLocal, null);
+    assertTransformEquals(parentLocal, store.getWorldTransform(parent, null));
+    assertTransformEquals(expected, store.getWorldTransform(child, null));
+
+    // moving the parent updates the child
+    store.setTranslation(parent, 10, 0, 0);
+    parentLocal.setTranslation(10, 0, 0);
+    store.update();
+    assertTransformEquals(parentLocal.multiply(childLocal, null), store.getWorldTransform(child, null));
+
+    final FloatBuffer matrix = BufferUtils.createFloatBuffer(16);
+    store.getWorldMatrix(child, matrix);
+    final FloatBuffer expectedMatrix = BufferUtils.createFloatBuffer(16);
+    parentLocal.multiply(childLocal, null).getGLApplyMatrix(expectedMatrix);
+    for (int i = 0; i < 16; i++) {
+      assertEquals(expectedMatrix.get(i), matrix.get(i), 1e-5f);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRemoveWithChildren() {
+    final TransformStore store = new TransformStore();
+    final int parent = store.add(-1);
+    store.add(parent);
+    store.remove(parent);
+  }
+
+  @Test
+  public void testIdReuse() {
+    final TransformStore store = new TransformStore();
+    final int a = store.add(-1);
+    final int b = store.add(-1);
+    store.remove(a);
+    assertEquals(1, store.getCount());
+    assertEquals(a, store.add(b));
+    store.update();
+    assertEquals(2, store.getCount());
+  }
+
+  private static Node buildScene(final TransformStore store) {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    final Node root = new Node("root");
+    root.setTranslation(5, 0, 0);
+    for (int i = 0; i < 4; i++) {
+      final Node group = new Node("group" + i);
+      group.setRotation(new Matrix3().fromAngles(0, i * 0.4, 0));
+      root.attachChild(group);
+      for (int j = 0; j < 10; j++) {
+        final Spatial mesh = source.makeCopy(true);
+        mesh.setTranslation(i, j, -j);
+        mesh.setScale(1 + j * 0.1);
+        group.attachChild(mesh);
+        if (store != null) {
+          store.bind(mesh);
+        }
+      }
+      if (store != null) {
+        // bound after its children, which should be linked to it
+        store.bind(group);
+      }
+    }
+    return root;
+  }
+
+  private static void assertScenesMatch(final Node expected, final Node actual) {
+    assertTransformEquals(expected.getWorldTransform(), actual.getWorldTransform());
+    assertEquals(expected.getWorldBound(), actual.getWorldBound());
+    for (int i = 0; i < expected.getNumberOfChildren(); i++) {
+      final Spatial e = expected.getChild(i);
+      final Spatial a = actual.getChild(i);
+      if (e instanceof Node) {
+        assertScenesMatch((Node) e, (Node) a);
+      } else {
+        assertTransformEquals(e.getWorldTransform(), a.getWorldTransform());
+      }
+    }
+  }
+
+  @Test
+  public void testBoundSpatials() {
+    final TransformStore store = new TransformStore();
+    final Node expected = buildScene(null);
+    final Node actual = buildScene(store);
+    assertEquals(44, store.getCount());
+
+    final Spatial group = actual.getChild(2);
+    final Spatial mesh = ((Node) group).getChild(3);
+    assertSame(store, mesh.getTransformStore());
+    assertEquals(group.getTransformStoreId(), store.getParent(mesh.getTransformStoreId()));
+
+    expected.updateGeometricState(0);
+    actual.updateGeometricState(0);
+    assertScenesMatch(expected, actual);
+
+    // change a mesh, a bound group and the unbound root
+    for (final Node root : new Node[] { expected, actual }) {
+      ((Node) root.getChild(2)).getChild(3).setTranslation(7, 7, 7);
+      root.getChild(1).setScale(2);
+      root.setRotation(new Matrix3().fromAngles(0.5, 0, 0));
+      root.updateGeometricState(0);
+    }
+    assertScenesMatch(expected, actual);
+
+    // moving a mesh to another group re-links its entry
+    for (final Node root : new Node[] { expected, actual }) {
+      ((Node) root.getChild(0)).attachChild(((Node) root.getChild(3)).getChild(0));
+      root.updateGeometricState(0);
+    }
+    assertScenesMatch(expected, actual);
+  }
+
+  @Test
+  public void testParallelUpdate() {
+    final TransformStore store = new TransformStore();
+    final Node expected = buildScene(null);
+    final Node actual = buildScene(store);
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      actual.setParallelUpdate(pool, 1);
+      for (int frame = 0; frame < 3; frame++) {
+        for (final Node root : new Node[] { expected, actual }) {
+          root.getChild(frame).setScale(2 + frame);
+          ((Node) root.getChild(3)).getChild(frame).setTranslation(frame, 1, 1);
+          root.updateGeometricState(0);
+        }
+        assertScenesMatch(expected, actual);
+
+        // the store's pass ran once the update joined
+        for (int i = 0; i < actual.getNumberOfChildren(); i++) {
+          final Spatial group = actual.getChild(i);
+          assertTransformEquals(group.getWorldTransform(),
+              store.getWorldTransform(group.getTransformStoreId(), null));
+          assertFalse(store.isDeferred(group.getTransformStoreId()));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testRootUnderMovingParents() {
+    // the bound box is updated first - children go last to first - and runs a pass before the moving nodes
+    final Node root = new Node("root");
+    final Node outer = new Node("outer"), inner = new Node("inner"), group = new Node("group");
+    final Box mesh = new Box("mesh", Vector3.ZERO, 1, 1, 1);
+    final Box first = new Box("first", Vector3.ZERO, 1, 1, 1);
+    root.attachChild(outer);
+    root.attachChild(first);
+    outer.attachChild(inner);
+    inner.attachChild(group);
+    group.attachChild(mesh);
+    group.setTranslation(0, 1, 0);
+    mesh.setScale(2);
+
+    final TransformStore store = new TransformStore();
+    store.bind(group);
+    store.bind(mesh);
+    store.bind(first);
+    root.updateGeometricState(0);
+
+    for (int frame = 1; frame <= 3; frame++) {
+      first.setTranslation(frame, 0, 0);
+      outer.setTranslation(0, 0, frame);
+      inner.setRotation(new Matrix3().fromAngles(0, frame * 0.3, 0));
+      root.updateGeometricState(0);
+
+      final Transform expected = outer.getTransform().multiply(inner.getTransform(), null)
+          .multiply(group.getTransform(), null).multiply(mesh.getTransform(), null);
+      assertTransformEquals(expected, mesh.getWorldTransform());
+      assertTransformEquals(new Transform().setTranslation(frame, 0, 0), first.getWorldTransform());
+      assertFalse(mesh.isDirty(DirtyType.Transform));
+    }
+
+    // lookAt brings the chain up to date before the nodes are updated
+    outer.setTranslation(5, 0, 0);
+    group.lookAt(5, 10, 0, Vector3.UNIT_Y);
+    final Vector3 expected = outer.getTransform().multiply(inner.getTransform(), null)
+        .applyForward(new Vector3(0, 1, 0));
+    assertTrue(expected.distance(group.getWorldTranslation()) < EPSILON);
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestSortUtil {
+
+  @Test
+  public void testRadixSortUnsignedAndStable() {
+    final Random rand = new Random(1234);
+    final int length = 5000;
+    final long[] keys = new long[length + 10];
+    final int[] values = new int[length + 10];
+    for (int i = 0; i < length; i++) {
+      // few distinct keys, including negative (high bit set) ones, to exercise stability and sign
+      keys[i] = (rand.nextInt(50) - 25L) << 40 | rand.nextInt(4);
+      values[i] = i;
+    }
+    final long[] expected = Arrays.copyOf(keys, length);
+    for (int i = 0; i < length; i++) {
+      expected[i] ^= Long.MIN_VALUE;
+    }
+    Arrays.sort(expected);
+    for (int i = 0; i < length; i++) {
+      expected[i] ^= Long.MIN_VALUE;
+    }
+    final long[] original = keys.clone();
+
+    SortUtil.radixSort(keys, values, length, new long[length], new int[length], new int[SortUtil.RADIX_COUNTS_SIZE]);
+
+    assertArrayEquals(expected, Arrays.copyOf(keys, length));
+    for (int i = 0; i < length; i++) {
+      assertEquals(original[values[i]], keys[i]);
+      if (i > 0 && keys[i] == keys[i - 1]) {
+        assertTrue(values[i] > values[i - 1]);
+      }
+    }
+  }
+
+  @Test
+  public void testRadixSortSmallKeys() {
+    final long[] keys = {5, 3, 9, 3, 1};
+    final int[] values = {0, 1, 2, 3, 4};
+    SortUtil.radixSort(keys, values, keys.length, new long[5], new int[5], new int[SortUtil.RADIX_COUNTS_SIZE]);
+    assertArrayEquals(new long[] {1, 3, 3, 5, 9}, keys);
+    assertArrayEquals(new int[] {4, 1, 3, 0, 2}, values);
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.util.geom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Test;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.WireframeState;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+public class TestStaticBatcher {
+
+  private static final RenderContext CONTEXT = new RenderContext(new Object(), new ContextCapabilities());
+
+  private static Box createBox(final Node parent, final double x, final double z) {
+    final Box box = new Box("box", Vector3.ZERO, 1, 1, 1);
+    box.setModelBound(new BoundingBox());
+    box.setTranslation(x, 0, z);
+    parent.attachChild(box);
+    return box;
+  }
+
+  @Test
+  public void testGroupsByStateAndChunk() {
+    final Node root = new Node("root");
+    final Box a = createBox(root, 1, 1);
+    final Box b = createBox(root, 5, 5);
+    final Box far = createBox(root, 25, 5);
+    final Box wire = createBox(root, 3, 3);
+    wire.setRenderState(new WireframeState());
+    root.updateGeometricState(0);
+
+    final StaticBatcher batcher = new StaticBatcher(10);
+    batcher.add(root);
+    final Node batches = batcher.build();
+
+    assertEquals(3, batcher.getBatchCount());
+    assertEquals(3, batches.getNumberOfChildren());
+    assertSame(batcher.getBatch(a), batcher.getBatch(b));
+    assertNotSame(batcher.getBatch(a), batcher.getBatch(far));
+    assertNotSame(batcher.getBatch(a), batcher.getBatch(wire));
+    assertTrue(batcher.getBatch(wire).getLocalRenderState(StateType.Wireframe) != null);
+    assertEquals(a.getMeshData().getVertexCount() * 2, batcher.getBatch(a).getMeshData().getVertexCount());
+  }
+
+  @Test
+  public void testHideShowAndMove() {
+    final Node root = new Node("root");
+    final Box a = createBox(root, 1, 1);
+    final Box b = createBox(root, 5, 5);
+    root.updateGeometricState(0);
+
+    final StaticBatcher batcher = new StaticBatcher(10);
+    batcher.add(root);
+    batcher.build();
+    final Mesh batch = batcher.getBatch(b);
+    final MeshData data = batch.getMeshData();
+    final FloatBuffer vertices = data.getVertexBuffer();
+    final int count = b.getMeshData().getVertexCount();
+    final int start = batcher.getVertexStart(b) * 3;
+    final int other = batcher.getVertexStart(a) * 3;
+    data.getVertexCoords().markClean(TestStaticBatcher.CONTEXT);
+
+    // hiding collapses b's vertices and only marks its own range dirty
+    batcher.setVisible(b, false);
+    assertFalse(batcher.isVisible(b));
+    for (int i = 1; i < count; i++) {
+      assertEquals(vertices.get(start), vertices.get(start + i * 3), 0);
+      assertEquals(vertices.get(start + 1), vertices.get(start + i * 3 + 1), 0);
+      assertEquals(vertices.get(start + 2), vertices.get(start + i * 3 + 2), 0);
+    }
+    assertEquals(1, data.getVertexCoords().getDirtyRangeCount());
+    assertEquals(start, data.getVertexCoords().getDirtyRangeOffset(0));
+    assertEquals(count * 3, data.getVertexCoords().getDirtyRangeLength(0));
+
+    // showing restores them
+    batcher.setVisible(b, true);
+    final FloatBuffer world = b.getWorldVectors(null);
+    for (int i = 0; i < count * 3; i++) {
+      assertEquals(world.get(i), vertices.get(start + i), 0);
+    }
+
+    // moving rewrites them and grows the bound, leaving a untouched
+    final float aFirst = vertices.get(other);
+    b.setTranslation(5, 40, 5);
+    batcher.update(b);
+    assertEquals(40, vertices.get(start + 1), 1);
+    assertEquals(aFirst, vertices.get(other), 0);
+    batch.updateGeometricState(0);
+    assertTrue(batch.getWorldBound().contains(new Vector3(5, 40, 5)));
+
+    // a source moved while hidden is inside the bound once shown
+    batcher.setVisible(a, false);
+    a.setTranslation(-30, 1, 1);
+    batcher.update(a);
+    batcher.setVisible(a, true);
+    batch.updateGeometricState(0);
+    assertTrue(batch.getWorldBound().contains(new Vector3(-30, 1, 1)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownSource() {
+    final StaticBatcher batcher = new StaticBatcher();
+    batcher.setVisible(new Box("box", Vector3.ZERO, 1, 1, 1), false);
+  }
+}
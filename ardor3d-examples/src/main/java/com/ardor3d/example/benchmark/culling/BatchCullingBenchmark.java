@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.culling;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.bounding.PackedBounds;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * <p>
+ * Headless benchmark comparing frustum culling of a large, flat "forest" of meshes through the scene
+ * graph ({@link Spatial#onDraw(Renderer)} on every tree) against a single
+ * {@link Camera#contains(PackedBounds, long[])} call over the same bounds.
+ * </p>
+ * <p>
+ * The trees do not queue anything when drawn, so only the culling cost is measured. The camera stands
+ * in the middle of the forest, so roughly a quarter of the trees are visible.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dtrees=# -- number of trees in the forest. (default is 100000)</li>
+ * <li>-Dframes=# -- number of timed frames per configuration. (default is 200)</li>
+ * <li>-Dspheres=true|false -- use bounding spheres rather than boxes. (default is false)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.culling.BatchCullingBenchmark", maxHeapMemory = 1024)
+public class BatchCullingBenchmark {
+
+  private static final int TREES = Integer.getInteger("trees", 100000);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final boolean SPHERES = Boolean.getBoolean("spheres");
+  private static final int WARMUP = 50;
+
+  private static int _drawn;
+
+  public static void main(final String[] args) {
+    final Camera camera = new Camera(1280, 720);
+    camera.setFrustumPerspective(60, 1280 / 720.0, 1, 1000);
+    camera.setFrame(Vector3.ZERO, Vector3.NEG_UNIT_X, Vector3.UNIT_Y, Vector3.NEG_UNIT_Z);
+    camera.update();
+
+    // a headless context, so Spatial.onDraw can find the current camera
+    final Object contextKey = new Object();
+    ContextManager.addContext(contextKey, new RenderContext(contextKey, new ContextCapabilities()));
+    ContextManager.switchContext(contextKey);
+    ContextManager.getCurrentContext().setCurrentCamera(camera);
+
+    final Node forest = new Node("forest");
+    final int side = (int) Math.ceil(Math.sqrt(TREES));
+    for (int i = 0; i < TREES; i++) {
+      final Mesh tree = new Mesh("tree" + i) {
+        @Override
+        public void draw(final Renderer r) {
+          _drawn++;
+        }
+      };
+      tree.setModelBound(SPHERES ? new BoundingSphere(2, Vector3.ZERO) : new BoundingBox(Vector3.ZERO, 1, 3, 1),
+          false);
+      tree.setTranslation((i % side - side / 2) * 4, 0, (i / side - side / 2) * 4);
+      forest.attachChild(tree);
+    }
+    forest.updateGeometricState(0);
+
+    final PackedBounds packed = new PackedBounds(TREES);
+    final long[] visible = new long[(TREES + 63) / 64];
+
+    // run each twice so the second round is measured with a warm JIT for both
+    for (int round = 0; round < 2; round++) {
+      final double scene = time(() -> {
+        _drawn = 0;
+        forest.onDraw(null);
+      });
+      final int sceneVisible = _drawn;
+
+      final double batch = time(() -> camera.contains(packed(forest, packed), visible));
+      final double batchOnly = time(() -> camera.contains(packed, visible));
+      final int batchVisible = camera.contains(packed, visible);
+
+      System.out.println(String.format(
+          "onDraw %8.3f ms (%d visible)  pack+batch %8.3f ms  batch %8.3f ms (%d visible)  - %d trees", scene,
+          sceneVisible, batch, batchOnly, batchVisible, TREES));
+    }
+  }
+
+  /** Gather the world bounds of the forest - the cost of keeping a packed copy up to date. */
+  private static PackedBounds packed(final Node forest, final PackedBounds store) {
+    store.clear();
+    for (int i = 0, max = forest.getNumberOfChildren(); i < max; i++) {
+      store.add(forest.getChild(i).getWorldBound());
+    }
+    return store;
+  }
+
+  private static double time(final Runnable frame) {
+    for (int i = 0; i < WARMUP; i++) {
+      frame.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      frame.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.culling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.occlusion.OcclusionCuller;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Box;
+
+/**
+ * <p>
+ * Headless benchmark of CPU occlusion culling in a dense "city": a grid of buildings used as
+ * occluders, with many small props scattered in the streets between them. Reports the cost of
+ * rasterizing the occluders, serially and in parallel, and of testing every prop in the view frustum,
+ * along with how many of those were found hidden.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dblocks=# -- number of city blocks along each side. (default is 30)</li>
+ * <li>-Dprops=# -- number of props in the streets. (default is 50000)</li>
+ * <li>-Dresolution=# -- width of the depth buffer, in pixels. (default is 256)</li>
+ * <li>-Dframes=# -- number of timed frames per configuration. (default is 200)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.culling.OcclusionCullingBenchmark", maxHeapMemory = 512)
+public class OcclusionCullingBenchmark {
+
+  private static final int BLOCKS = Integer.getInteger("blocks", 30);
+  private static final int PROPS = Integer.getInteger("props", 50000);
+  private static final int RESOLUTION = Integer.getInteger("resolution", 256);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final int WARMUP = 50;
+
+  private static int _occluded;
+
+  public static void main(final String[] args) {
+    final Camera camera = new Camera(1280, 720);
+    camera.setFrustumPerspective(60, 1280 / 720.0, 1, 1000);
+    camera.setLocation(new Vector3(1, 2, 1));
+    camera.lookAt(new Vector3(BLOCKS * 20, 2, BLOCKS * 12), Vector3.UNIT_Y);
+    camera.update();
+
+    final Node city = new Node("city");
+    final OcclusionCuller culler = new OcclusionCuller(RESOLUTION, RESOLUTION * 720 / 1280);
+    // blocks are 20 units apart, with 16 x 16 buildings leaving 4 unit streets
+    final Random random = new Random(11);
+    for (int x = 0; x < BLOCKS; x++) {
+      for (int z = 0; z < BLOCKS; z++) {
+        final double height = 10 + random.nextDouble() * 30;
+        final Box building = new Box("building", Vector3.ZERO, 8, height / 2, 8);
+        building.setModelBound(new BoundingBox());
+        building.setTranslation(x * 20 + 12, height / 2, z * 20 + 12);
+        city.attachChild(building);
+        culler.addOccluder(building);
+      }
+    }
+
+    final List<Mesh> props = new ArrayList<>(PROPS);
+    final Box source = new Box("prop", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+    for (int i = 0; i < PROPS; i++) {
+      final Mesh prop = source.makeCopy(true);
+      // along a street running in x or z
+      final double along = random.nextDouble() * BLOCKS * 20;
+      final double street = random.nextInt(BLOCKS) * 20 + 2;
+      if (random.nextBoolean()) {
+        prop.setTranslation(along, 0.5, street);
+      } else {
+        prop.setTranslation(street, 0.5, along);
+      }
+      city.attachChild(prop);
+      props.add(prop);
+    }
+    city.updateGeometricState(0);
+
+    // only props passing frustum culling would reach the occlusion test
+    final List<Mesh> inFrustum = new ArrayList<>();
+    for (final Mesh prop : props) {
+      camera.setPlaneState(0);
+      if (camera.contains(prop.getWorldBound()) != Camera.FrustumIntersect.Outside) {
+        inFrustum.add(prop);
+      }
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool();
+    for (int round = 0; round < 2; round++) {
+      culler.getRasterizer().setPool(null);
+      final double serial = time(() -> culler.prepare(camera));
+      culler.getRasterizer().setPool(pool);
+      final double parallel = time(() -> culler.prepare(camera));
+
+      final double test = time(() -> {
+        _occluded = 0;
+        for (int i = 0, maxI = inFrustum.size(); i < maxI; i++) {
+          if (culler.isOccluded(inFrustum.get(i))) {
+            _occluded++;
+          }
+        }
+      });
+
+      System.out.println(String.format(
+          "rasterize: serial %8.3f ms  parallel %8.3f ms (%d triangles)  test %8.3f ms - %d of %d in frustum hidden",
+          serial, parallel, culler.getRasterizer().getTriangleCount(), test, _occluded, inFrustum.size()));
+    }
+    pool.shutdown();
+  }
+
+  private static double time(final Runnable frame) {
+    for (int i = 0; i < WARMUP; i++) {
+      frame.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      frame.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.culling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.intersection.BoundingPickResults;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.SceneIndexer;
+import com.ardor3d.scenegraph.SpatialIndex;
+
+/**
+ * <p>
+ * Headless benchmark of culling and picking a large, flat "forest" of meshes - all under one node -
+ * by walking the scene graph versus querying a {@link SpatialIndex} kept up to date by a
+ * {@link SceneIndexer}. A share of the trees sway a little each frame, so the index's incremental refit
+ * is part of the measured cost.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dtrees=# -- number of trees in the forest. (default is 100000)</li>
+ * <li>-Dframes=# -- number of timed frames per configuration. (default is 200)</li>
+ * <li>-Dmoving=# -- number of trees moved each frame. (default is 1000)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.culling.SpatialIndexBenchmark", maxHeapMemory = 1024)
+public class SpatialIndexBenchmark {
+
+  private static final int TREES = Integer.getInteger("trees", 100000);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final int MOVING = Integer.getInteger("moving", 1000);
+  private static final int WARMUP = 50;
+
+  private static int _drawn;
+  private static int _frame;
+
+  public static void main(final String[] args) {
+    final Camera camera = new Camera(1280, 720);
+    camera.setFrustumPerspective(60, 1280 / 720.0, 1, 300);
+    camera.setFrame(Vector3.ZERO, Vector3.NEG_UNIT_X, Vector3.UNIT_Y, Vector3.NEG_UNIT_Z);
+    camera.update();
+
+    // a headless context, so Spatial.onDraw can find the current camera
+    final Object contextKey = new Object();
+    ContextManager.addContext(contextKey, new RenderContext(contextKey, new ContextCapabilities()));
+    ContextManager.switchContext(contextKey);
+    ContextManager.getCurrentContext().setCurrentCamera(camera);
+
+    final Node forest = new Node("forest");
+    final int side = (int) Math.ceil(Math.sqrt(TREES));
+    final List<Mesh> trees = new ArrayList<>(TREES);
+    for (int i = 0; i < TREES; i++) {
+      final Mesh tree = new Mesh("tree" + i) {
+        @Override
+        public void draw(final Renderer r) {
+          _drawn++;
+        }
+      };
+      tree.setModelBound(new BoundingBox(Vector3.ZERO, 1, 3, 1), false);
+      tree.setTranslation((i % side - side / 2) * 4, 0, (i / side - side / 2) * 4);
+      forest.attachChild(tree);
+      trees.add(tree);
+    }
+    forest.updateGeometricState(0);
+
+    final SceneIndexer indexer = new SceneIndexer();
+    indexer.setLightManager(null);
+    indexer.addSceneRoot(forest);
+    final SpatialIndex index = new SpatialIndex();
+    final long buildStart = System.nanoTime();
+    indexer.setSpatialIndex(index);
+    System.out.println(String.format("index build %8.3f ms - %d trees, height %d", (System.nanoTime() - buildStart)
+        / 1e6, TREES, index.getHeight()));
+
+    final List<Mesh> visible = new ArrayList<>();
+    final Ray3 ray = new Ray3(new Vector3(-side * 2 - 10, 1, 2), Vector3.UNIT_X);
+
+    // run each twice so the second round is measured with a warm JIT for both
+    for (int round = 0; round < 2; round++) {
+      // the update alone, to take out of the culling numbers
+      final double update = time(() -> sway(trees, forest));
+
+      final double scene = time(() -> {
+        sway(trees, forest);
+        _drawn = 0;
+        forest.onDraw(null);
+      });
+      final int sceneVisible = _drawn;
+
+      final double indexed = time(() -> {
+        sway(trees, forest);
+        visible.clear();
+        index.findVisible(camera, visible);
+      });
+
+      final double scenePick = time(() -> PickingUtil.findPick(forest, ray, new BoundingPickResults()));
+      final double indexPick = time(() -> PickingUtil.findPick(index, ray, new BoundingPickResults(), true));
+
+      System.out.println(String.format(
+          "update %8.3f ms  cull: scene %8.3f ms (%d visible)  index+refit %8.3f ms (%d visible)"
+              + "  pick: scene %8.3f ms  index %8.3f ms",
+          update, scene - update, sceneVisible, indexed - update, visible.size(), scenePick, indexPick));
+    }
+  }
+
+  /** Move a rolling share of the trees back and forth a little, then update the scene. */
+  private static void sway(final List<Mesh> trees, final Node forest) {
+    _frame++;
+    final double offset = (_frame & 1) == 0 ? 0.5 : -0.5;
+    for (int i = 0; i < SpatialIndexBenchmark.MOVING; i++) {
+      final Mesh tree = trees.get((_frame * SpatialIndexBenchmark.MOVING + i) % trees.size());
+      tree.addTranslation(offset, 0, 0);
+    }
+    forest.updateGeometricState(0);
+  }
+
+  private static double time(final Runnable frame) {
+    for (int i = 0; i < WARMUP; i++) {
+      frame.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      frame.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
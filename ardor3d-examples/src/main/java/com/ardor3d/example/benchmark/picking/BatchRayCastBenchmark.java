@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.picking;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.intersection.BatchRayCaster;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.intersection.RayBatch;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+/**
+ * <p>
+ * Headless benchmark of casting many rays at once - a visibility sampling fan from a few probe points
+ * over a field of meshes - one at a time through PickingUtil versus in batches, with single ray and
+ * coherent packets, on the calling thread and spread over a pool.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dmeshes=# -- number of meshes along each side of the field. (default is 16)</li>
+ * <li>-Drays=# -- number of rays per batch. (default is 50000)</li>
+ * <li>-Dthreads=# -- parallelism of the pool. (default is the number of processors)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.picking.BatchRayCastBenchmark", maxHeapMemory = 512)
+public class BatchRayCastBenchmark {
+
+  private static final int MESHES = Integer.getInteger("meshes", 16);
+  private static final int RAYS = Integer.getInteger("rays", 50000);
+  private static final int THREADS = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+
+  private static int _hits;
+
+  public static void main(final String[] args) {
+    final Node scene = new Node("scene");
+    for (int x = 0; x < MESHES; x++) {
+      for (int z = 0; z < MESHES; z++) {
+        final Sphere sphere = new Sphere("sphere", 48, 48, 2);
+        sphere.setModelBound(new BoundingBox());
+        sphere.setTranslation(x * 6, 0, z * 6);
+        scene.attachChild(sphere);
+      }
+    }
+    scene.updateGeometricState(0);
+
+    // fans of rays from a few probes above the field, looking down and across it
+    final Random random = new Random(4);
+    final RayBatch batch = new RayBatch(RAYS);
+    final Vector3 origin = new Vector3(), direction = new Vector3();
+    for (int i = 0; i < RAYS; i++) {
+      final int probe = i * 4 / RAYS;
+      origin.set(probe % 2 * MESHES * 6, 8, probe / 2 * MESHES * 6);
+      direction.set(MESHES * 3 + random.nextGaussian() * MESHES * 2, -8,
+          MESHES * 3 + random.nextGaussian() * MESHES * 2).subtractLocal(origin).normalizeLocal();
+      batch.setRay(i, origin, direction, Double.POSITIVE_INFINITY);
+    }
+    System.out.println(String.format("%d meshes of %d triangles, %d rays", scene.getNumberOfChildren(),
+        ((Sphere) scene.getChild(0)).getMeshData().getTotalPrimitiveCount(), RAYS));
+
+    final BatchRayCaster caster = new BatchRayCaster();
+    final ForkJoinPool pool = new ForkJoinPool(THREADS);
+    // run each twice so the second round is measured with a warm JIT for both
+    for (int round = 0; round < 2; round++) {
+      final double single = time(() -> {
+        final Ray3 ray = new Ray3();
+        final double[] o = batch.getOrigins(), d = batch.getDirections();
+        for (int i = 0; i < RAYS; i++) {
+          ray.setOrigin(origin.set(o[i * 3], o[i * 3 + 1], o[i * 3 + 2]));
+          ray.setDirection(direction.set(d[i * 3], d[i * 3 + 1], d[i * 3 + 2]));
+          if (PickingUtil.findClosestPick(scene, ray, true) != null) {
+            _hits++;
+          }
+        }
+      });
+      final int singleHits = _hits;
+
+      caster.setPool(null);
+      caster.setPacketSize(1);
+      final double unpacked = time(() -> cast(caster, scene, batch));
+      caster.setPacketSize(BatchRayCaster.DEFAULT_PACKET_SIZE);
+      final double packets = time(() -> cast(caster, scene, batch));
+      final int batchHits = _hits;
+      caster.setPool(pool);
+      final double parallel = time(() -> cast(caster, scene, batch));
+
+      System.out.println(String.format(
+          "findClosestPick %8.1f ms (%d hit)  batch: single rays %8.1f ms  packets %8.1f ms (%d hit)"
+              + "  packets on %d threads %8.1f ms",
+          single, singleHits, unpacked, packets, batchHits, THREADS, parallel));
+    }
+    pool.shutdown();
+  }
+
+  private static void cast(final BatchRayCaster caster, final Node scene, final RayBatch batch) {
+    caster.castClosest(scene, batch);
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.isHit(i)) {
+        _hits++;
+      }
+    }
+  }
+
+  private static double time(final Runnable run) {
+    _hits = 0;
+    final long start = System.nanoTime();
+    run.run();
+    return (System.nanoTime() - start) / 1e6;
+  }
+}
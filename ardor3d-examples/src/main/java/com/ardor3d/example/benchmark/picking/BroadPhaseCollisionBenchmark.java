@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.picking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.intersection.BoundingCollisionResults;
+import com.ardor3d.intersection.PickingUtil;
+import com.ardor3d.intersection.SweepAndPrune;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+/**
+ * <p>
+ * Headless benchmark of finding every colliding pair among thousands of meshes drifting about a box,
+ * each tick: testing each mesh against the scene through PickingUtil versus a sweep and prune broad
+ * phase kept up to date from transform changes, with its collision tree narrow phase on the calling
+ * thread and spread over a pool.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dmeshes=# -- number of moving meshes. (default is 3000)</li>
+ * <li>-Dticks=# -- number of ticks to move and test the meshes for. (default is 10)</li>
+ * <li>-Dthreads=# -- parallelism of the pool. (default is the number of processors)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.picking.BroadPhaseCollisionBenchmark",
+    maxHeapMemory = 512)
+public class BroadPhaseCollisionBenchmark {
+
+  private static final int MESHES = Integer.getInteger("meshes", 3000);
+  private static final int TICKS = Integer.getInteger("ticks", 10);
+  private static final int THREADS = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+
+  private static long _pairs;
+
+  public static void main(final String[] args) {
+    // keep about the same density whatever the count
+    final double extent = Math.cbrt(MESHES) * 4;
+    final Random random = new Random(6);
+    final Node scene = new Node("scene");
+    final List<Mesh> meshes = new ArrayList<>();
+    final Vector3[] velocities = new Vector3[MESHES];
+    for (int i = 0; i < MESHES; i++) {
+      final Sphere sphere = new Sphere("sphere" + i, 8, 8, 0.8 + random.nextDouble());
+      sphere.setModelBound(new BoundingBox());
+      sphere.setTranslation(random.nextDouble() * extent, random.nextDouble() * extent, random.nextDouble() * extent);
+      velocities[i] =
+          new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).multiplyLocal(0.2);
+      scene.attachChild(sphere);
+      meshes.add(sphere);
+    }
+    scene.updateGeometricState(0);
+    // keep a collision tree for every mesh, rather than rebuilding them as the default cache overflows
+    CollisionTreeManager.getInstance().setMaxElements(MESHES);
+
+    final SweepAndPrune sweepAndPrune = new SweepAndPrune();
+    sweepAndPrune.attach(scene);
+    final ForkJoinPool pool = new ForkJoinPool(THREADS);
+    final BoundingCollisionResults results = new BoundingCollisionResults();
+    final List<Mesh> store = new ArrayList<>();
+    System.out.println(String.format("%d meshes of %d triangles, %d ticks", MESHES,
+        meshes.get(0).getMeshData().getTotalPrimitiveCount(), TICKS));
+
+    // run each twice so the second round is measured with a warm JIT for all
+    for (int round = 0; round < 2; round++) {
+      double move = 0, bounds = 0, primitives = 0, sweepBounds = 0, sweepPrimitives = 0, sweepParallel = 0;
+      long boundPairs = 0, primitivePairs = 0, sweepBoundPairs = 0, sweepPrimitivePairs = 0;
+      for (int tick = 0; tick < TICKS; tick++) {
+        move += time(() -> {
+          for (int i = 0; i < MESHES; i++) {
+            final Mesh mesh = meshes.get(i);
+            final Vector3 velocity = velocities[i];
+            final Vector3 position = new Vector3(mesh.getTranslation()).addLocal(velocity);
+            // bounce off the walls of the box
+            for (int axis = 0; axis < 3; axis++) {
+              if (position.getValue(axis) < 0 || position.getValue(axis) > extent) {
+                velocity.setValue(axis, -velocity.getValue(axis));
+              }
+            }
+            mesh.setTranslation(position);
+          }
+          scene.updateGeometricState(0.1);
+        });
+
+        // every mesh against the scene, as an application would today; pairs are found from both sides
+        bounds += time(() -> {
+          results.clear();
+          for (int i = 0; i < MESHES; i++) {
+            PickingUtil.findCollisions(meshes.get(i), scene, results);
+          }
+          _pairs = results.getNumber() / 2;
+        });
+        boundPairs += _pairs;
+        primitives += time(() -> {
+          for (int i = 0; i < MESHES; i++) {
+            final Mesh a = meshes.get(i);
+            for (int j = i + 1; j < MESHES; j++) {
+              final Mesh b = meshes.get(j);
+              if (a.getWorldBound().intersects(b.getWorldBound()) && PickingUtil.hasPrimitiveCollision(a, b)) {
+                _pairs++;
+              }
+            }
+          }
+        });
+        primitivePairs += _pairs;
+
+        sweepBounds += time(() -> {
+          results.clear();
+          sweepAndPrune.findCollisions(results);
+          _pairs = results.getNumber();
+        });
+        sweepBoundPairs += _pairs;
+        sweepAndPrune.setPool(null);
+        sweepPrimitives += time(() -> {
+          store.clear();
+          _pairs = sweepAndPrune.findPrimitiveCollisions(store);
+        });
+        sweepPrimitivePairs += _pairs;
+        sweepAndPrune.setPool(pool);
+        sweepParallel += time(() -> {
+          store.clear();
+          _pairs = sweepAndPrune.findPrimitiveCollisions(store);
+        });
+      }
+
+      System.out.println(String.format("move and update %8.1f ms", move));
+      System.out.println(String.format(
+          "PickingUtil: bounds %8.1f ms (%d pairs)  pairwise primitives %8.1f ms (%d pairs)", bounds,
+          boundPairs, primitives, primitivePairs));
+      System.out.println(String.format(
+          "sweep and prune: bounds %8.1f ms (%d pairs)  primitives %8.1f ms (%d pairs)"
+              + "  primitives on %d threads %8.1f ms",
+          sweepBounds, sweepBoundPairs, sweepPrimitives, sweepPrimitivePairs, THREADS, sweepParallel));
+    }
+    pool.shutdown();
+  }
+
+  private static double time(final Runnable run) {
+    _pairs = 0;
+    final long start = System.nanoTime();
+    run.run();
+    return (System.nanoTime() - start) / 1e6;
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.picking;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.CollisionTreeManager;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.shape.Sphere;
+
+/**
+ * <p>
+ * Headless benchmark of picking primitives of one large mesh - a finely tessellated sphere - with
+ * collision trees versus triangle hierarchies. Reports build times, the time per ray of finding all
+ * hits, the nearest hit only, and any hit, and how long the first pick against a fresh copy of the
+ * mesh takes with its hierarchy built on the picking thread versus in the background.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dsamples=# -- sphere samples along each axis, for about 2 * samples^2 triangles. (default is
+ * 1000)</li>
+ * <li>-Drays=# -- number of timed rays per configuration. (default is 2000)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.picking.TrianglePickingBenchmark", maxHeapMemory = 2048)
+public class TrianglePickingBenchmark {
+
+  private static final int SAMPLES = Integer.getInteger("samples", 1000);
+  private static final int RAYS = Integer.getInteger("rays", 2000);
+
+  private static int _hits;
+
+  public static void main(final String[] args) {
+    final Sphere sphere = new Sphere("sphere", SAMPLES, SAMPLES, 10);
+    sphere.setModelBound(new BoundingBox());
+    sphere.setTranslation(5, 0, 0);
+    sphere.updateGeometricState(0);
+    System.out.println(String.format("%d triangles", sphere.getMeshData().getTotalPrimitiveCount()));
+
+    // rays from all around, aimed near the center
+    final Random random = new Random(1);
+    final Ray3[] rays = new Ray3[RAYS];
+    for (int i = 0; i < RAYS; i++) {
+      final Vector3 origin = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian())
+          .normalizeLocal().multiplyLocal(30).addLocal(5, 0, 0);
+      final Vector3 target = new Vector3(random.nextDouble() * 16 - 3, random.nextDouble() * 16 - 8,
+          random.nextDouble() * 16 - 8);
+      rays[i] = new Ray3(origin, target.subtractLocal(origin).normalizeLocal());
+    }
+
+    final CollisionTreeManager manager = CollisionTreeManager.getInstance();
+    long start = System.nanoTime();
+    manager.getCollisionTree(sphere);
+    final double treeBuild = (System.nanoTime() - start) / 1e6;
+    start = System.nanoTime();
+    manager.getTriangleBVH(sphere);
+    final double bvhBuild = (System.nanoTime() - start) / 1e6;
+    System.out.println(String.format("build: collision tree %8.1f ms  triangle bvh %8.1f ms (%d nodes)", treeBuild,
+        bvhBuild, manager.getTriangleBVH(sphere).getNodeCount()));
+
+    // run each twice so the second round is measured with a warm JIT for both
+    for (int round = 0; round < 2; round++) {
+      manager.setUseTriangleBVH(false);
+      final double tree = time(rays, ray -> sphere.intersectsPrimitivesWhere(ray) != null);
+      final int treeHits = _hits;
+      final double treeClosest = time(rays,
+          ray -> sphere.intersectsPrimitivesClosest(ray, Double.POSITIVE_INFINITY) != null);
+
+      manager.setUseTriangleBVH(true);
+      manager.getTriangleBVH(sphere);
+      final double all = time(rays, ray -> sphere.intersectsPrimitivesWhere(ray) != null);
+      final int allHits = _hits;
+      final double closest = time(rays, ray -> sphere.intersectsPrimitivesClosest(ray, Double.POSITIVE_INFINITY) != null);
+      final double any = time(rays, ray -> sphere.intersectsPrimitives(ray, Double.POSITIVE_INFINITY));
+
+      System.out.println(String.format("per ray: collision tree all %8.4f ms (%d hit)  closest %8.4f ms", tree,
+          treeHits, treeClosest));
+      System.out.println(String.format("per ray: bvh all %8.4f ms (%d hit)  closest %8.4f ms  any %8.4f ms", all,
+          allHits, closest, any));
+    }
+
+    final Mesh fresh = sphere.makeCopy(false), loaded = sphere.makeCopy(false);
+    fresh.updateGeometricState(0);
+    loaded.updateGeometricState(0);
+    start = System.nanoTime();
+    fresh.intersectsPrimitivesClosest(rays[0], Double.POSITIVE_INFINITY);
+    final double firstPick = (System.nanoTime() - start) / 1e6;
+    final ExecutorService builder = Executors.newSingleThreadExecutor();
+    manager.setBuildExecutor(builder);
+    start = System.nanoTime();
+    loaded.intersectsPrimitivesClosest(rays[0], Double.POSITIVE_INFINITY);
+    final double boundPick = (System.nanoTime() - start) / 1e6;
+    manager.requestTriangleBVH(loaded).join();
+    final double ready = (System.nanoTime() - start) / 1e6;
+    manager.setBuildExecutor(null);
+    builder.shutdown();
+    System.out.println(String.format(
+        "first pick: building on the picking thread %8.1f ms  building in the background %8.1f ms"
+            + " (bounds only until ready at %8.1f ms)",
+        firstPick, boundPick, ready));
+  }
+
+  private interface RayTest {
+    boolean test(Ray3 ray);
+  }
+
+  private static double time(final Ray3[] rays, final RayTest test) {
+    _hits = 0;
+    final long start = System.nanoTime();
+    for (final Ray3 ray : rays) {
+      if (test.test(ray)) {
+        _hits++;
+      }
+    }
+    return (System.nanoTime() - start) / 1e6 / rays.length;
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.scenegraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.CopyOnWriteChildList;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.shape.Box;
+import com.ardor3d.scenegraph.visitor.Visitor;
+
+/**
+ * <p>
+ * Headless micro benchmark comparing scene traversal cost of the default synchronized child list
+ * against {@link CopyOnWriteChildList}.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dspatials=# -- number of meshes in the scene. (default is 100000)</li>
+ * <li>-Dfanout=# -- children per node. (default is 10)</li>
+ * <li>-Dframes=# -- number of timed traversals per configuration. (default is 200)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.scenegraph.ChildStorageBenchmark", maxHeapMemory = 1024)
+public class ChildStorageBenchmark {
+
+  private static final int SPATIALS = Integer.getInteger("spatials", 100000);
+  private static final int FANOUT = Integer.getInteger("fanout", 10);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final int WARMUP = 50;
+
+  public static void main(final String[] args) {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+
+    final Node synced = build(source, () -> Collections.synchronizedList(new ArrayList<Spatial>(FANOUT)));
+    final Node snapshot = build(source, CopyOnWriteChildList::new);
+
+    // run each twice so the second round is measured with a warm JIT for both
+    for (int round = 0; round < 2; round++) {
+      run("synchronizedList", synced);
+      run("CopyOnWriteChildList", snapshot);
+    }
+  }
+
+  private static Node build(final Box source, final Supplier<List<Spatial>> storage) {
+    final List<Node> level = new ArrayList<>();
+    for (int i = 0; i < SPATIALS; i += FANOUT) {
+      final Node node = new Node("leafParent" + i, storage.get());
+      for (int j = i; j < Math.min(SPATIALS, i + FANOUT); j++) {
+        final Spatial mesh = source.makeCopy(true);
+        mesh.setTranslation(j % 1000, 0, j / 1000);
+        node.attachChild(mesh);
+      }
+      level.add(node);
+    }
+
+    // group nodes until a single root remains
+    List<Node> current = level;
+    while (current.size() > 1) {
+      final List<Node> next = new ArrayList<>();
+      for (int i = 0; i < current.size(); i += FANOUT) {
+        final Node node = new Node("group" + i, storage.get());
+        for (int j = i; j < Math.min(current.size(), i + FANOUT); j++) {
+          node.attachChild(current.get(j));
+        }
+        next.add(node);
+      }
+      current = next;
+    }
+    final Node root = current.get(0);
+    root.updateGeometricState(0);
+    return root;
+  }
+
+  private static void run(final String name, final Node root) {
+    final int[] visited = new int[1];
+    final Visitor counter = spatial -> visited[0]++;
+
+    // plain walk of the tree - isolates the cost of reading the child lists
+    final double visit = time(() -> root.acceptVisitor(counter, true));
+
+    // the traversals Node does every frame: transforms and bounds
+    final double update = time(() -> {
+      root.updateWorldTransform(true);
+      root.updateWorldBound(true);
+    });
+
+    System.out.println(String.format("%-22s visit %8.3f ms  transform+bound %8.3f ms  (%d spatials)", name, visit,
+        update, visited[0] / (WARMUP + FRAMES)));
+  }
+
+  private static double time(final Runnable traversal) {
+    for (int i = 0; i < WARMUP; i++) {
+      traversal.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      traversal.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
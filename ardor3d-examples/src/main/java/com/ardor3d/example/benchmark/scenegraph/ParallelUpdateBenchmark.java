@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.scenegraph;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.controller.SpatialController;
+import com.ardor3d.scenegraph.shape.Box;
+
+/**
+ * <p>
+ * Headless benchmark comparing serial and parallel {@link Node#updateGeometricState(double)} on
+ * synthetic wide and deep trees, for a growing number of worker threads.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dspatials=# -- approximate number of meshes in each tree. (default is 50000)</li>
+ * <li>-Dframes=# -- number of timed updates per configuration. (default is 200)</li>
+ * <li>-Dthreshold=# -- minimum spatials per parallel task. (default is
+ * {@link Node#DEFAULT_PARALLEL_UPDATE_THRESHOLD})</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.scenegraph.ParallelUpdateBenchmark", maxHeapMemory = 1024)
+public class ParallelUpdateBenchmark {
+
+  private static final int SPATIALS = Integer.getInteger("spatials", 50000);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final int WARMUP = 50;
+  private static final int THRESHOLD = Integer.getInteger("threshold", Node.DEFAULT_PARALLEL_UPDATE_THRESHOLD);
+
+  /** Spins each mesh a bit every update, so transforms and bounds are dirty every frame. */
+  private static final SpatialController<Spatial> SPIN = (time, caller) -> caller.addTranslation(0, time, 0);
+
+  public static void main(final String[] args) {
+    final Box source = new Box("box", Vector3.ZERO, 0.5, 0.5, 0.5);
+    source.setModelBound(new BoundingBox());
+
+    // wide: 64 groups of flat meshes
+    final Node wide = new Node("wide");
+    final int perGroup = SPATIALS / 64;
+    for (int i = 0; i < 64; i++) {
+      final Node group = new Node("group" + i);
+      for (int j = 0; j < perGroup; j++) {
+        group.attachChild(makeMesh(source, i, j));
+      }
+      wide.attachChild(group);
+    }
+
+    // deep: binary tree with meshes at the leaves
+    final Node deep = new Node("deep");
+    buildDeep(deep, source, SPATIALS, 0);
+
+    run("wide", wide);
+    run("deep", deep);
+  }
+
+  private static Spatial makeMesh(final Box source, final int i, final int j) {
+    final Spatial mesh = source.makeCopy(true);
+    mesh.setTranslation(i * 2, 0, j * 2);
+    mesh.addController(SPIN);
+    return mesh;
+  }
+
+  private static void buildDeep(final Node parent, final Box source, final int count, final int level) {
+    if (count <= 8) {
+      for (int i = 0; i < count; i++) {
+        parent.attachChild(makeMesh(source, level, i));
+      }
+      return;
+    }
+    for (int i = 0; i < 2; i++) {
+      final Node child = new Node(parent.getName() + i);
+      parent.attachChild(child);
+      buildDeep(child, source, count / 2, level + 1);
+    }
+  }
+
+  private static void run(final String name, final Node root) {
+    System.out.println(name + " tree: " + root.getSubtreeSize() + " spatials");
+
+    root.setParallelUpdate(null, THRESHOLD);
+    final double serial = time(root);
+    System.out.println(String.format("  serial      %8.3f ms/frame", serial));
+
+    final int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads < cores; threads *= 2) {
+      runParallel(root, threads, serial);
+    }
+    runParallel(root, cores, serial);
+  }
+
+  private static void runParallel(final Node root, final int threads, final double serial) {
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      // in the deep tree the first few levels only have two children - let each of them fork too
+      setParallel(root, pool, 4);
+      final double parallel = time(root);
+      System.out.println(String.format("  %2d threads  %8.3f ms/frame  (x%.2f)", threads, parallel, serial / parallel));
+    } finally {
+      setParallel(root, null, 4);
+      pool.shutdown();
+    }
+  }
+
+  private static void setParallel(final Node node, final ForkJoinPool pool, final int levels) {
+    node.setParallelUpdate(pool, THRESHOLD);
+    if (levels > 1) {
+      for (final Spatial child : node.getChildren()) {
+        if (child instanceof Node) {
+          setParallel((Node) child, pool, levels - 1);
+        }
+      }
+    }
+  }
+
+  private static double time(final Node root) {
+    for (int i = 0; i < WARMUP; i++) {
+      root.updateGeometricState(0.001);
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      root.updateGeometricState(0.001);
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.scenegraph;
+
+import com.ardor3d.example.Purpose;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.TransformStore;
+
+/**
+ * <p>
+ * Headless benchmark comparing world transform propagation of a large flat hierarchy done spatial by
+ * spatial against a {@link TransformStore} pass over the same hierarchy, along with a rough measure
+ * of the heap used by each.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dobjects=# -- number of objects in the hierarchy. (default is 200000)</li>
+ * <li>-Dfanout=# -- objects per group. (default is 100)</li>
+ * <li>-Dframes=# -- number of timed updates per configuration. (default is 100)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.scenegraph.TransformStoreBenchmark", maxHeapMemory = 1024)
+public class TransformStoreBenchmark {
+
+  private static final int OBJECTS = Integer.getInteger("objects", 200000);
+  private static final int FANOUT = Integer.getInteger("fanout", 100);
+  private static final int FRAMES = Integer.getInteger("frames", 100);
+  private static final int WARMUP = 20;
+
+  public static void main(final String[] args) {
+    final long before = usedMemory();
+    final Node root = new Node("root");
+    Node group = null;
+    for (int i = 0; i < OBJECTS; i++) {
+      if (i % FANOUT == 0) {
+        group = new Node("group" + i);
+        root.attachChild(group);
+      }
+      // plain nodes, so only the transforms are measured
+      final Spatial object = new Node("object" + i);
+      object.setTranslation(i % 1000, 0, i / 1000);
+      group.attachChild(object);
+    }
+    final long sceneMemory = usedMemory() - before;
+
+    final TransformStore store = new TransformStore(OBJECTS + OBJECTS / FANOUT + 2);
+    final int storeRoot = store.add(-1);
+    int storeGroup = -1;
+    for (int i = 0; i < OBJECTS; i++) {
+      if (i % FANOUT == 0) {
+        storeGroup = store.add(storeRoot);
+      }
+      store.setTranslation(store.add(storeGroup), i % 1000, 0, i / 1000);
+    }
+    final long storeMemory = usedMemory() - before - sceneMemory;
+
+    // move the root every frame, so every world transform has to be recomputed
+    final int[] frame = new int[1];
+    for (int round = 0; round < 2; round++) {
+      final double scene = time(() -> {
+        root.setTranslation(frame[0]++, 0, 0);
+        root.updateWorldTransform(true);
+      });
+      final double batched = time(() -> {
+        store.setTranslation(storeRoot, frame[0]++, 0, 0);
+        store.update();
+      });
+      System.out.println(String.format("spatials %8.3f ms (~%d MB)  store %8.3f ms (~%d MB)  - %d objects", scene,
+          sceneMemory >> 20, batched, storeMemory >> 20, OBJECTS));
+    }
+  }
+
+  private static long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static double time(final Runnable update) {
+    for (int i = 0; i < WARMUP; i++) {
+      update.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      update.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2008-2021 Bird Dog Games, Inc.
+ *
+ * This file is part of Ardor3D.
+ *
+ * Ardor3D is free software: you can redistribute it and/or modify it
+ * under the terms of its license which may be found in the accompanying
+ * LICENSE file or at <https://git.io/fjRmv>.
+ */
+
+package com.ardor3d.example.benchmark.state;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.ardor3d.buffer.IndexBufferData;
+import com.ardor3d.example.Purpose;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+import com.ardor3d.math.type.ReadOnlyColorRGBA;
+import com.ardor3d.renderer.AbstractRenderer;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.DrawBufferTarget;
+import com.ardor3d.renderer.IScissorUtils;
+import com.ardor3d.renderer.IndexMode;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.Renderable;
+import com.ardor3d.renderer.material.IShaderUtils;
+import com.ardor3d.renderer.state.BlendState;
+import com.ardor3d.renderer.state.ColorMaskState;
+import com.ardor3d.renderer.state.CullState;
+import com.ardor3d.renderer.state.OffsetState;
+import com.ardor3d.renderer.state.RenderState;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.ZBufferState;
+import com.ardor3d.renderer.texture.ITextureUtils;
+import com.ardor3d.renderer.texture.TextureRenderer;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * <p>
+ * Headless benchmark of render state application for a scene with heavy state churn: meshes spread
+ * over many combinations of blend, depth, cull, color mask and offset states. Each frame applies the
+ * states of every mesh, either one {@link StateType} at a time as before, or through the mesh's
+ * compiled state block with {@link AbstractRenderer#applyStates(com.ardor3d.renderer.state.RenderStateBlock)}.
+ * </p>
+ * <p>
+ * Draw orders are either shuffled - every draw changes states - or grouped by state block, as a sorted
+ * render bucket would. The renderer makes applied states current like the real state utils do, and
+ * counts how often it is asked to apply a state.
+ * </p>
+ * <p>
+ * There are several system params you can use to modify the test:
+ * <ul>
+ * <li>-Dmeshes=# -- number of meshes. (default is 20000)</li>
+ * <li>-Dframes=# -- number of timed frames per configuration. (default is 200)</li>
+ * </ul>
+ * </p>
+ */
+@Purpose(htmlDescriptionKey = "com.ardor3d.example.benchmark.state.StateChurnBenchmark", maxHeapMemory = 512)
+public class StateChurnBenchmark {
+
+  private static final int MESHES = Integer.getInteger("meshes", 20000);
+  private static final int FRAMES = Integer.getInteger("frames", 200);
+  private static final int WARMUP = 50;
+
+  public static void main(final String[] args) {
+    final Object contextKey = new Object();
+    final RenderContext context = new RenderContext(contextKey, new ContextCapabilities());
+    ContextManager.addContext(contextKey, context);
+    ContextManager.switchContext(contextKey);
+
+    // a few variants of each state type, combined per mesh
+    final Random random = new Random(1);
+    final RenderState[][] variants = new RenderState[][] {
+        {new BlendState(), createBlend(true)}, {new ZBufferState(), createZBuffer(false)},
+        {new CullState(), createCull(CullState.Face.Back), createCull(CullState.Face.Front)},
+        {new ColorMaskState(), createColorMask()}, {null, new OffsetState()}};
+    final Node scene = new Node("scene");
+    for (int i = 0; i < MESHES; i++) {
+      final Mesh mesh = new Mesh("mesh" + i);
+      for (final RenderState[] options : variants) {
+        final RenderState state = options[random.nextInt(options.length)];
+        if (state != null) {
+          mesh.setRenderState(state);
+        }
+      }
+      scene.attachChild(mesh);
+    }
+    scene.updateGeometricState(0);
+
+    final List<Mesh> shuffled = new ArrayList<>();
+    for (final Spatial child : scene.getChildren()) {
+      shuffled.add((Mesh) child);
+    }
+    Collections.shuffle(shuffled, random);
+    final List<Mesh> grouped = new ArrayList<>(shuffled);
+    grouped.sort(Comparator.comparingInt(mesh -> mesh.getWorldRenderStateBlock().getId()));
+
+    final CountingRenderer renderer = new CountingRenderer();
+
+    // run each twice so the second round is measured with a warm JIT for all
+    for (int round = 0; round < 2; round++) {
+      for (final List<Mesh> order : List.of(shuffled, grouped)) {
+        final String name = order == shuffled ? "shuffled" : "grouped ";
+
+        final double perType = time(context, () -> {
+          for (int i = 0, maxI = order.size(); i < maxI; i++) {
+            final Mesh mesh = order.get(i);
+            for (final StateType type : StateType.values) {
+              renderer.applyState(type, mesh.getWorldRenderState(type));
+            }
+          }
+        });
+        final long perTypeApplies = renderer.takeCount();
+
+        final double blocks = time(context, () -> {
+          for (int i = 0, maxI = order.size(); i < maxI; i++) {
+            renderer.applyStates(order.get(i).getWorldRenderStateBlock());
+          }
+        });
+        final long blockApplies = renderer.takeCount();
+
+        System.out.println(String.format(
+            "%s  per type %8.3f ms (%d applies)  blocks %8.3f ms (%d applies)  - %d meshes", name, perType,
+            perTypeApplies / (WARMUP + FRAMES), blocks, blockApplies / (WARMUP + FRAMES), MESHES));
+      }
+    }
+  }
+
+  private static BlendState createBlend(final boolean enabled) {
+    final BlendState state = new BlendState();
+    state.setBlendEnabled(enabled);
+    return state;
+  }
+
+  private static ZBufferState createZBuffer(final boolean write) {
+    final ZBufferState state = new ZBufferState();
+    state.setWritable(write);
+    return state;
+  }
+
+  private static CullState createCull(final CullState.Face face) {
+    final CullState state = new CullState();
+    state.setCullFace(face);
+    return state;
+  }
+
+  private static ColorMaskState createColorMask() {
+    final ColorMaskState state = new ColorMaskState();
+    state.setAlpha(false);
+    return state;
+  }
+
+  private static double time(final RenderContext context, final Runnable frame) {
+    for (int i = 0; i < WARMUP; i++) {
+      context.invalidateStates();
+      frame.run();
+    }
+    final long start = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      context.invalidateStates();
+      frame.run();
+    }
+    return (System.nanoTime() - start) / 1e6 / FRAMES;
+  }
+
+  /** Makes applied states current, as the real state utils do, and counts them. */
+  private static class CountingRenderer extends AbstractRenderer {
+    private long _count;
+
+    long takeCount() {
+      final long count = _count;
+      _count = 0;
+      return count;
+    }
+
+    @Override
+    protected void doApplyState(final RenderState state) {
+      _count++;
+      ContextManager.getCurrentContext().setCurrentState(state.getType(), state);
+    }
+
+    @Override
+    public IShaderUtils getShaderUtils() { return null; }
+
+    @Override
+    public ITextureUtils getTextureUtils() { return null; }
+
+    @Override
+    public IScissorUtils getScissorUtils() { return null; }
+
+    @Override
+    public TextureRenderer createTextureRenderer(final int width, final int height, final int depthBits,
+        final int samples, final int stencilBits) {
+      return null;
+    }
+
+    @Override
+    public void grabScreenContents(final ByteBuffer store, final ImageDataFormat format, final PixelDataType type,
+        final int x, final int y, final int w, final int h) {}
+
+    @Override
+    public void setBackgroundColor(final ReadOnlyColorRGBA c) {}
+
+    @Override
+    public void clearBuffers(final int buffers, final boolean strict) {}
+
+    @Override
+    public void clearBuffers(final int buffers) {}
+
+    @Override
+    public void flushFrame(final boolean doSwap) {}
+
+    @Override
+    public void renderBuckets(final boolean doSort, final boolean doClear) {}
+
+    @Override
+    public void renderBuckets() {}
+
+    @Override
+    public void clearQueue() {}
+
+    @Override
+    public void draw(final Spatial s) {}
+
+    @Override
+    public void draw(final Renderable renderable) {}
+
+    @Override
+    public void flushGraphics() {}
+
+    @Override
+    public void finishGraphics() {}
+
+    @Override
+    public boolean checkAndAdd(final Spatial s) {
+      return false;
+    }
+
+    @Override
+    public void checkCardError() {}
+
+    @Override
+    public void drawArrays(final int start, final int count, final IndexMode mode, final int instanceCount) {}
+
+    @Override
+    public void drawElements(final IndexBufferData<?> indices, final int start, final int count,
+        final IndexMode mode, final int instanceCount) {}
+
+    @Override
+    public void setViewport(final int x, final int y, final int width, final int height) {}
+
+    @Override
+    public void setDepthRange(final double depthRangeNear, final double depthRangeFar) {}
+
+    @Override
+    public void setDrawBuffer(final DrawBufferTarget target) {}
+
+    @Override
+    public void setPointSize(final boolean antialiased, final float size) {}
+  }
+}
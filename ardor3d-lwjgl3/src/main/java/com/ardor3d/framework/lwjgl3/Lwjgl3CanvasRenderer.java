@@ -121,6 +121,7 @@ public class Lwjgl3CanvasRenderer implements CanvasRenderer {
 
     final boolean drew = _scene.render(_renderer);
     _renderer.flushFrame(drew && _doSwap);
+    ContextManager.getCurrentContext().nextFrame();
     if (drew && _doSwap) {
       _canvasCallback.doSwap();
     }
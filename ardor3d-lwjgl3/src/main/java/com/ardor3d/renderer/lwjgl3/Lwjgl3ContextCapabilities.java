@@ -14,6 +14,7 @@ import org.lwjgl.opengl.GL11C;
 import org.lwjgl.opengl.GL14C;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL30C;
+import org.lwjgl.opengl.GL41C;
 import org.lwjgl.opengl.GL46C;
 import org.lwjgl.opengl.GLCapabilities;
 
@@ -81,6 +82,13 @@ public class Lwjgl3ContextCapabilities extends ContextCapabilities {
       _maxAnisotropic = GL11C.glGetFloat(GL46C.GL_MAX_TEXTURE_MAX_ANISOTROPY);
     }
 
+    // See if we can save and load linked programs - some drivers support the call but no formats
+    _programBinarySupported =
+        caps.GL_ARB_get_program_binary && GL11C.glGetInteger(GL41C.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+
+    // See if we can submit many draws from a command buffer in one call
+    _multiDrawIndirectSupported = caps.OpenGL43 || caps.GL_ARB_multi_draw_indirect;
+
     try {
       _displayVendor = GL11C.glGetString(GL11C.GL_VENDOR);
     } catch (final Exception e) {
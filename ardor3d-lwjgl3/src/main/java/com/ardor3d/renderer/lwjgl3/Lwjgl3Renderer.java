@@ -19,6 +19,8 @@ import org.lwjgl.opengl.GL11C;
 import org.lwjgl.opengl.GL30C;
 import org.lwjgl.opengl.GL31C;
 import org.lwjgl.opengl.GL32C;
+import org.lwjgl.opengl.GL40C;
+import org.lwjgl.opengl.GL43C;
 import org.lwjgl.opengl.GLUtil;
 
 import com.ardor3d.buffer.IndexBufferData;
@@ -29,6 +31,7 @@ import com.ardor3d.renderer.AbstractRenderer;
 import com.ardor3d.renderer.Camera;
 import com.ardor3d.renderer.ContextManager;
 import com.ardor3d.renderer.DrawBufferTarget;
+import com.ardor3d.renderer.DrawIndirectCommands;
 import com.ardor3d.renderer.IndexMode;
 import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.Renderable;
@@ -192,6 +195,11 @@ public class Lwjgl3Renderer extends AbstractRenderer {
   public void flushFrame(final boolean doSwap) {
     renderBuckets();
 
+    if (_occlusionCuller != null) {
+      // occluders may move before the next frame
+      _occlusionCuller.invalidate();
+    }
+
     GL11C.glFlush();
     if (doSwap) {
       doApplyState(defaultStateList.get(RenderState.StateType.ColorMask));
@@ -232,7 +240,9 @@ public class Lwjgl3Renderer extends AbstractRenderer {
     final RenderBucketType bucketType = s.getSceneHints().getRenderBucketType();
     final Camera camera = Camera.getCurrentCamera();
     if (bucketType != RenderBucketType.Skip && camera.checkLayerPasses(s.getLayer())) {
-      getQueue().addToQueue(s, bucketType);
+      if (!isOccluded(s, camera)) {
+        getQueue().addToQueue(s, bucketType);
+      }
       return true;
     }
     return false;
@@ -389,6 +399,38 @@ public class Lwjgl3Renderer extends AbstractRenderer {
     }
   }
 
+  @Override
+  public void drawIndirect(final IndexBufferData<?> indices, final DrawIndirectCommands commands) {
+    final RenderContext context = ContextManager.getCurrentContext();
+    if (!context.getCapabilities().isMultiDrawIndirectSupported()) {
+      super.drawIndirect(indices, commands);
+      return;
+    }
+
+    Lwjgl3ShaderUtils.setupBufferObject(commands.getData(), GL40C.GL_DRAW_INDIRECT_BUFFER, context);
+
+    final int stride = commands.getCommandSize() * 4;
+    final int type = indices != null ? getGLDataType(indices) : 0;
+    for (int run = 0, maxRun = commands.getRunCount(); run < maxRun; run++) {
+      final IndexMode mode = commands.getRunMode(run);
+      final int glIndexMode = getGLIndexMode(mode);
+      final int start = commands.getRunStart(run);
+      final int length = commands.getRunLength(run);
+      if (indices != null) {
+        GL43C.glMultiDrawElementsIndirect(glIndexMode, type, (long) start * stride, length, stride);
+      } else {
+        GL43C.glMultiDrawArraysIndirect(glIndexMode, (long) start * stride, length, stride);
+      }
+
+      if (Constants.stats) {
+        final int instances = commands.getInstanceCount() > 0 ? commands.getInstanceCount() : 1;
+        for (int i = start; i < start + length; i++) {
+          addStats(mode, commands.getCount(i) * instances);
+        }
+      }
+    }
+  }
+
   private int getGLIndexMode(final IndexMode indexMode) {
     int glMode = GL11C.GL_TRIANGLES;
     switch (indexMode) {
@@ -29,13 +29,16 @@ import org.lwjgl.opengl.GL15C;
 import org.lwjgl.opengl.GL20C;
 import org.lwjgl.opengl.GL21C;
 import org.lwjgl.opengl.GL30C;
+import org.lwjgl.opengl.GL31C;
 import org.lwjgl.opengl.GL32C;
 import org.lwjgl.opengl.GL33C;
 import org.lwjgl.opengl.GL40C;
+import org.lwjgl.opengl.GL41C;
 import org.lwjgl.system.MemoryStack;
 
 import com.ardor3d.buffer.AbstractBufferData;
 import com.ardor3d.buffer.AbstractBufferData.VBOAccessMode;
+import com.ardor3d.buffer.BufferUtils;
 import com.ardor3d.light.LightManager;
 import com.ardor3d.light.LightProperties;
 import com.ardor3d.math.Matrix3;
@@ -53,9 +56,13 @@ import com.ardor3d.renderer.RenderContext;
 import com.ardor3d.renderer.RenderMatrixType;
 import com.ardor3d.renderer.lwjgl3.Lwjgl3Renderer;
 import com.ardor3d.renderer.material.IShaderUtils;
+import com.ardor3d.renderer.material.MaterialManager;
+import com.ardor3d.renderer.material.ShaderProgramBinaryCache;
+import com.ardor3d.renderer.material.ShaderProgramBinaryCache.ProgramBinary;
 import com.ardor3d.renderer.material.ShaderType;
 import com.ardor3d.renderer.material.VertexAttributeRef;
 import com.ardor3d.renderer.material.uniform.Ardor3dStateProperty;
+import com.ardor3d.renderer.material.uniform.UniformBlock;
 import com.ardor3d.renderer.material.uniform.UniformRef;
 import com.ardor3d.renderer.material.uniform.UniformType;
 import com.ardor3d.renderer.state.record.RendererRecord;
@@ -81,6 +88,19 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
       throw new Ardor3dException("Invalid Shader Program - must have at least Vertex and Fragment shaders.");
     }
 
+    // See if we linked this program in an earlier run
+    final ContextCapabilities caps = context.getCapabilities();
+    final ShaderProgramBinaryCache binaryCache =
+        caps.isProgramBinarySupported() ? MaterialManager.INSTANCE.getProgramBinaryCache() : null;
+    final String binaryKey = binaryCache != null ? ShaderProgramBinaryCache.computeKey(shaders, caps) : null;
+    if (binaryCache != null) {
+      final int cachedId = loadProgramBinary(binaryCache, binaryKey);
+      if (cachedId > 0) {
+        context.getRendererRecord().getUniformValues().invalidateProgram(cachedId);
+        return cachedId;
+      }
+    }
+
     // Ok, if we're getting called, it means we don't already have a program id, so make one.
     final int programId = GL20C.glCreateProgram();
 
@@ -89,7 +109,6 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
     final int fragShaderId = prepareShader(shaders.get(ShaderType.Fragment), ShaderType.Fragment);
     final int geoShaderId = prepareShader(shaders.get(ShaderType.Geometry), ShaderType.Geometry);
 
-    final ContextCapabilities caps = context.getCapabilities();
     final int tessCtrlShaderId, tessEvalShaderId;
     if (caps.isTessellationShadersSupported()) {
       tessCtrlShaderId = prepareShader(shaders.get(ShaderType.TessellationControl), ShaderType.TessellationControl);
@@ -114,6 +133,9 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
     }
 
     // Link our shaders to the program
+    if (binaryCache != null) {
+      GL41C.glProgramParameteri(programId, GL41C.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11C.GL_TRUE);
+    }
     GL20C.glLinkProgram(programId);
 
     // Check for link errors
@@ -137,9 +159,57 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
       GL20C.glDeleteShader(tessEvalShaderId);
     }
 
+    // save the linked program for later runs
+    if (binaryCache != null) {
+      storeProgramBinary(binaryCache, binaryKey, programId);
+    }
+
+    // forget any uniform values sent to a previous program with this id
+    context.getRendererRecord().getUniformValues().invalidateProgram(programId);
+
     return programId;
   }
 
+  private static int loadProgramBinary(final ShaderProgramBinaryCache cache, final String key) {
+    final ProgramBinary binary = cache.load(key);
+    if (binary == null) {
+      return 0;
+    }
+
+    final int programId = GL20C.glCreateProgram();
+    GL41C.glProgramBinary(programId, binary.getFormat(), binary.getBinary());
+    if (GL20C.glGetProgrami(programId, GL20C.GL_LINK_STATUS) == GL11C.GL_TRUE) {
+      return programId;
+    }
+
+    // rejected - usually because the driver changed. Clear any error from an unknown format and
+    // compile from source instead.
+    GL11C.glGetError();
+    GL20C.glDeleteProgram(programId);
+    cache.remove(key);
+    if (Lwjgl3ShaderUtils.logger.isLoggable(Level.FINE)) {
+      Lwjgl3ShaderUtils.logger.fine("Driver rejected cached program binary " + key);
+    }
+    return 0;
+  }
+
+  private static void storeProgramBinary(final ShaderProgramBinaryCache cache, final String key,
+      final int programId) {
+    final int length = GL20C.glGetProgrami(programId, GL41C.GL_PROGRAM_BINARY_LENGTH);
+    if (length <= 0) {
+      return;
+    }
+
+    final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+    try (MemoryStack stack = MemoryStack.stackPush()) {
+      final IntBuffer written = stack.mallocInt(1);
+      final IntBuffer format = stack.mallocInt(1);
+      GL41C.glGetProgramBinary(programId, written, format, binary);
+      binary.limit(written.get(0));
+      cache.store(key, format.get(0), binary);
+    }
+  }
+
   @Override
   public void useShaderProgram(final int id, final RenderContext context) {
     final RendererRecord record = context.getRendererRecord();
@@ -223,7 +293,6 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
   @SuppressWarnings("unchecked")
   @Override
   public void sendUniformValue(final int location, final UniformRef uniform, final Mesh mesh) {
-    // TODO: check if we already have a given uniform value set.
     // Determine our value.
     try (MemoryStack stack = MemoryStack.stackPush()) {
       Buffer value;
@@ -266,6 +335,12 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
 
       value.rewind();
 
+      // Skip values the current program already has
+      final RendererRecord record = ContextManager.getCurrentContext().getRendererRecord();
+      if (!record.getUniformValues().update(record.getProgramId(), location, value)) {
+        return;
+      }
+
       // Determine how we want to send and send
       switch (uniform.getType()) {
         case Double1:
@@ -651,6 +726,12 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
         return stack.mallocInt(1).put(unit).flip();
       }
 
+      case LightBlockIndex: {
+        final int index = ((Number) extra).intValue();
+        final var lm = SceneIndexer.getCurrent().getLightManager();
+        return stack.mallocInt(1).put(lm.getCurrentLightBlockIndex(index)).flip();
+      }
+
       case GlobalAmbientLight: {
         final ReadOnlyColorRGBA color = LightProperties.getAmbientLightColor(mesh);
         final FloatBuffer buffer = stack.mallocFloat(3);
@@ -670,8 +751,22 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
   @Override
   public int setupBufferObject(final AbstractBufferData<? extends Buffer> buffer, final boolean isEBO,
       final RenderContext context) {
-    final int target = isEBO ? GL15C.GL_ELEMENT_ARRAY_BUFFER : GL15C.GL_ARRAY_BUFFER;
+    return setupBufferObject(buffer, isEBO ? GL15C.GL_ELEMENT_ARRAY_BUFFER : GL15C.GL_ARRAY_BUFFER, context);
+  }
 
+  /**
+   * Upload the given buffer to a buffer object if needed, and bind it to the given target.
+   *
+   * @param buffer
+   *          the buffer data.
+   * @param target
+   *          the GL buffer target, such as GL_ARRAY_BUFFER.
+   * @param context
+   *          the current render context.
+   * @return the id of the buffer object.
+   */
+  public static int setupBufferObject(final AbstractBufferData<? extends Buffer> buffer, final int target,
+      final RenderContext context) {
     int id = buffer.getBufferId(context);
     if (id != 0 && buffer.isBufferClean(context)) {
       GL15C.glBindBuffer(target, id);
@@ -693,19 +788,31 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
       }
 
       GL15C.glBindBuffer(target, id);
-      if (newBuffer) {
+      final int rangeCount = buffer.getDirtyRangeCount();
+      if (newBuffer || rangeCount == 0 && buffer.getVboAccessMode() == VBOAccessMode.StreamDraw) {
+        // (re)allocate - for streamed buffers this orphans the old storage, so we don't wait on draws
+        // still reading it
         GL15C.glBufferData(target, dataBuffer.capacity() * buffer.getByteCount(),
             getGLVBOAccessMode(buffer.getVboAccessMode()));
       }
 
-      if (dataBuffer instanceof FloatBuffer) {
-        GL15C.glBufferSubData(target, 0, (FloatBuffer) dataBuffer);
-      } else if (dataBuffer instanceof ByteBuffer) {
-        GL15C.glBufferSubData(target, 0, (ByteBuffer) dataBuffer);
-      } else if (dataBuffer instanceof IntBuffer) {
-        GL15C.glBufferSubData(target, 0, (IntBuffer) dataBuffer);
-      } else if (dataBuffer instanceof ShortBuffer) {
-        GL15C.glBufferSubData(target, 0, (ShortBuffer) dataBuffer);
+      if (!newBuffer && rangeCount > 0) {
+        // only send the values that changed
+        final int limit = dataBuffer.limit();
+        try {
+          for (int i = 0; i < rangeCount; i++) {
+            final int start = Math.min(buffer.getDirtyRangeOffset(i), limit);
+            final int end = Math.min(start + buffer.getDirtyRangeLength(i), limit);
+            if (start < end) {
+              dataBuffer.limit(end).position(start);
+              sendBufferSubData(target, (long) start * buffer.getByteCount(), dataBuffer);
+            }
+          }
+        } finally {
+          dataBuffer.limit(limit).rewind();
+        }
+      } else {
+        sendBufferSubData(target, 0, dataBuffer);
       }
 
       buffer.markClean(context);
@@ -716,6 +823,39 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
     return id;
   }
 
+  @Override
+  public int findUniformBlockIndex(final int programId, final String blockName) {
+    final int index = GL31C.glGetUniformBlockIndex(programId, blockName);
+    return index == GL31C.GL_INVALID_INDEX ? -1 : index;
+  }
+
+  @Override
+  public void setUniformBlockBinding(final int programId, final int blockIndex, final int binding) {
+    GL31C.glUniformBlockBinding(programId, blockIndex, binding);
+  }
+
+  @Override
+  public void bindUniformBlock(final UniformBlock block, final RenderContext context) {
+    final int id = setupBufferObject(block.getData(), GL31C.GL_UNIFORM_BUFFER, context);
+    final RendererRecord record = context.getRendererRecord();
+    if (record.getUniformBufferBinding(block.getBinding()) != id) {
+      GL30C.glBindBufferBase(GL31C.GL_UNIFORM_BUFFER, block.getBinding(), id);
+      record.setUniformBufferBinding(block.getBinding(), id);
+    }
+  }
+
+  private static void sendBufferSubData(final int target, final long offsetBytes, final Buffer dataBuffer) {
+    if (dataBuffer instanceof FloatBuffer) {
+      GL15C.glBufferSubData(target, offsetBytes, (FloatBuffer) dataBuffer);
+    } else if (dataBuffer instanceof ByteBuffer) {
+      GL15C.glBufferSubData(target, offsetBytes, (ByteBuffer) dataBuffer);
+    } else if (dataBuffer instanceof IntBuffer) {
+      GL15C.glBufferSubData(target, offsetBytes, (IntBuffer) dataBuffer);
+    } else if (dataBuffer instanceof ShortBuffer) {
+      GL15C.glBufferSubData(target, offsetBytes, (ShortBuffer) dataBuffer);
+    }
+  }
+
   @Override
   public void bindVertexAttribute(final VertexAttributeRef attrib, final AbstractBufferData<? extends Buffer> buffer) {
     final int tupleSize = buffer.getValuesPerTuple();
@@ -797,13 +937,16 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
       return;
     }
 
-    final int id = buffer.removeBufferId(ContextManager.getCurrentContext());
+    final RenderContext context = ContextManager.getCurrentContext();
+    final int id = buffer.removeBufferId(context);
     if (id == 0) {
       // Not on card... return.
       return;
     }
 
     GL15C.glDeleteBuffers(id);
+    // deleting unbinds the buffer, and its id may be reused
+    context.getRendererRecord().invalidateUniformBufferBindings();
     if (logger.isLoggable(Level.FINE)) {
       logger.fine("deleting buffer " + id);
     }
@@ -833,6 +976,11 @@ public class Lwjgl3ShaderUtils implements IShaderUtils {
         GL15C.glDeleteBuffers(idBuffer);
       }
     }
+
+    final RenderContext context = ContextManager.getCurrentContext();
+    if (context != null) {
+      context.getRendererRecord().invalidateUniformBufferBindings();
+    }
   }
 
   @Override
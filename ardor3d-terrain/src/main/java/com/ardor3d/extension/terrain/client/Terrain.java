@@ -32,8 +32,10 @@ import com.ardor3d.math.Ray3;
 import com.ardor3d.math.Vector3;
 import com.ardor3d.math.util.MathUtils;
 import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.CullContext;
 import com.ardor3d.renderer.Renderer;
 import com.ardor3d.renderer.queue.RenderBucketType;
+import com.ardor3d.renderer.queue.RenderQueue;
 import com.ardor3d.renderer.state.BlendState;
 import com.ardor3d.renderer.state.CullState;
 import com.ardor3d.renderer.state.TextureState;
@@ -338,6 +340,15 @@ public class Terrain extends Node implements Pickable, Runnable {
     }
   }
 
+  /**
+   * Queues the terrain as a whole, so that its clipmaps are updated for the camera and drawn by
+   * {@link #draw(Renderer)} when the queue is rendered.
+   */
+  @Override
+  public void queue(final CullContext context, final RenderQueue queue) {
+    context.addToQueue(this, queue);
+  }
+
   protected void updateFromMailbox() {
     if (updateTimer > updateThreshold) {
       final List<Region> regionList = mailBox.switchAndGet();